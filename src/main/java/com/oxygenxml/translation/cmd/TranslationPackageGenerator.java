@@ -5,20 +5,23 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URL;
 import java.security.NoSuchAlgorithmException;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.bind.JAXBException;
 
 import com.oxygenxml.translation.exceptions.StoppedByUserException;
 import com.oxygenxml.translation.support.core.ChangePackageGenerator;
 import com.oxygenxml.translation.support.core.resource.IRootResource;
+import com.oxygenxml.translation.support.core.resource.ReferenceCache;
 import com.oxygenxml.translation.support.core.resource.ResourceFactory;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
 import com.oxygenxml.translation.support.util.ArchiveBuilder;
 import com.oxygenxml.translation.support.util.PackageGeneratorUtil;
 import com.oxygenxml.translation.support.util.PathUtil;
-import com.oxygenxml.translation.ui.ProgressChangeListener;
+import com.oxygenxml.translation.support.util.UnpackStatistics;
+import com.oxygenxml.translation.support.zip.PackageManifest;
+import com.oxygenxml.translation.support.zip.VolumePacker;
 
 /**
  * Utility methods for the common tasks:
@@ -52,17 +55,77 @@ public class TranslationPackageGenerator {
    */
   public static File generateMilestone(URL ditaMapURL, File milestone, PrintStream ps) throws IOException, 
   NoSuchAlgorithmException, JAXBException {
+    return generateMilestone(ditaMapURL, milestone, ps, false);
+  }
+  
+  /**
+   * Iterates over the entire structure of the given DITA map and generates a milestone file. A milestone file is used later 
+   * on to detect file changes.
+   * 
+   * @param ditaMapURL DITA Map.
+   * @param milestone The location where to save the milestone file. If <code>null</code>, the milestone file is 
+   * generated next to the root map.
+   * @param ps An optional print stream where to write progress data and errors.
+   * @param trustFileAttributes <code>true</code> to record the file attributes in the milestone and to reuse the 
+   * MD5s of the files whose attributes are the same as in the existing milestone.
+   * 
+   * @return The milestone file.
+   * 
+   * @throws IOException Problems while generating the milestone.
+   * @throws JAXBException Problems while serializing the milestone data.
+   * @throws NoSuchAlgorithmException Problems while computing the MD5 keys needs for the milestone file.
+   */
+  public static File generateMilestone(URL ditaMapURL, File milestone, PrintStream ps, boolean trustFileAttributes) 
+      throws IOException, NoSuchAlgorithmException, JAXBException {
+    return generateMilestone(ditaMapURL, milestone, ps, trustFileAttributes, null);
+  }
+  
+  /**
+   * Iterates over the entire structure of the given DITA map and generates a milestone file. A milestone file is used later 
+   * on to detect file changes.
+   * 
+   * @param ditaMapURL DITA Map.
+   * @param milestone The location where to save the milestone file. If <code>null</code>, the milestone file is 
+   * generated next to the root map.
+   * @param ps An optional print stream where to write progress data and errors.
+   * @param trustFileAttributes <code>true</code> to record the file attributes in the milestone and to reuse the 
+   * MD5s of the files whose attributes are the same as in the existing milestone.
+   * @param referenceCacheDirectory The directory of a cache of the references detected in the DITA documents,
+   * so the documents that didn't change since a previous run are not parsed again. <code>null</code> to use
+   * the one of {@link ResourceFactory}, if any.
+   * 
+   * @return The milestone file.
+   * 
+   * @throws IOException Problems while generating the milestone.
+   * @throws JAXBException Problems while serializing the milestone data.
+   * @throws NoSuchAlgorithmException Problems while computing the MD5 keys needs for the milestone file.
+   */
+  public static File generateMilestone(
+      URL ditaMapURL, 
+      File milestone, 
+      PrintStream ps, 
+      boolean trustFileAttributes,
+      File referenceCacheDirectory) throws IOException, NoSuchAlgorithmException, JAXBException {
     
     ChangePackageGenerator packageBuilder = new ChangePackageGenerator();
+    packageBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
+    packageBuilder.setTrustFileAttributes(trustFileAttributes);
     if (ps != null) {
       packageBuilder.addProgressListener(new OutputStreamProgressChangeListener(ps));
     }
-    IRootResource resource = ResourceFactory.getInstance().getResource(ditaMapURL, milestone);
+    ResourceFactory resourceFactory = ResourceFactory.getInstance();
+    ReferenceCache referenceCache = resourceFactory.getReferenceCache();
+    if (referenceCacheDirectory != null) {
+      resourceFactory.setReferenceCacheDirectory(referenceCacheDirectory);
+    }
     try {
+      IRootResource resource = resourceFactory.getResource(ditaMapURL, milestone);
       return packageBuilder.generateChangeMilestone(resource);
     } catch (StoppedByUserException e) {
       // The progress listener we pass can't stop process.
       throw new IOException(e);
+    } finally {
+      resourceFactory.setReferenceCache(referenceCache);
     }
   }
   
@@ -88,26 +151,193 @@ public class TranslationPackageGenerator {
       File packageFile, 
       PrintStream ps,
       boolean generateMilestone) throws NoSuchAlgorithmException, IOException, JAXBException {
+    createPackage(rootMap, milestoneFile, packageFile, ps, generateMilestone, false);
+  }
+  
+  /**
+   * Creates a package with all the changed files that need translating.
+   * 
+   * @param rootMap DITA Map.
+   * @param milestone The location of the milestone file. If <code>null</code>, the milestone file is 
+   * searched for next to the root map.
+   * @param packageFile Resulting package file.
+   * @param ps An optional print stream where to write progress data and errors.
+   * @param generateMilestone <code>true</code> to regenerate the milestone file after the package is created.
+   * @param trustFileAttributes <code>true</code> to consider unchanged, without reading them, the files whose 
+   * size and last modified time are the same as the ones recorded in the milestone.
+   * 
+   * @throws IOException Problems while creating the package.
+   * @throws JAXBException Problems while loading the milestone file.
+   * @throws NoSuchAlgorithmException Problems while computing the MD5 keys needed to detect changes in files.
+   */
+  public static void createPackage(
+      URL rootMap, 
+      File milestoneFile,
+      File packageFile, 
+      PrintStream ps,
+      boolean generateMilestone,
+      boolean trustFileAttributes) throws NoSuchAlgorithmException, IOException, JAXBException {
+    createPackage(rootMap, milestoneFile, packageFile, ps, generateMilestone, trustFileAttributes, 0);
+  }
+  
+  /**
+   * Creates a package with all the changed files that need translating, split in size-capped volumes.
+   * 
+   * @param rootMap DITA Map.
+   * @param milestone The location of the milestone file. If <code>null</code>, the milestone file is 
+   * searched for next to the root map.
+   * @param packageFile Resulting package file. The volumes are named after it: package.part001.zip, package.part002.zip...
+   * @param ps An optional print stream where to write progress data and errors.
+   * @param generateMilestone <code>true</code> to regenerate the milestone file after the package is created.
+   * @param trustFileAttributes <code>true</code> to consider unchanged, without reading them, the files whose 
+   * size and last modified time are the same as the ones recorded in the milestone.
+   * @param maxVolumeSize The maximum size of a volume, in bytes. 0 to create a single package file.
+   * 
+   * @throws IOException Problems while creating the package.
+   * @throws JAXBException Problems while loading the milestone file.
+   * @throws NoSuchAlgorithmException Problems while computing the MD5 keys needed to detect changes in files.
+   */
+  public static void createPackage(
+      URL rootMap, 
+      File milestoneFile,
+      File packageFile, 
+      PrintStream ps,
+      boolean generateMilestone,
+      boolean trustFileAttributes,
+      long maxVolumeSize) throws NoSuchAlgorithmException, IOException, JAXBException {
+    createPackage(rootMap, milestoneFile, packageFile, ps, generateMilestone, trustFileAttributes, maxVolumeSize, false);
+  }
+  
+  /**
+   * Creates a package with all the changed files that need translating, split in size-capped volumes.
+   * 
+   * @param rootMap DITA Map.
+   * @param milestone The location of the milestone file. If <code>null</code>, the milestone file is 
+   * searched for next to the root map.
+   * @param packageFile Resulting package file. The volumes are named after it: package.part001.zip, package.part002.zip... 
+   * If a package was already generated there, its unchanged entries are copied without compressing them again.
+   * @param ps An optional print stream where to write progress data and errors.
+   * @param generateMilestone <code>true</code> to regenerate the milestone file after the package is created.
+   * @param trustFileAttributes <code>true</code> to consider unchanged, without reading them, the files whose 
+   * size and last modified time are the same as the ones recorded in the milestone.
+   * @param maxVolumeSize The maximum size of a volume, in bytes. 0 to create a single package file.
+   * @param deduplicate <code>true</code> to store once the changed files with the same content. The copies
+   * are restored by {@link #applyPackage(URL, File, PrintStream)}.
+   * 
+   * @throws IOException Problems while creating the package.
+   * @throws JAXBException Problems while loading the milestone file.
+   * @throws NoSuchAlgorithmException Problems while computing the MD5 keys needed to detect changes in files.
+   */
+  public static void createPackage(
+      URL rootMap, 
+      File milestoneFile,
+      File packageFile, 
+      PrintStream ps,
+      boolean generateMilestone,
+      boolean trustFileAttributes,
+      long maxVolumeSize,
+      boolean deduplicate) throws NoSuchAlgorithmException, IOException, JAXBException {
+    createPackage(rootMap, milestoneFile, packageFile, ps, generateMilestone, trustFileAttributes, maxVolumeSize, 
+        deduplicate, null);
+  }
+  
+  /**
+   * Creates a package with all the changed files that need translating, split in size-capped volumes.
+   * 
+   * @param rootMap DITA Map.
+   * @param milestone The location of the milestone file. If <code>null</code>, the milestone file is 
+   * searched for next to the root map.
+   * @param packageFile Resulting package file. The volumes are named after it: package.part001.zip, package.part002.zip... 
+   * If a package was already generated there, its unchanged entries are copied without compressing them again.
+   * @param ps An optional print stream where to write progress data and errors.
+   * @param generateMilestone <code>true</code> to regenerate the milestone file after the package is created.
+   * @param trustFileAttributes <code>true</code> to consider unchanged, without reading them, the files whose 
+   * size and last modified time are the same as the ones recorded in the milestone.
+   * @param maxVolumeSize The maximum size of a volume, in bytes. 0 to create a single package file.
+   * @param deduplicate <code>true</code> to store once the changed files with the same content. The copies
+   * are restored by {@link #applyPackage(URL, File, PrintStream)}.
+   * @param referenceCacheDirectory The directory of a cache of the references detected in the DITA documents,
+   * so the documents that didn't change since a previous run are not parsed again. <code>null</code> to use
+   * the one of {@link ResourceFactory}, if any.
+   * 
+   * @throws IOException Problems while creating the package.
+   * @throws JAXBException Problems while loading the milestone file.
+   * @throws NoSuchAlgorithmException Problems while computing the MD5 keys needed to detect changes in files.
+   */
+  public static void createPackage(
+      URL rootMap, 
+      File milestoneFile,
+      File packageFile, 
+      PrintStream ps,
+      boolean generateMilestone,
+      boolean trustFileAttributes,
+      long maxVolumeSize,
+      boolean deduplicate,
+      File referenceCacheDirectory) throws NoSuchAlgorithmException, IOException, JAXBException {
     ChangePackageGenerator packageBuilder = new ChangePackageGenerator();
-    OutputStreamProgressChangeListener l = null;
+    packageBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
+    packageBuilder.setTrustFileAttributes(trustFileAttributes);
+    packageBuilder.setMaxVolumeSize(maxVolumeSize);
+    packageBuilder.setDeduplicate(deduplicate);
+    
+    ResourceFactory resourceFactory = ResourceFactory.getInstance();
+    ReferenceCache referenceCache = resourceFactory.getReferenceCache();
+    if (referenceCacheDirectory != null) {
+      resourceFactory.setReferenceCacheDirectory(referenceCacheDirectory);
+    }
+    try {
+      createPackage(rootMap, milestoneFile, packageFile, ps, generateMilestone, packageBuilder);
+    } finally {
+      resourceFactory.setReferenceCache(referenceCache);
+    }
+  }
+  
+  /**
+   * Creates a package with all the changed files that need translating, using a configured generator.
+   * This is the way to set the options that have no dedicated parameter, like 
+   * {@link ChangePackageGenerator#setReproducible(boolean)}.
+   * 
+   * @param rootMap DITA Map.
+   * @param milestone The location of the milestone file. If <code>null</code>, the milestone file is 
+   * searched for next to the root map.
+   * @param packageFile Resulting package file. If a package was already generated there, its unchanged 
+   * entries are copied without compressing them again.
+   * @param ps An optional print stream where to write progress data and errors.
+   * @param generateMilestone <code>true</code> to regenerate the milestone file after the package is created.
+   * @param packageBuilder Detects the changes and writes the package.
+   * 
+   * @throws IOException Problems while creating the package.
+   * @throws JAXBException Problems while loading the milestone file.
+   * @throws NoSuchAlgorithmException Problems while computing the MD5 keys needed to detect changes in files.
+   */
+  public static void createPackage(
+      URL rootMap, 
+      File milestoneFile,
+      File packageFile, 
+      PrintStream ps,
+      boolean generateMilestone,
+      ChangePackageGenerator packageBuilder) throws NoSuchAlgorithmException, IOException, JAXBException {
     if (ps != null) {
-      l = new OutputStreamProgressChangeListener(ps);
-      packageBuilder.addProgressListener(l);
+      packageBuilder.addProgressListener(new OutputStreamProgressChangeListener(ps));
     }
     
     try {
-      List<ResourceInfo> modifiedResources = packageBuilder.collectModifiedResources(
-          ResourceFactory.getInstance().getResource(rootMap, milestoneFile));
+      // A single traversal of the map. Its results are reused for the top location, the package and the milestone.
+      IRootResource resource = ResourceFactory.getInstance().getResource(rootMap, milestoneFile);
+      List<ResourceInfo> modifiedResources = packageBuilder.collectModifiedResources(resource);
 
+      // A package previously generated at the same location gives the entries that didn't change.
+      packageBuilder.setPreviousPackage(packageFile);
       PackageGeneratorUtil.zipModifiedResources(
           rootMap, 
-          l != null ? java.util.Arrays.asList(new ProgressChangeListener[] {l}) : Collections.emptyList(), 
+          packageBuilder, 
           packageFile, 
-          modifiedResources);
+          modifiedResources,
+          packageBuilder.getTopLocationURL());
 
       // Regenerate the milestone.
       if (generateMilestone) {
-        generateMilestone(rootMap, milestoneFile, ps);
+        packageBuilder.generateChangeMilestoneFromCollectedStates(resource);
       }
     } catch (StoppedByUserException e) {
       // The progress listener we pass can't stop process.
@@ -119,7 +349,8 @@ public class TranslationPackageGenerator {
    * Applies a translation package over a root map.
    * 
    * @param rootMap Target root map.
-   * @param packageFile translation package.
+   * @param packageFile translation package. If it is a volume of a split package (or the name the package 
+   * had before it was split), all the volumes are applied.
    * @param ps An optional print stream where to write progress data and errors.
    * 
    * @return A list with the relative path of every extracted file.
@@ -130,16 +361,74 @@ public class TranslationPackageGenerator {
       URL rootMap, 
       File packageFile, 
       PrintStream ps) throws IOException {
-    File unzipLocation = PathUtil.calculateTopLocationFile(rootMap);
+    return applyPackage(rootMap, VolumePacker.findVolumes(packageFile), ps);
+  }
+  
+  /**
+   * Applies the volumes of a translation package over a root map. The volumes are extracted in parallel.
+   * The files that were sent in the package but are missing from it are reported in the print stream.
+   * 
+   * @param rootMap Target root map.
+   * @param volumes The volumes of the translation package.
+   * @param ps An optional print stream where to write progress data and errors.
+   * 
+   * @return A list with the relative path of every extracted file.
+   * 
+   * @throws IOException Problems while applying the package.
+   */
+  public static List<String> applyPackage(
+      URL rootMap, 
+      List<File> volumes, 
+      PrintStream ps) throws IOException {
+    return applyPackage(rootMap, volumes, ps, false);
+  }
+  
+  /**
+   * Applies the volumes of a translation package over a root map. The volumes are extracted in parallel.
+   * The files that were sent in the package but are missing from it are reported in the print stream. 
+   * When skipping the unchanged files, so are the counts of written, new and skipped files.
+   * 
+   * @param rootMap Target root map.
+   * @param volumes The volumes of the translation package.
+   * @param ps An optional print stream where to write progress data and errors.
+   * @param skipUnchanged <code>true</code> to write only the files whose CRC32 or size differ from the 
+   * ones of the local files. The unchanged local files keep their last modified time.
+   * 
+   * @return A list with the relative path of every file of the package, written or skipped.
+   * 
+   * @throws IOException Problems while applying the package.
+   */
+  public static List<String> applyPackage(
+      URL rootMap, 
+      List<File> volumes, 
+      PrintStream ps,
+      boolean skipUnchanged) throws IOException {
+    File unzipLocation = PathUtil.findTopLocationFile(rootMap);
     
     ArchiveBuilder archiveBuilder = new ArchiveBuilder();
+    archiveBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
+    archiveBuilder.setSkipUnchanged(skipUnchanged);
     if (ps != null) {
       archiveBuilder.addProgressListener(new OutputStreamProgressChangeListener(ps));
     }
     try {
-    return archiveBuilder.unzipDirectory(
-        packageFile,
-        unzipLocation);
+      List<String> unpacked = archiveBuilder.unzipDirectory(
+          volumes,
+          unzipLocation);
+      if (ps != null) {
+        for (Map.Entry<String, PackageManifest.Status> status : archiveBuilder.getEntryStatuses().entrySet()) {
+          if (status.getValue() == PackageManifest.Status.MISSING) {
+            ps.println("Missing from the package: " + status.getKey());
+          }
+        }
+        if (skipUnchanged) {
+          UnpackStatistics statistics = archiveBuilder.getStatistics();
+          ps.println("Written files: " + statistics.getWrittenFiles() 
+              + ", new files: " + statistics.getNewFiles() 
+              + ", skipped unchanged files: " + statistics.getSkippedFiles());
+        }
+      }
+      return unpacked;
     } catch (StoppedByUserException e) {
       // The progress listener we pass can't stop process.
       throw new IOException(e);
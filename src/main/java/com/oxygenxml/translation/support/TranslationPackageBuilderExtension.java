@@ -180,7 +180,7 @@ public class TranslationPackageBuilderExtension implements WorkspaceAccessPlugin
         // The parent directory of the current ditamap.
         File fileOnDisk = pluginWorkspaceAccess.getUtilAccess().locateFile(editorLocation);
         final File rootDir = fileOnDisk.getParentFile();
-        final File unzipLocation = PathUtil.calculateTopLocationFile(editorLocation);
+        final File unzipLocation = PathUtil.findTopLocationFile(editorLocation);
         
         final PluginResourceBundle resourceBundle = pluginWorkspaceAccess.getResourceBundle();
         final File chosenDir = pluginWorkspaceAccess.chooseFile(resourceBundle.getMessage(Tags.CHOOSE_TRANSLATION_PACKAGE), new String[] {"zip"},  null);
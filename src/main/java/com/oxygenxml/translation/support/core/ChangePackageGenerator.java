@@ -1,31 +1,52 @@
 package com.oxygenxml.translation.support.core;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.NoSuchAlgorithmException;
-import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.Deflater;
 
 import javax.xml.bind.JAXBException;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
 
 import com.oxygenxml.translation.exceptions.StoppedByUserException;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithms;
 import com.oxygenxml.translation.support.core.resource.IResource;
 import com.oxygenxml.translation.support.core.resource.IRootResource;
 import com.oxygenxml.translation.support.storage.InfoResources;
+import com.oxygenxml.translation.support.storage.MilestoneFormat;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
-import com.oxygenxml.translation.support.util.ArchiveBuilder;
 import com.oxygenxml.translation.support.util.PathUtil;
 import com.oxygenxml.translation.support.util.ResultsManagerUtil;
-import com.oxygenxml.translation.ui.ProgressChangeAdapter;
+import com.oxygenxml.translation.support.zip.AdaptiveCompressionPolicy;
+import com.oxygenxml.translation.support.zip.CompressionPolicy;
+import com.oxygenxml.translation.support.zip.DuplicatesManifest;
+import com.oxygenxml.translation.support.zip.PackageManifest;
+import com.oxygenxml.translation.support.zip.PreviousPackage;
+import com.oxygenxml.translation.support.zip.VolumePacker;
+import com.oxygenxml.translation.support.zip.ZipArchiveEntry;
+import com.oxygenxml.translation.support.zip.ZipArchiveWriter;
 import com.oxygenxml.translation.ui.ProgressChangeEvent;
 import com.oxygenxml.translation.ui.ProgressChangeListener;
 import com.oxygenxml.translation.ui.Tags;
@@ -46,6 +67,11 @@ import ro.sync.util.URLUtil;
  */
 public class ChangePackageGenerator {
   
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(ChangePackageGenerator.class.getName());
+  
   /**
    *  A list of custom listeners.
    */
@@ -62,6 +88,80 @@ public class ChangePackageGenerator {
    */
   private String commonPath;
   
+  /**
+   * The current states of the resources, computed by the last {@link #collectModifiedResources(IRootResource)}.
+   */
+  private List<ResourceInfo> currentStates;
+  
+  /**
+   * How many threads compute the resource information. A value of 1 (the default) walks and hashes 
+   * the resources sequentially, on the calling thread.
+   */
+  private int parallelism = 1;
+  
+  /**
+   * <code>true</code> to record the file attributes (size, last modified time, file key) in the milestone and to
+   * reuse the recorded MD5 of the files whose attributes didn't change, instead of reading them again.
+   */
+  private boolean trustFileAttributes = false;
+  
+  /**
+   * The states recorded in the previous milestone, mapped by their relative paths. Used to reuse the MD5s
+   * when the file attributes are trusted. <code>null</code> if there are no such states.
+   */
+  private Map<String, ResourceInfo> previousStates;
+  
+  /**
+   * The algorithm used to compute the digests of a new milestone.
+   */
+  private DigestAlgorithm digestAlgorithm = DigestAlgorithms.getDefault();
+  
+  /**
+   * The algorithm used by the current operation. When detecting changes, it is the algorithm of the 
+   * loaded milestone. <code>null</code> to use {@link #digestAlgorithm}.
+   */
+  private DigestAlgorithm activeAlgorithm;
+  
+  /**
+   * The format in which the milestone is saved.
+   */
+  private MilestoneFormat milestoneFormat = MilestoneFormat.XML;
+  
+  /**
+   * Chooses between storing and deflating each entry of the package. <code>null</code> to deflate all of them.
+   */
+  private CompressionPolicy compressionPolicy = new AdaptiveCompressionPolicy();
+  
+  /**
+   * The DEFLATE compression level of the package entries.
+   */
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  
+  /**
+   * The maximum size of a package volume, in bytes. 0 to create a single package.
+   */
+  private long maxVolumeSize = 0;
+  
+  /**
+   * <code>true</code> to store once the resources with the same content.
+   */
+  private boolean deduplicate = false;
+  
+  /**
+   * A package built before from the same resources. <code>null</code> to compress all the entries.
+   */
+  private File previousPackage;
+  
+  /**
+   * <code>true</code> to write the same package, byte for byte, from the same resources.
+   */
+  private boolean reproducible = false;
+  
+  /**
+   * The creation date of the milestone the changes were detected against. <code>null</code> if unknown.
+   */
+  private Date milestoneDate;
+  
   /**
    * Constructor.
    * 
@@ -84,6 +184,212 @@ public class ChangePackageGenerator {
   public void addProgressListener(ProgressChangeListener l) {
     listeners.add(l);
   }
+  
+  /**
+   * Sets how many threads compute the resource information (read and hash the resources) and compress
+   * the entries of the changed files package. 
+   * The resulting list of {@link ResourceInfo} and the package entries order are the same no matter the 
+   * parallelism level.
+   * 
+   * @param parallelism The number of threads. 1 to compute everything on the calling thread.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism level must be at least 1: " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+  
+  /**
+   * @return How many threads compute the resource information.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+  
+  /**
+   * When the file attributes are trusted, the milestone records the size, the last modified time and the 
+   * file key (where available) of each file. When detecting changes or regenerating the milestone, a file 
+   * whose attributes are the same as the recorded ones is considered unchanged and is not read again. 
+   * 
+   * A file modified without changing its size and last modified time will not be detected in this mode.
+   * 
+   * @param trustFileAttributes <code>true</code> to record and trust the file attributes.
+   */
+  public void setTrustFileAttributes(boolean trustFileAttributes) {
+    this.trustFileAttributes = trustFileAttributes;
+  }
+  
+  /**
+   * @return <code>true</code> if the file attributes are recorded in the milestone and trusted.
+   */
+  public boolean isTrustFileAttributes() {
+    return trustFileAttributes;
+  }
+  
+  /**
+   * Sets the algorithm used to compute the digests when generating a milestone. The algorithm is recorded 
+   * in the milestone and detecting the changes always uses the algorithm of the milestone.
+   * 
+   * @param digestAlgorithm The digest algorithm. MD5 by default.
+   */
+  public void setDigestAlgorithm(DigestAlgorithm digestAlgorithm) {
+    this.digestAlgorithm = digestAlgorithm;
+  }
+  
+  /**
+   * @return The algorithm used to compute the digests when generating a milestone.
+   */
+  public DigestAlgorithm getDigestAlgorithm() {
+    return digestAlgorithm;
+  }
+  
+  /**
+   * Sets the format in which the milestone is saved. Loading a milestone detects its format automatically.
+   * 
+   * @param milestoneFormat The milestone format. XML by default.
+   */
+  public void setMilestoneFormat(MilestoneFormat milestoneFormat) {
+    this.milestoneFormat = milestoneFormat;
+  }
+  
+  /**
+   * @return The format in which the milestone is saved.
+   */
+  public MilestoneFormat getMilestoneFormat() {
+    return milestoneFormat;
+  }
+  
+  /**
+   * Sets the policy that chooses between storing and deflating each entry of the changed files package. 
+   * By default, the already compressed resources (images, videos, PDFs...) are stored.
+   * 
+   * @param compressionPolicy The policy. <code>null</code> to deflate all the entries.
+   */
+  public void setCompressionPolicy(CompressionPolicy compressionPolicy) {
+    this.compressionPolicy = compressionPolicy;
+  }
+  
+  /**
+   * @return The policy that chooses between storing and deflating each entry of the changed files package.
+   */
+  public CompressionPolicy getCompressionPolicy() {
+    return compressionPolicy;
+  }
+  
+  /**
+   * @param compressionLevel The DEFLATE compression level of the package entries, from 0 to 9, 
+   * or {@link Deflater#DEFAULT_COMPRESSION}.
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    if ((compressionLevel < 0 || compressionLevel > 9) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+    }
+    this.compressionLevel = compressionLevel;
+  }
+  
+  /**
+   * @return The DEFLATE compression level of the package entries.
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+  
+  /**
+   * Splits the package in size-capped volumes. Each volume is a self-contained ZIP and no file spans
+   * two volumes. A file larger than the budget gets a volume of its own.
+   * 
+   * @param maxVolumeSize The maximum size of a volume, in bytes. 0 to create a single archive.
+   */
+  public void setMaxVolumeSize(long maxVolumeSize) {
+    if (maxVolumeSize < 0) {
+      throw new IllegalArgumentException("The volume size must not be negative: " + maxVolumeSize);
+    }
+    this.maxVolumeSize = maxVolumeSize;
+  }
+  
+  /**
+   * @return The maximum size of a package volume, in bytes. 0 if the package is not split.
+   */
+  public long getMaxVolumeSize() {
+    return maxVolumeSize;
+  }
+  
+  /**
+   * Stores once, in the package, the resources with the same content. The paths of the other copies are 
+   * recorded in a manifest and the copies are restored when the package is applied.
+   * 
+   * @param deduplicate <code>true</code> to store once the resources with the same digest and size.
+   */
+  public void setDeduplicate(boolean deduplicate) {
+    this.deduplicate = deduplicate;
+  }
+  
+  /**
+   * @return <code>true</code> if the resources with the same content are stored once in the package.
+   */
+  public boolean isDeduplicate() {
+    return deduplicate;
+  }
+  
+  /**
+   * Sets a package built before from the same resources. The resources that didn't change since are copied
+   * from it as they are, without compressing them again. The new package can be written over it.
+   * 
+   * @param previousPackage The previous package, or one of its volumes. <code>null</code> to compress all the resources.
+   */
+  public void setPreviousPackage(File previousPackage) {
+    this.previousPackage = previousPackage;
+  }
+  
+  /**
+   * @return The package whose unchanged entries are reused. <code>null</code> if none.
+   */
+  public File getPreviousPackage() {
+    return previousPackage;
+  }
+  
+  /**
+   * In reproducible mode the resources are added in the order of their paths and all the entries get the
+   * same timestamp, so the same changed resources always give the same package, byte for byte.
+   * Otherwise the resources are added in the order in which they were found in the map.
+   * 
+   * @param reproducible <code>true</code> to write a reproducible package.
+   */
+  public void setReproducible(boolean reproducible) {
+    this.reproducible = reproducible;
+  }
+  
+  /**
+   * @return <code>true</code> if the package is reproducible.
+   */
+  public boolean isReproducible() {
+    return reproducible;
+  }
+  
+  /**
+   * Sets the creation date of the milestone the changes were detected against. It is recorded in the 
+   * package manifest. {@link #collectModifiedResources(IRootResource)} sets it from the loaded milestone.
+   * 
+   * @param milestoneDate The milestone creation date. <code>null</code> if unknown.
+   */
+  public void setMilestoneDate(Date milestoneDate) {
+    this.milestoneDate = milestoneDate;
+  }
+  
+  /**
+   * @return The creation date of the milestone the changes were detected against. <code>null</code> if unknown.
+   */
+  public Date getMilestoneDate() {
+    return milestoneDate;
+  }
+  
+  /**
+   * @return The algorithm used by the current operation.
+   */
+  private DigestAlgorithm getActiveAlgorithm() {
+    return activeAlgorithm != null ? activeAlgorithm : digestAlgorithm;
+  }
 
   /**
    * Iterates over the descendants of the given files and computes a hash and a relative path.
@@ -94,9 +400,13 @@ public class ChangePackageGenerator {
    * Relative path: dir2/test.txt
    * Relative path: dir2/dir21/test.txt
    * 
-   * @param dirs A stack used to compute a path relative to an ancestor.
+   * If the parallelism level is greater than 1, the hashes are computed on a {@link ForkJoinPool}. 
+   * The resources are added in the list in the same order as in the sequential walk.
+   * 
+   * @param resource The resource whose descendants are processed.
    * @param list A list of ResourceTnfo objects which contains an unique MD5 and a relative path for
    *        every file inside dirPath.
+   * @param visited The URLs of the resources processed so far.
    * 
    * @throws NoSuchAlgorithmException The MD5 algorithm is not available.
    * @throws FileNotFoundException  The file doesn't exist.
@@ -105,6 +415,26 @@ public class ChangePackageGenerator {
    */
   public void computeResourceInfo(IResource resource, List<ResourceInfo> list, Set<URL> visited) 
       throws NoSuchAlgorithmException, IOException, StoppedByUserException {
+    if (parallelism > 1) {
+      computeResourceInfoInParallel(resource, list, visited);
+    } else {
+      computeResourceInfoSequentially(resource, list, visited);
+    }
+  }
+  
+  /**
+   * Iterates over the descendants of the given resource and computes, on the current thread, a hash 
+   * and a relative path for each of them.
+   * 
+   * @param resource The resource whose descendants are processed.
+   * @param list Receives the computed information.
+   * @param visited The URLs of the resources processed so far.
+   * 
+   * @throws NoSuchAlgorithmException The MD5 algorithm is not available.
+   * @throws StoppedByUserException The user pressed the cancel button.
+   */
+  private void computeResourceInfoSequentially(IResource resource, List<ResourceInfo> list, Set<URL> visited) 
+      throws NoSuchAlgorithmException, StoppedByUserException {
     
     Iterator<IResource> referredResources = resource.iterator();
 
@@ -115,42 +445,227 @@ public class ChangePackageGenerator {
         }
         
         IResource iResource = referredResources.next();
-        URL currentUrl = iResource.getCurrentUrl();
-        computeInternal(resource, list, visited, iResource, currentUrl);
+        if (shouldCollect(iResource, visited)) {
+          try {
+            // Collect the milestone related info.
+            ResourceInfo resourceInfo = collectResourceInfo(iResource);
+            if (resourceInfo != null) {
+              list.add(resourceInfo);
+            }
+          } catch (IOException e) {
+            reportUnreadableResource(resource, e);
+          }
+        }
+        // Go deep.
+        computeResourceInfoSequentially(iResource, list, visited);
+      }
+    }
+  }
+  
+  /**
+   * Walks the descendants of the given resource on the current thread and hashes them on a {@link ForkJoinPool}.
+   * The walk decides which resources are visited and in what order so the result is the same as 
+   * the one of the sequential walk. 
+   * 
+   * @param resource The resource whose descendants are processed.
+   * @param list Receives the computed information.
+   * @param visited The URLs of the resources processed so far.
+   * 
+   * @throws NoSuchAlgorithmException The MD5 algorithm is not available.
+   * @throws StoppedByUserException The user pressed the cancel button.
+   */
+  private void computeResourceInfoInParallel(IResource resource, List<ResourceInfo> list, Set<URL> visited) 
+      throws NoSuchAlgorithmException, StoppedByUserException {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      List<ResourceInfoTask> tasks = new ArrayList<>();
+      forkResourceInfoTasks(resource, visited, pool, tasks);
+      
+      // Collect the results in the order in which the resources were discovered.
+      for (ResourceInfoTask task : tasks) {
+        if(isCanceled()){
+          throw new StoppedByUserException();
+        }
+        
+        ResourceInfo resourceInfo = task.join();
+        if (task.getIOException() != null) {
+          reportUnreadableResource(task.getParent(), task.getIOException());
+        } else if (task.getNoSuchAlgorithmException() != null) {
+          throw task.getNoSuchAlgorithmException();
+        } else if (resourceInfo != null) {
+          list.add(resourceInfo);
+        }
+      }
+    } finally {
+      // Drops the pending tasks if we stop early.
+      pool.shutdownNow();
+    }
+  }
+  
+  /**
+   * Walks the descendants of the given resource and forks a task that computes the information for each 
+   * resource that must be collected.
+   * 
+   * @param resource The resource whose descendants are processed.
+   * @param visited The URLs of the resources processed so far.
+   * @param pool The pool that executes the tasks.
+   * @param tasks Receives the forked tasks, in the order in which the resources were discovered.
+   * 
+   * @throws StoppedByUserException The user pressed the cancel button.
+   */
+  private void forkResourceInfoTasks(IResource resource, Set<URL> visited, ForkJoinPool pool, 
+      List<ResourceInfoTask> tasks) throws StoppedByUserException {
+    Iterator<IResource> referredResources = resource.iterator();
+    
+    if (referredResources != null) {
+      while (referredResources.hasNext()) {
+        if(isCanceled()){
+          throw new StoppedByUserException();
+        }
+        
+        IResource iResource = referredResources.next();
+        if (shouldCollect(iResource, visited)) {
+          ResourceInfoTask task = new ResourceInfoTask(resource, iResource);
+          pool.execute(task);
+          tasks.add(task);
+        }
         // Go deep.
-        computeResourceInfo(iResource, list, visited);
+        forkResourceInfoTasks(iResource, visited, pool, tasks);
       }
     }
   }
   
   /**
+   * Computes the milestone information of a resource. If the file attributes are trusted and they are 
+   * the same as the ones recorded in the previous milestone, the recorded MD5 is reused.
+   * 
+   * @param iResource The resource.
    * 
-   * @param resource
-   * @param list
-   * @param visited
-   * @param iResource
-   * @param currentUrl
-   * @throws NoSuchAlgorithmException
+   * @return The milestone information or <code>null</code> if the resource shouldn't be recorded.
+   * 
+   * @throws NoSuchAlgorithmException The MD5 algorithm is not available.
+   * @throws IOException Problems reading the resource.
    */
-  private void computeInternal(IResource resource, List<ResourceInfo> list, Set<URL> visited, IResource iResource,
-      URL currentUrl) throws NoSuchAlgorithmException {
+  private ResourceInfo collectResourceInfo(IResource iResource) throws NoSuchAlgorithmException, IOException {
+    ResourceInfo resourceInfo = null;
+    // Read the attributes before the content. If the file changes in between, the next scan will read it again.
+    ResourceInfo attributes = trustFileAttributes ? iResource.getResourceAttributes() : null;
+    if (attributes != null) {
+      ResourceInfo previous = previousStates != null ? previousStates.get(attributes.getRelativePath()) : null;
+      if (previous != null && previous.getMd5() != null && attributes.hasSameFileAttributes(previous)) {
+        // Unchanged since the previous milestone.
+        attributes.setMd5(previous.getMd5());
+        resourceInfo = attributes;
+      } else {
+        resourceInfo = iResource.getResourceInfo(getActiveAlgorithm());
+        if (resourceInfo != null) {
+          resourceInfo.copyFileAttributes(attributes);
+        }
+      }
+    } else {
+      resourceInfo = iResource.getResourceInfo(getActiveAlgorithm());
+    }
+    
+    return resourceInfo;
+  }
+  
+  /**
+   * Checks if the milestone information must be collected for a resource and marks it as visited.
+   * 
+   * @param iResource The resource to check.
+   * @param visited The URLs of the resources processed so far.
+   * 
+   * @return <code>true</code> if the resource wasn't visited before and it is a local file.
+   */
+  private static boolean shouldCollect(IResource iResource, Set<URL> visited) {
+    boolean collect = false;
+    URL currentUrl = iResource.getCurrentUrl();
     if (currentUrl != null && !visited.contains(currentUrl)) {
       visited.add(currentUrl);
-      if ("file".equals(currentUrl.getProtocol())) {
-        // #15 Pack just the local files into the achive. 
-        try {
-          // Collect the milestone related info.
-          ResourceInfo resourceInfo = iResource.getResourceInfo();
-          if (resourceInfo != null) {
-            list.add(resourceInfo);
-          }
-        } catch (IOException e) {
-          ResultsManagerUtil.showInResultsPanel(DocumentPositionedInfo.SEVERITY_WARN, 
-              e.getMessage(), 
-              resource.getCurrentUrl().toExternalForm(), 
-              ResultType.PROBLEM);
-        }
+      // #15 Pack just the local files into the achive.
+      collect = "file".equals(currentUrl.getProtocol());
+    }
+    return collect;
+  }
+  
+  /**
+   * Presents a resource that couldn't be read in the results panel.
+   * 
+   * @param parent The resource that refers the unreadable one.
+   * @param e The reading problem.
+   */
+  private static void reportUnreadableResource(IResource parent, IOException e) {
+    ResultsManagerUtil.showInResultsPanel(DocumentPositionedInfo.SEVERITY_WARN, 
+        e.getMessage(), 
+        parent.getCurrentUrl().toExternalForm(), 
+        ResultType.PROBLEM);
+  }
+  
+  /**
+   * Computes the milestone information of one resource on a {@link ForkJoinPool}.
+   * The problems are kept and reported by the thread that joins the task. 
+   */
+  private class ResourceInfoTask extends RecursiveTask<ResourceInfo> {
+    /**
+     * The resource that refers the processed one. 
+     */
+    private final transient IResource parent;
+    /**
+     * The resource to process.
+     */
+    private final transient IResource resource;
+    /**
+     * The problem encountered while reading the resource, if any.
+     */
+    private IOException ioException;
+    /**
+     * The digest algorithm is missing, if not <code>null</code>.
+     */
+    private NoSuchAlgorithmException noSuchAlgorithmException;
+
+    /**
+     * Constructor.
+     * 
+     * @param parent The resource that refers the processed one.
+     * @param resource The resource to process.
+     */
+    ResourceInfoTask(IResource parent, IResource resource) {
+      this.parent = parent;
+      this.resource = resource;
+    }
+
+    @Override
+    protected ResourceInfo compute() {
+      ResourceInfo resourceInfo = null;
+      try {
+        resourceInfo = collectResourceInfo(resource);
+      } catch (IOException e) {
+        ioException = e;
+      } catch (NoSuchAlgorithmException e) {
+        noSuchAlgorithmException = e;
       }
+      return resourceInfo;
+    }
+    
+    /**
+     * @return The resource that refers the processed one.
+     */
+    IResource getParent() {
+      return parent;
+    }
+    
+    /**
+     * @return The problem encountered while reading the resource or <code>null</code>.
+     */
+    IOException getIOException() {
+      return ioException;
+    }
+    
+    /**
+     * @return The missing algorithm problem or <code>null</code>.
+     */
+    NoSuchAlgorithmException getNoSuchAlgorithmException() {
+      return noSuchAlgorithmException;
     }
   }
 
@@ -167,24 +682,34 @@ public class ChangePackageGenerator {
   public List<ResourceInfo> collectModifiedResources(IRootResource resource) 
       throws JAXBException, NoSuchAlgorithmException, IOException, StoppedByUserException{
     /*
-     * 1. Loads the milestone XML from rootDIr using JAXB
+     * 1. Streams the milestone entries into a map
      * 2. Calls generateCurrentMD5() to get the current MD5s
      * 3. Compares the current file MD5 with the old ones and collects the changed resources.
      */
-    // Store state.
-    Set<ResourceInfo> resources = new HashSet<>(MilestoneUtil.loadMilestoneFile(resource));
-    
-    //Current states.
-    List<ResourceInfo> currentStates = new ArrayList<>();
+    // Store state. Use a map to ensure better search performance.
+    Map<String, ResourceInfo> states = new HashMap<>(); //NOSONAR
+    InfoResources milestone = MilestoneUtil.loadMilestone(resource, info -> states.put(info.getRelativePath(), info));
+    previousStates = states;
+    // The digests must be computed with the same algorithm as the milestone ones.
+    activeAlgorithm = MilestoneUtil.getDigestAlgorithm(milestone);
+    milestoneDate = milestone.getMilestoneCreation();
     
-    // Add the root map.
-    ResourceInfo rootResource = resource.getResourceInfo();
-    if (rootResource != null) {
-      currentStates.add(rootResource);
-    }
+    //Current states. Kept to be reused for the new milestone.
+    currentStates = new ArrayList<>();
     
     Set<URL> visited = new HashSet<URL>(); //NOSONAR
-    computeResourceInfo(resource, currentStates, visited);
+    try {
+      // Add the root map.
+      ResourceInfo rootResource = collectResourceInfo(resource);
+      if (rootResource != null) {
+        currentStates.add(rootResource);
+      }
+      
+      computeResourceInfo(resource, currentStates, visited);
+    } finally {
+      // The walk ended or was stopped.
+      resource.close();
+    }
     if (resource.getCurrentUrl() != null) {
       visited.add(resource.getCurrentUrl());
     }
@@ -197,8 +722,8 @@ public class ChangePackageGenerator {
     // Compare serializedResources with newly generated hashes.
     PluginResourceBundle resourceBundle = ((StandalonePluginWorkspace)PluginWorkspaceProvider.getPluginWorkspace()).getResourceBundle();
     for (ResourceInfo newInfo : currentStates) {
-      // Use a HasSet to ensure better search performance.
-      if (!resources.contains(newInfo)) {
+      // Same relative path and same MD5 means unchanged.
+      if (!newInfo.equals(previousStates.get(newInfo.getRelativePath()))) {
         modifiedResources.add(newInfo);
       }
 
@@ -217,8 +742,39 @@ public class ChangePackageGenerator {
   /**
    * Entry point. Detect what files were modified and put them in a ZIP.
    * 
-   * @param packageLocation The location of the generated ZIP file.
+   * @param packageLocation The location of the generated ZIP file. If the package is split in volumes, 
+   * the volumes are named after it. See {@link VolumePacker#getVolumeFile(File, int, int)}.
+   * @param modifiedResources The list with all the modified files.
+   * @param topLocationForModifiedResources The common ancestor of all the DITA resources referred in the DITA map tree. Either the DITA map folder or an ancestor of it.
+   * 
+   * @return How many files were modified.
+   * 
+   * @throws IOException  Problems reading the file/directory.
+   * @throws StoppedByUserException The user pressed the Cancel button.
+   */
+  public int generateChangedFilesPackage(
+      File packageLocation,
+      List<URL> modifiedResources,
+      URL topLocationForModifiedResources) throws IOException, StoppedByUserException  {
+    return generateChangedFilesPackage(packageLocation, modifiedResources, null, topLocationForModifiedResources);
+  }
+  
+  /**
+   * Entry point. Detect what files were modified and put them in a ZIP.
+   * 
+   * When de-duplication is enabled, the resources with the same digest and size are stored once. 
+   * Each volume of the package holds the manifest of its duplicates, {@link DuplicatesManifest#ENTRY_NAME}.
+   * 
+   * Each volume also holds the manifest of its resources, {@link PackageManifest#ENTRY_NAME}, with their
+   * digests and sizes, the top location and the milestone date. It tells, when the package is applied, 
+   * which returned files were changed.
+   * 
+   * @param packageLocation The location of the generated ZIP file. If the package is split in volumes, 
+   * the volumes are named after it. See {@link VolumePacker#getVolumeFile(File, int, int)}.
    * @param modifiedResources The list with all the modified files.
+   * @param digests The digests of the modified files, in the same order, already computed while detecting 
+   * the changes. Used to detect the duplicates and recorded in the package manifest. <code>null</code> if unknown. 
+   * The unknown digests are <code>null</code>.
    * @param topLocationForModifiedResources The common ancestor of all the DITA resources referred in the DITA map tree. Either the DITA map folder or an ancestor of it.
    * 
    * @return How many files were modified.
@@ -229,85 +785,217 @@ public class ChangePackageGenerator {
   public int generateChangedFilesPackage(
       File packageLocation,
       List<URL> modifiedResources,
+      List<String> digests,
       URL topLocationForModifiedResources) throws IOException, StoppedByUserException  {
     /*
-     * 1. Inside a temporary "destinationDir" creates a file structure and copies the changed files.
-     * 2. ZIP the "destinationDir" at "packageLocation".
-     * 3. Delete the "destinationDir".
+     * Each modified resource is streamed straight into the ZIP, under its path relative to 
+     * the top location. The parent folders get their own entries, before the first file inside them.
      */
     int nrModFiles = 0;
     // If there are modified resources
     if (!modifiedResources.isEmpty()) {
-      int totalModifiedfiles = modifiedResources.size();
-      // Create a temp directory.
-        final File tempDir = new File(PathUtil.createTempDirectory(), "toArchive");
-        //We iterate over the list above, build the sistem of files in a temporary directory and copy the 
-        //files in the right directory
-        //Then we compress the tempDir and delete it.
-        try{
-          for (URL url : modifiedResources) {
-            String relative = URLUtil.makeRelative(topLocationForModifiedResources, url);
-            relative = URLUtil.decodeURIComponent(relative);
-            
-            // fallback
-            if (relative.startsWith("../")) {
-              String externalForm = URLUtil.decodeURIComponent(url.toExternalForm());
-              relative = externalForm.replaceAll(topLocationForModifiedResources.toExternalForm(), "");
-            }
-            
-            File dest = new File(tempDir, relative);
-            dest.getParentFile().mkdirs();
-            
-            try {
-              FileUtils.copyURLToFile(url, dest);
-            } catch (IOException e) {
-              // Collect the not copied resources.
-              filesNotCopied.add(url);
+      packageLocation.getParentFile().mkdirs();
+      
+      PluginResourceBundle resourceBundle = 
+          ((StandalonePluginWorkspace)PluginWorkspaceProvider.getPluginWorkspace()).getResourceBundle();
+      // The resources added to the package, by their entry names.
+      Map<String, URL> entries = new LinkedHashMap<>(); //NOSONAR
+      // The stored entries mapped to the paths of all their copies, the stored one first.
+      Map<String, List<String>> copies = new LinkedHashMap<>(); //NOSONAR
+      // The stored entries, by the digests and sizes of their content.
+      Map<String, String> contents = new HashMap<>(); //NOSONAR
+      String[] names = new String[modifiedResources.size()];
+      List<Integer> order = new ArrayList<>(names.length);
+      for (int i = 0; i < names.length; i++) {
+        URL url = modifiedResources.get(i);
+        String relative = URLUtil.makeRelative(topLocationForModifiedResources, url);
+        relative = URLUtil.decodeURIComponent(relative);
+        
+        // fallback
+        if (relative.startsWith("../")) {
+          String externalForm = URLUtil.decodeURIComponent(url.toExternalForm());
+          relative = externalForm.replaceAll(topLocationForModifiedResources.toExternalForm(), "");
+        }
+        names[i] = relative;
+        order.add(i);
+      }
+      if (reproducible) {
+        // Also decides which copy of a duplicated content is stored.
+        order.sort(Comparator.comparing((Integer i) -> names[i]));
+      }
+      
+      // The digests of the resources, by their entry names.
+      Map<String, String> entryDigests = new HashMap<>(); //NOSONAR
+      for (int i : order) {
+        URL url = modifiedResources.get(i);
+        String relative = names[i];
+        if (entries.putIfAbsent(relative, url) == null) {
+          String stored = relative;
+          String digest = digests != null ? digests.get(i) : null;
+          if (digest != null) {
+            entryDigests.put(relative, digest);
+          }
+          if (deduplicate && digest != null) {
+            // The first resource with this content is the one stored.
+            stored = contents.putIfAbsent(digest + ':' + getContentLength(url), relative);
+            if (stored == null) {
+              stored = relative;
             }
-
-            if(isCanceled()){
-              throw new StoppedByUserException();
+          }
+          copies.computeIfAbsent(stored, k -> new ArrayList<>()).add(relative);
+        }
+      }
+      int totalModifiedfiles = entries.size();
+      
+      List<List<String>> volumes;
+      if (maxVolumeSize > 0) {
+        volumes = VolumePacker.pack(
+            new ArrayList<>(copies.keySet()), 
+            stored -> estimateCopiesSize(copies.get(stored), getContentLength(entries.get(stored))), 
+            maxVolumeSize);
+      } else {
+        volumes = Collections.singletonList(new ArrayList<>(copies.keySet()));
+      }
+      
+      PreviousPackage previous = PreviousPackage.open(previousPackage, packageLocation);
+      Map<String, String> previousDigests = previous != null 
+          ? previous.getDigests(getActiveAlgorithm().getName()) : Collections.emptyMap();
+      ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+      try {
+        for (int i = 0; i < volumes.size(); i++) {
+          File volumeFile = VolumePacker.getVolumeFile(packageLocation, i, volumes.size());
+          try (ZipArchiveWriter zout = new ZipArchiveWriter(new FileOutputStream(volumeFile), executor, 2 * parallelism)) {
+            zout.setCompressionPolicy(compressionPolicy);
+            zout.setLevel(compressionLevel);
+            zout.setCreateParentDirectories(true);
+            zout.setReproducible(reproducible);
+            if (previous != null) {
+              zout.setPreviousArchives(previous.getArchives());
+              zout.setPreviousDigests(previousDigests);
             }
+            // The CRC-32 of the written entries, by their names.
+            Map<String, Long> crcs = new HashMap<>(); //NOSONAR
+            // The entries that could not be written. Their copies are not in the package either.
+            Set<String> failed = new HashSet<>(); //NOSONAR
+            zout.setEntryListener(new ZipArchiveWriter.EntryListener() {
+              @Override
+              public void entryWritten(ZipArchiveEntry entry) {
+                crcs.put(entry.getName(), entry.getCrc());
+              }
+              
+              @Override
+              public void entryFailed(String name, IOException e) {
+                // Collect the not copied resources, with all their copies.
+                failed.add(name);
+                for (String copy : copies.get(name)) {
+                  filesNotCopied.add(entries.get(copy));
+                }
+                logger.debug(e, e);
+              }
+            });
             
-            PluginResourceBundle resourceBundle = 
-                ((StandalonePluginWorkspace)PluginWorkspaceProvider.getPluginWorkspace()).getResourceBundle();
-            nrModFiles++;
-            ProgressChangeEvent progress = new ProgressChangeEvent(
-                nrModFiles, 
-                MessageFormat.format(resourceBundle.getMessage(Tags.COPY_TO_PACKAGE_DIR), url.toExternalForm()),
-                2 * totalModifiedfiles);
-            fireChangeEvent(progress);
-          }
-
-          ArchiveBuilder archiveBuilder = new ArchiveBuilder(null);
-          archiveBuilder.addListener(new ProgressChangeAdapter() {
-            @Override
-            public boolean isCanceled() {
-              return ChangePackageGenerator.this.isCanceled();
+            PackageManifest manifest = new PackageManifest();
+            manifest.setTopLocation(topLocationForModifiedResources.toExternalForm());
+            manifest.setMilestoneDate(milestoneDate);
+            manifest.setDigestAlgorithm(getActiveAlgorithm().getName());
+            for (String relative : volumes.get(i)) {
+              zout.putEntry(relative, entries.get(relative)::openStream, entryDigests.get(relative));
+              
+              if(isCanceled()){
+                throw new StoppedByUserException();
+              }
+              
+              for (String copy : copies.get(relative)) {
+                nrModFiles++;
+                ProgressChangeEvent progress = new ProgressChangeEvent(
+                    nrModFiles, 
+                    resourceBundle.getMessage(Tags.ADD_TO_PACKAGE) + ": " + copy,
+                    totalModifiedfiles);
+                fireChangeEvent(progress);
+              }
             }
             
-            @Override
-            public void done() {
-              fireDoneEvent();
+            // The CRC-32 of the entries is known once they are written, and so are the failures.
+            zout.writePendingEntries();
+            // The duplicates of the entries in this volume.
+            Map<String, String> duplicates = new LinkedHashMap<>(); //NOSONAR
+            for (String relative : volumes.get(i)) {
+              // A failed entry is not in the package, nor are its copies.
+              if (!failed.contains(relative)) {
+                long size = getContentLength(entries.get(relative));
+                Long crc = crcs.get(relative);
+                for (String copy : copies.get(relative)) {
+                  if (!copy.equals(relative)) {
+                    duplicates.put(copy, relative);
+                  }
+                  manifest.add(copy, entryDigests.get(copy), size, crc != null ? crc : PackageManifest.UNKNOWN_CRC);
+                }
+              }
             }
             
-            @Override
-            public void change(ProgressChangeEvent progress) {
-              ProgressChangeEvent event = new ProgressChangeEvent(
-                  progress.getCounter() + totalModifiedfiles,
-                  progress.getMessage(), 
-                  2 * totalModifiedfiles);
-              fireChangeEvent(event);
+            if (!duplicates.isEmpty()) {
+              byte[] duplicatesContent = DuplicatesManifest.write(duplicates);
+              zout.putEntry(DuplicatesManifest.ENTRY_NAME, () -> new ByteArrayInputStream(duplicatesContent));
             }
-          });
-          archiveBuilder.zipDirectory(tempDir, packageLocation);
-        } finally {
-          FileUtils.deleteDirectory(tempDir);
+            // What was sent, to tell the changed files apart when the package comes back.
+            byte[] manifestContent = manifest.write();
+            zout.putEntry(PackageManifest.ENTRY_NAME, () -> new ByteArrayInputStream(manifestContent));
+            
+            zout.finish();
+          }
+        }
+        VolumePacker.deleteStaleVolumes(packageLocation, volumes.size());
+      } finally {
+        if (executor != null) {
+          executor.shutdownNow();
         }
+        if (previous != null) {
+          previous.close();
+        }
+      }
     }
 
     return nrModFiles;
   }
+  
+  /**
+   * Estimates how many bytes a stored entry and its duplicates take in a package volume.
+   * 
+   * @param copies The path of the stored entry and the paths of its duplicates.
+   * @param size The size of the content.
+   * 
+   * @return The estimated size.
+   */
+  private static long estimateCopiesSize(List<String> copies, long size) {
+    long estimate = VolumePacker.estimateEntrySize(copies.get(0), size);
+    for (int i = 1; i < copies.size(); i++) {
+      // A line in the duplicates manifest. Escaping can make it longer.
+      estimate += 3L * (copies.get(i).length() + copies.get(0).length()) + 2;
+    }
+    return estimate;
+  }
+  
+  /**
+   * Gets the size of a resource, to distribute it in a package volume.
+   * 
+   * @param url The resource.
+   * 
+   * @return The size of the resource, in bytes. 0 if unknown.
+   */
+  private static long getContentLength(URL url) {
+    long length = 0;
+    try {
+      if ("file".equals(url.getProtocol())) {
+        length = URLUtil.getAbsoluteFileFromFileUrl(url).length();
+      } else {
+        length = Math.max(0, url.openConnection().getContentLengthLong());
+      }
+    } catch (IOException e) {
+      // The resource will be reported when it's added to the package.
+      logger.debug(e, e);
+    }
+    return length;
+  }
 
   /**
    * Entry point. Compute a hash for each file in the given directory and store this information
@@ -324,25 +1012,93 @@ public class ChangePackageGenerator {
   public File generateChangeMilestone(IRootResource resource) 
       throws NoSuchAlgorithmException, IOException, JAXBException, StoppedByUserException {
     List<ResourceInfo> list = new ArrayList<>();
+    File milestoneFile = resource.getMilestoneFile();
     
-    // Add the root map
-    ResourceInfo rootResourceInfo = resource.getResourceInfo();
-    if (rootResourceInfo != null) {
-      list.add(rootResourceInfo);
+    activeAlgorithm = digestAlgorithm;
+    previousStates = null;
+    if (trustFileAttributes && milestoneFile.exists()) {
+      // Reuse the digests of the files that didn't change since the previous milestone.
+      try {
+        Map<String, ResourceInfo> states = new HashMap<>(); //NOSONAR
+        InfoResources milestone = MilestoneUtil.loadMilestone(resource, info -> states.put(info.getRelativePath(), info));
+        if (MilestoneUtil.getDigestAlgorithm(milestone) == digestAlgorithm) {
+          previousStates = states;
+        }
+      } catch (IOException | NoSuchAlgorithmException e) {
+        logger.warn("Unable to load the previous milestone: " + e.getMessage(), e);
+      }
     }
     
-    computeResourceInfo(resource, list, new HashSet<URL>());
-    File milestoneFile = resource.getMilestoneFile();
-    // Issue #22 - when the milestone is modified, set the current time.
-    MilestoneUtil.storeMilestoneFile(
-        new InfoResources(list, new Date()), 
-        milestoneFile);
+    Set<URL> visited = new HashSet<URL>(); //NOSONAR
+    try {
+      // Add the root map
+      ResourceInfo rootResourceInfo = collectResourceInfo(resource);
+      if (rootResourceInfo != null) {
+        list.add(rootResourceInfo);
+      }
+      
+      computeResourceInfo(resource, list, visited);
+    } finally {
+      // The walk ended or was stopped.
+      resource.close();
+    }
+    if (resource.getCurrentUrl() != null) {
+      visited.add(resource.getCurrentUrl());
+    }
+    commonPath = PathUtil.commonPath(visited);
+    
+    storeMilestone(resource, list, digestAlgorithm, milestoneFile);
     if(isCanceled()){
       throw new StoppedByUserException();
     }
     
     return milestoneFile;
   }
+  
+  /**
+   * Saves a new milestone from the states computed by the last {@link #collectModifiedResources(IRootResource)}, 
+   * without iterating over the resources again. The digest algorithm is the one of the previous milestone.
+   * 
+   * @param resource The root resource.
+   * 
+   * @return The milestone file.
+   * 
+   * @throws IOException Problems writing the milestone.
+   * @throws IllegalStateException The modified resources were not collected.
+   */
+  public File generateChangeMilestoneFromCollectedStates(IRootResource resource) throws IOException {
+    if (currentStates == null) {
+      throw new IllegalStateException("The modified resources were not collected");
+    }
+    File milestoneFile = resource.getMilestoneFile();
+    storeMilestone(resource, currentStates, getActiveAlgorithm(), milestoneFile);
+    return milestoneFile;
+  }
+  
+  /**
+   * Saves a milestone. The top location is recorded too, so that applying a package doesn't have to 
+   * iterate over the resources to find it.
+   * 
+   * @param resource The root resource.
+   * @param states The states of the resources.
+   * @param algorithm The algorithm that computed the digests.
+   * @param milestoneFile The milestone file.
+   * 
+   * @throws IOException Problems writing the milestone.
+   */
+  private void storeMilestone(IRootResource resource, List<ResourceInfo> states, DigestAlgorithm algorithm, File milestoneFile) 
+      throws IOException {
+    // Issue #22 - when the milestone is modified, set the current time.
+    InfoResources milestone = new InfoResources(states, new Date());
+    if (algorithm != DigestAlgorithms.getDefault()) {
+      // Not recorded for MD5, to keep the milestones readable by older versions.
+      milestone.setAlgorithm(algorithm.getName());
+    }
+    if (resource.getCurrentUrl() != null && commonPath != null) {
+      milestone.setTopLocation(PathUtil.getRelativeTopLocation(resource.getCurrentUrl(), commonPath));
+    }
+    MilestoneUtil.storeMilestoneFile(milestone, milestoneFile, milestoneFormat);
+  }
 
   /**
    * Notifies all listeners to update the progress of the task.
@@ -356,16 +1112,6 @@ public class ChangePackageGenerator {
     }
   }
   
-  /**
-   * Notifies all listeners that the task has finished.
-   */
-  private void fireDoneEvent() {
-    if (listeners != null) {
-      for (ProgressChangeListener progressChangeListener : listeners) {
-        progressChangeListener.done();
-      }
-    }
-  }
   /**
    * Notifies all listeners that the task was canceled.
    * 
@@ -390,6 +1136,16 @@ public class ChangePackageGenerator {
     return commonPath;
   }
   
+  /**
+   * @return The common ancestor of all the DITA resources referred in the DITA map tree, as computed by 
+   * the last {@link #collectModifiedResources(IRootResource)}, or <code>null</code>.
+   * 
+   * @throws MalformedURLException The common path is not a valid URL.
+   */
+  public URL getTopLocationURL() throws MalformedURLException {
+    return commonPath != null ? new URL(commonPath) : null;
+  }
+  
   /**
    * @return The list of resource that were unable to copy.
    */
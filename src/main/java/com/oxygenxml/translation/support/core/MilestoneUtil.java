@@ -6,22 +6,37 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.security.MessageDigest;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 
 import com.oxygenxml.translation.exceptions.StoppedByUserException;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithms;
+import com.oxygenxml.translation.support.core.digest.Digester;
 import com.oxygenxml.translation.support.core.resource.IRootResource;
+import com.oxygenxml.translation.support.storage.BinaryMilestoneCodec;
 import com.oxygenxml.translation.support.storage.InfoResources;
+import com.oxygenxml.translation.support.storage.MilestoneFormat;
+import com.oxygenxml.translation.support.storage.XmlMilestoneCodec;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
 
 import ro.sync.exml.workspace.api.PluginWorkspace;
@@ -45,6 +60,36 @@ public class MilestoneUtil {
    * Predefined suffix of each generated milestone.
    */
   public static final String MILESTONE_FILE_NAME = "_translation_milestone.xml";
+  
+  /**
+   * Files at least this large are memory mapped when computing their digest. Smaller files are read 
+   * through a direct buffer. See <code>DigestChannelBenchmarkMain</code> for measuring the crossover point.
+   * Not used on Windows, see {@link #MAPPING_ALLOWED}.
+   */
+  public static final long MAPPED_DIGEST_THRESHOLD = 4L * 1024 * 1024;
+  
+  /**
+   * <code>false</code> on Windows, where a mapped file can't be overwritten or deleted until the mapping 
+   * is garbage collected. There is no API to unmap it, so all the files are read through a direct buffer.
+   */
+  private static final boolean MAPPING_ALLOWED = 
+      !System.getProperty("os.name", "").toLowerCase(Locale.ENGLISH).startsWith("windows");
+  
+  /**
+   * The maximum size of a mapped region.
+   */
+  private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+  
+  /**
+   * The size of the direct buffer used to read the files.
+   */
+  private static final int DIRECT_BUFFER_SIZE = 64 * 1024;
+  
+  /**
+   * The direct buffers not in use. Allocating direct buffers is expensive and the threads that compute 
+   * digests only live for a run, so the buffers are shared by all the threads instead of kept per thread.
+   */
+  private static final Queue<ByteBuffer> DIRECT_BUFFERS = new ConcurrentLinkedQueue<>();
 
   /**
    * Reads a file and generates an MD5 from its content.
@@ -58,7 +103,68 @@ public class MilestoneUtil {
    * @throws IOException Problems reading the file.
    */
   public static String generateMD5(File file) throws NoSuchAlgorithmException, IOException {
-    return generateMD5(new java.io.FileInputStream(file));
+    return generateDigest(file, DigestAlgorithms.getDefault());
+  }
+  
+  /**
+   * Reads a file and generates a digest from its content.
+   * 
+   * @param file The file to read.
+   * @param algorithm The digest algorithm.
+   * 
+   * @return The digest, as a hexadecimal string.
+   * 
+   * @throws NoSuchAlgorithmException The algorithm is not available.
+   * @throws FileNotFoundException The file doesn't exist.
+   * @throws IOException Problems reading the file.
+   */
+  public static String generateDigest(File file, DigestAlgorithm algorithm) throws NoSuchAlgorithmException, IOException {
+    return generateDigest(file, algorithm, MAPPING_ALLOWED ? MAPPED_DIGEST_THRESHOLD : Long.MAX_VALUE);
+  }
+  
+  /**
+   * Reads a file through a {@link FileChannel} and generates a digest from its content. The content is 
+   * not copied on the Java heap: large files are memory mapped, the others are read into a direct buffer.
+   * 
+   * @param file The file to read.
+   * @param algorithm The digest algorithm.
+   * @param mappedThreshold Files at least this large are memory mapped.
+   * 
+   * @return The digest, as a hexadecimal string.
+   * 
+   * @throws NoSuchAlgorithmException The algorithm is not available.
+   * @throws IOException Problems reading the file.
+   */
+  static String generateDigest(File file, DigestAlgorithm algorithm, long mappedThreshold) 
+      throws NoSuchAlgorithmException, IOException {
+    Digester digester = algorithm.newDigester();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size >= mappedThreshold) {
+        // Map the file region by region, to keep the address space usage bounded.
+        for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+          MappedByteBuffer region = channel.map(MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+          digester.update(region);
+        }
+      } else {
+        ByteBuffer buffer = DIRECT_BUFFERS.poll();
+        if (buffer == null) {
+          buffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+        try {
+          // Called through Buffer: the ByteBuffer overrides added in Java 9 don't exist on a Java 8 runtime.
+          ((Buffer) buffer).clear();
+          while (channel.read(buffer) != -1) {
+            ((Buffer) buffer).flip();
+            digester.update(buffer);
+            ((Buffer) buffer).clear();
+          }
+        } finally {
+          DIRECT_BUFFERS.offer(buffer);
+        }
+      }
+    }
+    return digester.digest();
   }
   
   /**
@@ -73,7 +179,30 @@ public class MilestoneUtil {
    * @throws IOException Problems reading the file.
    */
   public static String generateMD5(URL resource) throws NoSuchAlgorithmException, IOException {
-    return generateMD5(resource.openStream());
+    return generateDigest(resource, DigestAlgorithms.getDefault());
+  }
+  
+  /**
+   * Reads a resource and generates a digest from its content.
+   * 
+   * @param resource The resource to read.
+   * @param algorithm The digest algorithm.
+   * 
+   * @return The digest, as a hexadecimal string.
+   * 
+   * @throws NoSuchAlgorithmException The algorithm is not available.
+   * @throws FileNotFoundException The file doesn't exist.
+   * @throws IOException Problems reading the file.
+   */
+  public static String generateDigest(URL resource, DigestAlgorithm algorithm) throws NoSuchAlgorithmException, IOException {
+    if ("file".equals(resource.getProtocol())) {
+      File file = getFile(resource);
+      if (file != null && file.isFile()) {
+        // A local file. Read it through a channel.
+        return generateDigest(file, algorithm);
+      }
+    }
+    return generateDigest(resource.openStream(), algorithm);
   }
   
   /**
@@ -87,7 +216,22 @@ public class MilestoneUtil {
    * @throws IOException Problems reading the file.
    */
   public static String generateMD5(InputStream stream) throws NoSuchAlgorithmException, IOException {
-    MessageDigest md = MessageDigest.getInstance("MD5");
+    return generateDigest(stream, DigestAlgorithms.getDefault());
+  }
+  
+  /**
+   * Reads a stream and generates a digest from its content. The stream is closed at the end.
+   * 
+   * @param stream The stream to read.
+   * @param algorithm The digest algorithm.
+   * 
+   * @return The digest, as a hexadecimal string.
+   * 
+   * @throws NoSuchAlgorithmException The algorithm is not available.
+   * @throws IOException Problems reading the stream.
+   */
+  public static String generateDigest(InputStream stream, DigestAlgorithm algorithm) throws NoSuchAlgorithmException, IOException {
+    Digester md = algorithm.newDigester();
   
     byte[] dataBytes = new byte[8 * 1024];
     BufferedInputStream bis = new BufferedInputStream(stream);
@@ -104,8 +248,24 @@ public class MilestoneUtil {
       }
     }
   
-    return toHexString(md.digest());
-  
+    return md.digest();
+  }
+
+  /**
+   * Reads the size, the last modified time and the file key of a file, without reading its content.
+   * 
+   * @param file The file to read.
+   * @param resourceInfo Receives the file attributes.
+   * 
+   * @throws IOException Problems reading the file attributes.
+   */
+  public static void readFileAttributes(File file, ResourceInfo resourceInfo) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    resourceInfo.setSize(attributes.size());
+    resourceInfo.setLastModified(attributes.lastModifiedTime().toMillis());
+    // Not all the file systems have something like an inode.
+    Object fileKey = attributes.fileKey();
+    resourceInfo.setFileKey(fileKey != null ? fileKey.toString() : null);
   }
 
   /**
@@ -118,19 +278,60 @@ public class MilestoneUtil {
    * @throws JAXBException	 Problems with JAXB, serialization/deserialization of a file.
    */
   static List<ResourceInfo> loadMilestoneFile(IRootResource iRootResource) throws JAXBException, IOException {
+    return loadMilestone(iRootResource).getList();
+  }
+  
+  /**
+   * Loads the milestone of a root resource. The format (XML or binary) is detected automatically.
+   * 
+   * @param iRootResource The root resource.
+   * 
+   * @return The milestone content.
+   * 
+   * @throws IOException The milestone doesn't exist or it can't be parsed.
+   */
+  static InfoResources loadMilestone(IRootResource iRootResource) throws IOException {
+    List<ResourceInfo> entries = new ArrayList<>();
+    InfoResources info = loadMilestone(iRootResource, entries::add);
+    info.setList(entries);
+    return info;
+  }
+  
+  /**
+   * Loads the milestone of a root resource, one entry at a time. The format (XML or binary) is detected 
+   * automatically.
+   * 
+   * @param iRootResource The root resource.
+   * @param consumer Receives each entry, as soon as it is read.
+   * 
+   * @return The milestone information, without the entries.
+   * 
+   * @throws IOException The milestone doesn't exist or it can't be parsed.
+   */
+  static InfoResources loadMilestone(IRootResource iRootResource, Consumer<ResourceInfo> consumer) throws IOException {
     File milestoneFile = iRootResource.getMilestoneFile();
   
     if (!milestoneFile.exists()) {
       throw new IOException("The milestone file doesn't exist: " + milestoneFile.getAbsolutePath());
     }
+    
+    if (BinaryMilestoneCodec.isBinary(milestoneFile)) {
+      return BinaryMilestoneCodec.read(milestoneFile, consumer);
+    }
+    return XmlMilestoneCodec.read(milestoneFile, consumer);
+  }
   
-    JAXBContext jaxbContext = JAXBContext.newInstance(InfoResources.class); 
-  
-    Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();   
-  
-    InfoResources resources = (InfoResources) jaxbUnmarshaller.unmarshal(milestoneFile);    
-  
-    return resources.getList();
+  /**
+   * Gets the algorithm that computed the digests of a milestone.
+   * 
+   * @param milestone The milestone content.
+   * 
+   * @return The algorithm. MD5 for the milestones that don't record one.
+   * 
+   * @throws NoSuchAlgorithmException The recorded algorithm is not available.
+   */
+  public static DigestAlgorithm getDigestAlgorithm(InfoResources milestone) throws NoSuchAlgorithmException {
+    return DigestAlgorithms.get(milestone.getAlgorithm());
   }
   
 
@@ -145,16 +346,33 @@ public class MilestoneUtil {
    * @throws StoppedByUserException The user pressed the cancel button.
    */
   public static void storeMilestoneFile(InfoResources info, File milestoneFile) throws JAXBException{
-    JAXBContext context = JAXBContext.newInstance(InfoResources.class);  
-
-    Marshaller marshaller = context.createMarshaller();  
-    marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);  
-
+    try {
+      storeMilestoneFile(info, milestoneFile, MilestoneFormat.XML);
+    } catch (IOException e) {
+      throw new JAXBException(e);
+    }
+  }
+  
+  /**
+   * Saves the information about file changes on disk, in the given format. 
+   * 
+   * @param info  The milestone content.
+   * @param milestoneFile The milestone file where to store the information.
+   * @param format The milestone format.
+   * 
+   * @throws IOException Problems writing the milestone.
+   */
+  public static void storeMilestoneFile(InfoResources info, File milestoneFile, MilestoneFormat format) 
+      throws IOException {
     if (!milestoneFile.exists()) {
       milestoneFile.getParentFile().mkdirs();
     }
     
-    marshaller.marshal(info, milestoneFile);        
+    if (format == MilestoneFormat.BINARY) {
+      BinaryMilestoneCodec.write(info, milestoneFile);
+    } else {
+      XmlMilestoneCodec.write(info, milestoneFile);
+    }
   }
   
   /**
@@ -188,18 +406,31 @@ public class MilestoneUtil {
    * @throws JAXBException   Problems with JAXB, serialization/deserialization of a file.
    */
   public static Date getMilestoneCreationDate(URL rootMap) throws JAXBException, IOException {
+    return loadMilestoneHeader(rootMap).getMilestoneCreation();
+  }
+  
+  /**
+   * Loads the creation date and the digest algorithm of the milestone file, without its entries.
+   * 
+   * @param rootMap The root map.
+   * 
+   * @return The milestone information, without entries.
+   * 
+   * @throws IOException There is no milestone or it can't be read.
+   */
+  public static InfoResources loadMilestoneHeader(URL rootMap) throws IOException {
     File rootMapFile = getFile(rootMap);
     File milestoneFile = new File(rootMapFile.getParentFile(),MilestoneUtil.getMilestoneFileName(rootMapFile));
 
     if (!milestoneFile.exists()) {
       throw new IOException("No milestone was created.");
     }
-
-    JAXBContext jaxbContext = JAXBContext.newInstance(InfoResources.class); 
-    Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();   
-    InfoResources resources = (InfoResources) jaxbUnmarshaller.unmarshal(milestoneFile);    
-
-    return resources.getMilestoneCreation();
+    
+    // Only the root element is read.
+    if (BinaryMilestoneCodec.isBinary(milestoneFile)) {
+      return BinaryMilestoneCodec.readHeader(milestoneFile);
+    }
+    return XmlMilestoneCodec.readHeader(milestoneFile);
   }
 
   /**
@@ -0,0 +1,151 @@
+package com.oxygenxml.translation.support.core.digest;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * CRC-32C (Castagnoli). Much cheaper than a cryptographic hash, but with a higher collision rate. 
+ * 
+ * Implemented here because <code>java.util.zip.CRC32C</code> is only available starting with Java 9. 
+ * It uses the "slicing-by-8" technique, processing 8 bytes per step.
+ */
+public class CRC32CAlgorithm implements DigestAlgorithm {
+  
+  /**
+   * The algorithm name.
+   */
+  public static final String NAME = "CRC32C";
+  
+  /**
+   * The reversed Castagnoli polynomial.
+   */
+  private static final int POLYNOMIAL = 0x82F63B78;
+  
+  /**
+   * The lookup tables. Table <code>k</code> gives the CRC of a byte followed by <code>k</code> zero bytes.
+   */
+  private static final int[][] TABLES = new int[8][256];
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc = i;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+      }
+      TABLES[0][i] = crc;
+    }
+    for (int i = 0; i < 256; i++) {
+      for (int k = 1; k < 8; k++) {
+        int previous = TABLES[k - 1][i];
+        TABLES[k][i] = (previous >>> 8) ^ TABLES[0][previous & 0xFF];
+      }
+    }
+  }
+  
+  /**
+   * @see com.oxygenxml.translation.support.core.digest.DigestAlgorithm#getName()
+   */
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  /**
+   * @see com.oxygenxml.translation.support.core.digest.DigestAlgorithm#newDigester()
+   */
+  @Override
+  public Digester newDigester() {
+    return new CRC32CDigester();
+  }
+  
+  /**
+   * Accumulates the CRC.
+   */
+  private static class CRC32CDigester implements Digester {
+    /**
+     * The current CRC, not yet complemented.
+     */
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * @see com.oxygenxml.translation.support.core.digest.Digester#update(byte[], int, int)
+     */
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+      int[] t0 = TABLES[0];
+      int[] t1 = TABLES[1];
+      int[] t2 = TABLES[2];
+      int[] t3 = TABLES[3];
+      int[] t4 = TABLES[4];
+      int[] t5 = TABLES[5];
+      int[] t6 = TABLES[6];
+      int[] t7 = TABLES[7];
+      
+      int c = crc;
+      int i = offset;
+      int end = offset + length;
+      while (end - i >= 8) {
+        c ^= (bytes[i] & 0xFF) | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF) << 16 | (bytes[i + 3] & 0xFF) << 24;
+        c = t7[c & 0xFF] ^ t6[(c >>> 8) & 0xFF] ^ t5[(c >>> 16) & 0xFF] ^ t4[c >>> 24]
+            ^ t3[bytes[i + 4] & 0xFF] ^ t2[bytes[i + 5] & 0xFF] ^ t1[bytes[i + 6] & 0xFF] ^ t0[bytes[i + 7] & 0xFF];
+        i += 8;
+      }
+      while (i < end) {
+        c = (c >>> 8) ^ t0[(c ^ bytes[i]) & 0xFF];
+        i++;
+      }
+      crc = c;
+    }
+    
+    /**
+     * @see com.oxygenxml.translation.support.core.digest.Digester#update(java.nio.ByteBuffer)
+     */
+    @Override
+    public void update(ByteBuffer buffer) {
+      if (buffer.hasArray()) {
+        update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        // Called through Buffer: the ByteBuffer overrides added in Java 9 don't exist on a Java 8 runtime.
+        ((Buffer) buffer).position(buffer.limit());
+        return;
+      }
+      
+      int[] t0 = TABLES[0];
+      int[] t1 = TABLES[1];
+      int[] t2 = TABLES[2];
+      int[] t3 = TABLES[3];
+      int[] t4 = TABLES[4];
+      int[] t5 = TABLES[5];
+      int[] t6 = TABLES[6];
+      int[] t7 = TABLES[7];
+      
+      // Read in place, without copying.
+      ByteOrder order = buffer.order();
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      int c = crc;
+      int i = buffer.position();
+      int end = buffer.limit();
+      while (end - i >= 8) {
+        c ^= buffer.getInt(i);
+        int high = buffer.getInt(i + 4);
+        c = t7[c & 0xFF] ^ t6[(c >>> 8) & 0xFF] ^ t5[(c >>> 16) & 0xFF] ^ t4[c >>> 24]
+            ^ t3[high & 0xFF] ^ t2[(high >>> 8) & 0xFF] ^ t1[(high >>> 16) & 0xFF] ^ t0[high >>> 24];
+        i += 8;
+      }
+      while (i < end) {
+        c = (c >>> 8) ^ t0[(c ^ buffer.get(i)) & 0xFF];
+        i++;
+      }
+      crc = c;
+      ((Buffer) buffer).position(end);
+      buffer.order(order);
+    }
+
+    /**
+     * @see com.oxygenxml.translation.support.core.digest.Digester#digest()
+     */
+    @Override
+    public String digest() {
+      return String.format("%08x", ~crc);
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.oxygenxml.translation.support.core.digest;
+
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An algorithm used to compute the digest of a resource's content. The digests are recorded in the milestone 
+ * and compared later on to detect the changed resources.
+ * 
+ * Additional algorithms can be contributed through the {@link java.util.ServiceLoader} mechanism, by 
+ * listing the implementations in a <code>META-INF/services/com.oxygenxml.translation.support.core.digest.DigestAlgorithm</code>
+ * file.
+ */
+public interface DigestAlgorithm {
+  
+  /**
+   * @return The name of the algorithm, as recorded in the milestone. 
+   */
+  String getName();
+  
+  /**
+   * Creates a new digester. A digester is used by a single thread, for a single resource.
+   * 
+   * @return A new digester.
+   * 
+   * @throws NoSuchAlgorithmException The algorithm is not available on this platform.
+   */
+  Digester newDigester() throws NoSuchAlgorithmException;
+}
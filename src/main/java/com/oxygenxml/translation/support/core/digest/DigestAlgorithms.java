@@ -0,0 +1,118 @@
+package com.oxygenxml.translation.support.core.digest;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The registry of the available digest algorithms.
+ */
+public class DigestAlgorithms {
+  
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(DigestAlgorithms.class);
+  
+  /**
+   * MD5. The algorithm of the milestones that don't record one.
+   */
+  public static final String MD5 = "MD5";
+  
+  /**
+   * SHA-256.
+   */
+  public static final String SHA_256 = "SHA-256";
+  
+  /**
+   * CRC-32C.
+   */
+  public static final String CRC32C = CRC32CAlgorithm.NAME;
+  
+  /**
+   * xxHash64.
+   */
+  public static final String XXHASH64 = XXHash64Algorithm.NAME;
+  
+  /**
+   * The algorithms mapped by name.
+   */
+  private static final Map<String, DigestAlgorithm> ALGORITHMS = new LinkedHashMap<>();
+  static {
+    register(new MessageDigestAlgorithm(MD5));
+    register(new MessageDigestAlgorithm(SHA_256));
+    register(new CRC32CAlgorithm());
+    register(new XXHash64Algorithm());
+    
+    // Contributed algorithms.
+    Iterator<DigestAlgorithm> iterator = 
+        ServiceLoader.load(DigestAlgorithm.class, DigestAlgorithm.class.getClassLoader()).iterator();
+    while (true) {
+      try {
+        if (!iterator.hasNext()) {
+          break;
+        }
+        register(iterator.next());
+      } catch (ServiceConfigurationError e) {
+        logger.error("Unable to load a digest algorithm: " + e.getMessage(), e);
+      }
+    }
+  }
+  
+  /**
+   * Private constructor.
+   */
+  private DigestAlgorithms() {
+    // Avoid instantiation.
+  }
+  
+  /**
+   * Registers an algorithm.
+   * 
+   * @param algorithm The algorithm.
+   */
+  private static void register(DigestAlgorithm algorithm) {
+    ALGORITHMS.put(algorithm.getName().toUpperCase(), algorithm);
+  }
+  
+  /**
+   * @return The algorithm used when none is specified: MD5.
+   */
+  public static DigestAlgorithm getDefault() {
+    return ALGORITHMS.get(MD5);
+  }
+  
+  /**
+   * Gets an algorithm by name.
+   * 
+   * @param name The name of the algorithm, case insensitive. If <code>null</code>, the default algorithm is returned.
+   * 
+   * @return The algorithm.
+   * 
+   * @throws NoSuchAlgorithmException There is no algorithm with the given name.
+   */
+  public static DigestAlgorithm get(String name) throws NoSuchAlgorithmException {
+    if (name == null) {
+      return getDefault();
+    }
+    DigestAlgorithm algorithm = ALGORITHMS.get(name.toUpperCase());
+    if (algorithm == null) {
+      throw new NoSuchAlgorithmException("Unknown digest algorithm: " + name);
+    }
+    return algorithm;
+  }
+  
+  /**
+   * @return All the available algorithms.
+   */
+  public static Collection<DigestAlgorithm> getAll() {
+    return Collections.unmodifiableCollection(ALGORITHMS.values());
+  }
+}
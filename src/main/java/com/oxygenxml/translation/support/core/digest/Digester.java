@@ -0,0 +1,42 @@
+package com.oxygenxml.translation.support.core.digest;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Accumulates the content of a resource and computes its digest.
+ */
+public interface Digester {
+  
+  /**
+   * Adds a chunk of content.
+   * 
+   * @param bytes The buffer.
+   * @param offset The offset of the first byte to add.
+   * @param length How many bytes to add.
+   */
+  void update(byte[] bytes, int offset, int length);
+  
+  /**
+   * Adds the remaining content of a buffer. When done, the position of the buffer is its limit.
+   * 
+   * The default implementation copies the content into a heap array. Implementations should read
+   * direct and mapped buffers in place.
+   * 
+   * @param buffer The buffer.
+   */
+  default void update(ByteBuffer buffer) {
+    byte[] chunk = new byte[Math.min(buffer.remaining(), 8 * 1024)];
+    while (buffer.hasRemaining()) {
+      int length = Math.min(buffer.remaining(), chunk.length);
+      buffer.get(chunk, 0, length);
+      update(chunk, 0, length);
+    }
+  }
+  
+  /**
+   * Completes the computation. The digester must not be used afterwards.
+   * 
+   * @return The digest as a hexadecimal string.
+   */
+  String digest();
+}
@@ -0,0 +1,105 @@
+package com.oxygenxml.translation.support.core.digest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Passes the content read from a stream to a {@link Digester}, so a resource can be parsed and hashed
+ * in the same read.
+ *
+ * Closing this stream does nothing: parsers close their input when they reach the end of the document
+ * and the rest of the content must still be hashed by {@link #digest()}. The underlying stream is closed
+ * by whoever opened it.
+ */
+public class DigestingInputStream extends FilterInputStream {
+
+  /**
+   * Receives the content read.
+   */
+  private final Digester digester;
+
+  /**
+   * Constructor.
+   *
+   * @param in The stream to read.
+   * @param digester Receives the content read.
+   */
+  public DigestingInputStream(InputStream in, Digester digester) {
+    super(in);
+    this.digester = digester;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int read = super.read();
+    if (read != -1) {
+      digester.update(new byte[] {(byte) read}, 0, 1);
+    }
+    return read;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int read = super.read(b, off, len);
+    if (read > 0) {
+      digester.update(b, off, read);
+    }
+    return read;
+  }
+
+  /**
+   * The skipped content is read, to be hashed.
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    byte[] buffer = new byte[(int) Math.min(n, 8 * 1024)];
+    long skipped = 0;
+    while (skipped < n) {
+      int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+      if (read == -1) {
+        break;
+      }
+      skipped += read;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+    // Not supported, the content would be hashed twice.
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  /**
+   * Does nothing. See {@link #digest()}.
+   */
+  @Override
+  public void close() {
+    // The underlying stream is closed by whoever opened it.
+  }
+
+  /**
+   * Reads the rest of the content and computes the digest. The stream must not be read afterwards.
+   *
+   * @return The digest of the whole content, as a hexadecimal string.
+   *
+   * @throws IOException Problems reading the content.
+   */
+  public String digest() throws IOException {
+    byte[] buffer = new byte[8 * 1024];
+    while (read(buffer, 0, buffer.length) != -1) {
+      // Hashed while read.
+    }
+    return digester.digest();
+  }
+}
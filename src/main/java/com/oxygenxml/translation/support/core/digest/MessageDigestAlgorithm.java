@@ -0,0 +1,59 @@
+package com.oxygenxml.translation.support.core.digest;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.oxygenxml.translation.support.core.MilestoneUtil;
+
+/**
+ * A cryptographic hash provided by the platform, like MD5 or SHA-256.
+ */
+public class MessageDigestAlgorithm implements DigestAlgorithm {
+  
+  /**
+   * The algorithm name, as known by {@link MessageDigest}.
+   */
+  private final String name;
+
+  /**
+   * Constructor.
+   * 
+   * @param name The algorithm name, as known by {@link MessageDigest}.
+   */
+  public MessageDigestAlgorithm(String name) {
+    this.name = name;
+  }
+  
+  /**
+   * @see com.oxygenxml.translation.support.core.digest.DigestAlgorithm#getName()
+   */
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @see com.oxygenxml.translation.support.core.digest.DigestAlgorithm#newDigester()
+   */
+  @Override
+  public Digester newDigester() throws NoSuchAlgorithmException {
+    final MessageDigest md = MessageDigest.getInstance(name);
+    return new Digester() {
+      @Override
+      public void update(byte[] bytes, int offset, int length) {
+        md.update(bytes, offset, length);
+      }
+      
+      @Override
+      public void update(ByteBuffer buffer) {
+        md.update(buffer);
+      }
+      
+      @Override
+      public String digest() {
+        return MilestoneUtil.toHexString(md.digest());
+      }
+    };
+  }
+}
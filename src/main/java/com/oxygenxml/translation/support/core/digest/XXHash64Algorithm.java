@@ -0,0 +1,232 @@
+package com.oxygenxml.translation.support.core.digest;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash64 with a seed of 0. A fast, non-cryptographic 64 bits hash. The digest is the canonical 
+ * (big endian) hexadecimal representation, the same one printed by <code>xxhsum</code>.
+ */
+public class XXHash64Algorithm implements DigestAlgorithm {
+  
+  /**
+   * The algorithm name.
+   */
+  public static final String NAME = "XXH64";
+  
+  private static final long PRIME1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME3 = 0x165667B19E3779F9L;
+  private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+  private static final long PRIME5 = 0x27D4EB2F165667C5L;
+  
+  /**
+   * @see com.oxygenxml.translation.support.core.digest.DigestAlgorithm#getName()
+   */
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  /**
+   * @see com.oxygenxml.translation.support.core.digest.DigestAlgorithm#newDigester()
+   */
+  @Override
+  public Digester newDigester() {
+    return new XXHash64Digester();
+  }
+  
+  /**
+   * Reads a little endian long.
+   */
+  private static long readLong(byte[] b, int i) {
+    return (b[i] & 0xFFL) 
+        | (b[i + 1] & 0xFFL) << 8 
+        | (b[i + 2] & 0xFFL) << 16 
+        | (b[i + 3] & 0xFFL) << 24
+        | (b[i + 4] & 0xFFL) << 32 
+        | (b[i + 5] & 0xFFL) << 40 
+        | (b[i + 6] & 0xFFL) << 48 
+        | (b[i + 7] & 0xFFL) << 56;
+  }
+  
+  /**
+   * Reads a little endian int, as an unsigned value.
+   */
+  private static long readInt(byte[] b, int i) {
+    return (b[i] & 0xFFL) 
+        | (b[i + 1] & 0xFFL) << 8 
+        | (b[i + 2] & 0xFFL) << 16 
+        | (b[i + 3] & 0xFFL) << 24;
+  }
+  
+  private static long round(long acc, long input) {
+    acc += input * PRIME2;
+    acc = Long.rotateLeft(acc, 31);
+    return acc * PRIME1;
+  }
+  
+  private static long mergeRound(long acc, long val) {
+    acc ^= round(0, val);
+    return acc * PRIME1 + PRIME4;
+  }
+  
+  /**
+   * Accumulates the hash, in stripes of 32 bytes.
+   */
+  private static class XXHash64Digester implements Digester {
+    private long v1 = PRIME1 + PRIME2;
+    private long v2 = PRIME2;
+    private long v3 = 0;
+    private long v4 = -PRIME1;
+    
+    /**
+     * The total number of bytes.
+     */
+    private long totalLength = 0;
+    
+    /**
+     * The bytes that don't yet fill a stripe.
+     */
+    private final byte[] pending = new byte[32];
+    
+    /**
+     * How many bytes are in the pending buffer.
+     */
+    private int pendingLength = 0;
+    
+    /**
+     * @see com.oxygenxml.translation.support.core.digest.Digester#update(byte[], int, int)
+     */
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+      totalLength += length;
+      int i = offset;
+      int end = offset + length;
+      
+      if (pendingLength > 0) {
+        int toCopy = Math.min(32 - pendingLength, length);
+        System.arraycopy(bytes, i, pending, pendingLength, toCopy);
+        pendingLength += toCopy;
+        i += toCopy;
+        if (pendingLength < 32) {
+          return;
+        }
+        stripe(pending, 0);
+        pendingLength = 0;
+      }
+      
+      while (end - i >= 32) {
+        stripe(bytes, i);
+        i += 32;
+      }
+      
+      if (i < end) {
+        System.arraycopy(bytes, i, pending, 0, end - i);
+        pendingLength = end - i;
+      }
+    }
+    
+    /**
+     * @see com.oxygenxml.translation.support.core.digest.Digester#update(java.nio.ByteBuffer)
+     */
+    @Override
+    public void update(ByteBuffer buffer) {
+      if (buffer.hasArray()) {
+        update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        // Called through Buffer: the ByteBuffer overrides added in Java 9 don't exist on a Java 8 runtime.
+        ((Buffer) buffer).position(buffer.limit());
+        return;
+      }
+      
+      // Fill the pending stripe first.
+      if (pendingLength > 0) {
+        int toCopy = Math.min(32 - pendingLength, buffer.remaining());
+        buffer.get(pending, pendingLength, toCopy);
+        pendingLength += toCopy;
+        totalLength += toCopy;
+        if (pendingLength < 32) {
+          return;
+        }
+        stripe(pending, 0);
+        pendingLength = 0;
+      }
+      
+      // Read the full stripes in place, without copying.
+      ByteOrder order = buffer.order();
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      int i = buffer.position();
+      int end = buffer.limit();
+      while (end - i >= 32) {
+        v1 = round(v1, buffer.getLong(i));
+        v2 = round(v2, buffer.getLong(i + 8));
+        v3 = round(v3, buffer.getLong(i + 16));
+        v4 = round(v4, buffer.getLong(i + 24));
+        i += 32;
+      }
+      totalLength += i - buffer.position();
+      ((Buffer) buffer).position(i);
+      buffer.order(order);
+      
+      if (buffer.hasRemaining()) {
+        pendingLength = buffer.remaining();
+        totalLength += pendingLength;
+        buffer.get(pending, 0, pendingLength);
+      }
+    }
+    
+    /**
+     * Consumes a stripe of 32 bytes.
+     */
+    private void stripe(byte[] b, int i) {
+      v1 = round(v1, readLong(b, i));
+      v2 = round(v2, readLong(b, i + 8));
+      v3 = round(v3, readLong(b, i + 16));
+      v4 = round(v4, readLong(b, i + 24));
+    }
+
+    /**
+     * @see com.oxygenxml.translation.support.core.digest.Digester#digest()
+     */
+    @Override
+    public String digest() {
+      long h;
+      if (totalLength >= 32) {
+        h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+        h = mergeRound(h, v1);
+        h = mergeRound(h, v2);
+        h = mergeRound(h, v3);
+        h = mergeRound(h, v4);
+      } else {
+        h = PRIME5;
+      }
+      h += totalLength;
+      
+      int i = 0;
+      while (pendingLength - i >= 8) {
+        h ^= round(0, readLong(pending, i));
+        h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        i += 8;
+      }
+      if (pendingLength - i >= 4) {
+        h ^= readInt(pending, i) * PRIME1;
+        h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+        i += 4;
+      }
+      while (i < pendingLength) {
+        h ^= (pending[i] & 0xFFL) * PRIME5;
+        h = Long.rotateLeft(h, 11) * PRIME1;
+        i++;
+      }
+      
+      h ^= h >>> 33;
+      h *= PRIME2;
+      h ^= h >>> 29;
+      h *= PRIME3;
+      h ^= h >>> 32;
+      
+      return String.format("%016x", h);
+    }
+  }
+}
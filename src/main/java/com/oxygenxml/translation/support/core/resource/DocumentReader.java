@@ -0,0 +1,359 @@
+package com.oxygenxml.translation.support.core.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import com.oxygenxml.translation.support.core.MilestoneUtil;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
+import com.oxygenxml.translation.support.core.digest.Digester;
+import com.oxygenxml.translation.support.core.digest.DigestingInputStream;
+import com.oxygenxml.translation.support.util.ParserCreator;
+
+import ro.sync.util.URLUtil;
+
+/**
+ * Reads the DITA documents of a map: detects the referenced resources and hashes the content in the
+ * same read.
+ *
+ * With a {@link ReferenceCache}, a document is read in memory and hashed first. If its digest is in the cache, 
+ * with the same grammar, the references are taken from there and the document is not parsed. Otherwise it is parsed from memory, 
+ * so it is still read only once, and its references are cached.
+ *
+ * The documents can be scanned with a {@link ReferenceScanner} instead of being parsed. The ones it can't
+ * handle are parsed. Only the references found by the parser are cached, so a cache is the same whether
+ * the documents were scanned or not.
+ */
+class DocumentReader {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(DocumentReader.class.getName());
+
+  /**
+   * The DOCTYPE declaration of a document, with its public and system IDs.
+   */
+  private static final Pattern DOCTYPE = Pattern.compile(
+      "<!DOCTYPE\\s+[^\\s\\[>]+\\s+(?:PUBLIC\\s+(\"[^\"]*\"|'[^']*')\\s+(\"[^\"]*\"|'[^']*')|SYSTEM\\s+(\"[^\"]*\"|'[^']*'))");
+
+  /**
+   * The location of the XML Schema of a document.
+   */
+  private static final Pattern SCHEMA_LOCATION = Pattern.compile(
+      "(?:noNamespaceSchemaLocation|schemaLocation)\\s*=\\s*(\"[^\"]*\"|'[^']*')");
+
+  /**
+   * How many bytes from the start of a document are searched for its grammar.
+   */
+  private static final int PROLOG_SIZE = 4 * 1024;
+
+  /**
+   * What a read of a document gives: its references and the digest of its content.
+   */
+  static class Content {
+    /**
+     * The referenced resources. <code>null</code> if the document couldn't be parsed.
+     */
+    final Set<ReferencedResource> references;
+    /**
+     * The digest of the content. <code>null</code> if it wasn't computed.
+     */
+    final String digest;
+    /**
+     * The algorithm of the digest. <code>null</code> if it wasn't computed.
+     */
+    final DigestAlgorithm algorithm;
+    /**
+     * The parsing problem. <code>null</code> if the document was parsed.
+     */
+    final Exception problem;
+
+    /**
+     * Constructor.
+     *
+     * @param references The referenced resources. <code>null</code> if the document couldn't be parsed.
+     * @param digest The digest of the content. <code>null</code> if it wasn't computed.
+     * @param algorithm The algorithm of the digest. <code>null</code> if it wasn't computed.
+     * @param problem The parsing problem. <code>null</code> if the document was parsed.
+     */
+    Content(Set<ReferencedResource> references, String digest, DigestAlgorithm algorithm, Exception problem) {
+      this.references = references;
+      this.digest = digest;
+      this.algorithm = algorithm;
+      this.problem = problem;
+    }
+
+    /**
+     * @param requested The algorithm of the digest that is needed.
+     *
+     * @return The digest, if it was computed with the requested algorithm. <code>null</code> otherwise.
+     */
+    String getDigest(DigestAlgorithm requested) {
+      return algorithm != null && requested != null && algorithm.getName().equals(requested.getName()) ? digest : null;
+    }
+
+    /**
+     * @return The referenced resources.
+     *
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     * @throws IOException
+     */
+    Set<ReferencedResource> getReferences() throws ParserConfigurationException, SAXException, IOException {
+      if (problem instanceof SAXException) {
+        throw (SAXException) problem;
+      } else if (problem instanceof IOException) {
+        throw (IOException) problem;
+      } else if (problem instanceof ParserConfigurationException) {
+        throw (ParserConfigurationException) problem;
+      } else if (problem instanceof RuntimeException) {
+        throw (RuntimeException) problem;
+      }
+      return references;
+    }
+  }
+
+  /**
+   * Creates a parser.
+   */
+  private final ParserCreator parserCreator;
+
+  /**
+   * The algorithm of the digests computed when the documents are read before their digests are asked for.
+   */
+  private final DigestAlgorithm digestAlgorithm;
+
+  /**
+   * The references of the documents read before. <code>null</code> to parse all the documents.
+   */
+  private final ReferenceCache cache;
+
+  /**
+   * <code>true</code> to scan the documents for references before parsing them.
+   */
+  private final boolean scan;
+
+  /**
+   * Constructor.
+   *
+   * @param parserCreator Creates a parser.
+   * @param digestAlgorithm The algorithm of the digests computed when the documents are read before
+   * their digests are asked for.
+   * @param cache The references of the documents read before. <code>null</code> to parse all the documents.
+   * @param scan <code>true</code> to scan the documents for references. Only the documents that can't be
+   * scanned are parsed.
+   */
+  DocumentReader(ParserCreator parserCreator, DigestAlgorithm digestAlgorithm, ReferenceCache cache, boolean scan) {
+    this.parserCreator = parserCreator;
+    this.digestAlgorithm = digestAlgorithm;
+    this.cache = cache;
+    this.scan = scan;
+  }
+
+  /**
+   * @return The algorithm of the digests computed when the documents are read before their digests
+   * are asked for.
+   */
+  DigestAlgorithm getDigestAlgorithm() {
+    return digestAlgorithm;
+  }
+
+  /**
+   * Detects the resources referenced in a document and computes its digest.
+   *
+   * @param resource The document.
+   * @param algorithm The algorithm of the digest. <code>null</code> to only detect the references.
+   *
+   * @return The referenced resources and the digest, or the parsing problem.
+   */
+  Content read(ReferencedResource resource, DigestAlgorithm algorithm) {
+    Content content = null;
+    URL toParse = URLUtil.correct(resource.getLocation());
+    String digest = null;
+    // The content read to look it up in the cache. The documents are small, so it is kept to parse it.
+    byte[] data = null;
+    String grammar = null;
+    if (cache != null && algorithm != null) {
+      try (InputStream in = toParse.openStream()) {
+        data = IOUtils.toByteArray(in);
+        Digester digester = algorithm.newDigester();
+        digester.update(data, 0, data.length);
+        digest = digester.digest();
+        grammar = getGrammar(toParse, data);
+        List<Map.Entry<String, Boolean>> cached = cache.get(algorithm, digest, grammar);
+        if (cached != null) {
+          content = new Content(SaxContentHandler.resolve(toParse, cached), digest, algorithm, null);
+        }
+      } catch (NoSuchAlgorithmException | IOException e) {
+        // The parser will report it.
+        digest = null;
+        data = null;
+      }
+    }
+    if (content == null && scan) {
+      content = scan(toParse, algorithm, digest, data);
+    }
+    if (content == null) {
+      content = parse(toParse, algorithm, digest, data, grammar);
+    }
+    return content;
+  }
+
+  /**
+   * Identifies the grammar of a document: the public and system IDs of its DOCTYPE, or the location 
+   * of its XML Schema. When the grammar is a local file, its last modification time is added too.
+   *
+   * @param location The location of the document.
+   * @param data The content of the document.
+   *
+   * @return The identity of the grammar. Empty if the document has none.
+   */
+  static String getGrammar(URL location, byte[] data) {
+    // The IDs are ASCII in the usual encodings.
+    String prolog = new String(data, 0, Math.min(data.length, PROLOG_SIZE), StandardCharsets.ISO_8859_1);
+    String publicId = null;
+    String systemId = null;
+    Matcher doctype = DOCTYPE.matcher(prolog);
+    if (doctype.find()) {
+      publicId = unquote(doctype.group(1));
+      systemId = unquote(doctype.group(2) != null ? doctype.group(2) : doctype.group(3));
+    } else {
+      Matcher schemaLocation = SCHEMA_LOCATION.matcher(prolog);
+      if (schemaLocation.find()) {
+        systemId = unquote(schemaLocation.group(1));
+      }
+    }
+    
+    StringBuilder grammar = new StringBuilder();
+    if (publicId != null) {
+      grammar.append(publicId);
+    }
+    if (systemId != null) {
+      grammar.append(' ').append(systemId);
+      try {
+        URL resolved = new URL(location, systemId);
+        File file = "file".equals(resolved.getProtocol()) ? MilestoneUtil.getFile(resolved) : null;
+        if (file != null && file.isFile()) {
+          // The grammar can change without the document.
+          grammar.append(' ').append(file.lastModified());
+        }
+      } catch (MalformedURLException e) {
+        // Resolved through the catalogs.
+      }
+    }
+    return grammar.toString();
+  }
+
+  /**
+   * @param quoted A literal, between quotes or apostrophes. May be <code>null</code>.
+   *
+   * @return The literal without the quotes.
+   */
+  private static String unquote(String quoted) {
+    return quoted != null ? quoted.substring(1, quoted.length() - 1) : null;
+  }
+
+  /**
+   * Opens a document.
+   *
+   * @param location The location of the document.
+   * @param data The content of the document, if it was read before. <code>null</code> otherwise.
+   *
+   * @return The content.
+   *
+   * @throws IOException Unable to open the document.
+   */
+  private static InputStream open(URL location, byte[] data) throws IOException {
+    return data != null ? new ByteArrayInputStream(data) : location.openStream();
+  }
+
+  /**
+   * Scans a document for references. Like when parsing, the content read is hashed at the same time,
+   * unless the digest is already known. The references are not cached: the scanner doesn't see the attributes
+   * defaulted by the grammar, so only the references found by the parser are.
+   *
+   * @param toScan The location of the document.
+   * @param algorithm The algorithm of the digest. <code>null</code> to only scan the document.
+   * @param knownDigest The digest of the document, if it was computed before. <code>null</code> otherwise.
+   * @param data The content of the document, if it was read before. <code>null</code> otherwise.
+   *
+   * @return The referenced resources and the digest, or <code>null</code> if the document must be parsed.
+   */
+  private Content scan(URL toScan, DigestAlgorithm algorithm, String knownDigest, byte[] data) {
+    Content content = null;
+    try (InputStream in = open(toScan, data)) {
+      DigestingInputStream digesting = algorithm != null && knownDigest == null 
+          ? new DigestingInputStream(in, algorithm.newDigester()) : null;
+      List<Map.Entry<String, Boolean>> references = 
+          ReferenceScanner.scan(digesting != null ? digesting : in, toScan.toExternalForm());
+      if (references != null) {
+        String digest = digesting != null ? digesting.digest() : knownDigest;
+        content = new Content(SaxContentHandler.resolve(toScan, references), digest, algorithm, null);
+      } else if (logger.isDebugEnabled()) {
+        logger.debug("Unable to scan, the document will be parsed: " + toScan);
+      }
+    } catch (XMLStreamException | IOException | NoSuchAlgorithmException | RuntimeException e) {
+      // The parser will report it.
+      if (logger.isDebugEnabled()) {
+        logger.debug("Unable to scan, the document will be parsed: " + toScan, e);
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Parses a document to detect the referenced resources. Unless it is already known, the digest is 
+   * computed from the content read by the parser, so the document is read only once. The references are cached.
+   *
+   * @param toParse The location of the document.
+   * @param algorithm The algorithm of the digest. <code>null</code> to only parse the document.
+   * @param knownDigest The digest of the document, if it was computed before. <code>null</code> otherwise.
+   * @param data The content of the document, if it was read before. <code>null</code> otherwise.
+   * @param grammar The identity of the grammar of the document. <code>null</code> if the document is not cached.
+   *
+   * @return The referenced resources and the digest, or the parsing problem.
+   */
+  private Content parse(URL toParse, DigestAlgorithm algorithm, String knownDigest, byte[] data, String grammar) {
+    Content content;
+    try (InputStream in = open(toParse, data)) {
+      DigestingInputStream digesting = algorithm != null && knownDigest == null 
+          ? new DigestingInputStream(in, algorithm.newDigester()) : null;
+      InputSource is = new InputSource(toParse.toExternalForm());
+      is.setByteStream(digesting != null ? digesting : in);
+      XMLReader xmlReader = parserCreator.createXMLReader();
+      SaxContentHandler handler = new SaxContentHandler(toParse);
+      xmlReader.setContentHandler(handler);
+      xmlReader.parse(is);
+
+      String digest = digesting != null ? digesting.digest() : knownDigest;
+      content = new Content(handler.getDitaMapHrefs(), digest, algorithm, null);
+      if (cache != null && digest != null && grammar != null) {
+        cache.put(algorithm, digest, grammar, handler.getWrittenReferences());
+      }
+    } catch (ParserConfigurationException | SAXException | IOException | NoSuchAlgorithmException | RuntimeException e) {
+      content = new Content(null, null, null, e);
+    }
+    return content;
+  }
+}
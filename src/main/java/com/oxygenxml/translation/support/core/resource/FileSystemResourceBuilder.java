@@ -14,6 +14,7 @@ import org.apache.log4j.Logger;
 
 import com.oxygenxml.translation.support.TranslationPackageBuilderExtension;
 import com.oxygenxml.translation.support.core.MilestoneUtil;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
 
 import ro.sync.exml.workspace.api.PluginWorkspace;
@@ -102,9 +103,17 @@ public class FileSystemResourceBuilder implements IResourceBuilder {
     }
 
     /**
-     * @see com.oxygenxml.translation.support.core.resource.IResource#getResourceInfo()
+     * @see com.oxygenxml.translation.support.core.resource.IResource#getResourceInfo(DigestAlgorithm)
      */
-    public ResourceInfo getResourceInfo() {
+    public ResourceInfo getResourceInfo(DigestAlgorithm algorithm) {
+      // We don't add directories into the milestone.
+      return null;
+    }
+    
+    /**
+     * @see com.oxygenxml.translation.support.core.resource.IResource#getResourceAttributes()
+     */
+    public ResourceInfo getResourceAttributes() {
       // We don't add directories into the milestone.
       return null;
     }
@@ -183,10 +192,19 @@ public class FileSystemResourceBuilder implements IResourceBuilder {
     }
 
     /**
-     * @see com.oxygenxml.translation.support.core.resource.IResource#getResourceInfo()
+     * @see com.oxygenxml.translation.support.core.resource.IResource#getResourceInfo(DigestAlgorithm)
+     */
+    public ResourceInfo getResourceInfo(DigestAlgorithm algorithm) throws NoSuchAlgorithmException, IOException {
+      return new ResourceInfo(MilestoneUtil.generateDigest(file, algorithm), relativePath);
+    }
+    
+    /**
+     * @see com.oxygenxml.translation.support.core.resource.IResource#getResourceAttributes()
      */
-    public ResourceInfo getResourceInfo() throws NoSuchAlgorithmException, IOException {
-      return new ResourceInfo(MilestoneUtil.generateMD5(file), relativePath);
+    public ResourceInfo getResourceAttributes() throws IOException {
+      ResourceInfo resourceInfo = new ResourceInfo(relativePath);
+      MilestoneUtil.readFileAttributes(file, resourceInfo);
+      return resourceInfo;
     }
 
     public URL getCurrentUrl() {
@@ -1,5 +1,6 @@
 package com.oxygenxml.translation.support.core.resource;
 
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
 import java.io.IOException;
 import java.net.URL;
@@ -17,12 +18,25 @@ public interface IResource {
   Iterator<IResource> iterator();
   
   /**
-   * If this resource is one that should be translated it return the MD5 and 
+   * If this resource is one that should be translated it return the digest and 
    * the relative path. Basically what you need to generate the milestone.
    * 
+   * @param algorithm The algorithm used to compute the digest.
+   * 
    * @return Milestone information or <code>null</code> if this resource shouldn't be recorded.
    */
-  ResourceInfo getResourceInfo() throws NoSuchAlgorithmException, IOException;
+  ResourceInfo getResourceInfo(DigestAlgorithm algorithm) throws NoSuchAlgorithmException, IOException;
+  
+  /**
+   * Reads the relative path and the file attributes (size, last modified time, file key) of this resource, 
+   * without reading its content. The digest is not computed.
+   * 
+   * @return The relative path and the file attributes or <code>null</code> if this resource shouldn't be 
+   * recorded or it is not a local file.
+   * 
+   * @throws IOException Problems reading the file attributes.
+   */
+  ResourceInfo getResourceAttributes() throws IOException;
   
   /**
    * @return The URL of the currently verified resource.
@@ -5,10 +5,18 @@ import java.io.File;
 /**
  * The root resource. Knows where it should be stored.
  */
-public interface IRootResource extends IResource {
+public interface IRootResource extends IResource, AutoCloseable {
   
   /**
    * @return The file where to store the milestone information.
    */
   File getMilestoneFile();
+  
+  /**
+   * Releases what the walk of the resources used. Called when the walk ends or is stopped.
+   */
+  @Override
+  default void close() {
+    // Nothing to release.
+  }
 }
@@ -2,6 +2,7 @@ package com.oxygenxml.translation.support.core.resource;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.NoSuchAlgorithmException;
@@ -10,18 +11,26 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.log4j.Logger;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
 
 import com.oxygenxml.translation.support.core.MilestoneUtil;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithms;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
 import com.oxygenxml.translation.support.util.OxygenParserCreator;
 import com.oxygenxml.translation.support.util.ParserCreator;
+import com.oxygenxml.translation.support.util.PooledParserCreator;
 import com.oxygenxml.translation.support.util.SAXParserCreator;
 
 import ro.sync.exml.workspace.api.PluginWorkspace;
@@ -39,15 +48,162 @@ public class MapStructureResourceBuilder implements IResourceBuilder {
    */
   private static final Logger logger = Logger.getLogger(MapStructureResourceBuilder.class.getName());
   
+  /**
+   * How many documents are parsed at the same time. 1 to parse them on the thread that walks the map.
+   */
+  private int parallelism = 1;
+  
+  /**
+   * The algorithm of the digests computed while parsing the documents ahead of the walk.
+   */
+  private DigestAlgorithm digestAlgorithm = DigestAlgorithms.getDefault();
+  
+  /**
+   * The references of the documents parsed before. <code>null</code> to parse all the documents.
+   */
+  private ReferenceCache referenceCache;
+  
+  /**
+   * <code>true</code> to scan the documents for references instead of parsing them.
+   */
+  private boolean referenceScanning;
+  
+  /**
+   * Parses the documents referred in the map on a bounded pool of threads, ahead of the walk. 
+   * The threads share a concurrent visited set, so each document is parsed once. The walk still decides 
+   * which resources are visited and in what order, it only takes the references gathered by the threads.
+   * 
+   * When the walk ends or is stopped, the traversal is closed: the documents not parsed yet are dropped.
+   */
+  private static class ConcurrentTraversal {
+    /**
+     * Reads the documents.
+     */
+    private final DocumentReader reader;
+    /**
+     * The threads that parse the documents.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * The documents submitted for parsing, with their contents. The keys are the visited set.
+     */
+    private final ConcurrentMap<ReferencedResource, CompletableFuture<DocumentReader.Content>> contents = 
+        new ConcurrentHashMap<>();
+    /**
+     * How many submitted documents are not parsed yet. The pool is shut down when there are none.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    /**
+     * <code>true</code> after {@link #close()}. No more documents are submitted.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     * 
+     * @param reader Reads the documents. Used from several threads.
+     * @param parallelism How many documents are parsed at the same time.
+     */
+    private ConcurrentTraversal(DocumentReader reader, int parallelism) {
+      this.reader = reader;
+      this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Parses a document and, after it, the documents it refers, if they weren't submitted before.
+     * 
+     * @param resource The document.
+     */
+    private void submit(ReferencedResource resource) {
+      CompletableFuture<DocumentReader.Content> future = new CompletableFuture<>();
+      if (!closed && contents.putIfAbsent(resource, future) == null) {
+        pending.incrementAndGet();
+        try {
+          pool.execute(() -> parse(resource, future));
+        } catch (RejectedExecutionException e) {
+          // Closed in the meantime.
+          pending.decrementAndGet();
+          future.complete(null);
+        }
+      }
+    }
+
+    /**
+     * Stops parsing the documents. The ones being parsed are interrupted and the ones not parsed yet 
+     * are dropped. The walk reads them on its own thread, if it goes on.
+     */
+    private void close() {
+      closed = true;
+      pool.shutdownNow();
+      for (CompletableFuture<DocumentReader.Content> future : contents.values()) {
+        future.complete(null);
+      }
+    }
+
+    /**
+     * Parses and hashes a document and submits the DITA documents it refers.
+     * 
+     * @param resource The document.
+     * @param future Receives the content.
+     */
+    private void parse(ReferencedResource resource, CompletableFuture<DocumentReader.Content> future) {
+      try {
+        DocumentReader.Content content = reader.read(resource, reader.getDigestAlgorithm());
+        if (content.references != null) {
+          for (ReferencedResource child : content.references) {
+            // The same conditions as the ones of the walk.
+            if (child.isDITAResource() && resourceExists(child)) {
+              submit(child);
+            }
+          }
+        }
+        future.complete(content);
+      } finally {
+        if (!future.isDone()) {
+          future.completeExceptionally(new IllegalStateException("Unable to parse: " + resource));
+        }
+        // The children are submitted before, so no document is pending when it gets to 0.
+        if (pending.decrementAndGet() == 0) {
+          pool.shutdown();
+        }
+      }
+    }
+
+    /**
+     * Waits for the content of a document.
+     * 
+     * @param resource The document.
+     * 
+     * @return The content, or <code>null</code> if the document was not submitted or the traversal 
+     * was closed before parsing it.
+     */
+    private DocumentReader.Content getContent(ReferencedResource resource) {
+      DocumentReader.Content content = null;
+      CompletableFuture<DocumentReader.Content> future = contents.get(resource);
+      if (future != null) {
+        try {
+          content = future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          content = new DocumentReader.Content(null, null, null, 
+              new InterruptedIOException("Interrupted while parsing: " + resource.getLocation()));
+        } catch (ExecutionException e) {
+          content = new DocumentReader.Content(null, null, null, new IOException(e.getCause()));
+        }
+      }
+      return content;
+    }
+  }
+  
   /**
    * An implementation that detects the resources referred inside the content of
    * the given resource.
    */
   private static class SaxResource implements IResource {
     /**
-     * Creates a parser.
+     * Reads the document.
      */
-    private ParserCreator parserCreator;
+    private DocumentReader reader;
     /**
      * The resource to parse.
      */
@@ -64,28 +220,39 @@ public class MapStructureResourceBuilder implements IResourceBuilder {
      * A path from the root resource to the current one.
      */
     private String relativePath;
+    /**
+     * Parses the documents ahead of the walk. <code>null</code> to parse each document when it is iterated.
+     */
+    protected ConcurrentTraversal traversal;
+    /**
+     * The references and the digest, read once. <code>null</code> until the document is read.
+     */
+    private DocumentReader.Content content;
 
     /**
      * Constructor.
      * 
      * @param resource The resource to wrap and parse for children. Initial is the map file.
      * @param relativePath A path from the root resource to the current one. 
-     * @param parserCreator Creates a parser.
+     * @param reader Reads the document.
      * @param recursivityCheck A set to collect all the parsed resources. 
      * Used to avoid infinite recursion.
      * @param rootMap 
+     * @param traversal Parses the documents ahead of the walk. May be <code>null</code>.
      */
     private SaxResource(
         ReferencedResource resource, 
         String relativePath,
-        ParserCreator parserCreator,
+        DocumentReader reader,
         Set<ReferencedResource> recursivityCheck, 
-        URL rootMap) {
+        URL rootMap,
+        ConcurrentTraversal traversal) {
       this.resource = resource;
-      this.parserCreator = parserCreator;
+      this.reader = reader;
       this.visitedURLs = recursivityCheck;
       this.relativePath = relativePath;
       this.rootMap = rootMap;
+      this.traversal = traversal;
     }
 
     /**
@@ -116,9 +283,10 @@ public class MapStructureResourceBuilder implements IResourceBuilder {
               SaxResource res = new SaxResource(
                   child,
                   childRelativePath,
-                  parserCreator, 
+                  reader, 
                   visitedURLs,
-                  rootMap);
+                  rootMap,
+                  traversal);
               children.add(res);
             }
           }
@@ -134,40 +302,54 @@ public class MapStructureResourceBuilder implements IResourceBuilder {
      * @return <code>true</code> if the file exists on the disk.
      */
     private boolean resourceExists() {
-      File file = null;
+      return MapStructureResourceBuilder.resourceExists(resource);
+    }
+
+    /**
+     * @see com.oxygenxml.translation.support.core.resource.IResource#getResourceInfo(DigestAlgorithm)
+     */
+    public ResourceInfo getResourceInfo(DigestAlgorithm algorithm) throws NoSuchAlgorithmException, IOException {
+      String digest = null;
+      if (resource.isDITAResource() && resourceExists()) {
+        // The document will be parsed anyway. Parse and hash it in the same read.
+        digest = read(algorithm).getDigest(algorithm);
+      }
+      if (digest == null) {
+        digest = MilestoneUtil.generateDigest(resource.getLocation(), algorithm);
+      }
+      return new ResourceInfo(digest, getMilestoneRelativePath());
+    }
+    
+    /**
+     * @see com.oxygenxml.translation.support.core.resource.IResource#getResourceAttributes()
+     */
+    public ResourceInfo getResourceAttributes() throws IOException {
+      ResourceInfo resourceInfo = null;
       URL location = resource.getLocation();
-      PluginWorkspace pluginWorkspace = PluginWorkspaceProvider.getPluginWorkspace();
-      if (pluginWorkspace != null) {
-        file = pluginWorkspace.getUtilAccess().locateFile(location);
-      } else {
-        try {
-          file = new File(location.toURI());
-        } catch (URISyntaxException e) {
-          file = new File(location.getFile());
-        }
+      if ("file".equals(location.getProtocol())) {
+        resourceInfo = new ResourceInfo(getMilestoneRelativePath());
+        MilestoneUtil.readFileAttributes(MilestoneUtil.getFile(location), resourceInfo);
       }
-      return file == null ? false : file.exists();
+      return resourceInfo;
     }
-
+    
     /**
-     * @see com.oxygenxml.translation.support.core.resource.IResource#getResourceInfo()
+     * @return The path recorded in the milestone for this resource. For the root map it's the file name.
      */
-    public ResourceInfo getResourceInfo() throws NoSuchAlgorithmException, IOException {
-      ResourceInfo resourceInfo = new ResourceInfo(MilestoneUtil.generateMD5(resource.getLocation()), relativePath);
+    private String getMilestoneRelativePath() {
+      String path = relativePath;
       if (relativePath.isEmpty()) {
         // It's the root map
         PluginWorkspace pluginWorkspace = PluginWorkspaceProvider.getPluginWorkspace();
         if (pluginWorkspace != null) {
-          String name = pluginWorkspace.getUtilAccess().getFileName(resource.getLocation().toExternalForm());
-          resourceInfo.setRelativePath(name);
+          path = pluginWorkspace.getUtilAccess().getFileName(resource.getLocation().toExternalForm());
         }
       }
-
-      return resourceInfo;
+      return path;
     }
 
     /**
-     * Parses the resource to detect the referenced resources.
+     * Parses the resource to detect the referenced resources, unless it was parsed ahead of the walk.
      *  
      * @return The referenced resources.
      *  
@@ -177,15 +359,25 @@ public class MapStructureResourceBuilder implements IResourceBuilder {
      */
     private Set<ReferencedResource> gatherReferences()
         throws ParserConfigurationException, SAXException, IOException {
-
-      URL toParse = URLUtil.correct(resource.getLocation());
-      InputSource is = new InputSource(toParse.toExternalForm());
-      XMLReader xmlReader = parserCreator.createXMLReader();
-      SaxContentHandler handler = new SaxContentHandler(toParse);
-      xmlReader.setContentHandler(handler);
-      xmlReader.parse(is);
-
-      return handler.getDitaMapHrefs(); 
+      return read(reader.getDigestAlgorithm()).getReferences();
+    }
+    
+    /**
+     * Reads the document once: it is parsed and hashed at the same time. Called both by the walk and
+     * by the thread that computes the digest.
+     * 
+     * @param algorithm The algorithm of the digest, if the document wasn't read already.
+     * 
+     * @return The references and the digest.
+     */
+    private synchronized DocumentReader.Content read(DigestAlgorithm algorithm) {
+      if (content == null) {
+        content = traversal != null ? traversal.getContent(resource) : null;
+        if (content == null) {
+          content = reader.read(resource, algorithm);
+        }
+      }
+      return content;
     }
 
     public URL getCurrentUrl() {
@@ -203,6 +395,10 @@ public class MapStructureResourceBuilder implements IResourceBuilder {
      * next to the map.
      */
     private File milestone;
+    /**
+     * The parsers used by the reader, one for each thread.
+     */
+    private PooledParserCreator parsers;
 
     /**
      * Constructor.
@@ -211,17 +407,22 @@ public class MapStructureResourceBuilder implements IResourceBuilder {
      * @param milestone The location where to generate the milestone. If <code>null</code>, the milestone will be generated 
      * next to the map.
      * @param relativePath A path from the root resource to the current one. 
-     * @param parserCreator Creates a parser.
+     * @param reader Reads the documents.
+     * @param parsers The parsers used by the reader.
      * @param recursivityCheck A set to collect all the parsed resources. Used to avoid infinite recursion.
+     * @param traversal Parses the documents ahead of the walk. May be <code>null</code>.
      */
     private RootMapResource(
         ReferencedResource resource, 
         File milestone, 
         String relativePath,
-        ParserCreator parserCreator,
-        Set<ReferencedResource> recursivityCheck) {
-      super(resource, relativePath, parserCreator, recursivityCheck, resource.getLocation());
+        DocumentReader reader,
+        PooledParserCreator parsers,
+        Set<ReferencedResource> recursivityCheck,
+        ConcurrentTraversal traversal) {
+      super(resource, relativePath, reader, recursivityCheck, resource.getLocation(), traversal);
       this.milestone = milestone;
+      this.parsers = parsers;
     }
 
     /**
@@ -230,6 +431,118 @@ public class MapStructureResourceBuilder implements IResourceBuilder {
     public File getMilestoneFile() {
       return milestone != null ? milestone : MilestoneUtil.getMilestoneFile(resource.getLocation());
     }
+
+    /**
+     * Stops parsing the documents ahead of the walk and drops the parser of the thread that walked the map.
+     * The threads that parsed ahead of the walk end with their parsers.
+     * 
+     * @see com.oxygenxml.translation.support.core.resource.IRootResource#close()
+     */
+    @Override
+    public void close() {
+      if (traversal != null) {
+        traversal.close();
+      }
+      parsers.release();
+    }
+  }
+
+  /**
+   * @param resource A resource.
+   * 
+   * @return <code>true</code> if the file exists on the disk.
+   */
+  private static boolean resourceExists(ReferencedResource resource) {
+    File file = null;
+    URL location = resource.getLocation();
+    PluginWorkspace pluginWorkspace = PluginWorkspaceProvider.getPluginWorkspace();
+    if (pluginWorkspace != null) {
+      file = pluginWorkspace.getUtilAccess().locateFile(location);
+    } else {
+      try {
+        file = new File(location.toURI());
+      } catch (URISyntaxException e) {
+        file = new File(location.getFile());
+      }
+    }
+    return file == null ? false : file.exists();
+  }
+  
+  /**
+   * Sets how many documents are parsed at the same time. If greater than 1, the documents referred
+   * in the map are parsed on a pool of threads, ahead of the walk. The walk gives the same resources, 
+   * with the same relative paths and in the same order, no matter the parallelism level.
+   * 
+   * @param parallelism The number of threads. 1 to parse the documents on the thread that walks the map.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism level must be at least 1: " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+  
+  /**
+   * @return How many documents are parsed at the same time.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * The documents are parsed and hashed in the same read. When a document is parsed before its digest 
+   * is asked for, for example ahead of the walk, its digest is computed with this algorithm. If another 
+   * one is asked for, the document is read again.
+   * 
+   * @param digestAlgorithm The algorithm of the digests computed while parsing.
+   */
+  public void setDigestAlgorithm(DigestAlgorithm digestAlgorithm) {
+    this.digestAlgorithm = digestAlgorithm;
+  }
+  
+  /**
+   * @return The algorithm of the digests computed while parsing.
+   */
+  public DigestAlgorithm getDigestAlgorithm() {
+    return digestAlgorithm;
+  }
+
+  /**
+   * Sets a cache of the references detected in the documents, by the digests of their contents. 
+   * A document found in the cache is only hashed, it is not parsed again. The walk gives the same 
+   * resources, with or without a cache.
+   * 
+   * @param referenceCache The cache. <code>null</code> to parse all the documents.
+   */
+  public void setReferenceCache(ReferenceCache referenceCache) {
+    this.referenceCache = referenceCache;
+  }
+  
+  /**
+   * @return The cache of the references detected in the documents. <code>null</code> if there is none.
+   */
+  public ReferenceCache getReferenceCache() {
+    return referenceCache;
+  }
+
+  /**
+   * Sets whether the documents are scanned for references with a {@link ReferenceScanner} instead of 
+   * being parsed. The scanner only reads the attributes and never loads the DTDs, so it is faster, 
+   * but the images are told apart by the names of the standard DITA elements when their "class" 
+   * is not written. The documents it can't handle are parsed. The scanned references are not put in the
+   * reference cache.
+   * 
+   * @param referenceScanning <code>true</code> to scan the documents, <code>false</code> to parse all of them.
+   */
+  public void setReferenceScanning(boolean referenceScanning) {
+    this.referenceScanning = referenceScanning;
+  }
+  
+  /**
+   * @return <code>true</code> if the documents are scanned for references instead of being parsed.
+   */
+  public boolean isReferenceScanning() {
+    return referenceScanning;
   }
 
   /**
@@ -246,11 +559,22 @@ public class MapStructureResourceBuilder implements IResourceBuilder {
       parserCreator = new SAXParserCreator();
     }
 
+    // Each thread that parses documents configures its parser once.
+    PooledParserCreator parsers = new PooledParserCreator(parserCreator);
+    DocumentReader reader = new DocumentReader(parsers, digestAlgorithm, referenceCache, referenceScanning);
+    ConcurrentTraversal traversal = null;
+    if (parallelism > 1 && map.isDITAResource() && resourceExists(map)) {
+      traversal = new ConcurrentTraversal(reader, parallelism);
+      traversal.submit(map);
+    }
+
     return new RootMapResource(
         map, 
         milestone,
         "", 
-        parserCreator, 
-        new HashSet<ReferencedResource>());
+        reader, 
+        parsers,
+        new HashSet<ReferencedResource>(),
+        traversal);
   }
 }
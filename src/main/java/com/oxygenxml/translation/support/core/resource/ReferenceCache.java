@@ -0,0 +1,227 @@
+package com.oxygenxml.translation.support.core.resource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
+
+/**
+ * Keeps on disk the references detected in the DITA documents, by the digests of their contents, so
+ * a document that didn't change is not parsed again. See {@link MapStructureResourceBuilder#setReferenceCache(ReferenceCache)}.
+ *
+ * The references are kept as written in the documents, so a cached entry is valid for any document with
+ * the same content, wherever it is, as long as its grammar is the same. The classification of the references
+ * can depend on the attributes defaulted by the grammar, so each entry records the identity of the grammar
+ * it was detected with and is used only for the same one. The content of the grammar itself is not hashed:
+ * after changing the DTDs or the catalogs, {@link #clear()} the cache.
+ *
+ * Each entry is a small file named after the digest. The entries are written atomically, so the cache can be 
+ * shared by several threads and processes. The entries not used for a while are removed by {@link #prune(long)}.
+ * The directory can also be deleted at any time.
+ */
+public class ReferenceCache {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(ReferenceCache.class.getName());
+
+  /**
+   * The version of the entry format.
+   */
+  private static final int VERSION = 2;
+
+  /**
+   * The last modification time of an entry is its last use, updated at most this often, in milliseconds.
+   */
+  private static final long TOUCH_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+  /**
+   * The directory of the entries.
+   */
+  private final File directory;
+
+  /**
+   * How many documents were found in the cache.
+   */
+  private final AtomicInteger hits = new AtomicInteger();
+
+  /**
+   * How many documents were not found in the cache.
+   */
+  private final AtomicInteger misses = new AtomicInteger();
+
+  /**
+   * Constructor.
+   *
+   * @param directory The directory of the entries. Created when the first entry is written.
+   */
+  public ReferenceCache(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return The directory of the entries.
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @return How many documents were found in the cache.
+   */
+  public int getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return How many documents were not found in the cache.
+   */
+  public int getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Reads the references of a document.
+   *
+   * @param algorithm The algorithm of the digest.
+   * @param digest The digest of the content of the document.
+   * @param grammar The identity of the grammar of the document, like its DOCTYPE public and system IDs.
+   *
+   * @return The references as written in the document, with <code>true</code> for the DITA ones, or
+   * <code>null</code> if the document is not in the cache. See {@link SaxContentHandler#getWrittenReferences()}.
+   */
+  public List<Map.Entry<String, Boolean>> get(DigestAlgorithm algorithm, String digest, String grammar) {
+    List<Map.Entry<String, Boolean>> references = null;
+    File file = getFile(algorithm, digest);
+    if (file.isFile()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        if (in.readInt() == VERSION && grammar.equals(in.readUTF())) {
+          int count = in.readInt();
+          List<Map.Entry<String, Boolean>> read = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            String reference = in.readUTF();
+            read.add(new AbstractMap.SimpleImmutableEntry<>(reference, in.readBoolean()));
+          }
+          references = read;
+        }
+      } catch (IOException e) {
+        // The document will be parsed and the entry written again.
+        logger.debug("Unable to read the cached references: " + file, e);
+      }
+    }
+    if (references != null) {
+      long now = System.currentTimeMillis();
+      if (now - file.lastModified() > TOUCH_INTERVAL) {
+        // Used, so it is not pruned.
+        file.setLastModified(now);
+      }
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+    }
+    return references;
+  }
+
+  /**
+   * Records the references of a document. Problems are logged, the document will be parsed again next time.
+   *
+   * @param algorithm The algorithm of the digest.
+   * @param digest The digest of the content of the document.
+   * @param grammar The identity of the grammar of the document, like its DOCTYPE public and system IDs.
+   * @param references The references as written in the document, with <code>true</code> for the DITA ones.
+   */
+  public void put(DigestAlgorithm algorithm, String digest, String grammar, 
+      List<Map.Entry<String, Boolean>> references) {
+    File file = getFile(algorithm, digest);
+    File parent = file.getParentFile();
+    parent.mkdirs();
+    File temp = null;
+    try {
+      temp = File.createTempFile(digest, ".tmp", parent);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+        out.writeInt(VERSION);
+        out.writeUTF(grammar);
+        out.writeInt(references.size());
+        for (Map.Entry<String, Boolean> reference : references) {
+          out.writeUTF(reference.getKey());
+          out.writeBoolean(reference.getValue());
+        }
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      logger.warn("Unable to cache the references: " + e.getMessage(), e);
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * Removes the entries that were not used for a while, and the temporary files left by the interrupted writes.
+   *
+   * @param maxAge How long an entry is kept after its last use, in milliseconds. The last use is known 
+   * within a day.
+   *
+   * @return How many files were removed.
+   */
+  public int prune(long maxAge) {
+    long oldest = System.currentTimeMillis() - maxAge;
+    int removed = 0;
+    if (directory.isDirectory()) {
+      try (Stream<Path> files = Files.walk(directory.toPath())) {
+        for (Iterator<Path> iterator = files.iterator(); iterator.hasNext();) {
+          File file = iterator.next().toFile();
+          if (file.isFile() && file.lastModified() < oldest && file.delete()) {
+            removed++;
+          }
+        }
+      } catch (IOException | UncheckedIOException e) {
+        logger.warn("Unable to prune the reference cache: " + e.getMessage(), e);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Removes all the entries. The documents will be parsed again.
+   *
+   * @throws IOException Unable to delete the directory of the entries.
+   */
+  public void clear() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  /**
+   * @param algorithm The algorithm of the digest.
+   * @param digest The digest of the content of a document.
+   *
+   * @return The file of the entry. The entries are spread in sub directories named after the first
+   * characters of the digests.
+   */
+  private File getFile(DigestAlgorithm algorithm, String digest) {
+    String prefix = digest.length() > 2 ? digest.substring(0, 2) : "_";
+    return new File(directory, algorithm.getName() + File.separator + prefix + File.separator + digest);
+  }
+}
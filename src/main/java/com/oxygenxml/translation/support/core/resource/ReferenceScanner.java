@@ -0,0 +1,232 @@
+package com.oxygenxml.translation.support.core.resource;
+
+import java.io.InputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Detects the references of a document like {@link SaxContentHandler}, but with a StAX reader that only
+ * looks at the attributes of the elements. The text is not reported and the DTD is never loaded.
+ *
+ * Without the DTD, the attributes it defaults are not seen. The "class" attribute, which tells the images
+ * apart, is usually one of them. When it is not written, the images are detected by the names of the
+ * standard DITA elements. A document with a reference on another element, without "class", "format"
+ * or an external "scope", can't be scanned and must be parsed. So must a document with an internal
+ * DTD subset, which might declare attributes or entities.
+ */
+public class ReferenceScanner {
+  /**
+   * The name of the attribute that represents a reference.
+   */
+  private static final String HREF = "href";
+  /**
+   * The name of the attribute that represents a content reference.
+   */
+  private static final String CONREF = "conref";
+  /**
+   * The name of the format attribute which tells if this is a reference to be collected or not.
+   */
+  private static final String FORMAT = "format";
+  /**
+   * The name of the "scope" attribute which tells if this is a reference to be collected or not.
+   */
+  private static final String SCOPE = "scope";
+  /**
+   * The name of the attribute that holds the DITA class of an element.
+   */
+  private static final String CLASS = "class";
+  /**
+   * The standard DITA elements that are images.
+   */
+  private static final Set<String> IMAGE_ELEMENTS = new HashSet<>(Arrays.asList("image", "hazardsymbol"));
+  /**
+   * The standard DITA elements that refer other resources, are not images and for which the DTD doesn't
+   * default a "format" that would exclude the reference.
+   */
+  private static final Set<String> REFERENCE_ELEMENTS = new HashSet<>(Arrays.asList(
+      // Maps
+      "topicref", "mapref", "keydef", "topicsetref", "anchorref",
+      // Bookmaps
+      "chapter", "appendix", "appendices", "part", "preface", "notices", "abbrevlist", "amendments",
+      "bibliolist", "bookabstract", "booklist", "colophon", "dedication", "draftintro", "figurelist",
+      "glossarylist", "indexlist", "tablelist", "toc", "trademarklist",
+      // Topics
+      "xref", "link", "longdescref", "longquoteref", "lq", "author", "publisher", "source"));
+
+  /**
+   * Creates the readers. Configured once, then only used to create readers, which is thread safe.
+   */
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  /**
+   * Private constructor.
+   */
+  private ReferenceScanner() {
+    // Only static methods.
+  }
+
+  /**
+   * @return A factory for readers that don't load the DTDs nor the external entities.
+   */
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    return factory;
+  }
+
+  /**
+   * Scans a document for references.
+   *
+   * @param in The content of the document. It is not closed.
+   * @param systemId The location of the document.
+   *
+   * @return The references as written in the document, without anchors, with <code>true</code> for the
+   * DITA ones, like {@link SaxContentHandler#getWrittenReferences()}. <code>null</code> if the document
+   * can't be scanned and must be parsed.
+   *
+   * @throws XMLStreamException The document is not well formed.
+   */
+  public static List<Map.Entry<String, Boolean>> scan(InputStream in, String systemId) throws XMLStreamException {
+    List<Map.Entry<String, Boolean>> references = new ArrayList<>();
+    XMLStreamReader reader = FACTORY.createXMLStreamReader(systemId, in);
+    try {
+      boolean hasGrammar = false;
+      boolean root = true;
+      while (references != null && reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.DTD) {
+          hasGrammar = true;
+          String doctype = reader.getText();
+          if (doctype.indexOf('[') != -1 || doctype.indexOf(']') != -1) {
+            // An internal subset. Some readers don't report all of it, but they keep its end.
+            references = null;
+          }
+        } else if (event == XMLStreamConstants.START_ELEMENT) {
+          if (root) {
+            root = false;
+            hasGrammar |= hasSchemaLocation(reader);
+          }
+          if (!addReferences(reader, hasGrammar, references)) {
+            references = null;
+          }
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return references;
+  }
+
+  /**
+   * Detects the references of the current element, the same way {@link SaxContentHandler} does.
+   *
+   * @param reader The reader, on a start element.
+   * @param hasGrammar <code>true</code> if the document has a grammar that might default attributes.
+   * @param references Receives the reference.
+   *
+   * @return <code>false</code> if the element refers a resource that can't be classified without the grammar.
+   */
+  private static boolean addReferences(XMLStreamReader reader, boolean hasGrammar,
+      List<Map.Entry<String, Boolean>> references) {
+    boolean classified = true;
+    String reference = null;
+    boolean isDITA = false;
+
+    String conref = getAttribute(reader, CONREF);
+    if (conref != null) {
+      reference = removeAnchor(conref);
+      isDITA = true;
+    }
+
+    String href = getAttribute(reader, HREF);
+    if (href != null) {
+      String format = getAttribute(reader, FORMAT);
+      String sourceClass = getAttribute(reader, CLASS);
+      if ("external".equals(getAttribute(reader, SCOPE))) {
+        // Not collected.
+      } else if (format != null) {
+        if ("dita".equals(format) || "ditamap".equals(format) || "".equals(format)) {
+          reference = removeAnchor(href);
+          isDITA = true;
+        }
+      } else if (sourceClass != null || !hasGrammar) {
+        boolean isImage = sourceClass != null
+            && (sourceClass.contains(" topic/image ") || sourceClass.contains(" topic/object "));
+        reference = removeAnchor(href);
+        isDITA = !isImage;
+      } else {
+        String name = reader.getLocalName();
+        if (IMAGE_ELEMENTS.contains(name) || REFERENCE_ELEMENTS.contains(name)) {
+          reference = removeAnchor(href);
+          isDITA = !IMAGE_ELEMENTS.contains(name);
+        } else {
+          // The grammar might give it a class or a format.
+          classified = false;
+        }
+      }
+    }
+
+    if (reference != null) {
+      references.add(new AbstractMap.SimpleImmutableEntry<>(reference, isDITA));
+    }
+    return classified;
+  }
+
+  /**
+   * @param reader The reader, on the root element.
+   *
+   * @return <code>true</code> if the root element refers an XML Schema.
+   */
+  private static boolean hasSchemaLocation(XMLStreamReader reader) {
+    boolean found = false;
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      if (XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI.equals(reader.getAttributeNamespace(i))) {
+        found = true;
+        break;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @param reader The reader, on a start element.
+   * @param name The name of an attribute without namespace.
+   *
+   * @return The value of the attribute, or <code>null</code> if it is not written.
+   */
+  private static String getAttribute(XMLStreamReader reader, String name) {
+    String value = null;
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String namespace = reader.getAttributeNamespace(i);
+      if ((namespace == null || namespace.isEmpty()) && name.equals(reader.getAttributeLocalName(i))) {
+        value = reader.getAttributeValue(i);
+        break;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @param reference A reference.
+   *
+   * @return The reference without the anchor.
+   */
+  private static String removeAnchor(String reference) {
+    int indexOf = reference.indexOf('#');
+    return indexOf != -1 ? reference.substring(0, indexOf) : reference;
+  }
+}
@@ -3,14 +3,27 @@ package com.oxygenxml.translation.support.core.resource;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
 import ro.sync.exml.workspace.api.PluginWorkspace;
 import ro.sync.exml.workspace.api.PluginWorkspaceProvider;
+import ro.sync.exml.workspace.api.options.WSOptionsStorage;
 
 /**
  * Creates various builders that pack resources into a ZIP. 
  */
 public class ResourceFactory {
   
+  /**
+   * The option that enables the reference cache in Oxygen: "true" or "false".
+   */
+  public static final String REFERENCE_CACHE_OPTION = "translation.package.builder.reference.cache";
+  
+  /**
+   * How long an entry of the reference cache is kept after its last use, in milliseconds.
+   */
+  private static final long REFERENCE_CACHE_MAX_AGE = TimeUnit.DAYS.toMillis(30);
+  
   /**
    * Singleton.
    */
@@ -21,6 +34,26 @@ public class ResourceFactory {
    */
   private DetectionType detectionType = DetectionType.FILE_SYSTEM;
   
+  /**
+   * How many documents are parsed at the same time when detecting the map structure.
+   */
+  private int parallelism = 1;
+  
+  /**
+   * The references of the documents parsed before. <code>null</code> to parse all the documents.
+   */
+  private ReferenceCache referenceCache;
+  
+  /**
+   * Where the reference cache is kept when it is enabled. <code>null</code> if there is no place for it.
+   */
+  private File referenceCacheDirectory;
+  
+  /**
+   * <code>true</code> to scan the documents for references instead of parsing them.
+   */
+  private boolean referenceScanning;
+  
   /**
    * Constructor.
    */
@@ -28,6 +61,16 @@ public class ResourceFactory {
     PluginWorkspace pluginWorkspace = PluginWorkspaceProvider.getPluginWorkspace();
     if (pluginWorkspace != null) {
       detectionType = DetectionType.MAP_STRUCTURE;
+      parallelism = Runtime.getRuntime().availableProcessors();
+      String preferencesDirectory = pluginWorkspace.getPreferencesDirectory();
+      if (preferencesDirectory != null) {
+        referenceCacheDirectory = 
+            new File(preferencesDirectory, "translationPackageBuilder" + File.separator + "references");
+      }
+      WSOptionsStorage optionsStorage = pluginWorkspace.getOptionsStorage();
+      if (optionsStorage != null) {
+        setReferenceCacheEnabled(Boolean.parseBoolean(optionsStorage.getOption(REFERENCE_CACHE_OPTION, "false")));
+      }
     }
   }
 
@@ -64,7 +107,11 @@ public class ResourceFactory {
     if (detectionType == DetectionType.FILE_SYSTEM) {
       builder = new FileSystemResourceBuilder();
     } else if (detectionType == DetectionType.MAP_STRUCTURE) {
-      builder = new MapStructureResourceBuilder();
+      MapStructureResourceBuilder mapBuilder = new MapStructureResourceBuilder();
+      mapBuilder.setParallelism(parallelism);
+      mapBuilder.setReferenceCache(referenceCache);
+      mapBuilder.setReferenceScanning(referenceScanning);
+      builder = mapBuilder;
     } else {
       throw new IllegalStateException("Unhandled detection type");
     }
@@ -72,6 +119,81 @@ public class ResourceFactory {
     return builder.wrap(new ReferencedResource(map, true), milestone);
   }
 
+  /**
+   * @param parallelism How many documents are parsed at the same time when detecting the map structure.
+   * See {@link MapStructureResourceBuilder#setParallelism(int)}.
+   */
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+  
+  /**
+   * @return How many documents are parsed at the same time when detecting the map structure.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @param referenceCache The references of the documents parsed before. <code>null</code> to parse all 
+   * the documents. See {@link MapStructureResourceBuilder#setReferenceCache(ReferenceCache)}.
+   */
+  public void setReferenceCache(ReferenceCache referenceCache) {
+    this.referenceCache = referenceCache;
+  }
+  
+  /**
+   * Enables the reference cache, in the preferences directory, or disables it. It is disabled by default.
+   * In Oxygen, it is enabled by the {@link #REFERENCE_CACHE_OPTION} option. When enabled, the entries 
+   * not used in the last 30 days are removed.
+   * 
+   * @param enabled <code>true</code> to reuse the references of the documents parsed before.
+   */
+  public void setReferenceCacheEnabled(boolean enabled) {
+    if (!enabled) {
+      referenceCache = null;
+    } else if (referenceCache == null && referenceCacheDirectory != null) {
+      setReferenceCacheDirectory(referenceCacheDirectory);
+    }
+  }
+  
+  /**
+   * Enables the reference cache in a given directory, or disables it. When enabled, the entries 
+   * not used in the last 30 days are removed.
+   * 
+   * @param directory The directory of the cache. <code>null</code> to parse all the documents.
+   */
+  public void setReferenceCacheDirectory(File directory) {
+    if (directory != null) {
+      referenceCache = new ReferenceCache(directory);
+      referenceCache.prune(REFERENCE_CACHE_MAX_AGE);
+    } else {
+      referenceCache = null;
+    }
+  }
+  
+  /**
+   * @return The references of the documents parsed before. <code>null</code> if there is no cache.
+   */
+  public ReferenceCache getReferenceCache() {
+    return referenceCache;
+  }
+
+  /**
+   * @param referenceScanning <code>true</code> to scan the documents for references instead of parsing them.
+   * See {@link MapStructureResourceBuilder#setReferenceScanning(boolean)}.
+   */
+  public void setReferenceScanning(boolean referenceScanning) {
+    this.referenceScanning = referenceScanning;
+  }
+  
+  /**
+   * @return <code>true</code> if the documents are scanned for references instead of being parsed.
+   */
+  public boolean isReferenceScanning() {
+    return referenceScanning;
+  }
+
   /**
    * @param detectionType Detection type for the target resources. {@link DetectionType}
    */
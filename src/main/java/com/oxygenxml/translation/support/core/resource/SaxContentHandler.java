@@ -1,7 +1,11 @@
 package com.oxygenxml.translation.support.core.resource;
 
 import java.net.URL;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.log4j.Logger;
 import org.xml.sax.Attributes;
@@ -49,6 +53,11 @@ public class SaxContentHandler extends DefaultHandler {
    * The detected references.
    */
   private Set<ReferencedResource> ditamapHrefs;
+  /**
+   * The detected references as written in the document, without anchors, with <code>true</code> for 
+   * the DITA ones. In the order in which they were detected.
+   */
+  private List<Map.Entry<String, Boolean>> writtenReferences = new ArrayList<>();
   /**
    * Base URL for resolvinf relative references.
    */
@@ -61,6 +70,38 @@ public class SaxContentHandler extends DefaultHandler {
     return ditamapHrefs;
   }
   
+  /**
+   * The references as written in the document depend only on its content. Resolving them against the 
+   * location of the document gives the same references as {@link #getDitaMapHrefs()}, see 
+   * {@link #resolve(URL, List)}.
+   * 
+   * @return The detected references, without anchors, with <code>true</code> for the DITA ones. 
+   * In the order in which they were detected.
+   */
+  public List<Map.Entry<String, Boolean>> getWrittenReferences() {
+    return writtenReferences;
+  }
+  
+  /**
+   * Resolves the references written in a document, the same way they are resolved while parsing it.
+   * 
+   * @param baseUrl The location of the document.
+   * @param writtenReferences The references as written in the document, without anchors, with 
+   * <code>true</code> for the DITA ones. See {@link #getWrittenReferences()}.
+   * 
+   * @return The referenced resources.
+   */
+  public static Set<ReferencedResource> resolve(URL baseUrl, List<Map.Entry<String, Boolean>> writtenReferences) {
+    Set<ReferencedResource> references = new LinkedHashSet<>();
+    for (Map.Entry<String, Boolean> reference : writtenReferences) {
+      URL location = URLUtil.resolveRelativeSystemIDs(baseUrl, reference.getKey());
+      if (location != null) {
+        references.add(new ReferencedResource(location, reference.getValue()));
+      }
+    }
+    return references;
+  }
+  
   /**
    * Constructor.
    * 
@@ -78,11 +119,13 @@ public class SaxContentHandler extends DefaultHandler {
   public void startElement(String namespace, String localName, String qName, Attributes attributes) /*NOSONAR*/
       throws SAXException {
 
+    String reference = null;
     URL location = null;
     boolean isDITA = false;
 
     if (attributes.getValue(CONREF) != null) {
-      location = makeAbsoluteURL(attributes, CONREF);
+      reference = getReference(attributes, CONREF);
+      location = makeAbsoluteURL(reference);
       isDITA = true;
       if (logger.isDebugEnabled()) {
         logger.debug("CONREF: " + location);
@@ -104,7 +147,8 @@ public class SaxContentHandler extends DefaultHandler {
 
         String format = attributes.getValue(FORMAT);
         if (FORMAT_DITA.equals(format) || FORMAT_DITAMAP.equals(format) || "".equals(format)) {
-          location = makeAbsoluteURL(attributes, HREF);
+          reference = getReference(attributes, HREF);
+          location = makeAbsoluteURL(reference);
           isDITA = true;
           if (logger.isDebugEnabled()) {
             logger.debug("REFERNCE WITH DITA FORMAT: " + location);
@@ -117,7 +161,8 @@ public class SaxContentHandler extends DefaultHandler {
         if (sourceClass != null) {
           isImage = sourceClass.contains(" topic/image ") || sourceClass.contains(" topic/object ");
         }
-        location = makeAbsoluteURL(attributes, HREF);
+        reference = getReference(attributes, HREF);
+        location = makeAbsoluteURL(reference);
         isDITA = !isImage;
 
         if (logger.isDebugEnabled()) {
@@ -129,19 +174,20 @@ public class SaxContentHandler extends DefaultHandler {
     if (location != null) {
       ReferencedResource referencedResource = new ReferencedResource(location, isDITA);
       ditamapHrefs.add(referencedResource);
+      writtenReferences.add(new AbstractMap.SimpleImmutableEntry<>(reference, isDITA));
     }
 
   }
   
   /**
-   * Retrieves the absolute URL from a href attribute. All anchors are removed.
+   * Retrieves the reference from a href attribute. All anchors are removed.
    * 
    * @param attributes  The list of attributes of the current element.
    * @param attributeName The attribute which contains a reference.
    * 
-   * @return The absolute URL. Anchors are removed.
+   * @return The reference, as written. Anchors are removed.
    */
-  private URL makeAbsoluteURL(Attributes attributes, String attributeName) {
+  private static String getReference(Attributes attributes, String attributeName) {
     String href = attributes.getValue(attributeName);
     int indexOf = href.indexOf('#');
     // An anchor exist..somewhere in the relative path.
@@ -149,7 +195,17 @@ public class SaxContentHandler extends DefaultHandler {
       // The anchor should be dropped here....
       href = href.substring(0, indexOf);
     }
-
+    return href;
+  }
+  
+  /**
+   * Retrieves the absolute URL of a reference.
+   * 
+   * @param href The reference, without anchor.
+   * 
+   * @return The absolute URL.
+   */
+  private URL makeAbsoluteURL(String href) {
     return URLUtil.resolveRelativeSystemIDs(baseUrl, href);
   }
 }
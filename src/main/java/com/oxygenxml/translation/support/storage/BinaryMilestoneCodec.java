@@ -0,0 +1,367 @@
+package com.oxygenxml.translation.support.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes milestones in a compact binary format:
+ * 
+ * <pre>
+ * magic        4 bytes: "TPBM"
+ * version      1 byte
+ * date         long, milliseconds, -1 if not set
+ * algorithm    UTF string, empty for MD5
+ * rootFolder   UTF string, empty if not set
+ * topLocation  UTF string, empty if not set, since version 2
+ * count        varint
+ * entries, sorted by relative path:
+ *   shared     varint, bytes shared with the previous relative path (UTF-8)
+ *   suffix     varint length + UTF-8 bytes
+ *   digest     varint length + raw bytes, length 0 if not set
+ *   flags      1 byte: 1 = size, 2 = last modified, 4 = file key
+ *   size       varlong, if flagged
+ *   modified   long, if flagged
+ *   fileKey    UTF string, if flagged
+ * </pre>
+ * 
+ * The entries are loaded in the relative paths order.
+ */
+public class BinaryMilestoneCodec {
+  
+  /**
+   * The first bytes of a binary milestone.
+   */
+  private static final byte[] MAGIC = {'T', 'P', 'B', 'M'};
+  
+  /**
+   * The current version of the format.
+   */
+  private static final int VERSION = 2;
+  
+  private static final int FLAG_SIZE = 1;
+  private static final int FLAG_LAST_MODIFIED = 2;
+  private static final int FLAG_FILE_KEY = 4;
+  
+  /**
+   * Private constructor.
+   */
+  private BinaryMilestoneCodec() {
+    // Avoid instantiation.
+  }
+  
+  /**
+   * Checks if a file is a binary milestone.
+   * 
+   * @param milestoneFile The milestone file.
+   * 
+   * @return <code>true</code> if the file starts with the binary milestone signature.
+   * 
+   * @throws IOException Problems reading the file.
+   */
+  public static boolean isBinary(File milestoneFile) throws IOException {
+    byte[] start = new byte[MAGIC.length];
+    try (InputStream is = new FileInputStream(milestoneFile)) {
+      int read = 0;
+      while (read < start.length) {
+        int count = is.read(start, read, start.length - read);
+        if (count == -1) {
+          return false;
+        }
+        read += count;
+      }
+    }
+    return Arrays.equals(MAGIC, start);
+  }
+  
+  /**
+   * Saves a milestone.
+   * 
+   * @param info The milestone content.
+   * @param milestoneFile The file where to save it.
+   * 
+   * @throws IOException Problems writing the file.
+   */
+  public static void write(InfoResources info, File milestoneFile) throws IOException {
+    List<ResourceInfo> entries = info.getList() != null ? new ArrayList<>(info.getList()) : new ArrayList<>();
+    entries.sort(Comparator.comparing(ResourceInfo::getRelativePath));
+    
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(milestoneFile), 64 * 1024))) {
+      out.write(MAGIC);
+      out.writeByte(VERSION);
+      out.writeLong(info.getMilestoneCreation() != null ? info.getMilestoneCreation().getTime() : -1);
+      out.writeUTF(info.getAlgorithm() != null ? info.getAlgorithm() : "");
+      out.writeUTF(info.getRootFolder() != null ? info.getRootFolder().getPath() : "");
+      out.writeUTF(info.getTopLocation() != null ? info.getTopLocation() : "");
+      writeVarLong(out, entries.size());
+      
+      byte[] previous = new byte[0];
+      for (ResourceInfo entry : entries) {
+        byte[] path = entry.getRelativePath().getBytes(StandardCharsets.UTF_8);
+        int shared = sharedPrefix(previous, path);
+        writeVarLong(out, shared);
+        writeVarLong(out, path.length - shared);
+        out.write(path, shared, path.length - shared);
+        previous = path;
+        
+        byte[] digest = entry.getMd5() != null ? fromHex(entry.getMd5()) : new byte[0];
+        writeVarLong(out, digest.length);
+        out.write(digest);
+        
+        int flags = (entry.getSize() != null ? FLAG_SIZE : 0)
+            | (entry.getLastModified() != null ? FLAG_LAST_MODIFIED : 0)
+            | (entry.getFileKey() != null ? FLAG_FILE_KEY : 0);
+        out.writeByte(flags);
+        if (entry.getSize() != null) {
+          writeVarLong(out, entry.getSize());
+        }
+        if (entry.getLastModified() != null) {
+          out.writeLong(entry.getLastModified());
+        }
+        if (entry.getFileKey() != null) {
+          out.writeUTF(entry.getFileKey());
+        }
+      }
+    }
+  }
+  
+  /**
+   * Loads a milestone.
+   * 
+   * @param milestoneFile The milestone file.
+   * 
+   * @return The milestone content.
+   * 
+   * @throws IOException Problems reading the file or the file is not a binary milestone.
+   */
+  public static InfoResources read(File milestoneFile) throws IOException {
+    List<ResourceInfo> entries = new ArrayList<>();
+    InfoResources info = read(milestoneFile, entries::add);
+    info.setList(entries);
+    return info;
+  }
+  
+  /**
+   * Loads a milestone, passing each entry to a consumer as soon as it is decoded.
+   * 
+   * @param milestoneFile The milestone file.
+   * @param consumer Receives the entries, in the relative paths order.
+   * 
+   * @return The milestone information, without entries.
+   * 
+   * @throws IOException Problems reading the file or the file is not a binary milestone.
+   */
+  public static InfoResources read(File milestoneFile, Consumer<ResourceInfo> consumer) throws IOException {
+    try (DataInputStream in = open(milestoneFile)) {
+      InfoResources info = readHeader(in, milestoneFile);
+      
+      int count = (int) readVarLong(in);
+      byte[] path = new byte[256];
+      for (int i = 0; i < count; i++) {
+        int shared = (int) readVarLong(in);
+        int suffix = (int) readVarLong(in);
+        if (shared + suffix > path.length) {
+          path = Arrays.copyOf(path, Math.max(path.length * 2, shared + suffix));
+        }
+        // The shared prefix is already in the buffer, from the previous path.
+        in.readFully(path, shared, suffix);
+        ResourceInfo entry = new ResourceInfo(new String(path, 0, shared + suffix, StandardCharsets.UTF_8));
+        
+        byte[] digest = new byte[(int) readVarLong(in)];
+        in.readFully(digest);
+        if (digest.length > 0) {
+          entry.setMd5(toHex(digest));
+        }
+        
+        int flags = in.readUnsignedByte();
+        if ((flags & FLAG_SIZE) != 0) {
+          entry.setSize(readVarLong(in));
+        }
+        if ((flags & FLAG_LAST_MODIFIED) != 0) {
+          entry.setLastModified(in.readLong());
+        }
+        if ((flags & FLAG_FILE_KEY) != 0) {
+          entry.setFileKey(in.readUTF());
+        }
+        consumer.accept(entry);
+      }
+      
+      return info;
+    }
+  }
+  
+  /**
+   * Reads the creation date of a milestone, without reading the entries.
+   * 
+   * @param milestoneFile The milestone file.
+   * 
+   * @return The creation date or <code>null</code>.
+   * 
+   * @throws IOException Problems reading the file or the file is not a binary milestone.
+   */
+  public static Date readCreationDate(File milestoneFile) throws IOException {
+    return readHeader(milestoneFile).getMilestoneCreation();
+  }
+  
+  /**
+   * Reads the creation date and the digest algorithm of a milestone, without reading the entries.
+   * 
+   * @param milestoneFile The milestone file.
+   * 
+   * @return The milestone information, without entries.
+   * 
+   * @throws IOException Problems reading the file or the file is not a binary milestone.
+   */
+  public static InfoResources readHeader(File milestoneFile) throws IOException {
+    try (DataInputStream in = open(milestoneFile)) {
+      return readHeader(in, milestoneFile);
+    }
+  }
+  
+  /**
+   * Opens a milestone file for reading.
+   */
+  private static DataInputStream open(File milestoneFile) throws IOException {
+    return new DataInputStream(new BufferedInputStream(new FileInputStream(milestoneFile), 64 * 1024));
+  }
+  
+  /**
+   * Reads the header of a milestone.
+   * 
+   * @param in The stream.
+   * @param milestoneFile The milestone file, for error reporting.
+   * 
+   * @return The milestone information, without entries.
+   * 
+   * @throws IOException The file is not a binary milestone or it has an unsupported version.
+   */
+  private static InfoResources readHeader(DataInputStream in, File milestoneFile) throws IOException {
+    byte[] magic = new byte[MAGIC.length];
+    try {
+      in.readFully(magic);
+    } catch (EOFException e) {
+      // Handled below.
+    }
+    if (!Arrays.equals(MAGIC, magic)) {
+      throw new IOException("Not a binary milestone: " + milestoneFile.getAbsolutePath());
+    }
+    int version = in.readUnsignedByte();
+    if (version < 1 || version > VERSION) {
+      throw new IOException("Unsupported milestone version " + version + ": " + milestoneFile.getAbsolutePath());
+    }
+    
+    InfoResources info = new InfoResources();
+    long date = in.readLong();
+    if (date != -1) {
+      info.setMilestoneCreation(new Date(date));
+    }
+    String algorithm = in.readUTF();
+    if (!algorithm.isEmpty()) {
+      info.setAlgorithm(algorithm);
+    }
+    String rootFolder = in.readUTF();
+    if (!rootFolder.isEmpty()) {
+      info.setRootFolder(new File(rootFolder));
+    }
+    if (version >= 2) {
+      String topLocation = in.readUTF();
+      if (!topLocation.isEmpty()) {
+        info.setTopLocation(topLocation);
+      }
+    }
+    
+    return info;
+  }
+  
+  /**
+   * @return How many bytes the two arrays have in common at the start.
+   */
+  private static int sharedPrefix(byte[] a, byte[] b) {
+    int max = Math.min(a.length, b.length);
+    int i = 0;
+    while (i < max && a[i] == b[i]) {
+      i++;
+    }
+    return i;
+  }
+  
+  /**
+   * Writes a non negative value on 7 bits groups, the least significant first.
+   */
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+  
+  /**
+   * Reads a value written by {@link #writeVarLong(DataOutputStream, long)}.
+   */
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    int shift = 0;
+    int b;
+    do {
+      if (shift > 63) {
+        throw new IOException("Malformed milestone: variable length value too long");
+      }
+      b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+  
+  /**
+   * Converts a hexadecimal digest to bytes.
+   * 
+   * @param hex The hexadecimal digest.
+   * 
+   * @return The raw bytes.
+   * 
+   * @throws IOException The digest is not a hexadecimal string.
+   */
+  private static byte[] fromHex(String hex) throws IOException {
+    if (hex.length() % 2 != 0) {
+      throw new IOException("Not a hexadecimal digest: " + hex);
+    }
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      int high = Character.digit(hex.charAt(2 * i), 16);
+      int low = Character.digit(hex.charAt(2 * i + 1), 16);
+      if (high == -1 || low == -1) {
+        throw new IOException("Not a hexadecimal digest: " + hex);
+      }
+      bytes[i] = (byte) (high << 4 | low);
+    }
+    return bytes;
+  }
+  
+  /**
+   * Converts raw bytes to a lowercase hexadecimal string.
+   */
+  private static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+      chars[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+    }
+    return new String(chars);
+  }
+}
@@ -29,6 +29,35 @@ public class InfoResources {
   @XmlAttribute(name = "rootFolder")
   private File rootFolder;
   
+  /**
+   * The algorithm that computed the digests. <code>null</code> (not recorded) means MD5.
+   */
+  @XmlAttribute(name = "algorithm")
+  private String algorithm;
+  
+  /**
+   * The common ancestor of the resources, relative to the folder of the root map, like "../".
+   * <code>null</code> if not recorded.
+   */
+  @XmlAttribute(name = "topLocation")
+  private String topLocation;
+  
+  public String getTopLocation() {
+    return topLocation;
+  }
+
+  public void setTopLocation(String topLocation) {
+    this.topLocation = topLocation;
+  }
+  
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  public void setAlgorithm(String algorithm) {
+    this.algorithm = algorithm;
+  }
+  
   
   public File getRootFolder() {
     return rootFolder;
@@ -0,0 +1,16 @@
+package com.oxygenxml.translation.support.storage;
+
+/**
+ * The formats in which a milestone can be saved. When loading, the format is detected automatically.
+ */
+public enum MilestoneFormat {
+  /**
+   * The XML format, readable by all the versions.
+   */
+  XML,
+  /**
+   * A compact binary format, faster to save and to load for large maps. 
+   * See {@link BinaryMilestoneCodec}.
+   */
+  BINARY
+}
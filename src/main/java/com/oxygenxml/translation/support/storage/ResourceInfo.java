@@ -12,7 +12,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 @XmlAccessorType (XmlAccessType.FIELD)
 public class ResourceInfo {
   /**
-	 * md5 The unique generated hash.
+	 * md5 The unique generated hash. Computed with the algorithm recorded on the milestone, MD5 by default.
 	 */
 	@XmlElement(name = "md5")
 	private String md5;
@@ -28,6 +28,26 @@ public class ResourceInfo {
 	@XmlElement(name = "relativePath")
 	private String relativePath;
 	
+	/**
+	 * size The size of the file, in bytes. Recorded only when the file attributes are trusted.
+	 */
+	@XmlElement(name = "size")
+	private Long size;
+	
+	/**
+	 * lastModified The last modified time of the file, in milliseconds. Recorded only when the file 
+	 * attributes are trusted.
+	 */
+	@XmlElement(name = "lastModified")
+	private Long lastModified;
+	
+	/**
+	 * fileKey An identifier of the file on the file system (like the device and the inode). Recorded 
+	 * only when the file attributes are trusted and the file system provides it.
+	 */
+	@XmlElement(name = "fileKey")
+	private String fileKey;
+	
 	public ResourceInfo() {}
 	
 	public ResourceInfo(String md5, String relativePath){
@@ -57,6 +77,58 @@ public class ResourceInfo {
 	public void setRelativePath(String relativePath) {
 		this.relativePath = relativePath;
 	}
+	
+	public Long getSize() {
+	  return size;
+	}
+	
+	public void setSize(Long size) {
+	  this.size = size;
+	}
+	
+	public Long getLastModified() {
+	  return lastModified;
+	}
+	
+	public void setLastModified(Long lastModified) {
+	  this.lastModified = lastModified;
+	}
+	
+	public String getFileKey() {
+	  return fileKey;
+	}
+	
+	public void setFileKey(String fileKey) {
+	  this.fileKey = fileKey;
+	}
+	
+	/**
+	 * Copies the file attributes (size, last modified time and file key) from another object.
+	 * 
+	 * @param other The object to copy from.
+	 */
+	public void copyFileAttributes(ResourceInfo other) {
+	  this.size = other.size;
+	  this.lastModified = other.lastModified;
+	  this.fileKey = other.fileKey;
+	}
+	
+	/**
+	 * Checks if the recorded file attributes say that the file is the same. The file key is compared only
+	 * if both objects have one.
+	 * 
+	 * @param other The object to compare with.
+	 * 
+	 * @return <code>true</code> if both objects have the same size and last modified time.
+	 */
+	public boolean hasSameFileAttributes(ResourceInfo other) {
+	  boolean same = size != null && size.equals(other.size) 
+	      && lastModified != null && lastModified.equals(other.lastModified);
+	  if (same && fileKey != null && other.fileKey != null) {
+	    same = fileKey.equals(other.fileKey);
+	  }
+	  return same;
+	}
 
 	@Override
 	public String toString() {
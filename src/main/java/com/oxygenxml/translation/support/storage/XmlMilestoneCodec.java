@@ -0,0 +1,403 @@
+package com.oxygenxml.translation.support.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Reads and writes the XML milestones with StAX, one entry at a time, without building the whole 
+ * document in memory. The output is the same as the one previously produced through JAXB:
+ * 
+ * <pre>
+ * &lt;resources date="..." algorithm="..." topLocation="..."&gt;
+ *     &lt;info-resource&gt;
+ *         &lt;md5&gt;...&lt;/md5&gt;
+ *         &lt;relativePath&gt;...&lt;/relativePath&gt;
+ *     &lt;/info-resource&gt;
+ * &lt;/resources&gt;
+ * </pre>
+ */
+public class XmlMilestoneCodec {
+  
+  private static final String RESOURCES = "resources";
+  private static final String DATE = "date";
+  private static final String ROOT_FOLDER = "rootFolder";
+  private static final String ALGORITHM = "algorithm";
+  private static final String TOP_LOCATION = "topLocation";
+  private static final String INFO_RESOURCE = "info-resource";
+  private static final String MD5 = "md5";
+  private static final String RELATIVE_PATH = "relativePath";
+  private static final String SIZE = "size";
+  private static final String LAST_MODIFIED = "lastModified";
+  private static final String FILE_KEY = "fileKey";
+  
+  /**
+   * The factories are thread safe once configured.
+   */
+  private static final XMLInputFactory INPUT_FACTORY;
+  static {
+    INPUT_FACTORY = XMLInputFactory.newInstance();
+    INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+  
+  /**
+   * Private constructor.
+   */
+  private XmlMilestoneCodec() {
+    // Avoid instantiation.
+  }
+  
+  /**
+   * Loads a milestone.
+   * 
+   * @param milestoneFile The milestone file.
+   * 
+   * @return The milestone content.
+   * 
+   * @throws IOException Problems reading or parsing the file.
+   */
+  public static InfoResources read(File milestoneFile) throws IOException {
+    List<ResourceInfo> entries = new ArrayList<>();
+    InfoResources info = read(milestoneFile, entries::add);
+    info.setList(entries);
+    return info;
+  }
+  
+  /**
+   * Loads a milestone, passing each entry to a consumer as soon as it is parsed.
+   * 
+   * @param milestoneFile The milestone file.
+   * @param consumer Receives the entries, in the document order.
+   * 
+   * @return The milestone information, without entries.
+   * 
+   * @throws IOException Problems reading or parsing the file.
+   */
+  public static InfoResources read(File milestoneFile, Consumer<ResourceInfo> consumer) throws IOException {
+    try (InputStream is = new FileInputStream(milestoneFile)) {
+      XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(is);
+      try {
+        InfoResources info = readRoot(reader, milestoneFile);
+        
+        while (reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.START_ELEMENT && INFO_RESOURCE.equals(reader.getLocalName())) {
+            consumer.accept(readEntry(reader));
+          }
+        }
+        return info;
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Unable to parse the milestone " + milestoneFile.getAbsolutePath() + ": " + e.getMessage(), e);
+    }
+  }
+  
+  /**
+   * Reads the creation date of a milestone. Only the root element is parsed.
+   * 
+   * @param milestoneFile The milestone file.
+   * 
+   * @return The creation date or <code>null</code>.
+   * 
+   * @throws IOException Problems reading or parsing the file.
+   */
+  public static Date readCreationDate(File milestoneFile) throws IOException {
+    return readHeader(milestoneFile).getMilestoneCreation();
+  }
+  
+  /**
+   * Reads the creation date and the digest algorithm of a milestone. Only the root element is parsed.
+   * 
+   * @param milestoneFile The milestone file.
+   * 
+   * @return The milestone information, without entries.
+   * 
+   * @throws IOException Problems reading or parsing the file.
+   */
+  public static InfoResources readHeader(File milestoneFile) throws IOException {
+    try (InputStream is = new FileInputStream(milestoneFile)) {
+      XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(is);
+      try {
+        return readRoot(reader, milestoneFile);
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Unable to parse the milestone " + milestoneFile.getAbsolutePath() + ": " + e.getMessage(), e);
+    }
+  }
+  
+  /**
+   * Advances to the root element and reads its attributes.
+   */
+  private static InfoResources readRoot(XMLStreamReader reader, File milestoneFile) throws XMLStreamException, IOException {
+    while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+      // Skip the prolog.
+    }
+    if (!reader.isStartElement() || !RESOURCES.equals(reader.getLocalName())) {
+      throw new IOException("Not a milestone: " + milestoneFile.getAbsolutePath());
+    }
+    
+    InfoResources info = new InfoResources();
+    String date = reader.getAttributeValue(null, DATE);
+    if (date != null) {
+      info.setMilestoneCreation(parseDate(date));
+    }
+    String rootFolder = reader.getAttributeValue(null, ROOT_FOLDER);
+    if (rootFolder != null) {
+      info.setRootFolder(new File(rootFolder));
+    }
+    info.setAlgorithm(reader.getAttributeValue(null, ALGORITHM));
+    info.setTopLocation(reader.getAttributeValue(null, TOP_LOCATION));
+    
+    return info;
+  }
+  
+  /**
+   * Reads an entry. The reader is positioned on the entry start and is left on its end.
+   */
+  private static ResourceInfo readEntry(XMLStreamReader reader) throws XMLStreamException {
+    ResourceInfo entry = new ResourceInfo();
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      String name = reader.getLocalName();
+      String value = reader.getElementText().trim();
+      if (MD5.equals(name)) {
+        entry.setMd5(value);
+      } else if (RELATIVE_PATH.equals(name)) {
+        entry.setRelativePath(value);
+      } else if (SIZE.equals(name)) {
+        entry.setSize(Long.valueOf(value));
+      } else if (LAST_MODIFIED.equals(name)) {
+        entry.setLastModified(Long.valueOf(value));
+      } else if (FILE_KEY.equals(name)) {
+        entry.setFileKey(value);
+      }
+    }
+    return entry;
+  }
+  
+  /**
+   * Saves a milestone.
+   * 
+   * @param info The milestone content.
+   * @param milestoneFile The file where to save it.
+   * 
+   * @throws IOException Problems writing the file.
+   */
+  public static void write(InfoResources info, File milestoneFile) throws IOException {
+    try (MilestoneWriter writer = new MilestoneWriter(info, milestoneFile)) {
+      if (info.getList() != null) {
+        for (ResourceInfo entry : info.getList()) {
+          writer.write(entry);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Writes the entries of a milestone one at a time, without building a document in memory. 
+   * 
+   * The root element is written before the first entry, with the attributes of the milestone information. 
+   * These must be known by then: the top location, for example, is only known after the walk, so the walk 
+   * results are collected in a list before the milestone is written.
+   */
+  public static class MilestoneWriter implements Closeable {
+    /**
+     * The underlying writer.
+     */
+    private final Writer out;
+    /**
+     * The StAX writer.
+     */
+    private final XMLStreamWriter writer;
+    /**
+     * The milestone information, for the root element.
+     */
+    private final InfoResources info;
+    /**
+     * <code>true</code> after the root start tag was written.
+     */
+    private boolean rootStarted = false;
+    
+    /**
+     * Constructor.
+     * 
+     * @param info The milestone information for the root element. The entries are not written.
+     * @param milestoneFile The file where to save the milestone.
+     * 
+     * @throws IOException Problems creating the file.
+     */
+    public MilestoneWriter(InfoResources info, File milestoneFile) throws IOException {
+      this.info = info;
+      out = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(milestoneFile), 64 * 1024), StandardCharsets.UTF_8);
+      try {
+        // Same declaration as the JAXB one.
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        writer = OUTPUT_FACTORY.createXMLStreamWriter(out);
+      } catch (XMLStreamException | IOException e) {
+        out.close();
+        throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+      }
+    }
+    
+    /**
+     * Writes the root element start tag.
+     * 
+     * @param empty <code>true</code> if the root element has no entries.
+     */
+    private void writeRoot(boolean empty) throws XMLStreamException {
+      if (empty) {
+        writer.writeEmptyElement(RESOURCES);
+      } else {
+        writer.writeStartElement(RESOURCES);
+      }
+      if (info.getMilestoneCreation() != null) {
+        writer.writeAttribute(DATE, formatDate(info.getMilestoneCreation()));
+      }
+      if (info.getRootFolder() != null) {
+        writer.writeAttribute(ROOT_FOLDER, info.getRootFolder().getPath());
+      }
+      if (info.getAlgorithm() != null) {
+        writer.writeAttribute(ALGORITHM, info.getAlgorithm());
+      }
+      if (info.getTopLocation() != null) {
+        writer.writeAttribute(TOP_LOCATION, info.getTopLocation());
+      }
+      rootStarted = true;
+    }
+    
+    /**
+     * Writes an entry.
+     * 
+     * @param entry The entry.
+     * 
+     * @throws IOException Problems writing the entry.
+     */
+    public void write(ResourceInfo entry) throws IOException {
+      try {
+        if (!rootStarted) {
+          writeRoot(false);
+        }
+        writer.writeCharacters("\n    ");
+        writer.writeStartElement(INFO_RESOURCE);
+        writeElement(MD5, entry.getMd5());
+        writeElement(RELATIVE_PATH, entry.getRelativePath());
+        writeElement(SIZE, entry.getSize());
+        writeElement(LAST_MODIFIED, entry.getLastModified());
+        writeElement(FILE_KEY, entry.getFileKey());
+        writer.writeCharacters("\n    ");
+        writer.writeEndElement();
+      } catch (XMLStreamException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+    }
+    
+    /**
+     * Writes an entry property, if set.
+     */
+    private void writeElement(String name, Object value) throws XMLStreamException {
+      if (value != null) {
+        writer.writeCharacters("\n        ");
+        writer.writeStartElement(name);
+        writer.writeCharacters(value.toString());
+        writer.writeEndElement();
+      }
+    }
+
+    /**
+     * Closes the root element and the file.
+     * 
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+      try {
+        if (rootStarted) {
+          writer.writeCharacters("\n");
+          writer.writeEndElement();
+        } else {
+          writeRoot(true);
+        }
+        writer.writeEndDocument();
+        writer.close();
+        out.write("\n");
+      } catch (XMLStreamException e) {
+        throw new IOException(e.getMessage(), e);
+      } finally {
+        out.close();
+      }
+    }
+  }
+  
+  /**
+   * Formats a date as an XML Schema dateTime, like JAXB does: the milliseconds are written only if 
+   * not 0 and the time zone is the default one.
+   * 
+   * @param date The date.
+   * 
+   * @return The formatted date.
+   */
+  static String formatDate(Date date) {
+    Calendar cal = new GregorianCalendar();
+    cal.setTime(date);
+    StringBuilder b = new StringBuilder(29);
+    b.append(String.format("%04d-%02d-%02dT%02d:%02d:%02d", 
+        cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH),
+        cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND)));
+    int millis = cal.get(Calendar.MILLISECOND);
+    if (millis != 0) {
+      b.append(String.format(".%03d", millis));
+    }
+    int offset = (cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET)) / (60 * 1000);
+    if (offset == 0) {
+      b.append('Z');
+    } else {
+      b.append(offset < 0 ? '-' : '+');
+      offset = Math.abs(offset);
+      b.append(String.format("%02d:%02d", offset / 60, offset % 60));
+    }
+    return b.toString();
+  }
+  
+  /**
+   * Parses an XML Schema dateTime.
+   * 
+   * @param date The formatted date.
+   * 
+   * @return The date.
+   * 
+   * @throws IOException The date is not valid.
+   */
+  static Date parseDate(String date) throws IOException {
+    try {
+      return DatatypeFactory.newInstance().newXMLGregorianCalendar(date.trim()).toGregorianCalendar().getTime();
+    } catch (DatatypeConfigurationException | IllegalArgumentException e) {
+      throw new IOException("Invalid milestone date: " + date, e);
+    }
+  }
+}
@@ -13,6 +13,10 @@ class CheckboxTableItem {
    *  The checkbox on the first column.
    */
   private boolean isSelected = false;
+  /**
+   *  How the file compares with the one sent, on the third column. Empty if unknown.
+   */
+  private String status = "";
 
   /**
    * Constructs a new item that will be added in the checkbox table.
@@ -25,6 +29,22 @@ class CheckboxTableItem {
     this.relativePath = text;
   }
 
+  /**
+   * Constructs a new item that will be added in the checkbox table.
+   * 
+   * @param isSelected   <code>true</code> if the item will be selected in the table.
+   * @param text          Value to present on the table.
+   * @param status        How the file compares with the one sent. Empty if unknown.
+   */
+  public CheckboxTableItem(boolean isSelected, String text, String status){
+    this(isSelected, text);
+    this.status = status;
+  }
+
+  public String getStatus() {
+     return status;
+  }
+
   public boolean isSelected() {
      return isSelected;
   }
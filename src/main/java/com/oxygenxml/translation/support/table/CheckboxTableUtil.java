@@ -1,17 +1,25 @@
 package com.oxygenxml.translation.support.table;
 
 import com.oxygenxml.translation.support.util.ApplyPackageUtil;
+import com.oxygenxml.translation.support.zip.PackageManifest;
+import com.oxygenxml.translation.ui.Tags;
 import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
+import ro.sync.exml.workspace.api.PluginResourceBundle;
+import ro.sync.exml.workspace.api.PluginWorkspaceProvider;
+import ro.sync.exml.workspace.api.standalone.StandalonePluginWorkspace;
 import ro.sync.util.URLUtil;
 
 /**
@@ -56,6 +64,7 @@ public class CheckboxTableUtil {
     resourcesTable.setTableHeader(null);
     resourcesTable.setShowGrid(false);
     resourcesTable.getColumnModel().getColumn(ResourcesTableModel.CHECK_BOX).setMaxWidth(40);
+    resourcesTable.getColumnModel().getColumn(ResourcesTableModel.CHANGE_STATUS).setMaxWidth(100);
     resourcesTable.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
     return resourcesTable;
   } 
@@ -64,11 +73,35 @@ public class CheckboxTableUtil {
    * @return  The table model with all resources selected.
    */
   public static ResourcesTableModel createTableModel(final List<String> filePaths) {
-    
+    return createTableModel(filePaths, Collections.<String, PackageManifest.Status>emptyMap());
+  }
+  
+  /**
+   * Creates a table model that shows how each file compares with the one sent in the package. 
+   * The files that came back unchanged are not selected, the others are.
+   * 
+   * @param filePaths The relative paths of the unpacked files.
+   * @param entryStatuses The change statuses, by the relative paths of the files. Empty if unknown.
+   * 
+   * @return The table model.
+   */
+  public static ResourcesTableModel createTableModel(
+      final List<String> filePaths, 
+      final Map<String, PackageManifest.Status> entryStatuses) {
+    PluginResourceBundle messages = ((StandalonePluginWorkspace)PluginWorkspaceProvider.getPluginWorkspace()).getResourceBundle();
     List<CheckboxTableItem> loadPaths = new ArrayList<>();
     for (String data : filePaths) {
+      PackageManifest.Status status = entryStatuses.get(data);
+      String statusText = "";
+      if (status == PackageManifest.Status.UNCHANGED) {
+        statusText = messages.getMessage(Tags.UNCHANGED_FILE);
+      } else if (status == PackageManifest.Status.MODIFIED) {
+        statusText = messages.getMessage(Tags.MODIFIED_FILE);
+      } else if (status == PackageManifest.Status.NEW) {
+        statusText = messages.getMessage(Tags.NEW_FILE);
+      }
       data = URLUtil.decodeURIComponent(data);
-      loadPaths.add(new CheckboxTableItem(Boolean.TRUE , data));
+      loadPaths.add(new CheckboxTableItem(status != PackageManifest.Status.UNCHANGED, data, statusText));
     }
     return new ResourcesTableModel(loadPaths);
   }
@@ -80,6 +113,23 @@ public class CheckboxTableUtil {
    * @param resourcesTable The table with modified resources.
    */
   public static void installDiffOnMouseClick(final JTable resourcesTable, final File originalDir, final File tratranslatedDir) {
+    installDiffOnMouseClick(resourcesTable, originalDir, path -> new File(tratranslatedDir, path));
+  }
+  
+  /**
+   * Adds a mouse listener in table and performs a difference between the zip selected file and 
+   * it's correspondent in file system. The translated file is asked for only when its diff is opened, 
+   * so it can be extracted on demand.
+   * 
+   * @param resourcesTable The table with modified resources.
+   * @param originalDir The directory of the local files.
+   * @param translatedFiles Gives the translated file for a relative path. Returns <code>null</code> if 
+   * the file is not available, or if it is still extracted and the diff is opened after that.
+   */
+  public static void installDiffOnMouseClick(
+      final JTable resourcesTable, 
+      final File originalDir, 
+      final Function<String, File> translatedFiles) {
     resourcesTable.addMouseListener(new MouseAdapter() {
       @Override
       public void mouseClicked(MouseEvent event) {
@@ -93,8 +143,10 @@ public class CheckboxTableUtil {
           if (goodCell.contains(event.getPoint())) {
             String selectedPath = resourcesTable.getModel().getValueAt(selectedRow, selectedColumn).toString();
             File localFile = new File(originalDir, selectedPath);
-            File translatedFile = new File(tratranslatedDir, selectedPath);
-            ApplyPackageUtil.showDiff(localFile, translatedFile);
+            File translatedFile = translatedFiles.apply(selectedPath);
+            if (translatedFile != null) {
+              ApplyPackageUtil.showDiff(localFile, translatedFile);
+            }
           }
         }
       }
@@ -20,6 +20,11 @@ public class ResourcesTableModel extends AbstractTableModel {
    */
   public static final int RELATIVE_PATH = 1;
   
+  /**
+   * Column index of the file change status: how the file compares with the one sent in the package.
+   */
+  public static final int CHANGE_STATUS = 2;
+  
   /**
    * The list with all the table content.
    */
@@ -39,6 +44,7 @@ public class ResourcesTableModel extends AbstractTableModel {
   
     colNames.add("File status");
     colNames.add("File relative path");
+    colNames.add("File change");
   }
   
   /**
@@ -97,6 +103,8 @@ public class ResourcesTableModel extends AbstractTableModel {
     CheckboxTableItem item = loadPaths.get(rowIndex);
     if(columnIndex == CHECK_BOX){
       return item.isSelected();
+    }else if(columnIndex == CHANGE_STATUS){
+      return item.getStatus();
     }else{
       return item.toString();
     }
@@ -7,12 +7,13 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Function;
 
 import javax.swing.Icon;
 import javax.swing.tree.DefaultTreeCellRenderer;
+import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
 
@@ -96,9 +97,28 @@ public class CheckboxTreeUtil {
    * @param topLocationDir      The common ancestor of all the DITA resources referred in the DITA map tree. 
    *                            Either the DITA map folder or an ancestor of it.
    * @param translatedFilesDir  The location of the unpacked files.
-   * @param name 
    */
   public static void installDiffOnMouseClick(final CheckBoxTree tree, final File topLocationDir, final File translatedFilesDir) {
+    installDiffOnMouseClick(tree, topLocationDir, translatedFilesDir, relative -> new File(translatedFilesDir, relative));
+  }
+  
+  /**
+   * Installs a mouse listener that opens the diff when double clicking a leaf. The translated files
+   * are asked for only when their diff is opened, so they can be extracted on demand.
+   * 
+   * @param tree                Current checkbox tree.
+   * @param topLocationDir      The common ancestor of all the DITA resources referred in the DITA map tree. 
+   *                            Either the DITA map folder or an ancestor of it.
+   * @param treeRootDir         The directory of the tree root. The leaves are files under it.
+   * @param translatedFiles     Gives the translated file for a relative path. Returns <code>null</code> if 
+   *                            the file is not available, or if it is still extracted and the diff is 
+   *                            opened after that.
+   */
+  public static void installDiffOnMouseClick(
+      final CheckBoxTree tree, 
+      final File topLocationDir, 
+      final File treeRootDir, 
+      final Function<String, File> translatedFiles) {
     tree.addMouseListener(new MouseAdapter() {
       @Override
       public void mouseClicked(MouseEvent me) {
@@ -112,15 +132,15 @@ public class CheckboxTreeUtil {
             File selectedPath = (File) tree.getLastSelectedPathComponent();
 
             try {
-              URL top = translatedFilesDir.toURI().toURL();
+              URL top = treeRootDir.toURI().toURL();
               URL url = selectedPath.toURI().toURL();
-              String relative = URLUtil.makeRelative(top, url);
+              String relative = URLUtil.decodeURIComponent(URLUtil.makeRelative(top, url));
 
               File localFile = new File(topLocationDir, relative);
-              localFile = new File(URLUtil.decodeURIComponent(localFile.getAbsolutePath()));
-              File translatedFile = new File(URLUtil.decodeURIComponent(selectedPath.getAbsolutePath()));
-
-              ApplyPackageUtil.showDiff(localFile, translatedFile);
+              File translatedFile = translatedFiles.apply(relative);
+              if (translatedFile != null) {
+                ApplyPackageUtil.showDiff(localFile, translatedFile);
+              }
             } catch (MalformedURLException e) {
               logger.error(e, e);
             }
@@ -200,23 +220,31 @@ public class CheckboxTreeUtil {
     TreePath[] treePaths = tree.getCheckBoxTreeSelectionModel().getSelectionPaths();
     
     for (TreePath treePath : treePaths) {
-      Object location = treePath.getLastPathComponent();
-      FileSystemTreeModel model = (FileSystemTreeModel) tree.getModel();
-      File selectedFile = new File(treePath.getLastPathComponent().toString());
-      
-      boolean leaf = model.isLeaf(location);
-      if (leaf) {
-        selectedTreeFiles.add(selectedFile);
-      } else {
-        // Folder
-        @SuppressWarnings("unchecked")
-        Collection<File> allFiles = FileUtils.listFiles(selectedFile, null, true);
-        selectedTreeFiles.addAll(allFiles);
-      }
+      collectLeaves(tree.getModel(), treePath.getLastPathComponent(), selectedTreeFiles);
     }
     
     return selectedTreeFiles;
   }
+  
+  /**
+   * Collects the files under a node. The model is walked instead of the disk, so the files don't 
+   * need to exist yet.
+   * 
+   * @param model The tree model.
+   * @param node  A file or a folder.
+   * @param files Receives the files.
+   */
+  private static void collectLeaves(TreeModel model, Object node, List<File> files) {
+    if (model.isLeaf(node)) {
+      files.add((File) node);
+    } else {
+      // Folder
+      int childCount = model.getChildCount(node);
+      for (int i = 0; i < childCount; i++) {
+        collectLeaves(model, model.getChild(node, i), files);
+      }
+    }
+  }
 
   /**
    * Creates a new checkbox tree.
@@ -226,7 +254,7 @@ public class CheckboxTreeUtil {
    * 
    * @return            A new tree.
    */
-  public static CheckBoxTree createFileSystemTree(FileSystemTreeModel treeModel,final String rootLabel) {
+  public static CheckBoxTree createFileSystemTree(TreeModel treeModel,final String rootLabel) {
     CheckBoxTree tree = new CheckBoxTree(treeModel)/*NOSONAR*/ {
       @Override
       public String convertValueToText(Object value, boolean selected,
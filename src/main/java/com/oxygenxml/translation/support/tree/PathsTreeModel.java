@@ -0,0 +1,122 @@
+package com.oxygenxml.translation.support.tree;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * A tree model over a list of relative paths, like the entries of a package. The nodes are the files
+ * the paths would have under the root directory, but they don't need to exist on disk.
+ */
+public class PathsTreeModel implements TreeModel {
+
+  /**
+   * Root File.
+   */
+  private final File root;
+
+  /**
+   * The children of each directory, sorted by name.
+   */
+  private final Map<File, List<File>> children = new HashMap<>();
+
+  /**
+   * The files given by the paths.
+   */
+  private final Set<File> leaves = new HashSet<>();
+
+  /**
+   * Constructor.
+   *
+   * @param rootDirectory The directory the paths are relative to.
+   * @param relativePaths The relative paths of the files, with '/' as separator.
+   */
+  public PathsTreeModel(File rootDirectory, List<String> relativePaths) {
+    root = rootDirectory;
+    Map<File, Map<String, File>> sortedChildren = new HashMap<>();
+    for (String relativePath : relativePaths) {
+      File parent = root;
+      String[] segments = relativePath.split("/");
+      for (int i = 0; i < segments.length; i++) {
+        if (segments[i].isEmpty()) {
+          continue;
+        }
+        File child = new File(parent, segments[i]);
+        sortedChildren.computeIfAbsent(parent, key -> new TreeMap<>()).put(segments[i], child);
+        if (i == segments.length - 1) {
+          leaves.add(child);
+        }
+        parent = child;
+      }
+    }
+    for (Map.Entry<File, Map<String, File>> directory : sortedChildren.entrySet()) {
+      children.put(directory.getKey(), new ArrayList<>(directory.getValue().values()));
+    }
+  }
+
+  /**
+   * Returns root file.
+   */
+  @Override
+  public Object getRoot() {
+    return root;
+  }
+
+  /**
+   * @param parent A directory node.
+   *
+   * @return Its children, sorted by name.
+   */
+  private List<File> getChildren(Object parent) {
+    List<File> list = children.get(parent);
+    return list != null ? list : Collections.<File>emptyList();
+  }
+
+  @Override
+  public Object getChild(Object parent, int index) {
+    return getChildren(parent).get(index);
+  }
+
+  @Override
+  public int getChildCount(Object parent) {
+    return getChildren(parent).size();
+  }
+
+  /**
+   * @return <code>true</code> if current tree node is one of the files.
+   */
+  @Override
+  public boolean isLeaf(Object node) {
+    return leaves.contains(node);
+  }
+
+  @Override
+  public int getIndexOfChild(Object parent, Object child) {
+    return getChildren(parent).indexOf(child);
+  }
+
+  @Override
+  public void valueForPathChanged(TreePath path, Object value) {
+    // Nothing is changed in the model.
+  }
+
+  @Override
+  public void addTreeModelListener(TreeModelListener listener) {
+    // Nothing is changed in the model.
+  }
+
+  @Override
+  public void removeTreeModelListener(TreeModelListener listener) {
+    // Nothing is changed in the model.
+  }
+}
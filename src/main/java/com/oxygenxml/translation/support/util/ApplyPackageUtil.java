@@ -1,6 +1,8 @@
 package com.oxygenxml.translation.support.util;
 
 import com.oxygenxml.translation.exceptions.StoppedByUserException;
+import com.oxygenxml.translation.support.zip.PackageIndex;
+import com.oxygenxml.translation.support.zip.VolumePacker;
 import com.oxygenxml.translation.ui.PreviewDialog;
 import com.oxygenxml.translation.ui.ProgressChangeAdapter;
 import com.oxygenxml.translation.ui.ProgressDialog;
@@ -12,6 +14,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.text.MessageFormat;
 import java.util.List;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -20,6 +23,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.ScrollPaneConstants;
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import ro.sync.exml.workspace.api.PluginResourceBundle;
 import ro.sync.exml.workspace.api.PluginWorkspaceProvider;
@@ -47,8 +51,9 @@ public class ApplyPackageUtil {
 
   
   /**
-   * Unzipps the archive in a temporary folder and presents a dialog with the modified files. User
-   * can compare files with his files and decides what he saves and what not.
+   * Reads the list of files of the archive and presents a dialog with the modified files. User
+   * can compare files with his files and decides what he saves and what not. Nothing is extracted 
+   * before the dialog is shown.
    * 
    * @param workspaceAccess   PLugin workspace access.
    * @param unzipingLocation     Where to unzip the files.
@@ -61,36 +66,27 @@ public class ApplyPackageUtil {
 
     final PluginResourceBundle resourceBundle = workspaceAccess.getResourceBundle();
     final File tempDir = PathUtil.createTempDirectory();
-    if(tempDir != null && tempDir.exists()){
+    if(tempDir != null && tempDir.exists() && unzipingLocation != null){
       if (logger.isDebugEnabled()) {
         logger.debug(tempDir.getAbsolutePath());
       }
-      // Unzip the chosen package into a temporary directory on thread.
-      final UnzipWorker unzipTask = new UnzipWorker(chosenDir, tempDir);
-      // Install the progress tracker.
-      ProgressDialog.install(
-          unzipTask, 
-          (JFrame)workspaceAccess.getParentFrame(), 
-          resourceBundle.getMessage(Tags.OPENING_PACKAGE));
-      // This listener notifies the user about how the operation ended.
-      unzipTask.addProgressListener(new ProgressChangeAdapter() {
-        @Override
-        public void done() { 
-          if (tempDir != null && unzipingLocation != null) {
-            new PreviewDialog((JFrame)workspaceAccess.getParentFrame(), 
-                unzipTask.getUnpackedFiles(), 
-                unzipingLocation, 
-                tempDir);
-          }
-        }
-        @Override
-        public void operationFailed(Exception ex) {
-          if(!(ex instanceof StoppedByUserException)){
-            workspaceAccess.showErrorMessage(resourceBundle.getMessage(Tags.FAILED_TO_APPLY_PACKAGE) + ex.getMessage());
-          }
+      // Only the central directories are read. The files are extracted in the temporary directory 
+      // when their diff is opened and over the map folder when they are applied.
+      try {
+        PackageIndex packageIndex = new PackageIndex(VolumePacker.findVolumes(chosenDir));
+        new PreviewDialog((JFrame)workspaceAccess.getParentFrame(), 
+            packageIndex,
+            unzipingLocation, 
+            tempDir);
+      } catch (IOException e) {
+        logger.error(e, e);
+        workspaceAccess.showErrorMessage(resourceBundle.getMessage(Tags.FAILED_TO_APPLY_PACKAGE) + e.getMessage());
+        try {
+          FileUtils.deleteDirectory(tempDir);
+        } catch (IOException e1) {
+          logger.warn(e1, e1);
         }
-      });
-      unzipTask.execute();
+      }
     }
   }
   
@@ -131,6 +127,8 @@ public class ApplyPackageUtil {
       File unzippingLocation, final File archiveLocation) {
     // Unzip the chosen package over the parent  directory of the current ditamap on thread.
     UnzipWorker unzipTask = new UnzipWorker(archiveLocation, unzippingLocation);
+    // The files that come back unchanged keep their timestamps.
+    unzipTask.setSkipUnchanged(true);
     // Install the progress tracker.
     JFrame parentFrame = (JFrame) pluginWorkspaceAccess.getParentFrame();
     final PluginResourceBundle resourceBundle = pluginWorkspaceAccess.getResourceBundle();
@@ -142,7 +140,7 @@ public class ApplyPackageUtil {
       @Override
       public void done() {
         try {
-          showUnZippedFilesReport(pluginWorkspaceAccess, taks[0].getUnpackedFiles());
+          showUnZippedFilesReport(pluginWorkspaceAccess, taks[0].getUnpackedFiles(), taks[0].getStatistics());
         } catch (Exception e) {
           if (logger.isDebugEnabled()) {
             logger.debug(e, e);
@@ -165,10 +163,11 @@ public class ApplyPackageUtil {
    * 
    * @param pluginWorkspaceAccess  Entry point for accessing the DITA Maps area.
    * @param list  The relative paths of the unzipped files.
+   * @param statistics How many files were written, created or skipped.
    * @throws IOException  Problems reading the files.
    */
   private static void showUnZippedFilesReport(final StandalonePluginWorkspace pluginWorkspaceAccess,
-      List<String> list) throws IOException {
+      List<String> list, UnpackStatistics statistics) throws IOException {
     final PluginResourceBundle resourceBundle = pluginWorkspaceAccess.getResourceBundle();
 
     // Present a log with the overridden files.
@@ -213,6 +212,21 @@ public class ApplyPackageUtil {
       gbcScroll.fill = GridBagConstraints.BOTH;
       gbcScroll.anchor = GridBagConstraints.LINE_START;
       panel.add(scroll , gbcScroll);
+      
+      GridBagConstraints gbcStatistics = new GridBagConstraints();
+      gbcStatistics.gridx = 0;
+      gbcStatistics.gridy = 2;
+      gbcStatistics.gridwidth = 1;
+      gbcStatistics.gridheight = 1;
+      gbcStatistics.weightx = 0;
+      gbcStatistics.weighty = 0;
+      gbcStatistics.fill = GridBagConstraints.HORIZONTAL;
+      gbcStatistics.anchor = GridBagConstraints.LINE_START;
+      panel.add(new JLabel(MessageFormat.format(
+          resourceBundle.getMessage(Tags.APPLY_PACKAGE_STATISTICS),
+          statistics.getWrittenFiles(),
+          statistics.getNewFiles(),
+          statistics.getSkippedFiles())), gbcStatistics);
 
       JOptionPane.showMessageDialog(
           (JFrame) pluginWorkspaceAccess.getParentFrame(), 
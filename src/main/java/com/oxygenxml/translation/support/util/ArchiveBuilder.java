@@ -6,17 +6,46 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.log4j.Logger;
 
 import com.oxygenxml.translation.exceptions.StoppedByUserException;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithms;
+import com.oxygenxml.translation.support.core.digest.Digester;
+import com.oxygenxml.translation.support.zip.AdaptiveCompressionPolicy;
+import com.oxygenxml.translation.support.zip.CompressionPolicy;
+import com.oxygenxml.translation.support.zip.DuplicatesManifest;
+import com.oxygenxml.translation.support.zip.PackageManifest;
+import com.oxygenxml.translation.support.zip.PreviousPackage;
+import com.oxygenxml.translation.support.zip.VolumePacker;
+import com.oxygenxml.translation.support.zip.ZipArchiveEntry;
+import com.oxygenxml.translation.support.zip.ZipArchiveWriter;
 import com.oxygenxml.translation.ui.ProgressChangeAdapter;
 import com.oxygenxml.translation.ui.ProgressChangeEvent;
 import com.oxygenxml.translation.ui.ProgressChangeListener;
@@ -46,6 +75,57 @@ public final class ArchiveBuilder {
    */
   private List<ProgressChangeListener> listeners = new ArrayList<>();
   
+  /**
+   * How many threads compress the entries.
+   */
+  private int parallelism = 1;
+  
+  /**
+   * Chooses between storing and deflating each entry. <code>null</code> to deflate all of them.
+   */
+  private CompressionPolicy compressionPolicy = new AdaptiveCompressionPolicy();
+  
+  /**
+   * The DEFLATE compression level.
+   */
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  
+  /**
+   * The maximum size of a package volume, in bytes. 0 to create a single archive.
+   */
+  private long maxVolumeSize = 0;
+  
+  /**
+   * A package built before from the same directory. <code>null</code> to compress all the entries.
+   */
+  private File previousPackage;
+  
+  /**
+   * <code>true</code> to write the same archive, byte for byte, from the same directory content.
+   */
+  private boolean reproducible = false;
+  
+  /**
+   * <code>true</code> to leave untouched the local files that have the same content as the extracted ones.
+   */
+  private boolean skipUnchanged = false;
+  
+  /**
+   * Accepts the relative paths of the files to extract. <code>null</code> to extract all the files.
+   */
+  private Predicate<String> entryFilter;
+  
+  /**
+   * What happened to the files of the last extracted package.
+   */
+  private UnpackStatistics statistics = new UnpackStatistics();
+  
+  /**
+   * The extracted files compared with the ones sent, by their relative paths. Filled from the package 
+   * manifests, while extracting. Sorted.
+   */
+  private final Map<String, PackageManifest.Status> entryStatuses = Collections.synchronizedMap(new TreeMap<>());
+  
   /**
    * Constructor.
    * 
@@ -72,27 +152,292 @@ public final class ArchiveBuilder {
   }
 
 
+  /**
+   * Sets how many threads compress the entries when packing a directory and extract them when unpacking
+   * a package. The entries are written in the archive, and the extracted files are reported, in the same
+   * order no matter the parallelism level.
+   * 
+   * @param parallelism The number of threads. 1 to do everything on the calling thread.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism level must be at least 1: " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+  
+  /**
+   * @return How many threads compress or extract the entries.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+  
+  /**
+   * Sets the policy that chooses between storing and deflating each entry when packing a directory. 
+   * By default, the already compressed files (images, videos, PDFs...) are stored.
+   * 
+   * @param compressionPolicy The policy. <code>null</code> to deflate all the entries.
+   */
+  public void setCompressionPolicy(CompressionPolicy compressionPolicy) {
+    this.compressionPolicy = compressionPolicy;
+  }
+  
+  /**
+   * @return The policy that chooses between storing and deflating each entry.
+   */
+  public CompressionPolicy getCompressionPolicy() {
+    return compressionPolicy;
+  }
+  
+  /**
+   * @param compressionLevel The DEFLATE compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}.
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    if ((compressionLevel < 0 || compressionLevel > 9) && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+    }
+    this.compressionLevel = compressionLevel;
+  }
+  
+  /**
+   * @return The DEFLATE compression level.
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+  
+  /**
+   * Splits the packages in size-capped volumes. Each volume is a self-contained ZIP and no file spans
+   * two volumes. A file larger than the budget gets a volume of its own.
+   * 
+   * @param maxVolumeSize The maximum size of a volume, in bytes. 0 to create a single archive.
+   */
+  public void setMaxVolumeSize(long maxVolumeSize) {
+    if (maxVolumeSize < 0) {
+      throw new IllegalArgumentException("The volume size must not be negative: " + maxVolumeSize);
+    }
+    this.maxVolumeSize = maxVolumeSize;
+  }
+  
+  /**
+   * @return The maximum size of a package volume, in bytes. 0 if the packages are not split.
+   */
+  public long getMaxVolumeSize() {
+    return maxVolumeSize;
+  }
+  
+  /**
+   * Sets a package built before from the same directory. The files that didn't change since are copied 
+   * from it as they are, without compressing them again. The new package can be written over it.
+   * 
+   * @param previousPackage The previous package, or one of its volumes. <code>null</code> to compress all the files.
+   */
+  public void setPreviousPackage(File previousPackage) {
+    this.previousPackage = previousPackage;
+  }
+  
+  /**
+   * @return The package whose unchanged entries are reused. <code>null</code> if none.
+   */
+  public File getPreviousPackage() {
+    return previousPackage;
+  }
+
+  /**
+   * In reproducible mode the files are added in the order of their names and all the entries get the
+   * same timestamp, so the same directory content always gives the same package, byte for byte. 
+   * Otherwise the files are added in the order in which they are listed by the file system.
+   * 
+   * @param reproducible <code>true</code> to write reproducible packages.
+   */
+  public void setReproducible(boolean reproducible) {
+    this.reproducible = reproducible;
+  }
+  
+  /**
+   * @return <code>true</code> if the packages are reproducible.
+   */
+  public boolean isReproducible() {
+    return reproducible;
+  }
+  
+  /**
+   * When skipping the unchanged files, the CRC32 and the size of each entry are compared with the ones 
+   * of the local file, and the local file is written only if they differ. The local files that don't 
+   * change keep their last modified time, so they are not reloaded by the editors nor hashed again 
+   * by the next change detection.
+   * 
+   * @param skipUnchanged <code>true</code> to write only the files whose content differs from the local ones.
+   */
+  public void setSkipUnchanged(boolean skipUnchanged) {
+    this.skipUnchanged = skipUnchanged;
+  }
+  
+  /**
+   * @return <code>true</code> if only the files whose content differs from the local ones are written.
+   */
+  public boolean isSkipUnchanged() {
+    return skipUnchanged;
+  }
+  
+  /**
+   * Only the files accepted by the filter are extracted. The copies of the de-duplicated resources are
+   * extracted even if their stored file is not accepted.
+   * 
+   * @param entryFilter Accepts the relative paths of the files to extract. <code>null</code> to extract 
+   * all the files.
+   */
+  public void setEntryFilter(Predicate<String> entryFilter) {
+    this.entryFilter = entryFilter;
+  }
+  
+  /**
+   * @return Accepts the relative paths of the files to extract. <code>null</code> if all the files are extracted.
+   */
+  public Predicate<String> getEntryFilter() {
+    return entryFilter;
+  }
+  
+  /**
+   * @param name The relative path of a file.
+   * 
+   * @return <code>true</code> if the file is extracted.
+   */
+  private boolean accepts(String name) {
+    return entryFilter == null || entryFilter.test(name);
+  }
+  
+  /**
+   * @return How many files of the last extracted package were written, created or skipped.
+   */
+  public UnpackStatistics getStatistics() {
+    return statistics;
+  }
+
   /**
    * Packs a directory.
    * 
+   * If the parallelism level is greater than 1, the entries are compressed concurrently and then
+   * written in the archive in the order in which the directory was walked.
+   * 
+   * If a maximum volume size is set, the files are distributed in as few volumes as possible, 
+   * named after the package file. See {@link VolumePacker#getVolumeFile(File, int, int)}.
+   * 
    * @param dir  The location of the file/directory we want to zip.
    * @param zipFile  The location of the package.
-   * @param isFromTest True if this method is called by a JUnit test class.
+   * 
+   * @return The created package files. More than one if the package was split in volumes.
    * 
    * @throws IOException  Problems reading the file.
    * @throws StoppedByUserException The user pressed the Cancel button.
    */
-  public void zipDirectory(File dir, File zipFile) throws IOException, StoppedByUserException {
+  public List<File> zipDirectory(File dir, File zipFile) throws IOException, StoppedByUserException {
     zipFile.getParentFile().mkdirs();
 
-    try (
-        FileOutputStream fout = new FileOutputStream(zipFile);
-        ZipOutputStream zout = new ZipOutputStream(fout) ) {
-      zipSubDirectory("", dir, zout, 0);
+    List<File> packageFiles = new ArrayList<>();
+    PreviousPackage previous = PreviousPackage.open(previousPackage, zipFile);
+    ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+    try {
+      ZipArchiveWriter.EntryListener entryListener = new ZipArchiveWriter.EntryListener() {
+        private int resourceCounter = 0;
+        
+        @Override
+        public void entryWritten(ZipArchiveEntry entry) {
+          if (!entry.isDirectory()) {
+            PluginResourceBundle resourceBundle = ((StandalonePluginWorkspace)PluginWorkspaceProvider.getPluginWorkspace()).getResourceBundle();
+            resourceCounter++;
+            ProgressChangeEvent progress = new ProgressChangeEvent(resourceCounter, 
+                resourceBundle.getMessage(Tags.ADD_TO_PACKAGE) + ": " + entry.getName());
+            fireChangeEvent(progress);
+          }
+        }
+        
+        @Override
+        public void entryFailed(String name, IOException e) {
+          logger.error(e, e);
+        }
+      };
+      
+      if (maxVolumeSize > 0) {
+        // The files and the empty folders, with their entry names.
+        List<Map.Entry<String, File>> leaves = new ArrayList<>();
+        collectLeaves("", dir, leaves);
+        List<List<Map.Entry<String, File>>> volumes = VolumePacker.pack(
+            leaves,
+            leaf -> VolumePacker.estimateEntrySize(leaf.getKey(), leaf.getValue().length()),
+            maxVolumeSize);
+        
+        for (int i = 0; i < volumes.size(); i++) {
+          File volumeFile = VolumePacker.getVolumeFile(zipFile, i, volumes.size());
+          try (ZipArchiveWriter zout = createWriter(volumeFile, executor, entryListener, previous)) {
+            zout.setCreateParentDirectories(true);
+            for (Map.Entry<String, File> leaf : volumes.get(i)) {
+              File file = leaf.getValue();
+              if (file.isDirectory()) {
+                zout.putDirectory(leaf.getKey());
+              } else {
+                zout.putEntry(leaf.getKey(), () -> new FileInputStream(file));
+              }
+              
+              if(isCanceled()){
+                throw new StoppedByUserException();
+              }
+            }
+            zout.finish();
+          }
+          packageFiles.add(volumeFile);
+        }
+      } else {
+        try (ZipArchiveWriter zout = createWriter(zipFile, executor, entryListener, previous)) {
+          zipSubDirectory("", dir, zout);
+          zout.finish();
+        }
+        packageFiles.add(zipFile);
+      }
+      VolumePacker.deleteStaleVolumes(zipFile, packageFiles.size());
     } catch (Exception e) {
       logger.error(e, e);
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      if (previous != null) {
+        previous.close();
+      }
     }
+    
+    return packageFiles;
   }
+  
+  /**
+   * Creates a writer for a package file.
+   * 
+   * @param zipFile The package file.
+   * @param executor Compresses the entries. <code>null</code> to compress them on the calling thread.
+   * @param entryListener Notified about every written entry.
+   * @param previous The package whose unchanged entries are copied. <code>null</code> if none.
+   * 
+   * @return The writer.
+   * 
+   * @throws IOException Unable to create the file.
+   */
+  private ZipArchiveWriter createWriter(
+      File zipFile, 
+      ExecutorService executor, 
+      ZipArchiveWriter.EntryListener entryListener,
+      PreviousPackage previous) throws IOException {
+    ZipArchiveWriter zout = new ZipArchiveWriter(new FileOutputStream(zipFile), executor, 2 * parallelism);
+    zout.setCompressionPolicy(compressionPolicy);
+    zout.setLevel(compressionLevel);
+    zout.setEntryListener(entryListener);
+    zout.setReproducible(reproducible);
+    if (previous != null) {
+      zout.setPreviousArchives(previous.getArchives());
+    }
+    return zout;
+  }
+
 
   /**
    *  Packs a directory.
@@ -100,142 +445,579 @@ public final class ArchiveBuilder {
    * @param basePath  It helps us create the relative path of every file from dir.
    * @param dir  The location of the file/directory we want to zip.
    * @param zout  Where we create the archive.
-   * @param resourceCounter Counts the number of resources added in the archive.
-   * @param isFromTest True if this method is called by a JUnit test class.
    * 
-   * @throws IOException  Problems reading the files.
+   * @throws IOException  Problems writing the archive.
    * @throws StoppedByUserException The user pressed the Cancel button.
    */
-  private void zipSubDirectory(String basePath, File dir, ZipOutputStream zout, int resourceCounter) throws IOException, StoppedByUserException {
-    byte[] buffer = new byte[4096];
-    File[] files = dir.listFiles();
+  private void zipSubDirectory(String basePath, File dir, ZipArchiveWriter zout) throws IOException, StoppedByUserException {
+    File[] files = listFiles(dir);
     if (files != null) {
       for (File file : files) {
         if (file.isDirectory()) {
-          zipFolderInternal(basePath, zout, resourceCounter, file);
+          String path = basePath + file.getName() + '/';
+          zout.putDirectory(path);
+          zipSubDirectory(path, file, zout);
         } else {
-          zipFileInternal(basePath, zout, resourceCounter, buffer, file);
+          zout.putEntry(basePath + file.getName(), () -> new FileInputStream(file));
+        }
+        
+        if(isCanceled()){
+          throw new StoppedByUserException();
         }
       }
     }
   }
   
   /**
-   * ZIP a folder internal.
+   * Collects the files and the empty folders of a directory. The other folders are implied by the files inside them.
+   * 
+   * @param basePath The relative path of the directory.
+   * @param dir The directory.
+   * @param leaves Receives the entry names and the files.
+   * 
+   * @throws StoppedByUserException The user pressed the Cancel button.
    */
-  private void zipFolderInternal(String basePath, ZipOutputStream zout, int resourceCounter, File file)
-      throws IOException, StoppedByUserException {
-    String path = basePath + file.getName() + '/';
-    zout.putNextEntry(new ZipEntry(path));
-    if(isCanceled()){
-      throw new StoppedByUserException();
+  private void collectLeaves(String basePath, File dir, List<Map.Entry<String, File>> leaves) throws StoppedByUserException {
+    File[] files = listFiles(dir);
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          String path = basePath + file.getName() + '/';
+          String[] children = file.list();
+          if (children != null && children.length == 0) {
+            leaves.add(new AbstractMap.SimpleImmutableEntry<>(path, file));
+          } else {
+            collectLeaves(path, file, leaves);
+          }
+        } else {
+          leaves.add(new AbstractMap.SimpleImmutableEntry<>(basePath + file.getName(), file));
+        }
+        
+        if(isCanceled()){
+          throw new StoppedByUserException();
+        }
+      }
     }
-    zipSubDirectory(path, file, zout, resourceCounter);
-    zout.closeEntry();
   }
-  
+
   /**
-   * ZIP a file internal.
+   * Lists the content of a directory. In reproducible mode the files are sorted by name.
+   * 
+   * @param dir The directory.
+   * 
+   * @return The files in the directory, or <code>null</code> if it can't be listed.
    */
-  private void zipFileInternal(String basePath, ZipOutputStream zout, int resourceCounter, 
-      byte[] buffer, File file) throws IOException, StoppedByUserException {
-    
-    try( FileInputStream fin = new FileInputStream(file) ){
-      zout.putNextEntry(new ZipEntry(basePath + file.getName()));
-      int length;
-      while ((length = fin.read(buffer)) > 0) {
-        zout.write(buffer, 0, length);
-      }
-      
-      if(isCanceled()){
-        throw new StoppedByUserException();
-      }
-      
-      PluginResourceBundle resourceBundle = ((StandalonePluginWorkspace)PluginWorkspaceProvider.getPluginWorkspace()).getResourceBundle();
-      resourceCounter++;
-      ProgressChangeEvent progress = new ProgressChangeEvent(resourceCounter, 
-          resourceBundle.getMessage(Tags.ADD_TO_PACKAGE) + ": " + basePath + file.getName());
-      fireChangeEvent(progress);
-
-    } catch (Exception e) {
-      logger.error(e, e);
+  private File[] listFiles(File dir) {
+    File[] files = dir.listFiles();
+    if (files != null && reproducible) {
+      Arrays.sort(files, Comparator.comparing(File::getName));
     }
+    return files;
   }
 
-
+  /**
+   * Gets how the files extracted by the last unzip compare with the ones sent in the package, as recorded 
+   * in the package manifest, {@link PackageManifest#ENTRY_NAME}. The content of each file is hashed while 
+   * it is extracted, so the local files are not read.
+   * 
+   * The files sent but not found in the package are {@link PackageManifest.Status#MISSING}.
+   * 
+   * @return The statuses, by the relative paths of the files. Empty if the package has no manifest.
+   */
+  public Map<String, PackageManifest.Status> getEntryStatuses() {
+    synchronized (entryStatuses) {
+      return new TreeMap<>(entryStatuses);
+    }
+  }
 
   /**
-   * UnZips an archive into a given directory.
+   * UnZips an archive into a given directory. If the parallelism level is greater than 1,
+   * the entries are extracted concurrently.
    *    
    * @param packageLocation  The location of the package.
    * @param destDir Where to extract the package content.
    * 
-   * @return A list with the relative path of every extracted file.
+   * @return A list with the relative path of every extracted file, in the order of the archive.
    * 
    * @throws StoppedByUserException The user pressed the Cancel button.
    */
   public List<String> unzipDirectory(File packageLocation, File destDir) throws StoppedByUserException, IOException {
+    entryStatuses.clear();
+    statistics = new UnpackStatistics();
     List<String> nameList = new ArrayList<>();
-    int counter = 0;
+    unzipVolume(packageLocation, destDir, parallelism, new AtomicInteger(), nameList);
+    return nameList;
+  }
+  
+  /**
+   * UnZips all the volumes of a package into a given directory. If the parallelism level is greater than 1,
+   * the volumes are extracted concurrently, and so are the entries of each volume. 
+   *    
+   * @param volumes  The volumes of the package. See {@link VolumePacker#findVolumes(File)}.
+   * @param destDir Where to extract the package content.
+   * 
+   * @return A list with the relative path of every extracted file, in the order of the volumes.
+   * 
+   * @throws StoppedByUserException The user pressed the Cancel button.
+   */
+  public List<String> unzipDirectory(List<File> volumes, File destDir) throws StoppedByUserException, IOException {
+    entryStatuses.clear();
+    statistics = new UnpackStatistics();
+    AtomicInteger counter = new AtomicInteger();
+    List<List<String>> volumeNames = new ArrayList<>(volumes.size());
+    for (int i = 0; i < volumes.size(); i++) {
+      volumeNames.add(new ArrayList<>());
+    }
+    
+    int threads = Math.min(parallelism, volumes.size());
+    if (threads > 1) {
+      // The threads are shared between the volumes.
+      int volumeThreads = Math.max(1, parallelism / threads);
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<>(volumes.size());
+        for (int i = 0; i < volumes.size(); i++) {
+          File volume = volumes.get(i);
+          List<String> names = volumeNames.get(i);
+          futures.add(executor.submit(() -> {
+            unzipVolume(volume, destDir, volumeThreads, counter, names);
+            return null;
+          }));
+        }
+        waitForAll(futures);
+      } finally {
+        executor.shutdownNow();
+      }
+    } else {
+      for (int i = 0; i < volumes.size(); i++) {
+        unzipVolume(volumes.get(i), destDir, parallelism, counter, volumeNames.get(i));
+      }
+    }
+    
+    List<String> nameList = new ArrayList<>();
+    for (List<String> names : volumeNames) {
+      nameList.addAll(names);
+    }
+    return nameList;
+  }
+  
+  /**
+   * Waits for all the tasks to end, even if some of them fail, so that nothing is still being written 
+   * when the extraction ends.
+   * 
+   * @param futures The extraction tasks.
+   * 
+   * @throws StoppedByUserException The user pressed the Cancel button.
+   * @throws IOException Problems reading the package.
+   */
+  private static void waitForAll(List<Future<?>> futures) throws StoppedByUserException, IOException {
+    Exception failure = null;
+    for (Future<?> future : futures) {
+      try {
+        waitFor(future);
+      } catch (StoppedByUserException | IOException | RuntimeException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure instanceof StoppedByUserException) {
+      throw (StoppedByUserException) failure;
+    } else if (failure instanceof IOException) {
+      throw (IOException) failure;
+    } else if (failure != null) {
+      throw (RuntimeException) failure;
+    }
+  }
+  
+  /**
+   * Waits for an extraction task.
+   * 
+   * @param future The extraction task.
+   * 
+   * @throws StoppedByUserException The user pressed the Cancel button.
+   * @throws IOException Problems reading the package.
+   */
+  private static void waitFor(Future<?> future) throws StoppedByUserException, IOException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StoppedByUserException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof StoppedByUserException) {
+        throw (StoppedByUserException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+  
+  /**
+   * UnZips an archive into a given directory.
+   * 
+   * The central directory is read first: the package metadata is loaded and all the directories are 
+   * created up front. Then the files are extracted, concurrently if more than one thread is given.
+   *    
+   * @param packageLocation  The location of the package.
+   * @param destDir Where to extract the package content.
+   * @param threads How many threads extract the files.
+   * @param counter Counts the extracted files, for the progress events.
+   * @param nameList Receives the relative path of every extracted file, in the order of the archive.
+   * 
+   * @throws StoppedByUserException The user pressed the Cancel button.
+   */
+  private void unzipVolume(
+      File packageLocation, 
+      File destDir, 
+      int threads,
+      AtomicInteger counter, 
+      List<String> nameList) throws StoppedByUserException, IOException {
+    Map<String, String> duplicates = Collections.emptyMap();
+    // The extracted files, with the digests and sizes of their contents.
+    Map<String, Map.Entry<String, Long>> extracted = new HashMap<>(); //NOSONAR
     // Open the zip file
     ZipFile zipFile = new ZipFile(packageLocation);
     Enumeration<?> enu = zipFile.entries();
     try {
+      // The manifest is read first, to hash the files while they are extracted.
+      PackageManifest manifest = readManifest(zipFile);
+      DigestAlgorithm algorithm = getDigestAlgorithm(manifest);
+      
+      List<ZipEntry> files = new ArrayList<>();
+      Set<File> dirs = new LinkedHashSet<>();
       while (enu.hasMoreElements()) {
         ZipEntry zipEntry = (ZipEntry) enu.nextElement();
         String name = zipEntry.getName();
-        //We create the directories 
-        File file = new File(destDir, name);
-        if (name.endsWith("/")) {
-          file.mkdirs();
+        if (DuplicatesManifest.isMetadata(name)) {
+          // The package metadata is not part of the map.
+          if (DuplicatesManifest.ENTRY_NAME.equals(name)) {
+            try (InputStream is = zipFile.getInputStream(zipEntry)) {
+              duplicates = DuplicatesManifest.read(is);
+            }
+          }
           continue;
         }
-
-        unzipInternal(zipEntry, zipFile, file);
-
+        if (!accepts(name)) {
+          continue;
+        }
+        
+        File file = PathUtil.resolveInside(destDir, name);
+        if (name.endsWith("/")) {
+          dirs.add(file);
+        } else {
+          files.add(zipEntry);
+          if (file.getParentFile() != null) {
+            dirs.add(file.getParentFile());
+          }
+        }
+      }
+      //We create the directories 
+      for (File dir : dirs) {
+        dir.mkdirs();
+      }
+      
+      String[] digests = new String[files.size()];
+      int fileThreads = Math.min(threads, files.size());
+      if (fileThreads > 1) {
+        // Each thread takes the next entry not extracted yet.
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean stopped = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(fileThreads);
+        try {
+          List<Future<?>> futures = new ArrayList<>(fileThreads);
+          for (int t = 0; t < fileThreads; t++) {
+            futures.add(executor.submit(() -> {
+              for (int i = next.getAndIncrement(); i < digests.length && !stopped.get(); i = next.getAndIncrement()) {
+                try {
+                  digests[i] = extract(files.get(i), zipFile, destDir, algorithm, counter);
+                } catch (StoppedByUserException | IOException | RuntimeException e) {
+                  stopped.set(true);
+                  throw e;
+                }
+              }
+              return null;
+            }));
+          }
+          waitForAll(futures);
+        } finally {
+          executor.shutdownNow();
+        }
+      } else {
+        for (int i = 0; i < digests.length; i++) {
+          digests[i] = extract(files.get(i), zipFile, destDir, algorithm, counter);
+        }
+      }
+      
+      for (int i = 0; i < digests.length; i++) {
+        String name = files.get(i).getName();
+        if (manifest != null) {
+          extracted.put(name, new AbstractMap.SimpleImmutableEntry<>(digests[i], new File(destDir, name).length()));
+        }
         nameList.add(name);
-
-        if(isCanceled()){
-          throw new StoppedByUserException();
+      }
+      
+      // Restore the copies of the de-duplicated resources.
+      for (Map.Entry<String, String> duplicate : duplicates.entrySet()) {
+        if (!accepts(duplicate.getKey())) {
+          continue;
         }
-
-        PluginResourceBundle resourceBundle = ((StandalonePluginWorkspace)PluginWorkspaceProvider.getPluginWorkspace()).getResourceBundle();
-        counter++;
-        ProgressChangeEvent progress = new ProgressChangeEvent(
-            counter, 
-            MessageFormat.format(
-                resourceBundle.getMessage(Tags.UNPACK_FILE), file.getAbsolutePath()));
-        fireChangeEvent(progress);
-
+        // The paths come from the package, they must not point outside the destination.
+        File file = PathUtil.resolveInside(destDir, duplicate.getKey());
+        File storedFile = PathUtil.resolveInside(destDir, duplicate.getValue());
+        ZipEntry stored = zipFile.getEntry(duplicate.getValue());
+        if (stored == null) {
+          // Not in the package. A local file with the same path has some other content.
+          logger.warn("The stored entry " + duplicate.getValue() + " is missing from the package, " 
+              + duplicate.getKey() + " is not extracted.");
+          continue;
+        }
+        File parent = file.getParentFile();
+        if (parent != null) {
+          parent.mkdirs();
+        }
+        boolean storedExtracted = accepts(duplicate.getValue());
+        Map.Entry<String, Long> content = extracted.get(duplicate.getValue());
+        Digester digester = !storedExtracted && manifest != null && algorithm != null ? newDigester(algorithm) : null;
+        boolean exists = file.exists();
+        if (exists && skipUnchanged && isUnchanged(stored, file, digester)) {
+          statistics.fileSkipped();
+        } else if (storedExtracted) {
+          FileSystemUtil.copyFile(storedFile, file, true);
+          countWritten(exists);
+        } else {
+          // The stored file is not extracted, the copy is extracted from its entry.
+          digester = digester != null ? newDigester(algorithm) : null;
+          unzipInternal(stored, zipFile, file, digester);
+          countWritten(exists);
+        }
+        if (!storedExtracted && manifest != null) {
+          content = new AbstractMap.SimpleImmutableEntry<>(digester != null ? digester.digest() : null, file.length());
+        }
+        if (content != null) {
+          extracted.put(duplicate.getKey(), content);
+        }
+        
+        nameList.add(duplicate.getKey());
+        unpacked(file, counter);
+      }
+      
+      if (manifest != null) {
+        classify(manifest, extracted, packageLocation);
       }
     } finally {
       zipFile.close();
     }
+  }
+  
+  /**
+   * Extracts a file. The parent directory must exist. When skipping the unchanged files, the local file 
+   * is left untouched if it has the same content.
+   * 
+   * @param zipEntry The entry of the file.
+   * @param zipFile The package.
+   * @param destDir Where the package content is extracted.
+   * @param algorithm The algorithm of the digest. May be <code>null</code>.
+   * @param counter Counts the extracted files, for the progress events.
+   * 
+   * @return The digest of the content, or <code>null</code> if no algorithm was given or it is not available.
+   * 
+   * @throws StoppedByUserException The user pressed the Cancel button.
+   * @throws IOException If unZipping fails.
+   */
+  private String extract(
+      ZipEntry zipEntry, 
+      ZipFile zipFile, 
+      File destDir, 
+      DigestAlgorithm algorithm, 
+      AtomicInteger counter) throws StoppedByUserException, IOException {
+    File file = new File(destDir, zipEntry.getName());
+    Digester digester = algorithm != null ? newDigester(algorithm) : null;
+    boolean exists = file.exists();
+    if (exists && skipUnchanged && isUnchanged(zipEntry, file, digester)) {
+      // The digest of the local content is the digest of the entry.
+      statistics.fileSkipped();
+    } else {
+      if (exists && skipUnchanged && digester != null) {
+        // It might have received the local content.
+        digester = newDigester(algorithm);
+      }
+      unzipInternal(zipEntry, zipFile, file, digester);
+      countWritten(exists);
+    }
+    unpacked(file, counter);
+    return digester != null ? digester.digest() : null;
+  }
+  
+  /**
+   * Counts a written file.
+   * 
+   * @param existed <code>true</code> if the file was written over a local file.
+   */
+  private void countWritten(boolean existed) {
+    if (existed) {
+      statistics.fileWritten();
+    } else {
+      statistics.fileCreated();
+    }
+  }
+  
+  /**
+   * Checks if a local file has the same size and CRC32 as an entry. The file is read only if 
+   * the sizes are the same.
+   * 
+   * @param zipEntry The entry.
+   * @param file The local file.
+   * @param digester Receives the local content, if it is read. May be <code>null</code>.
+   * 
+   * @return <code>true</code> if the file has the same content as the entry.
+   */
+  private static boolean isUnchanged(ZipEntry zipEntry, File file, Digester digester) {
+    boolean unchanged = false;
+    if (zipEntry.getSize() == file.length() && zipEntry.getCrc() != -1 && file.isFile()) {
+      CRC32 crc = new CRC32();
+      try (InputStream is = new FileInputStream(file)) {
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+          crc.update(buffer, 0, read);
+          if (digester != null) {
+            digester.update(buffer, 0, read);
+          }
+        }
+        unchanged = crc.getValue() == zipEntry.getCrc();
+      } catch (IOException e) {
+        // It will be overwritten.
+        logger.debug(e, e);
+      }
+    }
+    return unchanged;
+  }
+  
+  /**
+   * Reads the package manifest of a volume.
+   * 
+   * @param zipFile The volume.
+   * 
+   * @return The manifest, or <code>null</code> if the volume has none or it can't be read.
+   */
+  private static PackageManifest readManifest(ZipFile zipFile) {
+    PackageManifest manifest = null;
+    ZipEntry entry = zipFile.getEntry(PackageManifest.ENTRY_NAME);
+    if (entry != null) {
+      try (InputStream is = zipFile.getInputStream(entry)) {
+        manifest = PackageManifest.read(is);
+      } catch (IOException e) {
+        logger.warn("Unable to read the package manifest: " + e.getMessage(), e);
+      }
+    }
+    return manifest;
+  }
+  
+  /**
+   * @param manifest The package manifest. May be <code>null</code>.
+   * 
+   * @return The algorithm of the digests recorded in the manifest, or <code>null</code> if there are none 
+   * or the algorithm is not available.
+   */
+  private static DigestAlgorithm getDigestAlgorithm(PackageManifest manifest) {
+    DigestAlgorithm algorithm = null;
+    if (manifest != null && manifest.getDigestAlgorithm() != null) {
+      try {
+        algorithm = DigestAlgorithms.get(manifest.getDigestAlgorithm());
+      } catch (NoSuchAlgorithmException e) {
+        logger.warn(e.getMessage(), e);
+      }
+    }
+    return algorithm;
+  }
+  
+  /**
+   * @param algorithm A digest algorithm.
+   * 
+   * @return A new digester, or <code>null</code> if the algorithm is not available on this platform.
+   */
+  private static Digester newDigester(DigestAlgorithm algorithm) {
+    Digester digester = null;
+    try {
+      digester = algorithm.newDigester();
+    } catch (NoSuchAlgorithmException e) {
+      logger.warn(e.getMessage(), e);
+    }
+    return digester;
+  }
+  
+  /**
+   * Compares the files extracted from a volume with the ones recorded in its manifest.
+   * 
+   * @param manifest The manifest of the volume.
+   * @param extracted The extracted files, with the digests and sizes of their contents.
+   * @param volume The volume, for reporting.
+   */
+  private void classify(PackageManifest manifest, Map<String, Map.Entry<String, Long>> extracted, File volume) {
+    for (Map.Entry<String, Map.Entry<String, Long>> file : extracted.entrySet()) {
+      entryStatuses.put(
+          file.getKey(), 
+          manifest.classify(file.getKey(), file.getValue().getKey(), file.getValue().getValue()));
+    }
+    for (String sent : manifest.getItems().keySet()) {
+      if (!extracted.containsKey(sent) && accepts(sent)) {
+        logger.warn("The file " + sent + " is missing from the package " + volume);
+        entryStatuses.put(sent, PackageManifest.Status.MISSING);
+      }
+    }
+  }
+  
+  /**
+   * Notifies the listeners that a file was extracted.
+   * 
+   * @param file The extracted file.
+   * @param counter Counts the extracted files.
+   * 
+   * @throws StoppedByUserException The user pressed the Cancel button.
+   */
+  private void unpacked(File file, AtomicInteger counter) throws StoppedByUserException {
+    if(isCanceled()){
+      throw new StoppedByUserException();
+    }
 
-    return nameList;
+    PluginResourceBundle resourceBundle = ((StandalonePluginWorkspace)PluginWorkspaceProvider.getPluginWorkspace()).getResourceBundle();
+    ProgressChangeEvent progress = new ProgressChangeEvent(
+        counter.incrementAndGet(), 
+        MessageFormat.format(
+            resourceBundle.getMessage(Tags.UNPACK_FILE), file.getAbsolutePath()));
+    fireChangeEvent(progress);
   }
   
   /**
-   * Copy the input stream of the selected zip entry to disk.
+   * Copy the input stream of the selected zip entry to disk. The parent directory must exist.
    * 
    * @param zipEntry Current ZIP entry.
    * @param zipFile  The ZIP file (source).
    * @param file     target file.
+   * @param digester Receives the extracted content. May be <code>null</code>.
    *  
    * @throws IOException  If unZipping fails.
    */
-  private void unzipInternal(ZipEntry zipEntry, ZipFile zipFile, File file) throws IOException {
-
-    File parent = file.getParentFile();
-    if (parent != null) {
-      parent.mkdirs();
-    }
-
+  private void unzipInternal(ZipEntry zipEntry, ZipFile zipFile, File file, Digester digester) throws IOException {
     //  Extract the file
     try(
         InputStream is = zipFile.getInputStream(zipEntry);                  
         FileOutputStream fos = new FileOutputStream(file) ) {
-      FileSystemUtil.copyInputStreamToOutputStream(is, fos, true);
+      if (digester != null) {
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+          fos.write(buffer, 0, read);
+          digester.update(buffer, 0, read);
+        }
+      } else {
+        FileSystemUtil.copyInputStreamToOutputStream(is, fos, true);
+      }
     } catch (Exception e) {
       logger.error(e, e);
     }
@@ -287,7 +1069,7 @@ public final class ArchiveBuilder {
    * 
    * @param progress A ProgressChangeEvent object.
    */
-  private void fireChangeEvent(ProgressChangeEvent progress) {
+  private synchronized void fireChangeEvent(ProgressChangeEvent progress) {
     for (ProgressChangeListener progressChangeListener : listeners) {
       progressChangeListener.change(progress);
     }
@@ -1,5 +1,7 @@
 package com.oxygenxml.translation.support.util;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.xml.parsers.ParserConfigurationException;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
@@ -17,10 +19,12 @@ public class OxygenParserCreator implements ParserCreator {
   private XMLUtilAccess access;
 
   /**
-   * We reuse the grammar to speed up the parsing.
+   * We reuse the grammar to speed up the parsing. The pool is shared by the parsers of all the threads
+   * of a run, which create their parsers through the same creator. Each run has a new creator, so it
+   * sees the DTDs and catalogs changed since the previous one.
    */
-  private Object grammar;
-  
+  private final AtomicReference<Object> grammar = new AtomicReference<>();
+
   /**
    * Constructor.
    * 
@@ -35,9 +39,9 @@ public class OxygenParserCreator implements ParserCreator {
    */
   public XMLReader createXMLReader() throws ParserConfigurationException, SAXException {
     
-    XMLReaderWithGrammar bundle = access.newNonValidatingXMLReader(grammar);
-    // Keep the grammar.
-    grammar = bundle.getGrammarCache();
+    XMLReaderWithGrammar bundle = access.newNonValidatingXMLReader(grammar.get());
+    // Keep the first grammar pool. The next parsers were given the same one.
+    grammar.compareAndSet(null, bundle.getGrammarCache());
     
     return bundle.getXmlReader();
   }
@@ -97,6 +97,34 @@ public class PackageGeneratorUtil {
       final boolean packAll,
       final List<ResourceInfo> modifiedResources,
       final boolean generateXHTMLReport) {
+    return createPackage(rootMap, chosenDir, pluginWorkspace, packAll, modifiedResources, generateXHTMLReport, 0);
+  }
+  
+  /**
+   *  
+   * Packs the modified files or an entire directory in the specified chosenDir, possibly split 
+   * in size-capped volumes. 
+   *  
+   * @param rootMap The location of the parent directory of the current ditamap.
+   * @param chosenDir Where to save the archive. The volumes are named after it. If a package was already
+   * saved there, its unchanged entries are copied without compressing them again.
+   * @param pluginWorkspace Entry point for accessing the DITA Maps area.
+   * @param packAll  True if the user wants to pack the entire directory.
+   * @param modifiedResources All the modified files.
+   * @param generateXHTMLReport  True if the user wants to create a 
+   *        report with the modified files.
+   * @param maxVolumeSize The maximum size of a package volume, in bytes. 0 to create a single archive.
+   * 
+   * @return The worker that generates the archive with modified files.
+   */
+  public static ZipWorker createPackage( 
+      final URL rootMap, 
+      File chosenDir,
+      final StandalonePluginWorkspace pluginWorkspace,
+      final boolean packAll,
+      final List<ResourceInfo> modifiedResources,
+      final boolean generateXHTMLReport,
+      long maxVolumeSize) {
 
     // 1. Start the processing. (the ZIP Worker)
     // 2. Show the dialog. 
@@ -113,6 +141,9 @@ public class PackageGeneratorUtil {
     } else { 
       zipTask = new ZipWorker(rootMap, chosenDir, modifiedResources);
     }
+    zipTask.setMaxVolumeSize(maxVolumeSize);
+    // When regenerating a package, the entries that didn't change are copied from the previous one.
+    zipTask.setPreviousPackage(chosenDir);
 
     // Install the progress tracker.
     ProgressDialog.install(
@@ -315,15 +346,128 @@ public class PackageGeneratorUtil {
       List<ProgressChangeListener> listeners, 
       File zipDestinationDir,
       List<ResourceInfo> modifiedResources) throws IOException, StoppedByUserException {
+    URL topLocationURL = PathUtil.calculateTopLocationURL(rootMap, new ChangePackageGenerator(listeners));
+    return zipModifiedResources(rootMap, listeners, zipDestinationDir, modifiedResources, topLocationURL);
+  }
+  
+  /**
+   * Creates a ZIP Package with the given resources.
+   * 
+   * @param rootMap Main map from which all resources are referred.
+   * @param listeners Listeners to be notified.
+   * @param zipDestinationDir File where to save the zip.
+   * @param modifiedResources Modified resources to put in the archive.
+   * @param topLocationURL The common ancestor of all the resources referred in the map, already computed 
+   * while collecting the modified resources.
+   * 
+   * @return A list with the the files that for some reasons didn't make it in the archive.
+   * 
+   * @throws IOException problems creating the archive.
+   * @throws StoppedByUserException The user canceled the operation though the progress listener.
+   */
+  public static List<URL> zipModifiedResources(
+      URL rootMap, 
+      List<ProgressChangeListener> listeners, 
+      File zipDestinationDir,
+      List<ResourceInfo> modifiedResources,
+      URL topLocationURL) throws IOException, StoppedByUserException {
+    return zipModifiedResources(rootMap, listeners, zipDestinationDir, modifiedResources, topLocationURL, 0);
+  }
+  
+  /**
+   * Creates a ZIP Package with the given resources, possibly split in size-capped volumes.
+   * 
+   * @param rootMap Main map from which all resources are referred.
+   * @param listeners Listeners to be notified.
+   * @param zipDestinationDir File where to save the zip. The volumes are named after it.
+   * @param modifiedResources Modified resources to put in the archive.
+   * @param topLocationURL The common ancestor of all the resources referred in the map, already computed 
+   * while collecting the modified resources. <code>null</code> to compute it now.
+   * @param maxVolumeSize The maximum size of a package volume, in bytes. 0 to create a single archive.
+   * 
+   * @return A list with the the files that for some reasons didn't make it in the archive.
+   * 
+   * @throws IOException problems creating the archive.
+   * @throws StoppedByUserException The user canceled the operation though the progress listener.
+   */
+  public static List<URL> zipModifiedResources(
+      URL rootMap, 
+      List<ProgressChangeListener> listeners, 
+      File zipDestinationDir,
+      List<ResourceInfo> modifiedResources,
+      URL topLocationURL,
+      long maxVolumeSize) throws IOException, StoppedByUserException {
+    return zipModifiedResources(rootMap, listeners, zipDestinationDir, modifiedResources, topLocationURL, maxVolumeSize, false);
+  }
+  
+  /**
+   * Creates a ZIP Package with the given resources, possibly split in size-capped volumes and de-duplicated.
+   * 
+   * @param rootMap Main map from which all resources are referred.
+   * @param listeners Listeners to be notified.
+   * @param zipDestinationDir File where to save the zip. The volumes are named after it.
+   * @param modifiedResources Modified resources to put in the archive.
+   * @param topLocationURL The common ancestor of all the resources referred in the map, already computed 
+   * while collecting the modified resources. <code>null</code> to compute it now.
+   * @param maxVolumeSize The maximum size of a package volume, in bytes. 0 to create a single archive.
+   * @param deduplicate <code>true</code> to store once the resources with the same digest. 
+   * Their copies are restored when the package is applied.
+   * 
+   * @return A list with the the files that for some reasons didn't make it in the archive.
+   * 
+   * @throws IOException problems creating the archive.
+   * @throws StoppedByUserException The user canceled the operation though the progress listener.
+   */
+  public static List<URL> zipModifiedResources(
+      URL rootMap, 
+      List<ProgressChangeListener> listeners, 
+      File zipDestinationDir,
+      List<ResourceInfo> modifiedResources,
+      URL topLocationURL,
+      long maxVolumeSize,
+      boolean deduplicate) throws IOException, StoppedByUserException {
     ChangePackageGenerator packageBuilder = new ChangePackageGenerator(listeners);
-    URL topLocationURL = PathUtil.calculateTopLocationURL(rootMap, packageBuilder);
+    packageBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
+    packageBuilder.setMaxVolumeSize(maxVolumeSize);
+    packageBuilder.setDeduplicate(deduplicate);
+    return zipModifiedResources(rootMap, packageBuilder, zipDestinationDir, modifiedResources, topLocationURL);
+  }
+  
+  /**
+   * Creates a ZIP Package with the given resources, using an already configured package generator.
+   * 
+   * @param rootMap Main map from which all resources are referred.
+   * @param packageBuilder The package generator, with its listeners and package options set.
+   * @param zipDestinationDir File where to save the zip. The volumes are named after it.
+   * @param modifiedResources Modified resources to put in the archive.
+   * @param topLocationURL The common ancestor of all the resources referred in the map, already computed 
+   * while collecting the modified resources. <code>null</code> to compute it now.
+   * 
+   * @return A list with the the files that for some reasons didn't make it in the archive.
+   * 
+   * @throws IOException problems creating the archive.
+   * @throws StoppedByUserException The user canceled the operation though the progress listener.
+   */
+  public static List<URL> zipModifiedResources(
+      URL rootMap, 
+      ChangePackageGenerator packageBuilder,
+      File zipDestinationDir,
+      List<ResourceInfo> modifiedResources,
+      URL topLocationURL) throws IOException, StoppedByUserException {
+    if (topLocationURL == null) {
+      topLocationURL = PathUtil.calculateTopLocationURL(rootMap, packageBuilder);
+    }
     
     List<URL> collect = 
         modifiedResources.stream().map(t -> resolve(rootMap, t.getRelativePath())).collect(Collectors.toList());
+    // The digests computed while detecting the changes identify the duplicates.
+    List<String> digests = 
+        modifiedResources.stream().map(ResourceInfo::getMd5).collect(Collectors.toList());
     
     packageBuilder.generateChangedFilesPackage(
         zipDestinationDir, 
         collect, 
+        digests,
         topLocationURL);
 
     return packageBuilder.getFilesNotCopied();
@@ -344,10 +488,54 @@ public class PackageGeneratorUtil {
       List<ProgressChangeListener> listeners, 
       File zipDestinationDir)
       throws IOException, StoppedByUserException {
+    zipEntireRootMapStructure(rootMap, listeners, zipDestinationDir, 0);
+  }
+  
+  /**
+   * Detects and zips the entire root map top directory (the ancestor of all resources referred in the map), 
+   * possibly split in size-capped volumes.
+   * 
+   * @param rootMap Main map from which all resources are referred.
+   * @param listeners Listeners to be notified.
+   * @param zipDestinationDir File where to save the zip. The volumes are named after it.
+   * @param maxVolumeSize The maximum size of a package volume, in bytes. 0 to create a single archive.
+   * 
+   * @throws IOException problems creating the archive.
+   * @throws StoppedByUserException The user canceled the operation though the progress listener.
+   */
+  public static void zipEntireRootMapStructure(
+      URL rootMap, 
+      List<ProgressChangeListener> listeners, 
+      File zipDestinationDir,
+      long maxVolumeSize)
+      throws IOException, StoppedByUserException {
+    ArchiveBuilder archiveBuilder = new ArchiveBuilder(listeners);
+    archiveBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
+    archiveBuilder.setMaxVolumeSize(maxVolumeSize);
+    zipEntireRootMapStructure(rootMap, listeners, archiveBuilder, zipDestinationDir);
+  }
+  
+  /**
+   * Detects and zips the entire root map top directory (the ancestor of all resources referred in the map), 
+   * using an already configured archive builder.
+   * 
+   * @param rootMap Main map from which all resources are referred.
+   * @param listeners Listeners to be notified while detecting the top directory.
+   * @param archiveBuilder The archive builder, with its listeners and package options set.
+   * @param zipDestinationDir File where to save the zip. The volumes are named after it.
+   * 
+   * @throws IOException problems creating the archive.
+   * @throws StoppedByUserException The user canceled the operation though the progress listener.
+   */
+  public static void zipEntireRootMapStructure(
+      URL rootMap, 
+      List<ProgressChangeListener> listeners, 
+      ArchiveBuilder archiveBuilder,
+      File zipDestinationDir)
+      throws IOException, StoppedByUserException {
     ChangePackageGenerator packageBuilder = new ChangePackageGenerator(listeners);
     URL topLocationURL = PathUtil.calculateTopLocationURL(rootMap, packageBuilder);
     
-    ArchiveBuilder archiveBuilder = new ArchiveBuilder(listeners);
     PluginWorkspace pluginWorkspace = PluginWorkspaceProvider.getPluginWorkspace();
     if (pluginWorkspace != null) {
       UtilAccess utilAccess = pluginWorkspace.getUtilAccess();
@@ -1,10 +1,14 @@
 package com.oxygenxml.translation.support.util;
 
 import com.oxygenxml.translation.support.core.ChangePackageGenerator;
+import com.oxygenxml.translation.support.core.MilestoneUtil;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithms;
 import com.oxygenxml.translation.support.core.resource.IRootResource;
 import com.oxygenxml.translation.support.core.resource.ResourceFactory;
+import com.oxygenxml.translation.support.storage.InfoResources;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -122,6 +126,77 @@ public class PathUtil {
     return toReturn;
   }
   
+  /**
+   * Finds the top location folder of a DITA map. The top location recorded in the milestone is used 
+   * when there is one. Otherwise it is calculated by iterating over all the resources of the map, 
+   * see {@link #calculateTopLocationFile(URL)}.
+   * 
+   * @param rootMapUrl URL of DITA map opened in DMM.
+   * 
+   * @return The top location folder or <code>null</code>.
+   */
+  public static File findTopLocationFile(URL rootMapUrl) {
+    File toReturn = null;
+    URL url = getRecordedTopLocationURL(rootMapUrl);
+    if (url != null) {
+      PluginWorkspace pluginWorkspace = PluginWorkspaceProvider.getPluginWorkspace();
+      if (pluginWorkspace != null) {
+        toReturn = pluginWorkspace.getUtilAccess().locateFile(url);
+      }
+    }
+    if (toReturn == null || !toReturn.isDirectory()) {
+      toReturn = calculateTopLocationFile(rootMapUrl);
+    }
+    return toReturn;
+  }
+  
+  /**
+   * Gets the top location recorded in the milestone of a DITA map.
+   * 
+   * @param rootMapUrl URL of DITA map opened in DMM.
+   * 
+   * @return The top location in URL form, or <code>null</code> if there is no milestone or it 
+   * doesn't have the top location.
+   */
+  public static URL getRecordedTopLocationURL(URL rootMapUrl) {
+    URL location = null;
+    try {
+      InfoResources milestone = MilestoneUtil.loadMilestoneHeader(rootMapUrl);
+      if (milestone.getTopLocation() != null) {
+        location = new URL(rootMapUrl, milestone.getTopLocation());
+      }
+    } catch (IOException e) {
+      logger.debug("No recorded top location: " + e.getMessage(), e);
+    }
+    return location;
+  }
+  
+  /**
+   * Expresses the top location relative to the folder of the root map, so that it stays valid 
+   * when the whole project is moved.
+   * 
+   * @param rootMapUrl URL of DITA map.
+   * @param topLocation The top location, as given by {@link #commonPath(Set)}.
+   * 
+   * @return The relative location, like "./" or "../../", or <code>null</code> if the top location 
+   * is not an ancestor of the root map.
+   */
+  public static String getRelativeTopLocation(URL rootMapUrl, String topLocation) {
+    String relative = null;
+    String mapPath = rootMapUrl.toExternalForm();
+    String mapFolder = URLUtil.decodeURIComponent(mapPath.substring(0, mapPath.lastIndexOf('/') + 1));
+    if (topLocation.endsWith("/") && mapFolder.startsWith(topLocation)) {
+      StringBuilder up = new StringBuilder();
+      for (int i = topLocation.length(); i < mapFolder.length(); i++) {
+        if (mapFolder.charAt(i) == '/') {
+          up.append("../");
+        }
+      }
+      relative = up.length() > 0 ? up.toString() : "./";
+    }
+    return relative;
+  }
+  
   /**
    * Calculates the top location using the URL of a DITA MAP.
    * 
@@ -156,9 +231,13 @@ public class PathUtil {
       IRootResource rootRes = ResourceFactory.getInstance().getResource(rootMapUrl);
       if (rootRes != null) {
         List<ResourceInfo> list = new ArrayList<>();
-        list.add(rootRes.getResourceInfo());
         Set<URL> visited = new HashSet<URL>();//NOSONAR
-        packageBuilder.computeResourceInfo(rootRes, list, visited);
+        try {
+          list.add(rootRes.getResourceInfo(DigestAlgorithms.getDefault()));
+          packageBuilder.computeResourceInfo(rootRes, list, visited);
+        } finally {
+          rootRes.close();
+        }
         visited.add(rootMapUrl);
         path = PathUtil.commonPath(visited);
       }
@@ -168,6 +247,29 @@ public class PathUtil {
     return path;
   }
   
+  /**
+   * Resolves a relative path read from a package, rejecting the ones that would point outside the folder
+   * where the package is extracted, like "../file.dita".
+   * 
+   * @param destDir The folder where the package is extracted.
+   * @param relativePath The relative path.
+   * 
+   * @return The file.
+   * 
+   * @throws IOException The path points outside the folder.
+   */
+  public static File resolveInside(File destDir, String relativePath) throws IOException {
+    File file = new File(destDir, relativePath);
+    String dir = destDir.getCanonicalPath();
+    if (!dir.endsWith(File.separator)) {
+      dir += File.separator;
+    }
+    if (!file.getCanonicalPath().startsWith(dir)) {
+      throw new IOException("The package refers a file outside of " + destDir + ": " + relativePath);
+    }
+    return file;
+  }
+  
   /**
    * Creates a temporary folder in the OS's temporary files system.
    * 
@@ -0,0 +1,56 @@
+package com.oxygenxml.translation.support.util;
+
+import javax.xml.parsers.ParserConfigurationException;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Keeps a parser for each thread, so a thread that parses many documents configures a parser only once.
+ * The parsers are created by another {@link ParserCreator}.
+ * 
+ * A parser is used for one document at a time, so the caller must set its handlers before each parse.
+ * The parsers of the short-lived threads go away with them. A long-lived thread, like the one that walks
+ * the map, must drop its parser with {@link #release()} when it's done.
+ */
+public class PooledParserCreator implements ParserCreator {
+  
+  /**
+   * Creates the parsers.
+   */
+  private final ParserCreator delegate;
+  
+  /**
+   * The parser of each thread.
+   */
+  private final ThreadLocal<XMLReader> parsers = new ThreadLocal<>();
+
+  /**
+   * Constructor.
+   * 
+   * @param delegate Creates the parsers. Used from several threads.
+   */
+  public PooledParserCreator(ParserCreator delegate) {
+    this.delegate = delegate;
+  }
+  
+  /**
+   * @return The parser of the current thread. Created on the first call.
+   * 
+   * @see com.oxygenxml.translation.support.util.ParserCreator#createXMLReader()
+   */
+  public XMLReader createXMLReader() throws ParserConfigurationException, SAXException {
+    XMLReader parser = parsers.get();
+    if (parser == null) {
+      parser = delegate.createXMLReader();
+      parsers.set(parser);
+    }
+    return parser;
+  }
+  
+  /**
+   * Drops the parser of the current thread, if any.
+   */
+  public void release() {
+    parsers.remove();
+  }
+}
@@ -0,0 +1,75 @@
+package com.oxygenxml.translation.support.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts what happened to the files of a package when it was applied: how many were written over
+ * local files, how many were created and how many were skipped because the local file already had
+ * the same content. See {@link ArchiveBuilder#setSkipUnchanged(boolean)}.
+ *
+ * The counters are updated by the threads that extract the files.
+ */
+public final class UnpackStatistics {
+
+  /**
+   * The files written over local files.
+   */
+  private final AtomicInteger writtenFiles = new AtomicInteger();
+
+  /**
+   * The files that were not written because the local file has the same content.
+   */
+  private final AtomicInteger skippedFiles = new AtomicInteger();
+
+  /**
+   * The files that didn't exist locally.
+   */
+  private final AtomicInteger newFiles = new AtomicInteger();
+
+  /**
+   * @return How many files were written over local files.
+   */
+  public int getWrittenFiles() {
+    return writtenFiles.get();
+  }
+
+  /**
+   * @return How many files were not written because the local file has the same content.
+   */
+  public int getSkippedFiles() {
+    return skippedFiles.get();
+  }
+
+  /**
+   * @return How many files didn't exist locally.
+   */
+  public int getNewFiles() {
+    return newFiles.get();
+  }
+
+  /**
+   * A file was written over a local file.
+   */
+  void fileWritten() {
+    writtenFiles.incrementAndGet();
+  }
+
+  /**
+   * A file was not written because the local file has the same content.
+   */
+  void fileSkipped() {
+    skippedFiles.incrementAndGet();
+  }
+
+  /**
+   * A file that didn't exist locally was written.
+   */
+  void fileCreated() {
+    newFiles.incrementAndGet();
+  }
+
+  @Override
+  public String toString() {
+    return "written: " + getWrittenFiles() + ", skipped: " + getSkippedFiles() + ", new: " + getNewFiles();
+  }
+}
@@ -0,0 +1,112 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Stores the entries whose content is already compressed and deflates the others.
+ *
+ * An entry is considered already compressed if its extension is a known compressed format
+ * (images, audio, video, archives, PDF...), if its MIME type is an audio or video one, or if the
+ * first bytes of its content are nearly random, meaning that DEFLATE would gain almost nothing.
+ */
+public class AdaptiveCompressionPolicy implements CompressionPolicy {
+
+  /**
+   * The extensions of the formats that are already compressed.
+   */
+  private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+      // Images
+      "png", "jpg", "jpeg", "jpe", "jfif", "gif", "webp", "svgz", "jp2", "heic", "avif",
+      // Video and audio
+      "mp4", "m4v", "mov", "avi", "mkv", "webm", "wmv", "flv", "mpg", "mpeg",
+      "mp3", "m4a", "aac", "ogg", "oga", "flac", "wma",
+      // Documents and archives
+      "pdf", "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "jar", "war",
+      "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub", "woff", "woff2"));
+
+  /**
+   * Samples shorter than this are always deflated. There is too little content to judge it.
+   */
+  private static final int MIN_SAMPLE_LENGTH = 512;
+
+  /**
+   * The entropy, in bits per byte, above which a content is considered already compressed.
+   */
+  private final double entropyThreshold;
+
+  /**
+   * Constructor.
+   *
+   * @param entropyThreshold The entropy, in bits per byte, above which a sample is considered already
+   * compressed. From 0 to 8. Higher than 8 to ignore the content.
+   */
+  public AdaptiveCompressionPolicy(double entropyThreshold) {
+    this.entropyThreshold = entropyThreshold;
+  }
+
+  /**
+   * Constructor. Samples with more than 7.5 bits of entropy per byte are considered already compressed.
+   */
+  public AdaptiveCompressionPolicy() {
+    this(7.5);
+  }
+
+  /**
+   * @see com.oxygenxml.translation.support.zip.CompressionPolicy#getMethod(java.lang.String, byte[], int)
+   */
+  @Override
+  public int getMethod(String name, byte[] sample, int length) {
+    int method = ZipArchiveEntry.DEFLATED;
+    if (isCompressedFormat(name)
+        || (length >= MIN_SAMPLE_LENGTH && entropy(sample, length) > entropyThreshold)) {
+      method = ZipArchiveEntry.STORED;
+    }
+    return method;
+  }
+
+  /**
+   * @param name The name of an entry.
+   *
+   * @return <code>true</code> if the extension or the MIME type of the entry is a compressed format.
+   */
+  static boolean isCompressedFormat(String name) {
+    boolean compressed = false;
+    int dot = name.lastIndexOf('.');
+    if (dot != -1 && dot > name.lastIndexOf('/')) {
+      compressed = COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+    }
+    if (!compressed) {
+      String mimeType = URLConnection.getFileNameMap().getContentTypeFor(name);
+      compressed = mimeType != null && (mimeType.startsWith("video/") || mimeType.startsWith("audio/"));
+    }
+    return compressed;
+  }
+
+  /**
+   * Computes the Shannon entropy of a sample.
+   *
+   * @param sample The bytes.
+   * @param length How many bytes to consider.
+   *
+   * @return The entropy, in bits per byte. From 0 to 8.
+   */
+  static double entropy(byte[] sample, int length) {
+    int[] counts = new int[256];
+    for (int i = 0; i < length; i++) {
+      counts[sample[i] & 0xFF]++;
+    }
+
+    double entropy = 0;
+    for (int count : counts) {
+      if (count > 0) {
+        double p = (double) count / length;
+        entropy -= p * Math.log(p);
+      }
+    }
+    return entropy / Math.log(2);
+  }
+}
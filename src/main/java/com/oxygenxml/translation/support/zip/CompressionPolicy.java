@@ -0,0 +1,19 @@
+package com.oxygenxml.translation.support.zip;
+
+/**
+ * Decides how each entry of an archive is compressed.
+ */
+@FunctionalInterface
+public interface CompressionPolicy {
+
+  /**
+   * Chooses the compression method of an entry.
+   *
+   * @param name The name of the entry.
+   * @param sample The first bytes of the entry content.
+   * @param length How many bytes of the sample are valid. Less than the sample size only for short contents.
+   *
+   * @return {@link ZipArchiveEntry#STORED} or {@link ZipArchiveEntry#DEFLATED}.
+   */
+  int getMethod(String name, byte[] sample, int length);
+}
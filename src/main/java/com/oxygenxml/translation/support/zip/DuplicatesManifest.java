@@ -0,0 +1,67 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * The manifest of a de-duplicated package. Each unique content is stored once in the package and
+ * the manifest maps the paths of its other copies to the stored entry.
+ *
+ * The manifest is saved in the package as a properties file: <code>duplicate/path=stored/path</code>.
+ */
+public final class DuplicatesManifest {
+
+  /**
+   * The folder of the package metadata. It can also hold resources of the map, which are extracted.
+   */
+  public static final String METADATA_FOLDER = "META-INF/";
+
+  /**
+   * The name of the manifest entry.
+   */
+  public static final String ENTRY_NAME = METADATA_FOLDER + "duplicates.properties";
+
+  /**
+   * Private constructor. Avoid instantiation.
+   */
+  private DuplicatesManifest() {
+    // Nothing
+  }
+
+  /**
+   * @param name The name of a package entry.
+   *
+   * @return <code>true</code> if the entry holds package metadata, not a resource. Only the manifests 
+   * written by the package generator and the entry of their folder are metadata. The folder is still
+   * created for the resources in it.
+   */
+  public static boolean isMetadata(String name) {
+    return METADATA_FOLDER.equals(name) || ENTRY_NAME.equals(name) || PackageManifest.ENTRY_NAME.equals(name);
+  }
+
+  /**
+   * Serializes a manifest. The lines are sorted and there is no timestamp comment, so the same
+   * duplicates always give the same content.
+   *
+   * @param duplicates The paths of the duplicates mapped to the paths of the stored entries.
+   *
+   * @return The content of the manifest entry.
+   */
+  public static byte[] write(Map<String, String> duplicates) {
+    return SortedProperties.store(duplicates);
+  }
+
+  /**
+   * Reads a manifest.
+   *
+   * @param in The content of the manifest entry.
+   *
+   * @return The paths of the duplicates, sorted, mapped to the paths of the stored entries.
+   *
+   * @throws IOException Unable to read the manifest.
+   */
+  public static Map<String, String> read(InputStream in) throws IOException {
+    return SortedProperties.load(in);
+  }
+}
@@ -0,0 +1,222 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.log4j.Logger;
+
+import com.oxygenxml.translation.support.util.PathUtil;
+
+/**
+ * The files of a package, read from the central directories of its volumes. Nothing is extracted
+ * when the package is opened, so it takes the same time no matter how large the files are.
+ * A file is extracted only when it is asked for, see {@link #extract(String, File)}.
+ *
+ * The copies of the de-duplicated resources are listed too. They are extracted from their stored entry.
+ */
+public final class PackageIndex implements Closeable {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(PackageIndex.class.getName());
+
+  /**
+   * The volumes of the package.
+   */
+  private final List<File> volumes;
+
+  /**
+   * The opened volumes.
+   */
+  private final List<ZipFile> zipFiles = new ArrayList<>();
+
+  /**
+   * The relative paths of the files, in the order in which {@link com.oxygenxml.translation.support.util.ArchiveBuilder}
+   * extracts them.
+   */
+  private final List<String> filePaths = new ArrayList<>();
+
+  /**
+   * The entry that holds the content of each file, by the relative paths of the files.
+   */
+  private final Map<String, ZipEntry> entries = new HashMap<>();
+
+  /**
+   * The volume of each file, by the relative paths of the files.
+   */
+  private final Map<String, ZipFile> entryVolumes = new HashMap<>();
+
+  /**
+   * The files compared with the ones sent, by their relative paths. Sorted.
+   */
+  private final Map<String, PackageManifest.Status> entryStatuses = new TreeMap<>();
+
+  /**
+   * Opens the volumes of a package and reads their central directories and metadata.
+   *
+   * @param volumes The volumes of the package. See {@link VolumePacker#findVolumes(File)}.
+   *
+   * @throws IOException Unable to read a volume.
+   */
+  public PackageIndex(List<File> volumes) throws IOException {
+    this.volumes = new ArrayList<>(volumes);
+    try {
+      for (File volume : volumes) {
+        ZipFile zipFile = new ZipFile(volume);
+        zipFiles.add(zipFile);
+        readVolume(zipFile);
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the entries and the metadata of a volume.
+   *
+   * @param zipFile The volume.
+   *
+   * @throws IOException Unable to read the metadata.
+   */
+  private void readVolume(ZipFile zipFile) throws IOException {
+    Map<String, String> duplicates = Collections.emptyMap();
+    PackageManifest manifest = null;
+    List<String> volumePaths = new ArrayList<>();
+    for (ZipEntry zipEntry : Collections.list(zipFile.entries())) {
+      String name = zipEntry.getName();
+      if (DuplicatesManifest.ENTRY_NAME.equals(name)) {
+        try (InputStream is = zipFile.getInputStream(zipEntry)) {
+          duplicates = DuplicatesManifest.read(is);
+        }
+      } else if (PackageManifest.ENTRY_NAME.equals(name)) {
+        try (InputStream is = zipFile.getInputStream(zipEntry)) {
+          manifest = PackageManifest.read(is);
+        } catch (IOException e) {
+          logger.warn("Unable to read the package manifest: " + e.getMessage(), e);
+        }
+      } else if (!DuplicatesManifest.isMetadata(name) && !name.endsWith("/")) {
+        volumePaths.add(name);
+        entries.put(name, zipEntry);
+        entryVolumes.put(name, zipFile);
+      }
+    }
+    // The copies are restored after the stored entries.
+    for (Map.Entry<String, String> duplicate : duplicates.entrySet()) {
+      ZipEntry stored = zipFile.getEntry(duplicate.getValue());
+      if (stored != null) {
+        volumePaths.add(duplicate.getKey());
+        entries.put(duplicate.getKey(), stored);
+        entryVolumes.put(duplicate.getKey(), zipFile);
+      }
+    }
+    filePaths.addAll(volumePaths);
+
+    if (manifest != null) {
+      for (String path : volumePaths) {
+        ZipEntry zipEntry = entries.get(path);
+        PackageManifest.Status status = manifest.classifyByCrc(path, zipEntry.getSize(), zipEntry.getCrc());
+        if (status != null) {
+          entryStatuses.put(path, status);
+        }
+      }
+      for (String sent : manifest.getItems().keySet()) {
+        if (!entries.containsKey(sent)) {
+          entryStatuses.put(sent, PackageManifest.Status.MISSING);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The volumes of the package.
+   */
+  public List<File> getVolumes() {
+    return Collections.unmodifiableList(volumes);
+  }
+
+  /**
+   * @return The relative paths of the files, in the order in which they are extracted.
+   */
+  public List<String> getFilePaths() {
+    return Collections.unmodifiableList(filePaths);
+  }
+
+  /**
+   * The files are classified by their sizes and CRC-32, from the central directory: the ones not sent are
+   * {@link PackageManifest.Status#NEW}, the ones with another size or CRC-32 are {@link PackageManifest.Status#MODIFIED}
+   * and the ones with the same size and CRC-32 are {@link PackageManifest.Status#UNCHANGED}. When the manifest
+   * has no CRC-32 for a file with the same size, the file has no status, its content must be read to know it.
+   *
+   * @return The statuses, by the relative paths of the files. Empty if the package has no manifest.
+   */
+  public Map<String, PackageManifest.Status> getEntryStatuses() {
+    return Collections.unmodifiableMap(entryStatuses);
+  }
+
+  /**
+   * Extracts a file, if it wasn't extracted already.
+   *
+   * @param path The relative path of the file.
+   * @param destDir Where to extract the file.
+   *
+   * @return The extracted file.
+   *
+   * @throws IOException The package has no such file or it can't be extracted.
+   */
+  public File extract(String path, File destDir) throws IOException {
+    ZipEntry zipEntry = entries.get(path);
+    if (zipEntry == null) {
+      throw new IOException("The package has no file: " + path);
+    }
+    File file = PathUtil.resolveInside(destDir, path);
+    if (!file.exists()) {
+      File parent = file.getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      File partial = new File(file.getPath() + ".part");
+      try (InputStream is = entryVolumes.get(path).getInputStream(zipEntry);
+          OutputStream os = new FileOutputStream(partial)) {
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+          os.write(buffer, 0, read);
+        }
+      }
+      if (!partial.renameTo(file)) {
+        partial.delete();
+        throw new IOException("Unable to extract: " + path);
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Closes the volumes.
+   */
+  @Override
+  public void close() {
+    for (ZipFile zipFile : zipFiles) {
+      try {
+        zipFile.close();
+      } catch (IOException e) {
+        // Nothing more to do with it.
+      }
+    }
+    zipFiles.clear();
+  }
+}
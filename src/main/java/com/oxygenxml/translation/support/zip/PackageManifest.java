@@ -0,0 +1,349 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The manifest of a changed files package. It records what was sent: the path, the digest, the size and
+ * the CRC-32 of every resource, the top location of the resources and the date of the milestone the changes were
+ * detected against.
+ *
+ * When the package comes back, each returned file is compared with the recorded digest and size, so
+ * the files that were actually changed are known without reading the local files. Before the files are
+ * extracted, they are compared with the recorded size and CRC-32, as found in the central directory.
+ *
+ * The manifest is saved in the package as a properties file. Each volume of a split package has the
+ * manifest of its own entries.
+ */
+public final class PackageManifest {
+
+  /**
+   * The name of the manifest entry.
+   */
+  public static final String ENTRY_NAME = DuplicatesManifest.METADATA_FOLDER + "manifest.properties";
+
+  /**
+   * The key of the top location.
+   */
+  private static final String TOP_LOCATION = "topLocation";
+
+  /**
+   * The key of the milestone date, in milliseconds.
+   */
+  private static final String MILESTONE_DATE = "milestoneDate";
+
+  /**
+   * The key of the digest algorithm.
+   */
+  private static final String DIGEST_ALGORITHM = "digestAlgorithm";
+
+  /**
+   * The prefix of the keys of the resources. The value is the size, followed by the digest, if known.
+   */
+  private static final String ENTRY_PREFIX = "entry.";
+
+  /**
+   * The prefix of the keys of the CRC-32 of the resources, in hexadecimal.
+   */
+  private static final String CRC_PREFIX = "crc.";
+
+  /**
+   * The CRC-32 of a resource whose CRC-32 is unknown.
+   */
+  public static final long UNKNOWN_CRC = -1;
+
+  /**
+   * How a returned file compares with the one that was sent.
+   */
+  public enum Status {
+    /**
+     * The file has the same content as the one sent.
+     */
+    UNCHANGED,
+    /**
+     * The file has a different content than the one sent, or the content sent is unknown.
+     */
+    MODIFIED,
+    /**
+     * The file was not sent.
+     */
+    NEW,
+    /**
+     * The file was sent but is not in the returned package.
+     */
+    MISSING
+  }
+
+  /**
+   * A resource sent in the package.
+   */
+  public static final class Item {
+    /**
+     * The digest of the content. <code>null</code> if unknown.
+     */
+    private final String digest;
+    /**
+     * The size of the content.
+     */
+    private final long size;
+    /**
+     * The CRC-32 of the content. {@link PackageManifest#UNKNOWN_CRC} if unknown.
+     */
+    private final long crc;
+
+    /**
+     * Constructor.
+     *
+     * @param digest The digest of the content. <code>null</code> if unknown.
+     * @param size The size of the content.
+     */
+    public Item(String digest, long size) {
+      this(digest, size, UNKNOWN_CRC);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param digest The digest of the content. <code>null</code> if unknown.
+     * @param size The size of the content.
+     * @param crc The CRC-32 of the content. {@link PackageManifest#UNKNOWN_CRC} if unknown.
+     */
+    public Item(String digest, long size, long crc) {
+      this.digest = digest;
+      this.size = size;
+      this.crc = crc;
+    }
+
+    /**
+     * @return The digest of the content. <code>null</code> if unknown.
+     */
+    public String getDigest() {
+      return digest;
+    }
+
+    /**
+     * @return The size of the content.
+     */
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * @return The CRC-32 of the content. {@link PackageManifest#UNKNOWN_CRC} if unknown.
+     */
+    public long getCrc() {
+      return crc;
+    }
+  }
+
+  /**
+   * The common ancestor of the resources. <code>null</code> if unknown.
+   */
+  private String topLocation;
+
+  /**
+   * The creation date of the milestone. <code>null</code> if unknown.
+   */
+  private Date milestoneDate;
+
+  /**
+   * The name of the algorithm of the digests. <code>null</code> if unknown.
+   */
+  private String digestAlgorithm;
+
+  /**
+   * The resources, by their paths.
+   */
+  private final Map<String, Item> items = new TreeMap<>();
+
+  /**
+   * @param topLocation The common ancestor of the resources.
+   */
+  public void setTopLocation(String topLocation) {
+    this.topLocation = topLocation;
+  }
+
+  /**
+   * @return The common ancestor of the resources. <code>null</code> if unknown.
+   */
+  public String getTopLocation() {
+    return topLocation;
+  }
+
+  /**
+   * @param milestoneDate The creation date of the milestone the changes were detected against.
+   */
+  public void setMilestoneDate(Date milestoneDate) {
+    this.milestoneDate = milestoneDate;
+  }
+
+  /**
+   * @return The creation date of the milestone. <code>null</code> if unknown.
+   */
+  public Date getMilestoneDate() {
+    return milestoneDate;
+  }
+
+  /**
+   * @param digestAlgorithm The name of the algorithm of the digests.
+   */
+  public void setDigestAlgorithm(String digestAlgorithm) {
+    this.digestAlgorithm = digestAlgorithm;
+  }
+
+  /**
+   * @return The name of the algorithm of the digests. <code>null</code> if unknown.
+   */
+  public String getDigestAlgorithm() {
+    return digestAlgorithm;
+  }
+
+  /**
+   * Records a resource.
+   *
+   * @param path The path of the resource in the package.
+   * @param digest The digest of its content. <code>null</code> if unknown.
+   * @param size The size of its content.
+   */
+  public void add(String path, String digest, long size) {
+    add(path, digest, size, UNKNOWN_CRC);
+  }
+
+  /**
+   * Records a resource.
+   *
+   * @param path The path of the resource in the package.
+   * @param digest The digest of its content. <code>null</code> if unknown.
+   * @param size The size of its content.
+   * @param crc The CRC-32 of its content, as written in the package. {@link #UNKNOWN_CRC} if unknown.
+   */
+  public void add(String path, String digest, long size, long crc) {
+    items.put(path, new Item(digest, size, crc));
+  }
+
+  /**
+   * @return The resources, by their paths, sorted.
+   */
+  public Map<String, Item> getItems() {
+    return Collections.unmodifiableMap(items);
+  }
+
+  /**
+   * Compares a returned file with the one sent.
+   *
+   * @param path The path of the file in the package.
+   * @param digest The digest of the returned content, computed with {@link #getDigestAlgorithm()}.
+   * <code>null</code> if unknown.
+   * @param size The size of the returned content.
+   *
+   * @return The status of the file. Never {@link Status#MISSING}.
+   */
+  public Status classify(String path, String digest, long size) {
+    Item item = items.get(path);
+    Status status;
+    if (item == null) {
+      status = Status.NEW;
+    } else if (digest != null && digest.equals(item.getDigest()) && size == item.getSize()) {
+      status = Status.UNCHANGED;
+    } else {
+      status = Status.MODIFIED;
+    }
+    return status;
+  }
+
+  /**
+   * Compares a returned file with the one sent, knowing only the size and the CRC-32 of the returned content, 
+   * as they are recorded in the central directory of the package.
+   *
+   * @param path The path of the file in the package.
+   * @param size The size of the returned content.
+   * @param crc The CRC-32 of the returned content. {@link #UNKNOWN_CRC} if unknown.
+   *
+   * @return {@link Status#NEW}, {@link Status#MODIFIED} if the sizes or the CRC-32 differ, 
+   * {@link Status#UNCHANGED} if they are the same, or <code>null</code> if the CRC-32 of the file sent 
+   * is not recorded and only the content can tell.
+   */
+  public Status classifyByCrc(String path, long size, long crc) {
+    Item item = items.get(path);
+    Status status = null;
+    if (item == null) {
+      status = Status.NEW;
+    } else if (size != item.getSize()) {
+      status = Status.MODIFIED;
+    } else if (crc != UNKNOWN_CRC && item.getCrc() != UNKNOWN_CRC) {
+      status = crc == item.getCrc() ? Status.UNCHANGED : Status.MODIFIED;
+    }
+    return status;
+  }
+
+  /**
+   * Serializes the manifest. The same manifest always gives the same content.
+   *
+   * @return The content of the manifest entry.
+   */
+  public byte[] write() {
+    Map<String, String> properties = new TreeMap<>();
+    if (topLocation != null) {
+      properties.put(TOP_LOCATION, topLocation);
+    }
+    if (milestoneDate != null) {
+      properties.put(MILESTONE_DATE, String.valueOf(milestoneDate.getTime()));
+    }
+    if (digestAlgorithm != null) {
+      properties.put(DIGEST_ALGORITHM, digestAlgorithm);
+    }
+    for (Map.Entry<String, Item> item : items.entrySet()) {
+      String digest = item.getValue().getDigest();
+      properties.put(
+          ENTRY_PREFIX + item.getKey(),
+          item.getValue().getSize() + (digest != null ? " " + digest : ""));
+      if (item.getValue().getCrc() != UNKNOWN_CRC) {
+        properties.put(CRC_PREFIX + item.getKey(), Long.toHexString(item.getValue().getCrc()));
+      }
+    }
+    return SortedProperties.store(properties);
+  }
+
+  /**
+   * Reads a manifest.
+   *
+   * @param in The content of the manifest entry.
+   *
+   * @return The manifest.
+   *
+   * @throws IOException Unable to read the manifest.
+   */
+  public static PackageManifest read(InputStream in) throws IOException {
+    PackageManifest manifest = new PackageManifest();
+    Map<String, String> properties = SortedProperties.load(in);
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      String key = property.getKey();
+      String value = property.getValue();
+      try {
+        if (key.startsWith(ENTRY_PREFIX)) {
+          String path = key.substring(ENTRY_PREFIX.length());
+          int separator = value.indexOf(' ');
+          String crc = properties.get(CRC_PREFIX + path);
+          manifest.add(
+              path,
+              separator != -1 ? value.substring(separator + 1) : null,
+              Long.parseLong(separator != -1 ? value.substring(0, separator) : value),
+              crc != null ? Long.parseLong(crc, 16) : UNKNOWN_CRC);
+        } else if (TOP_LOCATION.equals(key)) {
+          manifest.setTopLocation(value);
+        } else if (MILESTONE_DATE.equals(key)) {
+          manifest.setMilestoneDate(new Date(Long.parseLong(value)));
+        } else if (DIGEST_ALGORITHM.equals(key)) {
+          manifest.setDigestAlgorithm(value);
+        }
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid package manifest property: " + key, e);
+      }
+    }
+    return manifest;
+  }
+}
@@ -0,0 +1,182 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A package built before, whose entries are copied in a new package when their content didn't change.
+ * See {@link ZipArchiveWriter#setPreviousArchives(List)}.
+ *
+ * The new package is often written over the previous one. The volumes that would be overwritten are
+ * renamed first and deleted when the previous package is closed.
+ *
+ * The digests recorded in the manifests of a changed files package tell which entries have the same content,
+ * see {@link #getDigests(String)}.
+ */
+public class PreviousPackage implements Closeable {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(PreviousPackage.class.getName());
+
+  /**
+   * The volumes of the previous package, opened.
+   */
+  private final List<ZipArchiveReader> archives = new ArrayList<>();
+
+  /**
+   * The volumes renamed so that the new package can be written.
+   */
+  private final List<File> renamed = new ArrayList<>();
+
+  /**
+   * Opens all the volumes of a previous package.
+   *
+   * @param previousPackage The previous package, or one of its volumes.
+   * @param newPackage The location of the new package.
+   *
+   * @throws IOException Unable to read the previous package.
+   */
+  public PreviousPackage(File previousPackage, File newPackage) throws IOException {
+    // The renamed volumes, by their original location.
+    List<File[]> moves = new ArrayList<>();
+    try {
+      for (File volume : VolumePacker.findVolumes(previousPackage)) {
+        if (!volume.exists()) {
+          continue;
+        }
+        if (isOverwritten(volume, newPackage)) {
+          File moved = new File(volume.getParentFile(), volume.getName() + ".previous");
+          moved.delete();
+          if (!volume.renameTo(moved)) {
+            throw new IOException("Unable to rename the previous package: " + volume);
+          }
+          moves.add(new File[] {volume, moved});
+          renamed.add(moved);
+          volume = moved;
+        }
+        archives.add(new ZipArchiveReader(volume));
+      }
+    } catch (IOException e) {
+      closeArchives();
+      // Put the previous package back.
+      for (File[] move : moves) {
+        move[1].renameTo(move[0]);
+      }
+      renamed.clear();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens a previous package, if any.
+   *
+   * @param previousPackage The previous package, or one of its volumes. May be <code>null</code>.
+   * @param newPackage The location of the new package.
+   *
+   * @return The opened package, or <code>null</code> if there is none or it can't be read.
+   * In that case all the entries of the new package are compressed.
+   */
+  public static PreviousPackage open(File previousPackage, File newPackage) {
+    PreviousPackage previous = null;
+    if (previousPackage != null) {
+      try {
+        previous = new PreviousPackage(previousPackage, newPackage);
+      } catch (IOException e) {
+        logger.warn("Unable to reuse the previous package: " + e.getMessage(), e);
+      }
+    }
+    return previous;
+  }
+
+  /**
+   * @return The volumes of the previous package.
+   */
+  public List<ZipArchiveReader> getArchives() {
+    return Collections.unmodifiableList(archives);
+  }
+
+  /**
+   * Reads the digests recorded in the manifests of the volumes, see {@link PackageManifest}.
+   *
+   * @param digestAlgorithm The name of the algorithm of the digests.
+   *
+   * @return The digests of the entries, by their names. Only the ones computed with the given algorithm.
+   * Empty if the previous package has no manifest.
+   */
+  public Map<String, String> getDigests(String digestAlgorithm) {
+    Map<String, String> digests = new HashMap<>(); //NOSONAR
+    for (ZipArchiveReader archive : archives) {
+      ZipArchiveEntry entry = archive.getEntry(PackageManifest.ENTRY_NAME);
+      if (entry != null && ZipArchiveReader.isCopyable(entry)) {
+        try (InputStream in = archive.openContent(entry)) {
+          PackageManifest manifest = PackageManifest.read(in);
+          if (digestAlgorithm.equals(manifest.getDigestAlgorithm())) {
+            for (Map.Entry<String, PackageManifest.Item> item : manifest.getItems().entrySet()) {
+              if (item.getValue().getDigest() != null) {
+                digests.put(item.getKey(), item.getValue().getDigest());
+              }
+            }
+          }
+        } catch (IOException e) {
+          logger.warn("Unable to read the manifest of the previous package: " + e.getMessage(), e);
+        }
+      }
+    }
+    return digests;
+  }
+
+  /**
+   * Closes the volumes and deletes the ones renamed.
+   */
+  @Override
+  public void close() {
+    closeArchives();
+    for (File file : renamed) {
+      file.delete();
+    }
+    renamed.clear();
+  }
+
+  /**
+   * Closes the volumes.
+   */
+  private void closeArchives() {
+    for (ZipArchiveReader archive : archives) {
+      try {
+        archive.close();
+      } catch (IOException e) {
+        // Nothing more to do with it.
+      }
+    }
+    archives.clear();
+  }
+
+  /**
+   * @param volume A volume of the previous package.
+   * @param newPackage The location of the new package.
+   *
+   * @return <code>true</code> if the new package, or one of its volumes, is written over the given volume.
+   */
+  private static boolean isOverwritten(File volume, File newPackage) throws IOException {
+    File canonicalVolume = volume.getCanonicalFile();
+    boolean overwritten = canonicalVolume.equals(newPackage.getCanonicalFile());
+    if (!overwritten) {
+      File first = VolumePacker.getVolumeFile(newPackage, 0, 2).getCanonicalFile();
+      String prefix = first.getName().substring(0, first.getName().length() - "001.zip".length());
+      overwritten = canonicalVolume.getParentFile().equals(first.getParentFile())
+          && canonicalVolume.getName().startsWith(prefix);
+    }
+    return overwritten;
+  }
+}
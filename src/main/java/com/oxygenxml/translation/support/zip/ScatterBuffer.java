@@ -0,0 +1,128 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Holds the compressed content of an entry until it can be written in the archive. The content is kept
+ * in memory up to a threshold and spills to a temporary file after that.
+ */
+class ScatterBuffer extends OutputStream {
+
+  /**
+   * The content, while in memory.
+   */
+  private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+
+  /**
+   * How many bytes are kept in memory before spilling to disk.
+   */
+  private final int threshold;
+
+  /**
+   * The temporary file, once spilled.
+   */
+  private File file;
+
+  /**
+   * Writes to the temporary file, once spilled.
+   */
+  private OutputStream fileOut;
+
+  /**
+   * The number of bytes written.
+   */
+  private long size;
+
+  /**
+   * <code>true</code> after the content was released.
+   */
+  private boolean released;
+
+  /**
+   * Constructor.
+   *
+   * @param threshold How many bytes are kept in memory before spilling to a temporary file.
+   */
+  ScatterBuffer(int threshold) {
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    if (released) {
+      throw new IOException("The buffer was released.");
+    }
+    if (fileOut == null && memory.size() + len > threshold) {
+      file = File.createTempFile("scatter", ".tmp");
+      fileOut = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+      memory.writeTo(fileOut);
+      memory = null;
+    }
+
+    if (fileOut != null) {
+      fileOut.write(b, off, len);
+    } else {
+      memory.write(b, off, len);
+    }
+    size += len;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (fileOut != null) {
+      fileOut.close();
+    }
+  }
+
+  /**
+   * @return The number of bytes written.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Copies the content to the given stream. The buffer must be closed first.
+   *
+   * @param out Receives the content.
+   *
+   * @throws IOException Problems reading the temporary file or writing the content.
+   */
+  public synchronized void writeTo(OutputStream out) throws IOException {
+    if (file != null) {
+      Files.copy(file.toPath(), out);
+    } else if (memory != null) {
+      memory.writeTo(out);
+    }
+  }
+
+  /**
+   * Drops the content and deletes the temporary file, if any. Can be called more than once.
+   */
+  public synchronized void release() {
+    released = true;
+    memory = null;
+    if (fileOut != null) {
+      try {
+        fileOut.close();
+      } catch (IOException e) {
+        // Nothing to do. We are deleting the file anyway.
+      }
+    }
+    if (file != null) {
+      file.delete();
+      file = null;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Saves the package metadata as properties files. The lines are sorted and there is no timestamp
+ * comment, so the same properties always give the same content.
+ */
+final class SortedProperties {
+
+  /**
+   * Private constructor. Avoid instantiation.
+   */
+  private SortedProperties() {
+    // Nothing
+  }
+
+  /**
+   * Serializes properties.
+   *
+   * @param properties The properties.
+   *
+   * @return The content of the properties file, in ISO-8859-1.
+   */
+  static byte[] store(Map<String, String> properties) {
+    Properties toStore = new Properties();
+    toStore.putAll(properties);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      toStore.store(out, null);
+    } catch (IOException e) {
+      // Doesn't happen in memory.
+      throw new IllegalStateException(e);
+    }
+    
+    // The properties are escaped to ISO-8859-1.
+    String[] lines = new String(out.toByteArray(), StandardCharsets.ISO_8859_1).split("\\r?\\n");
+    Arrays.sort(lines);
+    StringBuilder content = new StringBuilder();
+    for (String line : lines) {
+      if (!line.isEmpty() && !line.startsWith("#")) {
+        content.append(line).append('\n');
+      }
+    }
+    return content.toString().getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Reads properties.
+   *
+   * @param in The content of the properties file.
+   *
+   * @return The properties, sorted by key.
+   *
+   * @throws IOException Unable to read the properties.
+   */
+  static Map<String, String> load(InputStream in) throws IOException {
+    Properties properties = new Properties();
+    properties.load(in);
+    Map<String, String> loaded = new TreeMap<>();
+    for (String key : properties.stringPropertyNames()) {
+      loaded.put(key, properties.getProperty(key));
+    }
+    return loaded;
+  }
+}
@@ -0,0 +1,205 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the entries of a package into size-capped volumes. Every volume is a self-contained ZIP
+ * and no entry spans two volumes.
+ *
+ * The volumes of a package named <code>package.zip</code> are named <code>package.part001.zip</code>,
+ * <code>package.part002.zip</code> and so on.
+ */
+public final class VolumePacker {
+
+  /**
+   * The bytes reserved in each volume for the end of central directory records (ZIP64 included).
+   */
+  public static final int VOLUME_OVERHEAD = 22 + 56 + 20;
+
+  /**
+   * Matches the name of a volume. The first group is the package base name, the second one the volume number.
+   */
+  private static final Pattern VOLUME_NAME = Pattern.compile("(.*)\\.part(\\d{3,})\\.zip", Pattern.CASE_INSENSITIVE);
+
+  /**
+   * Private constructor. Avoid instantiation.
+   */
+  private VolumePacker() {
+    // Nothing
+  }
+
+  /**
+   * Distributes the items in volumes using a first-fit decreasing bin packing: the largest items are
+   * placed first, each one in the first volume that still has room for it.
+   * Inside a volume, the items keep their original order.
+   *
+   * An item larger than the budget gets a volume of its own.
+   *
+   * @param items The items to pack.
+   * @param sizes Gives the estimated size of an item in the archive. See {@link #estimateEntrySize(String, long)}.
+   * @param budget The maximum size of a volume, in bytes.
+   *
+   * @return The volumes. Never empty, the first volume is empty when there are no items.
+   */
+  public static <T> List<List<T>> pack(List<T> items, ToLongFunction<T> sizes, long budget) {
+    long capacity = budget - VOLUME_OVERHEAD;
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The volume size is too small: " + budget);
+    }
+
+    Integer[] order = new Integer[items.size()];
+    long[] itemSizes = new long[items.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+      itemSizes[i] = sizes.applyAsLong(items.get(i));
+    }
+    // Stable, so the equal items keep their relative order.
+    Arrays.sort(order, Comparator.comparingLong((Integer i) -> itemSizes[i]).reversed());
+
+    List<long[]> free = new ArrayList<>();
+    List<List<Integer>> bins = new ArrayList<>();
+    for (Integer i : order) {
+      int bin = 0;
+      while (bin < bins.size() && free.get(bin)[0] < itemSizes[i]) {
+        bin++;
+      }
+      if (bin == bins.size()) {
+        free.add(new long[] {capacity});
+        bins.add(new ArrayList<>());
+      }
+      free.get(bin)[0] -= itemSizes[i];
+      bins.get(bin).add(i);
+    }
+
+    List<List<T>> volumes = new ArrayList<>(bins.size());
+    for (List<Integer> bin : bins) {
+      Collections.sort(bin);
+      List<T> volume = new ArrayList<>(bin.size());
+      for (Integer i : bin) {
+        volume.add(items.get(i));
+      }
+      volumes.add(volume);
+    }
+    if (volumes.isEmpty()) {
+      volumes.add(new ArrayList<>());
+    }
+    return volumes;
+  }
+
+  /**
+   * Estimates how many bytes an entry takes in an archive, in the worst case: the content is
+   * not compressible, the headers have ZIP64 extra fields and the parent folders get their own entries.
+   *
+   * @param name The entry name.
+   * @param size The size of the content.
+   *
+   * @return The estimated size.
+   */
+  public static long estimateEntrySize(String name, long size) {
+    int nameLength = name.getBytes(StandardCharsets.UTF_8).length;
+    // DEFLATE adds 5 bytes for every stored block of at most 64K.
+    long data = size + 5 * (size / 0xFFFF + 1);
+    // Local header and central record, each with the name and a ZIP64 extra field.
+    long headers = 30 + 20 + 46 + 28 + 2L * nameLength;
+    // The parent folders, in the worst case none of them is in the volume already.
+    long folders = 0;
+    for (int i = name.indexOf('/'); i != -1 && i < name.length() - 1; i = name.indexOf('/', i + 1)) {
+      folders += 30 + 46 + 2L * (i + 1);
+    }
+    return data + headers + folders;
+  }
+
+  /**
+   * Gets the file of a volume.
+   *
+   * @param archive The package file.
+   * @param index The volume index, zero based.
+   * @param count How many volumes there are.
+   *
+   * @return The package file itself if there is just one volume, or the numbered volume file.
+   */
+  public static File getVolumeFile(File archive, int index, int count) {
+    File volume = archive;
+    if (count > 1) {
+      String name = archive.getName();
+      if (name.toLowerCase().endsWith(".zip")) {
+        name = name.substring(0, name.length() - 4);
+      }
+      volume = new File(archive.getParentFile(), String.format("%s.part%03d.zip", name, index + 1));
+    }
+    return volume;
+  }
+
+  /**
+   * Deletes the volumes left by a previous package written at the same location, that are not part 
+   * of the new package.
+   *
+   * @param archive The package file.
+   * @param count How many volumes the new package has.
+   */
+  public static void deleteStaleVolumes(File archive, int count) {
+    File dir = archive.getAbsoluteFile().getParentFile();
+    File[] siblings = dir != null ? dir.listFiles() : null;
+    if (siblings != null) {
+      String name = archive.getName();
+      String baseName = name.toLowerCase().endsWith(".zip") ? name.substring(0, name.length() - 4) : name;
+      for (File sibling : siblings) {
+        Matcher m = VOLUME_NAME.matcher(sibling.getName());
+        if (m.matches() && m.group(1).equals(baseName) && (count == 1 || Integer.parseInt(m.group(2)) > count)) {
+          sibling.delete();
+        }
+      }
+      if (count > 1) {
+        archive.delete();
+      }
+    }
+  }
+
+  /**
+   * Finds all the volumes of a package.
+   *
+   * @param archive Either one of the volumes, or the package file that was split.
+   *
+   * @return The volumes, in order. Just the given file if it is not part of a multi-volume package.
+   */
+  public static List<File> findVolumes(File archive) {
+    String baseName = null;
+    Matcher matcher = VOLUME_NAME.matcher(archive.getName());
+    if (matcher.matches()) {
+      baseName = matcher.group(1);
+    } else if (!archive.exists()) {
+      String name = archive.getName();
+      baseName = name.toLowerCase().endsWith(".zip") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    List<File> volumes = new ArrayList<>();
+    File dir = archive.getAbsoluteFile().getParentFile();
+    File[] siblings = baseName != null && dir != null ? dir.listFiles() : null;
+    if (siblings != null) {
+      for (File sibling : siblings) {
+        Matcher m = VOLUME_NAME.matcher(sibling.getName());
+        if (m.matches() && m.group(1).equals(baseName)) {
+          volumes.add(sibling);
+        }
+      }
+      volumes.sort(Comparator.comparingInt((File f) -> {
+        Matcher m = VOLUME_NAME.matcher(f.getName());
+        m.matches();
+        return Integer.parseInt(m.group(2));
+      }));
+    }
+    if (volumes.isEmpty()) {
+      volumes.add(archive);
+    }
+    return volumes;
+  }
+}
@@ -0,0 +1,187 @@
+package com.oxygenxml.translation.support.zip;
+
+/**
+ * An entry written in a ZIP archive by {@link ZipArchiveWriter}, or read from one by {@link ZipArchiveReader}.
+ */
+public class ZipArchiveEntry {
+
+  /**
+   * The entry content is not compressed.
+   */
+  public static final int STORED = 0;
+
+  /**
+   * The entry content is compressed with DEFLATE.
+   */
+  public static final int DEFLATED = 8;
+
+  /**
+   * The name of the entry. Folder names end with '/'.
+   */
+  private final String name;
+
+  /**
+   * The compression method. One of {@link #STORED} or {@link #DEFLATED}.
+   */
+  private int method;
+
+  /**
+   * The CRC-32 of the uncompressed content.
+   */
+  private long crc;
+
+  /**
+   * The size of the compressed content.
+   */
+  private long compressedSize;
+
+  /**
+   * The size of the uncompressed content.
+   */
+  private long size;
+
+  /**
+   * The modification time, in milliseconds.
+   */
+  private long time;
+
+  /**
+   * The offset of the local header inside the archive. -1 until the entry is written.
+   */
+  private long offset = -1;
+
+  /**
+   * The general purpose flags, as read from the central directory.
+   */
+  private int flags;
+
+  /**
+   * Constructor.
+   *
+   * @param name The name of the entry. Folder names end with '/'.
+   * @param method The compression method.
+   * @param time The modification time, in milliseconds.
+   */
+  public ZipArchiveEntry(String name, int method, long time) {
+    this.name = name;
+    this.method = method;
+    this.time = time;
+  }
+
+  /**
+   * @return The name of the entry. Folder names end with '/'.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return <code>true</code> if this entry is a folder.
+   */
+  public boolean isDirectory() {
+    return name.endsWith("/");
+  }
+
+  /**
+   * @return The compression method. One of {@link #STORED} or {@link #DEFLATED}.
+   */
+  public int getMethod() {
+    return method;
+  }
+
+  /**
+   * @param method The compression method. One of {@link #STORED} or {@link #DEFLATED}.
+   */
+  void setMethod(int method) {
+    this.method = method;
+  }
+
+  /**
+   * @return The CRC-32 of the uncompressed content.
+   */
+  public long getCrc() {
+    return crc;
+  }
+
+  /**
+   * @param crc The CRC-32 of the uncompressed content.
+   */
+  void setCrc(long crc) {
+    this.crc = crc;
+  }
+
+  /**
+   * @return The size of the compressed content.
+   */
+  public long getCompressedSize() {
+    return compressedSize;
+  }
+
+  /**
+   * @param compressedSize The size of the compressed content.
+   */
+  void setCompressedSize(long compressedSize) {
+    this.compressedSize = compressedSize;
+  }
+
+  /**
+   * @return The size of the uncompressed content.
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * @param size The size of the uncompressed content.
+   */
+  void setSize(long size) {
+    this.size = size;
+  }
+
+  /**
+   * @return The modification time, in milliseconds.
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * @return The offset of the local header inside the archive. -1 until the entry is written.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * @param offset The offset of the local header inside the archive.
+   */
+  void setOffset(long offset) {
+    this.offset = offset;
+  }
+
+  /**
+   * @return The general purpose flags, as read from the central directory.
+   */
+  int getFlags() {
+    return flags;
+  }
+
+  /**
+   * @param flags The general purpose flags.
+   */
+  void setFlags(int flags) {
+    this.flags = flags;
+  }
+
+  /**
+   * @param time The modification time, in milliseconds.
+   */
+  void setTime(long time) {
+    this.time = time;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
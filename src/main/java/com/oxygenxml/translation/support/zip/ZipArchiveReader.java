@@ -0,0 +1,369 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a ZIP archive and gives access to the compressed content of its entries.
+ *
+ * Unlike {@link java.util.zip.ZipFile}, the compressed bytes of an entry can be read as they are, so that
+ * they can be copied in another archive without being inflated and deflated again.
+ * The ZIP64 extensions are supported. The content is read with positional reads, so the entries can be
+ * read concurrently, from several threads.
+ */
+public class ZipArchiveReader implements Closeable {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+
+  /**
+   * The header ID of the ZIP64 extended information extra field.
+   */
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+
+  /**
+   * The size of the end of central directory record, without the comment.
+   */
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+  /**
+   * The size of the ZIP64 end of central directory locator.
+   */
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+
+  /**
+   * The 32-bit fields set to this value have the actual value in the ZIP64 extra field.
+   */
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  /**
+   * General purpose flag: the entry is encrypted.
+   */
+  private static final int FLAG_ENCRYPTED = 0x1;
+
+  /**
+   * The archive.
+   */
+  private final FileChannel channel;
+
+  /**
+   * The entries, in the order of the central directory.
+   */
+  private final List<ZipArchiveEntry> entries = new ArrayList<>();
+
+  /**
+   * The entries, by their names.
+   */
+  private final Map<String, ZipArchiveEntry> entriesByName = new HashMap<>();
+
+  /**
+   * Opens an archive and reads its central directory.
+   *
+   * @param file The archive.
+   *
+   * @throws IOException Unable to read the archive, or it is not a ZIP archive.
+   */
+  public ZipArchiveReader(File file) throws IOException {
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      readCentralDirectory();
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return The entries, in the order of the central directory.
+   */
+  public List<ZipArchiveEntry> getEntries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * @param name The name of an entry.
+   *
+   * @return The entry, or <code>null</code> if there is no such entry.
+   */
+  public ZipArchiveEntry getEntry(String name) {
+    return entriesByName.get(name);
+  }
+
+  /**
+   * @param entry An entry of this archive.
+   *
+   * @return <code>true</code> if the compressed content of the entry can be copied in an archive written by
+   * {@link ZipArchiveWriter}: it is stored or deflated, and not encrypted.
+   */
+  public static boolean isCopyable(ZipArchiveEntry entry) {
+    return (entry.getMethod() == ZipArchiveEntry.STORED || entry.getMethod() == ZipArchiveEntry.DEFLATED)
+        && (entry.getFlags() & FLAG_ENCRYPTED) == 0;
+  }
+
+  /**
+   * Opens the compressed content of an entry, as it is stored in the archive.
+   *
+   * @param entry An entry of this archive.
+   *
+   * @return The compressed content. {@link ZipArchiveEntry#getCompressedSize()} bytes.
+   *
+   * @throws IOException Problems reading the local header of the entry.
+   */
+  public InputStream openRaw(ZipArchiveEntry entry) throws IOException {
+    ByteBuffer header = read(entry.getOffset(), 30);
+    if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local header for entry: " + entry.getName());
+    }
+    long dataOffset = entry.getOffset() + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+    return new ChannelInputStream(dataOffset, entry.getCompressedSize());
+  }
+
+  /**
+   * Opens the uncompressed content of an entry.
+   *
+   * @param entry An entry of this archive, for which {@link #isCopyable(ZipArchiveEntry)} is <code>true</code>.
+   *
+   * @return The content. {@link ZipArchiveEntry#getSize()} bytes.
+   *
+   * @throws IOException Problems reading the local header of the entry.
+   */
+  public InputStream openContent(ZipArchiveEntry entry) throws IOException {
+    InputStream raw = openRaw(entry);
+    if (entry.getMethod() == ZipArchiveEntry.DEFLATED) {
+      Inflater inflater = new Inflater(true);
+      // The inflater might need a byte past the end of the raw deflate data.
+      raw = new InflaterInputStream(new SequenceInputStream(raw, new ByteArrayInputStream(new byte[1])), inflater) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            inflater.end();
+          }
+        }
+      };
+    }
+    return raw;
+  }
+
+  /**
+   * Closes the archive.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Locates and reads the central directory.
+   */
+  private void readCentralDirectory() throws IOException {
+    long length = channel.size();
+    // The end record is followed by a comment of at most 64K.
+    int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+    ByteBuffer tail = read(length - tailLength, tailLength);
+    int end = -1;
+    for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0 && end == -1; i--) {
+      if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        end = i;
+      }
+    }
+    if (end == -1) {
+      throw new ZipException("Not a ZIP archive.");
+    }
+
+    long endOffset = length - tailLength + end;
+    long count = tail.getShort(end + 10) & 0xFFFF;
+    long centralDirectorySize = tail.getInt(end + 12) & ZIP64_MAGIC;
+    long centralDirectoryOffset = tail.getInt(end + 16) & ZIP64_MAGIC;
+
+    if (endOffset >= ZIP64_LOCATOR_SIZE) {
+      ByteBuffer locator = read(endOffset - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+      if (locator.getInt(0) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+        ByteBuffer zip64End = read(locator.getLong(8), 56);
+        if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+          throw new ZipException("Invalid ZIP64 end of central directory.");
+        }
+        count = zip64End.getLong(32);
+        centralDirectorySize = zip64End.getLong(40);
+        centralDirectoryOffset = zip64End.getLong(48);
+      }
+    }
+
+    if (centralDirectorySize > Integer.MAX_VALUE) {
+      throw new ZipException("The central directory is too large.");
+    }
+    ByteBuffer cd = read(centralDirectoryOffset, (int) centralDirectorySize);
+    for (long i = 0; i < count; i++) {
+      int position = cd.position();
+      if (cd.getInt() != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid central directory header.");
+      }
+      int flags = cd.getShort(position + 8) & 0xFFFF;
+      int method = cd.getShort(position + 10) & 0xFFFF;
+      long dosTime = cd.getInt(position + 12) & ZIP64_MAGIC;
+      long crc = cd.getInt(position + 16) & ZIP64_MAGIC;
+      long compressedSize = cd.getInt(position + 20) & ZIP64_MAGIC;
+      long size = cd.getInt(position + 24) & ZIP64_MAGIC;
+      int nameLength = cd.getShort(position + 28) & 0xFFFF;
+      int extraLength = cd.getShort(position + 30) & 0xFFFF;
+      int commentLength = cd.getShort(position + 32) & 0xFFFF;
+      long offset = cd.getInt(position + 42) & ZIP64_MAGIC;
+
+      byte[] name = new byte[nameLength];
+      // Positioned through Buffer: the ByteBuffer overrides added in Java 9 don't exist on a Java 8 runtime.
+      ((Buffer) cd).position(position + 46);
+      cd.get(name);
+
+      // The values that overflowed are in the ZIP64 extra field, in this order.
+      int extraEnd = cd.position() + extraLength;
+      while (cd.position() + 4 <= extraEnd) {
+        int id = cd.getShort() & 0xFFFF;
+        int dataLength = cd.getShort() & 0xFFFF;
+        int next = cd.position() + dataLength;
+        if (id == ZIP64_EXTRA_ID) {
+          if (size == ZIP64_MAGIC) {
+            size = cd.getLong();
+          }
+          if (compressedSize == ZIP64_MAGIC) {
+            compressedSize = cd.getLong();
+          }
+          if (offset == ZIP64_MAGIC) {
+            offset = cd.getLong();
+          }
+        }
+        ((Buffer) cd).position(next);
+      }
+      ((Buffer) cd).position(extraEnd + commentLength);
+
+      ZipArchiveEntry entry = new ZipArchiveEntry(
+          // Without the UTF-8 flag, the names are supposed to be in CP437. The ASCII names are the same.
+          new String(name, StandardCharsets.UTF_8), method, fromDosTime(dosTime));
+      entry.setFlags(flags);
+      entry.setCrc(crc);
+      entry.setCompressedSize(compressedSize);
+      entry.setSize(size);
+      entry.setOffset(offset);
+      entries.add(entry);
+      entriesByName.putIfAbsent(entry.getName(), entry);
+    }
+  }
+
+  /**
+   * Reads a region of the archive.
+   *
+   * @param position The offset of the region.
+   * @param length The length of the region.
+   *
+   * @return A little endian buffer with the content of the region.
+   */
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read == -1) {
+        throw new EOFException("Unexpected end of ZIP archive.");
+      }
+    }
+    ((Buffer) buffer).flip();
+    return buffer;
+  }
+
+  /**
+   * Converts an MS-DOS date and time to a Java time.
+   *
+   * @param dosTime The MS-DOS date in the high 16 bits and the time in the low 16 bits.
+   *
+   * @return The time, in milliseconds.
+   */
+  static long fromDosTime(long dosTime) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.clear();
+    calendar.set(
+        (int) ((dosTime >> 25) & 0x7F) + 1980,
+        (int) ((dosTime >> 21) & 0x0F) - 1,
+        (int) ((dosTime >> 16) & 0x1F),
+        (int) ((dosTime >> 11) & 0x1F),
+        (int) ((dosTime >> 5) & 0x3F),
+        (int) ((dosTime << 1) & 0x3E));
+    return calendar.getTimeInMillis();
+  }
+
+  /**
+   * Reads a region of the archive with positional reads.
+   */
+  private final class ChannelInputStream extends InputStream {
+    private long position;
+    private long remaining;
+    private final ByteBuffer single = ByteBuffer.allocate(1);
+
+    ChannelInputStream(long position, long length) {
+      this.position = position;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      ((Buffer) single).clear();
+      int read = read(single);
+      return read == -1 ? -1 : single.get(0) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return read(ByteBuffer.wrap(b, off, len));
+    }
+
+    private int read(ByteBuffer buffer) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      if (buffer.remaining() > remaining) {
+        ((Buffer) buffer).limit(buffer.position() + (int) remaining);
+      }
+      int read = channel.read(buffer, position);
+      if (read == -1) {
+        throw new EOFException("Unexpected end of ZIP archive.");
+      }
+      position += read;
+      remaining -= read;
+      return read;
+    }
+
+    @Override
+    public long skip(long n) {
+      long skipped = Math.max(0, Math.min(n, remaining));
+      position += skipped;
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+  }
+}
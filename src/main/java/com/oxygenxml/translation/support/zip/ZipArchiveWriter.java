@@ -0,0 +1,1020 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a ZIP archive.
+ *
+ * When an executor is given, the entries are compressed concurrently on it, each one into its own
+ * scatter buffer. The compressed entries are then written in the archive on the calling thread,
+ * in the order in which they were added, followed by the central directory. The number of entries
+ * waiting to be written is bounded, so adding an entry blocks while the oldest one is still compressed.
+ *
+ * The ZIP64 extensions are used only where needed: for entries larger than 4 GB, for entries past the 
+ * first 4 GB of the archive and for archives with more than 65,534 entries. The central directory records 
+ * are buffered on disk as the entries are written, so the memory used doesn't grow with the archive size.
+ *
+ * When previous archives are given, an entry with the same content as the entry with the same name
+ * of a previous archive is not compressed again: its compressed bytes are copied as they are.
+ * The size and the CRC-32 only rule out the changed entries. The content is then the same if the digests
+ * recorded for the two entries are the same or, when a digest is not known, if the bytes are the same.
+ *
+ * The headers carry no file attributes, extra fields or comments, other than the ZIP64 extra field.
+ * In reproducible mode all the entries also get the same timestamp, {@link #REPRODUCIBLE_DOS_TIME},
+ * so the same entries added in the same order always give the same archive, byte for byte.
+ *
+ * The archive is valid only after {@link #finish()}. Closing the writer without finishing it
+ * drops the pending entries.
+ */
+public class ZipArchiveWriter implements Closeable {
+
+  /**
+   * Notified, on the thread that adds the entries, as the entries are written in the archive.
+   */
+  public interface EntryListener {
+
+    /**
+     * An entry was written in the archive.
+     *
+     * @param entry The written entry.
+     */
+    void entryWritten(ZipArchiveEntry entry);
+
+    /**
+     * The content of an entry could not be read. The entry is not written in the archive.
+     *
+     * @param name The name of the entry.
+     * @param e The problem.
+     */
+    void entryFailed(String name, IOException e);
+  }
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+
+  /**
+   * The header ID of the ZIP64 extended information extra field.
+   */
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+
+  /**
+   * The version needed to extract entries that use the ZIP64 extensions.
+   */
+  private static final int VERSION_ZIP64 = 45;
+
+  /**
+   * General purpose flag: the names are encoded in UTF-8.
+   */
+  private static final int FLAG_UTF8 = 0x800;
+
+  /**
+   * The size of the buffers used to read the content and to write the archive.
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * How much compressed content of an entry is kept in memory before spilling to a temporary file.
+   */
+  private static final int SCATTER_THRESHOLD = 512 * 1024;
+
+  /**
+   * How much of the central directory is kept in memory before spilling to a temporary file.
+   */
+  private static final int CENTRAL_DIRECTORY_THRESHOLD = 1024 * 1024;
+
+  /**
+   * The 32-bit fields set to this value have the actual value in the ZIP64 extra field.
+   */
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  /**
+   * The 16-bit entries count set to this value has the actual value in the ZIP64 end of central directory.
+   */
+  private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+  /**
+   * The MS-DOS timestamp of the entries written in reproducible mode: 1980-01-01 00:00:00, the earliest one.
+   * It is written as it is, so it doesn't depend on the time zone.
+   */
+  public static final long REPRODUCIBLE_DOS_TIME = (1 << 21) | (1 << 16);
+
+  /**
+   * The archive.
+   */
+  private final CountingOutputStream out;
+
+  /**
+   * Compresses the entries. <code>null</code> to compress them on the calling thread.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * How many entries can wait to be written in the archive.
+   */
+  private final int maxPendingEntries;
+
+  /**
+   * The entries added but not yet written, in the order in which they were added.
+   */
+  private final Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+
+  /**
+   * The central directory records of the entries written so far.
+   */
+  private final ScatterBuffer centralDirectory = new ScatterBuffer(CENTRAL_DIRECTORY_THRESHOLD);
+
+  /**
+   * The number of entries written so far.
+   */
+  private long entryCount;
+
+  /**
+   * Builds the central directory record of an entry.
+   */
+  private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+  /**
+   * The compression level.
+   */
+  private int level = Deflater.DEFAULT_COMPRESSION;
+
+  /**
+   * Chooses the compression method of each entry. <code>null</code> to deflate all of them.
+   */
+  private CompressionPolicy compressionPolicy;
+
+  /**
+   * <code>true</code> to write the entries of the parent folders before the first entry inside them.
+   */
+  private boolean createParentDirectories;
+
+  /**
+   * The folder entries written so far.
+   */
+  private final Set<String> directories = new HashSet<>();
+
+  /**
+   * Notified as the entries are written. May be <code>null</code>.
+   */
+  private EntryListener listener;
+
+  /**
+   * The archives whose unchanged entries are copied without compressing them again.
+   */
+  private List<ZipArchiveReader> previousArchives = Collections.emptyList();
+
+  /**
+   * The digests of the entries of the previous archives, by their names.
+   */
+  private Map<String, String> previousDigests = Collections.emptyMap();
+
+  /**
+   * The number of entries copied from the previous archives.
+   */
+  private long copiedEntryCount;
+
+  /**
+   * <code>true</code> to give all the entries the same timestamp.
+   */
+  private boolean reproducible;
+
+  /**
+   * <code>true</code> after the central directory was written.
+   */
+  private boolean finished;
+
+  /**
+   * <code>true</code> if the pending entries were dropped.
+   */
+  private volatile boolean aborted;
+
+  /**
+   * Constructor.
+   *
+   * @param out Receives the archive.
+   * @param executor Compresses the entries. <code>null</code> to compress them on the calling thread.
+   * @param maxPendingEntries How many entries can wait to be written in the archive.
+   * Bounds the memory and temporary disk space used by the scatter buffers.
+   */
+  public ZipArchiveWriter(OutputStream out, ExecutorService executor, int maxPendingEntries) {
+    this.out = new CountingOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    this.executor = executor;
+    this.maxPendingEntries = Math.max(1, maxPendingEntries);
+  }
+
+  /**
+   * Constructor. The entries are compressed on the calling thread.
+   *
+   * @param out Receives the archive.
+   */
+  public ZipArchiveWriter(OutputStream out) {
+    this(out, null, 1);
+  }
+
+  /**
+   * @param listener Notified as the entries are written. May be <code>null</code>.
+   */
+  public void setEntryListener(EntryListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * @param level The DEFLATE compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}.
+   */
+  public void setLevel(int level) {
+    if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    this.level = level;
+  }
+
+  /**
+   * @param compressionPolicy Chooses the compression method of each entry. 
+   * <code>null</code> to deflate all of them.
+   */
+  public void setCompressionPolicy(CompressionPolicy compressionPolicy) {
+    this.compressionPolicy = compressionPolicy;
+  }
+
+  /**
+   * @param createParentDirectories <code>true</code> to write the entries of the parent folders 
+   * before the first entry inside them. The folders of the entries that fail are not written.
+   */
+  public void setCreateParentDirectories(boolean createParentDirectories) {
+    this.createParentDirectories = createParentDirectories;
+  }
+
+  /**
+   * @param reproducible <code>true</code> to give all the entries the timestamp {@link #REPRODUCIBLE_DOS_TIME}
+   * instead of the current time. The entries copied from previous archives keep their compressed bytes,
+   * so they give the same archive only if the previous archives were written with the same compression settings.
+   */
+  public void setReproducible(boolean reproducible) {
+    this.reproducible = reproducible;
+  }
+
+  /**
+   * Sets the archives built before from the same content. The entries with the same name and content
+   * as an entry of a previous archive are copied from it, without compressing them again. 
+   * Their content is still read once, to compute its CRC-32. When the digests of the two entries are
+   * not both known, the content of the previous entry is also read, to compare them.
+   *
+   * The previous archives must stay open until the writer is finished.
+   *
+   * @param previousArchives The previous archives. Not <code>null</code>.
+   */
+  public void setPreviousArchives(List<ZipArchiveReader> previousArchives) {
+    this.previousArchives = previousArchives;
+  }
+
+  /**
+   * Sets the digests of the entries of the previous archives, as recorded when they were written. 
+   * An entry whose digest is given to {@link #putEntry(String, ZipEntrySource, String)} is copied only
+   * if its digest is the same as the one recorded for the previous entry.
+   *
+   * @param previousDigests The digests, by the names of the entries. Not <code>null</code>.
+   */
+  public void setPreviousDigests(Map<String, String> previousDigests) {
+    this.previousDigests = previousDigests;
+  }
+
+  /**
+   * Adds a folder entry.
+   *
+   * @param name The name of the folder. A '/' is appended if missing.
+   *
+   * @throws IOException Problems writing the previous entries in the archive.
+   */
+  public void putDirectory(String name) throws IOException {
+    ensureOpen();
+    if (!name.endsWith("/")) {
+      name += "/";
+    }
+    ZipArchiveEntry entry = new ZipArchiveEntry(name, ZipArchiveEntry.STORED, currentTime());
+    enqueue(CompletableFuture.completedFuture(new CompressedEntry(entry, (ScatterBuffer) null, null)));
+  }
+
+  /**
+   * Adds a file entry. The content is read and compressed on the executor, if any.
+   *
+   * @param name The name of the entry.
+   * @param source The content of the entry.
+   *
+   * @throws IOException Problems writing the previous entries in the archive.
+   */
+  public void putEntry(String name, ZipEntrySource source) throws IOException {
+    putEntry(name, source, null);
+  }
+
+  /**
+   * Adds a file entry. The content is read and compressed on the executor, if any.
+   *
+   * @param name The name of the entry.
+   * @param source The content of the entry.
+   * @param digest The digest of the content, computed like the ones given to {@link #setPreviousDigests(Map)}.
+   * <code>null</code> if unknown.
+   *
+   * @throws IOException Problems writing the previous entries in the archive.
+   */
+  public void putEntry(String name, ZipEntrySource source, String digest) throws IOException {
+    ensureOpen();
+    ZipArchiveEntry entry = new ZipArchiveEntry(name, ZipArchiveEntry.DEFLATED, currentTime());
+    int entryLevel = level;
+    CompressionPolicy policy = compressionPolicy;
+    
+    String previousDigest = previousDigests.get(name);
+    // Without both digests, the content is compared with the one of the previous entry.
+    boolean compare = digest == null || previousDigest == null;
+    ZipArchiveReader previousArchive = null;
+    ZipArchiveEntry previousEntry = null;
+    for (int i = 0; i < previousArchives.size() && previousEntry == null; i++) {
+      ZipArchiveEntry candidate = previousArchives.get(i).getEntry(name);
+      if (candidate != null && !candidate.isDirectory() && ZipArchiveReader.isCopyable(candidate)
+          // Different digests, the content changed.
+          && (compare || previousDigest.equals(digest))) {
+        previousArchive = previousArchives.get(i);
+        previousEntry = candidate;
+      }
+    }
+    ZipArchiveReader rawArchive = previousArchive;
+    ZipArchiveEntry rawEntry = previousEntry;
+    
+    if (executor != null) {
+      enqueue(executor.submit(() -> compressOrCopy(entry, source, entryLevel, policy, rawArchive, rawEntry, compare)));
+    } else {
+      enqueue(CompletableFuture.completedFuture(compressOrCopy(entry, source, entryLevel, policy, rawArchive, rawEntry, compare)));
+    }
+  }
+
+  /**
+   * Writes the pending entries in the archive, waiting for them to be compressed. The listener is notified
+   * about all the entries added so far.
+   *
+   * @throws IOException Problems writing the archive.
+   */
+  public void writePendingEntries() throws IOException {
+    ensureOpen();
+    while (!pending.isEmpty()) {
+      writeNext();
+    }
+  }
+
+  /**
+   * Writes the pending entries and the central directory. The underlying stream is flushed, not closed.
+   *
+   * @throws IOException Problems writing the archive.
+   */
+  public void finish() throws IOException {
+    writePendingEntries();
+
+    centralDirectory.close();
+    long centralDirectoryOffset = out.getCount();
+    centralDirectory.writeTo(out);
+    long centralDirectorySize = centralDirectory.size();
+    centralDirectory.release();
+
+    boolean zip64 = entryCount >= ZIP64_MAGIC_COUNT
+        || centralDirectoryOffset >= ZIP64_MAGIC
+        || centralDirectorySize >= ZIP64_MAGIC;
+    if (zip64) {
+      long zip64EndOffset = out.getCount();
+      writeInt(out, ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+      // The size of the remaining record.
+      writeLong(out, 44);
+      writeShort(out, VERSION_ZIP64);
+      writeShort(out, VERSION_ZIP64);
+      writeInt(out, 0);
+      writeInt(out, 0);
+      writeLong(out, entryCount);
+      writeLong(out, entryCount);
+      writeLong(out, centralDirectorySize);
+      writeLong(out, centralDirectoryOffset);
+
+      writeInt(out, ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE);
+      writeInt(out, 0);
+      writeLong(out, zip64EndOffset);
+      writeInt(out, 1);
+    }
+
+    writeInt(out, END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+    writeShort(out, 0);
+    writeShort(out, 0);
+    int count = (int) Math.min(entryCount, ZIP64_MAGIC_COUNT);
+    writeShort(out, count);
+    writeShort(out, count);
+    writeInt(out, Math.min(centralDirectorySize, ZIP64_MAGIC));
+    writeInt(out, Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+    writeShort(out, 0);
+    out.flush();
+
+    finished = true;
+  }
+
+  /**
+   * Drops the entries that were not yet written and deletes their scatter buffers.
+   * The archive is left incomplete.
+   */
+  public void abort() {
+    aborted = true;
+    centralDirectory.release();
+    while (!pending.isEmpty()) {
+      Future<CompressedEntry> future = pending.poll();
+      future.cancel(true);
+      if (future.isDone() && !future.isCancelled()) {
+        try {
+          future.get().release();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+          // The task failed, nothing to release.
+        }
+      }
+    }
+  }
+
+  /**
+   * Closes the underlying stream. If the writer was not finished, the pending entries are dropped.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (!finished) {
+        abort();
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * @return The number of entries written so far.
+   */
+  public long getEntryCount() {
+    return entryCount;
+  }
+
+  /**
+   * @return The number of entries copied from the previous archives, without compressing them again.
+   */
+  public long getCopiedEntryCount() {
+    return copiedEntryCount;
+  }
+
+  /**
+   * Adds an entry to the pending queue, writing the oldest ones if the queue is full.
+   */
+  private void enqueue(Future<CompressedEntry> future) throws IOException {
+    pending.add(future);
+    while (pending.size() > maxPendingEntries) {
+      writeNext();
+    }
+  }
+
+  /**
+   * Waits for the oldest pending entry and writes it in the archive.
+   */
+  private void writeNext() throws IOException {
+    CompressedEntry compressed = get(pending.poll());
+    try {
+      if (compressed.failure != null) {
+        if (listener != null) {
+          listener.entryFailed(compressed.entry.getName(), compressed.failure);
+        }
+      } else {
+        ZipArchiveEntry entry = compressed.entry;
+        if (entry.isDirectory()) {
+          if (directories.add(entry.getName())) {
+            writeEntry(entry, null);
+          }
+        } else {
+          if (createParentDirectories) {
+            writeParentDirectories(entry);
+          }
+          if (compressed.rawEntry != null) {
+            writeRawEntry(entry, compressed.rawArchive, compressed.rawEntry);
+          } else {
+            writeEntry(entry, compressed.data);
+          }
+        }
+      }
+    } finally {
+      compressed.release();
+    }
+  }
+
+  /**
+   * Writes the entries of the parent folders of an entry, if not already written.
+   */
+  private void writeParentDirectories(ZipArchiveEntry entry) throws IOException {
+    String name = entry.getName();
+    for (int index = name.indexOf('/'); index != -1; index = name.indexOf('/', index + 1)) {
+      String folder = name.substring(0, index + 1);
+      if (directories.add(folder)) {
+        writeEntry(new ZipArchiveEntry(folder, ZipArchiveEntry.STORED, entry.getTime()), null);
+      }
+    }
+  }
+
+  /**
+   * Writes an entry with its content in the archive and notifies the listener.
+   *
+   * @param entry The entry.
+   * @param data The compressed content. <code>null</code> for folders.
+   */
+  private void writeEntry(ZipArchiveEntry entry, ScatterBuffer data) throws IOException {
+    entry.setOffset(out.getCount());
+    writeLocalHeader(entry);
+    if (data != null) {
+      data.writeTo(out);
+    }
+    writeCentralHeader(entry);
+    entryCount++;
+    if (listener != null) {
+      listener.entryWritten(entry);
+    }
+  }
+
+  /**
+   * Writes an entry whose compressed content is copied from a previous archive.
+   *
+   * @param entry The entry. Its method, CRC-32 and sizes are the ones of the previous entry.
+   * @param rawArchive The previous archive.
+   * @param rawEntry The entry of the previous archive.
+   */
+  private void writeRawEntry(ZipArchiveEntry entry, ZipArchiveReader rawArchive, ZipArchiveEntry rawEntry) 
+      throws IOException {
+    entry.setOffset(out.getCount());
+    writeLocalHeader(entry);
+    try (InputStream in = rawArchive.openRaw(rawEntry)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long remaining = rawEntry.getCompressedSize();
+      while (remaining > 0) {
+        int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (read == -1) {
+          throw new EOFException("Unexpected end of the previous archive: " + rawEntry.getName());
+        }
+        out.write(buffer, 0, read);
+        remaining -= read;
+      }
+    }
+    writeCentralHeader(entry);
+    entryCount++;
+    copiedEntryCount++;
+    if (listener != null) {
+      listener.entryWritten(entry);
+    }
+  }
+
+  /**
+   * Waits for an entry to be compressed.
+   */
+  private static CompressedEntry get(Future<CompressedEntry> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while compressing the ZIP entries.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Reads the content of an entry and, if it is the same as the one of the previous entry with the same name,
+   * copies the entry from the previous archive. Otherwise the content is compressed.
+   * 
+   * @param compare <code>true</code> to compare the content with the one of the previous entry, 
+   * <code>false</code> if their digests are known to be the same.
+   */
+  private CompressedEntry compressOrCopy(ZipArchiveEntry entry, ZipEntrySource source, int entryLevel,
+      CompressionPolicy policy, ZipArchiveReader rawArchive, ZipArchiveEntry rawEntry, boolean compare) throws IOException {
+    if (rawEntry != null) {
+      try (InputStream in = source.open();
+          PreviousContent previous = compare ? new PreviousContent(rawArchive, rawEntry) : null) {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+        boolean same = true;
+        int read;
+        // Stop as soon as the content is larger than the previous one or differs from it.
+        while (same && size <= rawEntry.getSize() && (read = in.read(buffer)) != -1) {
+          if (aborted) {
+            throw new InterruptedIOException("The archive was aborted.");
+          }
+          crc.update(buffer, 0, read);
+          size += read;
+          if (previous != null) {
+            same = previous.matches(buffer, read);
+          }
+        }
+        
+        if (same && size == rawEntry.getSize() && crc.getValue() == rawEntry.getCrc()) {
+          entry.setMethod(rawEntry.getMethod());
+          entry.setCrc(rawEntry.getCrc());
+          entry.setSize(rawEntry.getSize());
+          entry.setCompressedSize(rawEntry.getCompressedSize());
+          return new CompressedEntry(entry, rawArchive, rawEntry);
+        }
+      } catch (IOException e) {
+        if (aborted) {
+          throw e;
+        }
+        return new CompressedEntry(entry, null, e);
+      }
+    }
+    return compress(entry, source, entryLevel, policy);
+  }
+
+  /**
+   * The content of a previous entry, compared block by block with the content of a new entry.
+   * The previous archive is not the one being written, so problems reading it only make the entry
+   * to be compressed again.
+   */
+  private static final class PreviousContent implements Closeable {
+    /**
+     * The content of the previous entry. <code>null</code> if it can't be read.
+     */
+    private InputStream in;
+    /**
+     * Receives the blocks of the previous content.
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * Constructor.
+     *
+     * @param archive The previous archive.
+     * @param entry The previous entry.
+     */
+    PreviousContent(ZipArchiveReader archive, ZipArchiveEntry entry) {
+      try {
+        in = archive.openContent(entry);
+      } catch (IOException e) {
+        in = null;
+      }
+    }
+
+    /**
+     * Reads the next block of the previous content.
+     *
+     * @param block The next block of the new content.
+     * @param length The length of the block.
+     *
+     * @return <code>true</code> if the previous content continues with the same bytes.
+     */
+    boolean matches(byte[] block, int length) {
+      boolean same = in != null;
+      try {
+        int read = 0;
+        while (same && read < length) {
+          int count = in.read(buffer, read, length - read);
+          same = count != -1;
+          read += Math.max(count, 0);
+        }
+        for (int i = 0; same && i < length; i++) {
+          same = buffer[i] == block[i];
+        }
+      } catch (IOException e) {
+        same = false;
+      }
+      return same;
+    }
+
+    @Override
+    public void close() {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // Nothing more to do with it.
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads and compresses the content of an entry. The compression method is chosen by the policy, 
+   * from the first block of content. Problems reading the content are recorded on the result.
+   */
+  private CompressedEntry compress(ZipArchiveEntry entry, ZipEntrySource source, int entryLevel, 
+      CompressionPolicy policy) throws IOException {
+    ScatterBuffer data = new ScatterBuffer(SCATTER_THRESHOLD);
+    Deflater deflater = null;
+    try (InputStream in = source.open()) {
+      CRC32 crc = new CRC32();
+      byte[] buffer = new byte[BUFFER_SIZE];
+      byte[] compressed = new byte[BUFFER_SIZE];
+      long size = 0;
+      
+      int read = readBlock(in, buffer);
+      if (policy == null || policy.getMethod(entry.getName(), buffer, Math.max(read, 0)) == ZipArchiveEntry.DEFLATED) {
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        deflater = new Deflater(entryLevel, true);
+      } else {
+        entry.setMethod(ZipArchiveEntry.STORED);
+      }
+      
+      while (read != -1) {
+        if (aborted) {
+          throw new InterruptedIOException("The archive was aborted.");
+        }
+        crc.update(buffer, 0, read);
+        size += read;
+        if (deflater != null) {
+          deflater.setInput(buffer, 0, read);
+          while (!deflater.needsInput()) {
+            int length = deflater.deflate(compressed);
+            data.write(compressed, 0, length);
+          }
+        } else {
+          data.write(buffer, 0, read);
+        }
+        read = in.read(buffer);
+      }
+      if (deflater != null) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          int length = deflater.deflate(compressed);
+          data.write(compressed, 0, length);
+        }
+      }
+      data.close();
+
+      entry.setCrc(crc.getValue());
+      entry.setSize(size);
+      entry.setCompressedSize(data.size());
+    } catch (IOException e) {
+      data.release();
+      if (aborted) {
+        throw e;
+      }
+      return new CompressedEntry(entry, null, e);
+    } catch (RuntimeException | Error e) {
+      data.release();
+      throw e;
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+
+    CompressedEntry result = new CompressedEntry(entry, data, null);
+    if (aborted) {
+      // Nobody will write it.
+      result.release();
+    }
+    return result;
+  }
+
+  /**
+   * Reads until the buffer is full or the stream ends.
+   *
+   * @return The number of bytes read, -1 if the stream ended before reading anything.
+   */
+  private static int readBlock(InputStream in, byte[] buffer) throws IOException {
+    int total = 0;
+    int read;
+    while (total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) != -1) {
+      total += read;
+    }
+    return total == 0 ? -1 : total;
+  }
+
+  /**
+   * Writes the local header of an entry. The ZIP64 extra field is added if the sizes don't fit in 32 bits.
+   */
+  private void writeLocalHeader(ZipArchiveEntry entry) throws IOException {
+    byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+    boolean zip64 = entry.getSize() >= ZIP64_MAGIC || entry.getCompressedSize() >= ZIP64_MAGIC;
+    writeInt(out, LOCAL_HEADER_SIGNATURE);
+    writeShort(out, zip64 ? VERSION_ZIP64 : versionNeeded(entry));
+    writeShort(out, FLAG_UTF8);
+    writeShort(out, entry.getMethod());
+    writeInt(out, dosTime(entry));
+    writeInt(out, entry.getCrc());
+    if (zip64) {
+      writeInt(out, ZIP64_MAGIC);
+      writeInt(out, ZIP64_MAGIC);
+    } else {
+      writeInt(out, entry.getCompressedSize());
+      writeInt(out, entry.getSize());
+    }
+    writeShort(out, name.length);
+    writeShort(out, zip64 ? 20 : 0);
+    out.write(name);
+    if (zip64) {
+      // The local extra field has both sizes.
+      writeShort(out, ZIP64_EXTRA_ID);
+      writeShort(out, 16);
+      writeLong(out, entry.getSize());
+      writeLong(out, entry.getCompressedSize());
+    }
+  }
+
+  /**
+   * Records the central directory header of an entry. The ZIP64 extra field holds the values 
+   * that don't fit in 32 bits.
+   */
+  private void writeCentralHeader(ZipArchiveEntry entry) throws IOException {
+    byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+    boolean zip64Size = entry.getSize() >= ZIP64_MAGIC;
+    boolean zip64CompressedSize = entry.getCompressedSize() >= ZIP64_MAGIC;
+    boolean zip64Offset = entry.getOffset() >= ZIP64_MAGIC;
+    int extraLength = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+    int version = extraLength > 0 ? VERSION_ZIP64 : versionNeeded(entry);
+    
+    record.reset();
+    OutputStream cd = record;
+    writeInt(cd, CENTRAL_HEADER_SIGNATURE);
+    writeShort(cd, version);
+    writeShort(cd, version);
+    writeShort(cd, FLAG_UTF8);
+    writeShort(cd, entry.getMethod());
+    writeInt(cd, dosTime(entry));
+    writeInt(cd, entry.getCrc());
+    writeInt(cd, zip64CompressedSize ? ZIP64_MAGIC : entry.getCompressedSize());
+    writeInt(cd, zip64Size ? ZIP64_MAGIC : entry.getSize());
+    writeShort(cd, name.length);
+    writeShort(cd, extraLength > 0 ? extraLength + 4 : 0);
+    // Comment, disk number, internal and external attributes.
+    writeShort(cd, 0);
+    writeShort(cd, 0);
+    writeShort(cd, 0);
+    writeInt(cd, 0);
+    writeInt(cd, zip64Offset ? ZIP64_MAGIC : entry.getOffset());
+    cd.write(name);
+    if (extraLength > 0) {
+      writeShort(cd, ZIP64_EXTRA_ID);
+      writeShort(cd, extraLength);
+      // Only the values that overflowed, in this order.
+      if (zip64Size) {
+        writeLong(cd, entry.getSize());
+      }
+      if (zip64CompressedSize) {
+        writeLong(cd, entry.getCompressedSize());
+      }
+      if (zip64Offset) {
+        writeLong(cd, entry.getOffset());
+      }
+    }
+    record.writeTo(centralDirectory);
+  }
+
+  /**
+   * @return The version needed to extract an entry.
+   */
+  private static int versionNeeded(ZipArchiveEntry entry) {
+    return entry.getMethod() == ZipArchiveEntry.DEFLATED ? 20 : 10;
+  }
+
+  /**
+   * @return The timestamp of the entries added now.
+   */
+  private long currentTime() {
+    return reproducible ? ZipArchiveReader.fromDosTime(REPRODUCIBLE_DOS_TIME) : System.currentTimeMillis();
+  }
+
+  /**
+   * @return The MS-DOS timestamp written in the headers of an entry.
+   */
+  private long dosTime(ZipArchiveEntry entry) {
+    return reproducible ? REPRODUCIBLE_DOS_TIME : toDosTime(entry.getTime());
+  }
+
+  /**
+   * Converts a Java time to the MS-DOS date and time format.
+   *
+   * @param time The time, in milliseconds.
+   *
+   * @return The MS-DOS date in the high 16 bits and the time in the low 16 bits.
+   */
+  static long toDosTime(long time) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+    int year = calendar.get(Calendar.YEAR);
+    if (year < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (year - 1980) << 25
+        | (calendar.get(Calendar.MONTH) + 1) << 21
+        | calendar.get(Calendar.DAY_OF_MONTH) << 16
+        | calendar.get(Calendar.HOUR_OF_DAY) << 11
+        | calendar.get(Calendar.MINUTE) << 5
+        | calendar.get(Calendar.SECOND) >> 1;
+  }
+
+  private static void writeShort(OutputStream out, int value) throws IOException {
+    out.write(value & 0xFF);
+    out.write((value >>> 8) & 0xFF);
+  }
+
+  private static void writeInt(OutputStream out, long value) throws IOException {
+    writeShort(out, (int) (value & 0xFFFF));
+    writeShort(out, (int) ((value >>> 16) & 0xFFFF));
+  }
+
+  private static void writeLong(OutputStream out, long value) throws IOException {
+    writeInt(out, value & 0xFFFFFFFFL);
+    writeInt(out, value >>> 32);
+  }
+
+  private void ensureOpen() throws IOException {
+    if (finished || aborted) {
+      throw new IOException("The archive was already finished.");
+    }
+  }
+
+  /**
+   * An entry with its compressed content, or the previous entry to copy it from, or the problem 
+   * that prevented reading it.
+   */
+  private static final class CompressedEntry {
+    final ZipArchiveEntry entry;
+    final ScatterBuffer data;
+    final IOException failure;
+    final ZipArchiveReader rawArchive;
+    final ZipArchiveEntry rawEntry;
+
+    CompressedEntry(ZipArchiveEntry entry, ScatterBuffer data, IOException failure) {
+      this.entry = entry;
+      this.data = data;
+      this.failure = failure;
+      this.rawArchive = null;
+      this.rawEntry = null;
+    }
+
+    CompressedEntry(ZipArchiveEntry entry, ZipArchiveReader rawArchive, ZipArchiveEntry rawEntry) {
+      this.entry = entry;
+      this.data = null;
+      this.failure = null;
+      this.rawArchive = rawArchive;
+      this.rawEntry = rawEntry;
+    }
+
+    void release() {
+      if (data != null) {
+        data.release();
+      }
+    }
+  }
+
+  /**
+   * Counts the bytes written, to know the offset of each entry.
+   */
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    long getCount() {
+      return count;
+    }
+  }
+}
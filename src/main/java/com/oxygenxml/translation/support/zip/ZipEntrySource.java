@@ -0,0 +1,21 @@
+package com.oxygenxml.translation.support.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Provides the content of a ZIP entry. The content might be read on a worker thread,
+ * after the entry was added to the {@link ZipArchiveWriter}.
+ */
+@FunctionalInterface
+public interface ZipEntrySource {
+
+  /**
+   * Opens the content of the entry.
+   *
+   * @return A stream over the content. The caller closes it.
+   *
+   * @throws IOException The content cannot be read.
+   */
+  InputStream open() throws IOException;
+}
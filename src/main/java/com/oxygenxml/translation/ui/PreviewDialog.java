@@ -10,7 +10,13 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -29,15 +35,23 @@ import com.jidesoft.swing.CheckBoxTree;
 import com.oxygenxml.translation.exceptions.NothingSelectedException;
 import com.oxygenxml.translation.exceptions.StoppedByUserException;
 import com.oxygenxml.translation.support.table.CheckboxTableUtil;
+import com.oxygenxml.translation.support.util.ApplyPackageUtil;
 import com.oxygenxml.translation.support.table.ResourcesTableModel;
 import com.oxygenxml.translation.support.tree.CheckboxTreeUtil;
 import com.oxygenxml.translation.support.tree.FileSystemTreeModel;
+import com.oxygenxml.translation.support.tree.PathsTreeModel;
+import com.oxygenxml.translation.support.zip.PackageIndex;
+import com.oxygenxml.translation.support.zip.PackageManifest;
+import com.oxygenxml.translation.ui.worker.AbstractWorker;
 import com.oxygenxml.translation.ui.worker.CopyDirectoryWorker;
+import com.oxygenxml.translation.ui.worker.ExtractFileWorker;
+import com.oxygenxml.translation.ui.worker.UnzipWorker;
 
 import ro.sync.exml.workspace.api.PluginResourceBundle;
 import ro.sync.exml.workspace.api.PluginWorkspaceProvider;
 import ro.sync.exml.workspace.api.standalone.StandalonePluginWorkspace;
 import ro.sync.exml.workspace.api.standalone.ui.OKCancelDialog;
+import ro.sync.util.URLUtil;
 /**
  *  The dialog that shows a preview before applying a package.
  * 
@@ -72,9 +86,26 @@ public class PreviewDialog extends OKCancelDialog { //NOSONAR
   
   /**
    *  The location of the archive we want to apply over the current ditamap.
+   *  When the package is not extracted, the files whose diff is opened are extracted here.
    */
   private File translatedFileDir;
   
+  /**
+   *  The package, read without extracting it. <code>null</code> if the package was extracted in 
+   *  translatedFileDir.
+   */
+  private PackageIndex packageIndex;
+  
+  /**
+   *  The relative paths of the files, in the order of the table rows.
+   */
+  private List<String> filePaths;
+  
+  /**
+   *  The relative paths of the files, by the paths shown in the table.
+   */
+  private final Map<String, String> entryPaths = new HashMap<>();
+  
   /**
    *  The custom table model.
    */
@@ -106,11 +137,79 @@ public class PreviewDialog extends OKCancelDialog { //NOSONAR
       final List<String> filePaths, 
       final File topLocationDir, 
       final File translatedFilesDir) {
+    this(parentFrame, filePaths, Collections.<String, PackageManifest.Status>emptyMap(), topLocationDir, translatedFilesDir);
+  }
+
+  /**
+   * A dialog that shows a preview of the files that are about to be applied, with how each file compares
+   * with the one sent in the package. The files that came back unchanged are not selected.
+   * 
+   * @param parentFrame   The parent frame of the dialog.
+   * @param filePaths    The relative paths of all the unpacked files.
+   * @param entryStatuses  The change statuses, by the relative paths of the files, from the package manifest. 
+   *                       Empty if unknown.
+   * @param topLocationDir   Where to copy the unpacked files.
+   * @param translatedFilesDir  Where to extract the archive. These files will be copied in rootDir.
+   */
+  public PreviewDialog(
+      final Frame parentFrame, 
+      final List<String> filePaths, 
+      final Map<String, PackageManifest.Status> entryStatuses,
+      final File topLocationDir, 
+      final File translatedFilesDir) {
+    this(parentFrame, filePaths, entryStatuses, null, topLocationDir, translatedFilesDir);
+  }
+  
+  /**
+   * A dialog that shows a preview of the files of a package that was not extracted. It opens as soon 
+   * as the central directories of the package are read. A file is extracted in tempDir only when its 
+   * diff is opened and the selected files are extracted over topLocationDir when they are applied.
+   * 
+   * The files are classified by their sizes and CRC-32, so the ones that came back unchanged are not selected.
+   * When the package manifest has no CRC-32, they are selected too, but they are not written again when
+   * applied, see {@link UnzipWorker#setSkipUnchanged(boolean)}.
+   * 
+   * @param parentFrame   The parent frame of the dialog.
+   * @param packageIndex  The package. It is closed when the dialog is closed.
+   * @param topLocationDir   Where to extract the selected files.
+   * @param tempDir  Where to extract the files whose diff is opened. It is deleted when the dialog is closed.
+   */
+  public PreviewDialog(
+      final Frame parentFrame, 
+      final PackageIndex packageIndex, 
+      final File topLocationDir, 
+      final File tempDir) {
+    this(parentFrame, packageIndex.getFilePaths(), packageIndex.getEntryStatuses(), packageIndex, topLocationDir, tempDir);
+  }
+  
+  /**
+   * Constructor.
+   * 
+   * @param parentFrame   The parent frame of the dialog.
+   * @param filePaths    The relative paths of all the files.
+   * @param entryStatuses  The change statuses, by the relative paths of the files. Empty if unknown.
+   * @param packageIndex  The package, if it was not extracted. <code>null</code> otherwise.
+   * @param topLocationDir   Where to copy the files.
+   * @param translatedFilesDir  Where the archive was extracted, or where to extract the files whose
+   *                            diff is opened.
+   */
+  private PreviewDialog(
+      final Frame parentFrame, 
+      final List<String> filePaths, 
+      final Map<String, PackageManifest.Status> entryStatuses,
+      final PackageIndex packageIndex,
+      final File topLocationDir, 
+      final File translatedFilesDir) {
     super(parentFrame, messages.getMessage(Tags.PREVIEW), false);
     setModal(false);
     
     this.topLocation = topLocationDir;
     this.translatedFileDir = translatedFilesDir;
+    this.packageIndex = packageIndex;
+    this.filePaths = filePaths;
+    for (String filePath : filePaths) {
+      entryPaths.put(URLUtil.decodeURIComponent(filePath), filePath);
+    }
 
     switchViewButton = new JButton(messages.getMessage(Tags.SWICH_TO_TREE_VIEW));
     getOkButton().setText(messages.getMessage(Tags.APPLY_BUTTON));
@@ -118,15 +217,19 @@ public class PreviewDialog extends OKCancelDialog { //NOSONAR
     // 2. Show the dialog. 
     // 3. The CopyDirectoryWorker notifies the dialog.
 
-    tableModel = CheckboxTableUtil.createTableModel(filePaths);
+    tableModel = CheckboxTableUtil.createTableModel(filePaths, entryStatuses);
     final JTable resourcesTable = CheckboxTableUtil.createResourcesTable(tableModel);
-    CheckboxTableUtil.installDiffOnMouseClick(resourcesTable, topLocation, translatedFileDir);
+    if (packageIndex != null) {
+      CheckboxTableUtil.installDiffOnMouseClick(resourcesTable, topLocation, this::extractForDiff);
+    } else {
+      CheckboxTableUtil.installDiffOnMouseClick(resourcesTable, topLocation, translatedFileDir);
+    }
     
     final JScrollPane modifiedResourcesPanel = createModifiedResourcesPanel(resourcesTable);
     final JCheckBox selectAll = new JCheckBox(messages.getMessage(Tags.SELECT_ALL_FILES));
     
-    // By default all entries are selected.
-    selectAll.setSelected(true); 
+    // By default all entries are selected, except the unchanged ones.
+    selectAll.setSelected(tableModel.isEverythingSelected()); 
     
     toggleTableTreeView(resourcesTable, modifiedResourcesPanel, selectAll);
     
@@ -261,6 +364,15 @@ public class PreviewDialog extends OKCancelDialog { //NOSONAR
    * @throws Exception 
    */
   private void applyChanges() throws NothingSelectedException {
+    if (packageIndex != null) {
+      Set<String> selectedPaths = collectSelectedPaths();
+      if (selectedPaths.isEmpty()) {
+        throw new NothingSelectedException();
+      }
+      extractSelectedFiles(selectedPaths);
+      return;
+    }
+    
     List<File> filesToCopy = null;
     if(!isListViewShowing) {
       // Collect "checked" files from tree view.
@@ -286,12 +398,102 @@ public class PreviewDialog extends OKCancelDialog { //NOSONAR
     }
   }
   
+  /**
+   * @return The relative paths of the files selected in the list or tree view, as they are in the package.
+   */
+  private Set<String> collectSelectedPaths() {
+    Set<String> selectedPaths = new HashSet<>();
+    if (!isListViewShowing) {
+      for (File file : CheckboxTreeUtil.processTreeFiles(tree)) {
+        selectedPaths.add(translatedFileDir.toURI().relativize(file.toURI()).getPath());
+      }
+    } else {
+      // The rows are in the order of the files.
+      for (int i = 0; i < tableModel.getRowCount(); i++) {
+        if ((Boolean) tableModel.getValueAt(i, ResourcesTableModel.CHECK_BOX)) {
+          selectedPaths.add(filePaths.get(i));
+        }
+      }
+    }
+    return selectedPaths;
+  }
+  
+  /**
+   * Gives a file of the package so that its diff can be opened. A file not extracted yet is extracted 
+   * on a thread, which opens the diff when it's done.
+   * 
+   * @param relativePath The relative path of the file, as shown in the list or tree view.
+   * 
+   * @return The extracted file, or <code>null</code> if it is being extracted.
+   */
+  private File extractForDiff(final String relativePath) {
+    String entryPath = entryPaths.get(relativePath);
+    if (entryPath == null) {
+      entryPath = relativePath;
+    }
+    File file = new File(translatedFileDir, entryPath);
+    if (!file.exists()) {
+      file = null;
+      final ExtractFileWorker extractTask = new ExtractFileWorker(packageIndex, entryPath, translatedFileDir);
+      ProgressDialog.install(
+          extractTask, 
+          (JFrame) pluginWorkspace.getParentFrame(), 
+          messages.getMessage(Tags.EXTRACTING_FILE_FOR_DIFF));
+      extractTask.addProgressListener(
+          new ProgressChangeAdapter() {
+            @Override
+            public void done() {
+              try {
+                ApplyPackageUtil.showDiff(new File(topLocation, relativePath), extractTask.get());
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              } catch (ExecutionException e) {
+                logger.error(e, e);
+              }
+            }
+            @Override
+            public void operationFailed(Exception ex) {
+              logger.error(ex, ex);
+              pluginWorkspace.showErrorMessage(messages.getMessage(Tags.FAILED_TO_APPLY_PACKAGE) + ex.getMessage());
+            }
+          });
+      extractTask.execute();
+    }
+    return file;
+  }
+  
+  /**
+   * Starts a new thread that extracts the selected files over the top location. The files whose local 
+   * copy has the same content are not written.
+   * 
+   * @param selectedPaths The relative paths of the selected files.
+   */
+  private void extractSelectedFiles(Set<String> selectedPaths) {
+    UnzipWorker unzipTask = new UnzipWorker(packageIndex.getVolumes().get(0), topLocation);
+    unzipTask.setSkipUnchanged(true);
+    unzipTask.setEntryFilter(selectedPaths::contains);
+    // The worker reads the volumes on its own.
+    packageIndex.close();
+    applyOnThread(unzipTask, messages.getMessage(Tags.FAILED_TO_APPLY_PACKAGE));
+  }
+  
   /**
    * Starts a new thread that copies the files. 
    */
   private void copyTranslatedFiles() {
     //Copy the files on thread.
-    final CopyDirectoryWorker copyDirTask = new CopyDirectoryWorker(topLocation, translatedFileDir);
+    applyOnThread(
+        new CopyDirectoryWorker(topLocation, translatedFileDir), 
+        messages.getMessage(Tags.COPY_TRANSLATED_FILES_ERROR_MESSAGE));
+  }
+  
+  /**
+   * Applies the selected files on a thread and deletes translatedFileDir when it's done.
+   * 
+   * @param copyDirTask The task that applies the files.
+   * @param errorMessage The message shown if the task fails.
+   */
+  private void applyOnThread(final AbstractWorker<?> copyDirTask, final String errorMessage) {
     //Install the tracker.
     ProgressDialog.install(
         copyDirTask, 
@@ -314,7 +516,7 @@ public class PreviewDialog extends OKCancelDialog { //NOSONAR
           public void operationFailed(Exception ex) {
             logger.error(ex, ex);
             if(!(ex instanceof StoppedByUserException)){
-              pluginWorkspace.showErrorMessage(messages.getMessage(Tags.COPY_TRANSLATED_FILES_ERROR_MESSAGE) + ex.getMessage());
+              pluginWorkspace.showErrorMessage(errorMessage + ex.getMessage());
             }
             try {
               FileUtils.deleteDirectory(translatedFileDir);
@@ -332,6 +534,9 @@ public class PreviewDialog extends OKCancelDialog { //NOSONAR
   @Override
   protected void doCancel() {
     super.doCancel();
+    if (packageIndex != null) {
+      packageIndex.close();
+    }
     try {
       FileUtils.deleteDirectory(translatedFileDir);
     } catch (IOException e1) {
@@ -352,9 +557,17 @@ public class PreviewDialog extends OKCancelDialog { //NOSONAR
       final File topLocationDir,
       final File translatedFilesDir) {
     // Lazy create the tree view.
-    FileSystemTreeModel treeModel = new FileSystemTreeModel(translatedFilesDir);
-    CheckBoxTree cbTree = CheckboxTreeUtil.createFileSystemTree(treeModel, topLocationDir.getName());
-    CheckboxTreeUtil.installDiffOnMouseClick(cbTree, topLocationDir, translatedFilesDir);
+    CheckBoxTree cbTree;
+    if (packageIndex != null) {
+      // The files are not extracted, the tree is built from their paths.
+      PathsTreeModel treeModel = new PathsTreeModel(translatedFilesDir, filePaths);
+      cbTree = CheckboxTreeUtil.createFileSystemTree(treeModel, topLocationDir.getName());
+      CheckboxTreeUtil.installDiffOnMouseClick(cbTree, topLocationDir, translatedFilesDir, this::extractForDiff);
+    } else {
+      FileSystemTreeModel treeModel = new FileSystemTreeModel(translatedFilesDir);
+      cbTree = CheckboxTreeUtil.createFileSystemTree(treeModel, topLocationDir.getName());
+      CheckboxTreeUtil.installDiffOnMouseClick(cbTree, topLocationDir, translatedFilesDir);
+    }
     
     return cbTree;
   }
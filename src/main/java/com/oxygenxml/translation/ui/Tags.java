@@ -22,6 +22,27 @@ public interface Tags /*NOSONAR*/ {
    */
   public static final String UNPACK_FILE = "Unpack_file";
   
+  /**
+   * A file status in the preview of a translation package. The file came back as it was sent.
+   * 
+   * en: unchanged
+   */
+  public static final String UNCHANGED_FILE = "Unchanged_file";
+  
+  /**
+   * A file status in the preview of a translation package. The file came back changed.
+   * 
+   * en: changed
+   */
+  public static final String MODIFIED_FILE = "Modified_file";
+  
+  /**
+   * A file status in the preview of a translation package. The file was not sent.
+   * 
+   * en: new
+   */
+  public static final String NEW_FILE = "New_file";
+  
   public final String TRANSLATION_PACKAGE_BUILDER_PLUIGIN_NAME = "translation_package_builder_plugin_name";
   
   /**
@@ -202,6 +223,12 @@ public interface Tags /*NOSONAR*/ {
    * en: Updated files
    */
   public final String UPDATED_FILES = "Updated_files";
+  /**
+   * Notification after a translation package was applied. What happened to the files of the package.
+   * 
+   * en: {0} files written, {1} new files, {2} unchanged files skipped.
+   */
+  public final String APPLY_PACKAGE_STATISTICS = "Apply_package_statistics";
   /**
    * Error message when we didn't extract any files from the translation package.
    * 
@@ -230,6 +257,12 @@ public interface Tags /*NOSONAR*/ {
    * en: Applying selected files.
    */
   public final String APPLYING_SELECTED_FILES = "Applying_selected_files";
+  /**
+   * Progress dialog title. A file is extracted from the translation package to open its diff.
+   * 
+   * en: Extracting the file to compare
+   */
+  public final String EXTRACTING_FILE_FOR_DIFF = "Extracting_file_for_diff";
   
   /**
    * Notification after a translation package was applied.
@@ -0,0 +1,45 @@
+package com.oxygenxml.translation.ui.worker;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.oxygenxml.translation.support.zip.PackageIndex;
+
+/**
+ * Creates an AbstractWorker for extracting a single file of a package, see {@link PackageIndex#extract(String, File)}.
+ */
+public class ExtractFileWorker extends AbstractWorker<File> {
+  /**
+   *  The package.
+   */
+  private PackageIndex packageIndex;
+  /**
+   *  The relative path of the file in the package.
+   */
+  private String path;
+  /**
+   *  Where to extract the file.
+   */
+  private File destDir;
+
+  /**
+   * Constructor.
+   * 
+   * @param packageIndex The package.
+   * @param path The relative path of the file in the package.
+   * @param destDir Where to extract the file.
+   */
+  public ExtractFileWorker(PackageIndex packageIndex, String path, File destDir) {
+    this.packageIndex = packageIndex;
+    this.path = path;
+    this.destDir = destDir;
+  }
+
+  /**
+   * Main task. Executed in background thread.
+   */
+  @Override
+  public File doInBackground() throws IOException {
+    return packageIndex.extract(path, destDir);
+  }
+}
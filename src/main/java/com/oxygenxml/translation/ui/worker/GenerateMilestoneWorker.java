@@ -31,6 +31,7 @@ public class GenerateMilestoneWorker extends AbstractWorker<File> {
   @Override
   protected File doInBackground() throws Exception {
     ChangePackageGenerator packageBuilder = new ChangePackageGenerator(listeners);
+    packageBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
     return packageBuilder.generateChangeMilestone(ResourceFactory.getInstance().getResource(rootMap));
   }
 }
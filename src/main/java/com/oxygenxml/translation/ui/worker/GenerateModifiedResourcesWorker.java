@@ -40,6 +40,7 @@ public class GenerateModifiedResourcesWorker extends AbstractWorker {
   @Override
   protected Void doInBackground() throws Exception {
     ChangePackageGenerator packageBuilder = new ChangePackageGenerator(listeners);
+    packageBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
     modifiedResources = packageBuilder.collectModifiedResources(
         ResourceFactory.getInstance().getResource(rootMap));
     commonPath = packageBuilder.getCommonPath();
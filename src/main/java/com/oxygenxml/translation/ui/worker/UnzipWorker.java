@@ -2,10 +2,16 @@ package com.oxygenxml.translation.ui.worker;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 import com.oxygenxml.translation.exceptions.StoppedByUserException;
 import com.oxygenxml.translation.support.util.ArchiveBuilder;
+import com.oxygenxml.translation.support.util.UnpackStatistics;
+import com.oxygenxml.translation.support.zip.PackageManifest;
+import com.oxygenxml.translation.support.zip.VolumePacker;
 import com.oxygenxml.translation.ui.ProgressChangeListener;
 
 /**
@@ -29,6 +35,26 @@ public class UnzipWorker extends AbstractWorker<List<String>> {
    */
   private List<String> unpackedFiles;
   
+  /**
+   *  The extracted files compared with the ones sent in the package, by their relative paths.
+   */
+  private Map<String, PackageManifest.Status> entryStatuses = Collections.emptyMap();
+  
+  /**
+   *  <code>true</code> to write only the files whose content differs from the local ones.
+   */
+  private boolean skipUnchanged = false;
+  
+  /**
+   *  Accepts the relative paths of the files to extract. <code>null</code> to extract all the files.
+   */
+  private Predicate<String> entryFilter;
+  
+  /**
+   *  How many files were written, created or skipped.
+   */
+  private UnpackStatistics statistics = new UnpackStatistics();
+  
   /**
    * @return  The list with unzipped files. 
    */
@@ -36,6 +62,37 @@ public class UnzipWorker extends AbstractWorker<List<String>> {
     return unpackedFiles;
   }
   
+  /**
+   * @return How the extracted files compare with the ones sent in the package, by their relative paths.
+   * Empty if the package has no manifest. See {@link ArchiveBuilder#getEntryStatuses()}.
+   */
+  public Map<String, PackageManifest.Status> getEntryStatuses() {
+    return entryStatuses;
+  }
+  
+  /**
+   * @param skipUnchanged <code>true</code> to write only the files whose content differs from the local ones.
+   * See {@link ArchiveBuilder#setSkipUnchanged(boolean)}.
+   */
+  public void setSkipUnchanged(boolean skipUnchanged) {
+    this.skipUnchanged = skipUnchanged;
+  }
+  
+  /**
+   * @param entryFilter Accepts the relative paths of the files to extract. <code>null</code> to extract 
+   * all the files. See {@link ArchiveBuilder#setEntryFilter(Predicate)}.
+   */
+  public void setEntryFilter(Predicate<String> entryFilter) {
+    this.entryFilter = entryFilter;
+  }
+  
+  /**
+   * @return How many files were written, created or skipped.
+   */
+  public UnpackStatistics getStatistics() {
+    return statistics;
+  }
+  
   /**
    * Constructor.
    * 
@@ -54,8 +111,14 @@ public class UnzipWorker extends AbstractWorker<List<String>> {
   @Override
   public List<String> doInBackground() throws StoppedByUserException {
     ArchiveBuilder archiveBuilder = new ArchiveBuilder(listeners);
+    archiveBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
+    archiveBuilder.setSkipUnchanged(skipUnchanged);
+    archiveBuilder.setEntryFilter(entryFilter);
     try {
-      unpackedFiles = archiveBuilder.unzipDirectory(zipDir, rootDir);
+      // The package might be split in volumes. They are all applied.
+      unpackedFiles = archiveBuilder.unzipDirectory(VolumePacker.findVolumes(zipDir), rootDir);
+      entryStatuses = archiveBuilder.getEntryStatuses();
+      statistics = archiveBuilder.getStatistics();
     } catch (IOException e) {
       for (ProgressChangeListener progressChangeListener : listeners) {
         progressChangeListener.operationFailed(e);
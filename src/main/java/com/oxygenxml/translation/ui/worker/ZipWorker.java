@@ -9,7 +9,11 @@ import java.util.List;
 
 import com.oxygenxml.translation.exceptions.NoChangedFilesException;
 import com.oxygenxml.translation.exceptions.StoppedByUserException;
+import com.oxygenxml.translation.support.core.ChangePackageGenerator;
+import com.oxygenxml.translation.support.core.MilestoneUtil;
+import com.oxygenxml.translation.support.storage.InfoResources;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
+import com.oxygenxml.translation.support.util.ArchiveBuilder;
 import com.oxygenxml.translation.support.util.PackageGeneratorUtil;
 import com.oxygenxml.translation.support.util.ResultsManagerUtil;
 
@@ -47,6 +51,26 @@ public class ZipWorker extends AbstractWorker {
    */
   private URL rootMap;
   
+  /**
+   * The maximum size of a package volume, in bytes. 0 to create a single archive.
+   */
+  private long maxVolumeSize = 0;
+  
+  /**
+   * <code>true</code> to store once the modified files with the same content.
+   */
+  private boolean deduplicate = false;
+  
+  /**
+   * A package built before, whose unchanged entries are copied. <code>null</code> if none.
+   */
+  private File previousPackage;
+  
+  /**
+   * <code>true</code> to write the same package, byte for byte, from the same files.
+   */
+  private boolean reproducible = false;
+  
   /**
    * Generates an archive only with the modified files.
    * 
@@ -86,9 +110,26 @@ public class ZipWorker extends AbstractWorker {
     // Clear previous reported errors.
     ResultsManagerUtil.clearResultsPanel();
     if(packAll){
-      PackageGeneratorUtil.zipEntireRootMapStructure(rootMap, listeners, zipDestinationDir);
+      ArchiveBuilder archiveBuilder = new ArchiveBuilder(listeners);
+      archiveBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
+      archiveBuilder.setMaxVolumeSize(maxVolumeSize);
+      archiveBuilder.setPreviousPackage(previousPackage);
+      archiveBuilder.setReproducible(reproducible);
+      PackageGeneratorUtil.zipEntireRootMapStructure(rootMap, listeners, archiveBuilder, zipDestinationDir);
     } else {
-      List<URL> filesNotCopied = PackageGeneratorUtil.zipModifiedResources(rootMap, listeners, zipDestinationDir, modifiedResources);
+      ChangePackageGenerator packageBuilder = new ChangePackageGenerator(listeners);
+      packageBuilder.setParallelism(Runtime.getRuntime().availableProcessors());
+      packageBuilder.setMaxVolumeSize(maxVolumeSize);
+      packageBuilder.setDeduplicate(deduplicate);
+      packageBuilder.setPreviousPackage(previousPackage);
+      packageBuilder.setReproducible(reproducible);
+      // The package manifest records the milestone date and the digests of the modified resources, 
+      // computed with the algorithm of the milestone.
+      InfoResources milestone = MilestoneUtil.loadMilestoneHeader(rootMap);
+      packageBuilder.setMilestoneDate(milestone.getMilestoneCreation());
+      packageBuilder.setDigestAlgorithm(MilestoneUtil.getDigestAlgorithm(milestone));
+      List<URL> filesNotCopied = PackageGeneratorUtil.zipModifiedResources(
+          rootMap, packageBuilder, zipDestinationDir, modifiedResources, null);
       
       modifiedFilesNumber = modifiedResources != null ? modifiedResources.size() : 0;
       if (!filesNotCopied.isEmpty()) {
@@ -106,6 +147,37 @@ public class ZipWorker extends AbstractWorker {
     return null;
   }
 
+  /**
+   * @param maxVolumeSize The maximum size of a package volume, in bytes. 0 to create a single archive.
+   */
+  public void setMaxVolumeSize(long maxVolumeSize) {
+    this.maxVolumeSize = maxVolumeSize;
+  }
+
+  /**
+   * @param deduplicate <code>true</code> to store once the modified files with the same content. 
+   * Their copies are restored when the package is applied.
+   */
+  public void setDeduplicate(boolean deduplicate) {
+    this.deduplicate = deduplicate;
+  }
+
+  /**
+   * @param previousPackage A package built before, whose unchanged entries are copied without compressing
+   * them again. <code>null</code> to compress all the entries.
+   */
+  public void setPreviousPackage(File previousPackage) {
+    this.previousPackage = previousPackage;
+  }
+
+  /**
+   * @param reproducible <code>true</code> to add the files in the order of their paths, with a fixed timestamp,
+   * so that the same files always give the same package.
+   */
+  public void setReproducible(boolean reproducible) {
+    this.reproducible = reproducible;
+  }
+
   /**
    * @return The number of modified files.
    */
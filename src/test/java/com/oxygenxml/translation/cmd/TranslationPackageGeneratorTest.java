@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -12,12 +13,14 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.oxygenxml.translation.support.core.MilestoneUtil;
 import com.oxygenxml.translation.support.core.TestUtil;
 import com.oxygenxml.translation.support.core.TranslationPackageTestBase;
+import com.oxygenxml.translation.support.core.resource.DetectionType;
 import com.oxygenxml.translation.support.core.resource.ResourceFactory;
 import com.oxygenxml.translation.support.util.ArchiveBuilder;
 
@@ -124,6 +127,8 @@ public class TranslationPackageGeneratorTest extends TranslationPackageTestBase
     Assert.assertTrue("The translation package wasn't created", packageFile.exists());
     
     Assert.assertEquals(
+        "META-INF/\n" + 
+        "META-INF/manifest.properties\n" + 
         "topics/\n" + 
         "topics/flowers/\n" + 
         "topics/flowers/iris.dita\n" + 
@@ -242,6 +247,8 @@ public class TranslationPackageGeneratorTest extends TranslationPackageTestBase
     Assert.assertTrue("The translation package wasn't created", packageFile.exists());
     
     Assert.assertEquals(
+        "META-INF/\n" + 
+        "META-INF/manifest.properties\n" + 
         "topics/\n" + 
         "topics/flowers/\n" + 
         "topics/flowers/iris.dita\n" + 
@@ -355,6 +362,33 @@ public class TranslationPackageGeneratorTest extends TranslationPackageTestBase
     assertFalse("The default milestone should not be used.", defaultMilestone.exists());
   }
   
+  /**
+   * <p><b>Description:</b> The references of the DITA documents are kept in the given cache directory 
+   * and the next milestone, generated from the cache, is the same.</p>
+   *
+   * @throws Exception If it fails
+   */
+  @Test
+  public void testGenerateMilestone_ReferenceCache() throws Exception {
+    URL ditaMapURL = new File(TestUtil.getPath("cmd/v1"), "flowers.ditamap").toURI().toURL();
+    File milestone = new File(TestUtil.getPath("cmd"), "mil-cache.xml");
+    File cacheDir = Files.createTempDirectory("references").toFile();
+    ResourceFactory resourceFactory = ResourceFactory.getInstance();
+    resourceFactory.setDetectionTypeForTestes(DetectionType.MAP_STRUCTURE);
+    try {
+      TranslationPackageGenerator.generateMilestone(ditaMapURL, milestone, null, false, cacheDir);
+      String parsed = TestUtil.readFile(milestone).replaceAll("date=\".*\"", "date=\"\"");
+      assertTrue("The references should be cached.", cacheDir.list().length > 0);
+      assertNull("The cache is only used for the call.", resourceFactory.getReferenceCache());
+      
+      TranslationPackageGenerator.generateMilestone(ditaMapURL, milestone, null, false, cacheDir);
+      Assert.assertEquals(parsed, TestUtil.readFile(milestone).replaceAll("date=\".*\"", "date=\"\""));
+    } finally {
+      milestone.delete();
+      FileUtils.deleteDirectory(cacheDir);
+    }
+  }
+  
   /**
    * <p><b>Description:</b> Create a package for translation with a specified milestone.</p>
    * <p><b>Bug ID:</b> EXM-46198</p>
@@ -375,6 +409,8 @@ public class TranslationPackageGeneratorTest extends TranslationPackageTestBase
     Assert.assertTrue("The translation package wasn't created", packageFile.exists());
     
     Assert.assertEquals(
+        "META-INF/\n" + 
+        "META-INF/manifest.properties\n" + 
         "topics/\n" + 
         "topics/flowers/\n" + 
         "topics/flowers/iris.dita\n" + 
@@ -2,6 +2,7 @@ package com.oxygenxml.translation.support.core;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -15,6 +16,7 @@ import org.mockito.Mockito;
 import com.jidesoft.swing.CheckBoxTree;
 import com.oxygenxml.translation.support.tree.CheckboxTreeUtil;
 import com.oxygenxml.translation.support.tree.FileSystemTreeModel;
+import com.oxygenxml.translation.support.tree.PathsTreeModel;
 
 import junit.framework.TestCase;
 import ro.sync.exml.workspace.api.PluginWorkspaceProvider;
@@ -151,6 +153,33 @@ public class CheckBoxTreeTest extends TestCase{
       }
     }
   }
-
+  
+  /**
+   * <p><b>Description:</b> The tree of a package that was not extracted is built from the paths of 
+   * its files. The files don't exist on disk.</p>
+   *
+   * @throws Exception
+   */
+  public void testPathsTreeModel() throws Exception {
+    File root = new File("notExtracted");
+    PathsTreeModel model = new PathsTreeModel(root, 
+        Arrays.asList("topics/topic2.dita", "rootMap.ditamap", "topics/topic1.dita", "images/en/image.png"));
+    
+    assertEquals(root, model.getRoot());
+    assertEquals(3, model.getChildCount(root));
+    assertEquals(new File(root, "images"), model.getChild(root, 0));
+    assertEquals(new File(root, "rootMap.ditamap"), model.getChild(root, 1));
+    File topics = (File) model.getChild(root, 2);
+    assertFalse(model.isLeaf(topics));
+    assertEquals(2, model.getChildCount(topics));
+    assertEquals(new File(topics, "topic1.dita"), model.getChild(topics, 0));
+    assertEquals(1, model.getIndexOfChild(topics, new File(topics, "topic2.dita")));
+    assertTrue(model.isLeaf(new File(topics, "topic2.dita")));
+    assertEquals(0, model.getChildCount(new File(topics, "topic2.dita")));
+    
+    File image = (File) model.getChild(model.getChild(model.getChild(root, 0), 0), 0);
+    assertEquals(new File(root, "images/en/image.png"), image);
+    assertTrue(model.isLeaf(image));
+  }
   
 }
@@ -0,0 +1,108 @@
+package com.oxygenxml.translation.support.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithms;
+
+/**
+ * Measures the digest computation over files of increasing sizes, read through: 
+ * 
+ * 1. a buffered input stream.
+ * 2. a file channel and a direct buffer.
+ * 3. a memory mapped file.
+ * 
+ * and prints the size starting with which memory mapping is faster. Used to choose 
+ * {@link MilestoneUtil#MAPPED_DIGEST_THRESHOLD}.
+ * 
+ * Arguments: [algorithm] [maximum size in MB]. Defaults to MD5 and 256 MB.
+ */
+public class DigestChannelBenchmarkMain {
+  
+  /**
+   * How many times a file is digested, after warming up.
+   */
+  private static final int RUNS = 5;
+
+  public static void main(String[] args) throws Exception {
+    DigestAlgorithm algorithm = DigestAlgorithms.get(args.length > 0 ? args[0] : DigestAlgorithms.MD5);
+    long maxSize = (args.length > 1 ? Long.parseLong(args[1]) : 256) * 1024 * 1024;
+    
+    System.out.println("Algorithm: " + algorithm.getName());
+    System.out.println(String.format("%12s %12s %12s %12s", "size (KB)", "stream (ms)", "direct (ms)", "mapped (ms)"));
+    
+    long crossover = -1;
+    for (long size = 16 * 1024; size <= maxSize; size *= 4) {
+      File file = createFile(size);
+      try {
+        double stream = measure(file, algorithm, -1);
+        double direct = measure(file, algorithm, Long.MAX_VALUE);
+        double mapped = measure(file, algorithm, 0);
+        System.out.println(String.format("%12d %12.3f %12.3f %12.3f", size / 1024, stream, direct, mapped));
+        
+        if (mapped < direct) {
+          if (crossover == -1) {
+            crossover = size;
+          }
+        } else {
+          crossover = -1;
+        }
+      } finally {
+        file.delete();
+      }
+    }
+    
+    System.out.println(crossover != -1 ? 
+        "Memory mapping is faster starting with " + crossover / 1024 + " KB" 
+        : "Memory mapping is not faster for the tested sizes");
+  }
+  
+  /**
+   * Measures the average time of computing the digest of a file.
+   * 
+   * @param file The file.
+   * @param algorithm The digest algorithm.
+   * @param mappedThreshold The memory mapping threshold, or -1 to read through an input stream.
+   * 
+   * @return The average time, in milliseconds.
+   */
+  private static double measure(File file, DigestAlgorithm algorithm, long mappedThreshold) throws Exception {
+    // Warm up.
+    digest(file, algorithm, mappedThreshold);
+    
+    long start = System.nanoTime();
+    for (int i = 0; i < RUNS; i++) {
+      digest(file, algorithm, mappedThreshold);
+    }
+    return (System.nanoTime() - start) / 1e6 / RUNS;
+  }
+
+  private static String digest(File file, DigestAlgorithm algorithm, long mappedThreshold) throws Exception {
+    return mappedThreshold == -1 ? 
+        MilestoneUtil.generateDigest(new FileInputStream(file), algorithm)
+        : MilestoneUtil.generateDigest(file, algorithm, mappedThreshold);
+  }
+  
+  /**
+   * Creates a temporary file with random content.
+   * 
+   * @param size The file size.
+   * 
+   * @return The file.
+   */
+  private static File createFile(long size) throws IOException {
+    File file = File.createTempFile("digest", ".bin");
+    byte[] chunk = new byte[1024 * 1024];
+    new Random(size).nextBytes(chunk);
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      for (long written = 0; written < size; written += chunk.length) {
+        raf.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+      }
+    }
+    return file;
+  }
+}
@@ -1,12 +1,42 @@
 package com.oxygenxml.translation.support.core;
 
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithm;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithms;
+import com.oxygenxml.translation.support.core.digest.Digester;
+import com.oxygenxml.translation.support.core.digest.DigestingInputStream;
 import com.oxygenxml.translation.support.core.resource.FileSystemResourceBuilder;
 import com.oxygenxml.translation.support.core.resource.IRootResource;
+import com.oxygenxml.translation.support.core.resource.MapStructureResourceBuilder;
+import com.oxygenxml.translation.support.core.resource.ReferencedResource;
+import com.oxygenxml.translation.support.core.resource.ReferenceCache;
+import com.oxygenxml.translation.support.core.resource.ReferenceScanner;
+import com.oxygenxml.translation.support.storage.BinaryMilestoneCodec;
+import com.oxygenxml.translation.support.storage.InfoResources;
+import com.oxygenxml.translation.support.storage.MilestoneFormat;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
+import com.oxygenxml.translation.support.storage.XmlMilestoneCodec;
+import com.oxygenxml.translation.support.util.ArchiveBuilder;
+import com.oxygenxml.translation.support.util.PathUtil;
+import com.oxygenxml.translation.support.util.PooledParserCreator;
+import com.oxygenxml.translation.support.util.SAXParserCreator;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
+import org.xml.sax.XMLReader;
 
 /**
  * MD5 and milestone generation tests.
@@ -29,6 +59,279 @@ public class GenerateMilestoneTest extends TranslationPackageTestBase{
     cksum = MilestoneUtil.generateMD5(file);
     Assert.assertEquals("95bcd2d5a06b5f63b84551ddd8ec1483", cksum);
   }
+  
+  /**
+   * Tests the available digest algorithms against known values.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testDigestAlgorithms() throws Exception {
+    File file = TestUtil.getPath("md5Test.txt");
+    Assert.assertEquals("8da05f6b66f46cfa4b1ac92ebdab16f7", 
+        MilestoneUtil.generateDigest(file, DigestAlgorithms.get(DigestAlgorithms.MD5)));
+    
+    Assert.assertEquals("e3069283", digest(DigestAlgorithms.CRC32C, "123456789"));
+    Assert.assertEquals("ef46db3751d8e999", digest(DigestAlgorithms.XXHASH64, ""));
+    Assert.assertEquals("44bc2cf5ad770999", digest(DigestAlgorithms.XXHASH64, "abc"));
+    Assert.assertEquals("fbcea83c8a378bf1", digest(DigestAlgorithms.XXHASH64, "Nobody inspects the spammish repetition"));
+    Assert.assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", 
+        digest(DigestAlgorithms.SHA_256, "abc"));
+    
+    // The digest doesn't depend on how the content is split.
+    byte[] content = new byte[1000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i * 31 + 7);
+    }
+    for (String algorithm : new String[] {DigestAlgorithms.CRC32C, DigestAlgorithms.XXHASH64}) {
+      Digester whole = DigestAlgorithms.get(algorithm).newDigester();
+      whole.update(content, 0, content.length);
+      Digester chunks = DigestAlgorithms.get(algorithm).newDigester();
+      for (int i = 0; i < content.length; i += 37) {
+        chunks.update(content, i, Math.min(37, content.length - i));
+      }
+      Assert.assertEquals(algorithm, whole.digest(), chunks.digest());
+    }
+  }
+  
+  /**
+   * The digest is the same whether the file is read through a stream, a direct buffer or memory mapped.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testDigest_FileChannel() throws Exception {
+    File file = File.createTempFile("digest", ".bin");
+    try {
+      byte[] content = new byte[200 * 1024 + 13];
+      new Random(7).nextBytes(content);
+      Files.write(file.toPath(), content);
+      
+      for (DigestAlgorithm algorithm : DigestAlgorithms.getAll()) {
+        String expected = MilestoneUtil.generateDigest(new FileInputStream(file), algorithm);
+        Assert.assertEquals(algorithm.getName(), expected, MilestoneUtil.generateDigest(file, algorithm, Long.MAX_VALUE));
+        Assert.assertEquals(algorithm.getName(), expected, MilestoneUtil.generateDigest(file, algorithm, 0));
+      }
+    } finally {
+      file.delete();
+    }
+  }
+  
+  /**
+   * The content passed through a digesting stream has the same digest as the file, even if the reader 
+   * closes the stream before the end and skips some of it.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testDigest_DigestingStream() throws Exception {
+    File file = File.createTempFile("digest", ".bin");
+    try {
+      byte[] content = new byte[100 * 1024 + 7];
+      new Random(3).nextBytes(content);
+      Files.write(file.toPath(), content);
+      
+      for (DigestAlgorithm algorithm : DigestAlgorithms.getAll()) {
+        try (FileInputStream in = new FileInputStream(file)) {
+          DigestingInputStream digesting = new DigestingInputStream(in, algorithm.newDigester());
+          digesting.read();
+          digesting.read(new byte[1000], 0, 1000);
+          assertEquals(5000, digesting.skip(5000));
+          // Like a parser at the end of the document.
+          digesting.close();
+          Assert.assertEquals(algorithm.getName(), MilestoneUtil.generateDigest(file, algorithm), digesting.digest());
+        }
+      }
+    } finally {
+      file.delete();
+    }
+  }
+  
+  /**
+   * The digests computed while parsing the documents of a map are the ones of the files, whether the 
+   * documents are parsed before or after their digests are asked for, with the same algorithm or another one.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testMapTraversal_ParseAndHash() throws Exception {
+    File map = new File(TestUtil.getPath("SAX-Test"), "it-book/taskbook.ditamap");
+    URL rootMap = map.toURI().toURL();
+    for (DigestAlgorithm algorithm : Arrays.asList(DigestAlgorithms.getDefault(), DigestAlgorithms.get(DigestAlgorithms.XXHASH64))) {
+      for (int parallelism : new int[] {1, 4}) {
+        MapStructureResourceBuilder builder = new MapStructureResourceBuilder();
+        builder.setParallelism(parallelism);
+        builder.setDigestAlgorithm(algorithm);
+        ChangePackageGenerator packageBuilder = new ChangePackageGenerator(null);
+        packageBuilder.setParallelism(parallelism);
+        List<ResourceInfo> list = new ArrayList<ResourceInfo>();
+        packageBuilder.computeResourceInfo(builder.wrap(new ReferencedResource(rootMap, true), null), list, new HashSet<URL>());
+        
+        assertFalse(list.isEmpty());
+        for (ResourceInfo info : list) {
+          File file = new File(map.getParentFile(), info.getRelativePath());
+          assertEquals(info.getRelativePath(), MilestoneUtil.generateMD5(file), info.getMd5());
+        }
+      }
+    }
+  }
+  
+  /**
+   * Saves a milestone in the binary format and loads it back.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testBinaryMilestone() throws Exception {
+    File rootDir = Files.createTempDirectory("binaryMilestone").toFile();
+    try {
+      List<ResourceInfo> entries = new ArrayList<>();
+      entries.add(new ResourceInfo("754d9436d3a245ad9a340b8d9929fc46", "testIteration/dir2/md5.txt"));
+      entries.add(new ResourceInfo("3c01bd69152843f5aada9595c6b75bf2", "testGenerate/md5_no2.txt"));
+      entries.add(new ResourceInfo("521304ca436443d97ccf68ee919c03b3", "testIteration/dir1/\u00eent\u00e2i.txt"));
+      ResourceInfo withAttributes = new ResourceInfo("55047487acf9f525244b12cff4bfc49c", "testIteration/dir1/md5.txt");
+      withAttributes.setSize(123456789L);
+      withAttributes.setLastModified(1500000000000L);
+      withAttributes.setFileKey("(dev=801,ino=1234)");
+      entries.add(withAttributes);
+      
+      InfoResources info = new InfoResources(entries, new Date(1500000000000L));
+      info.setAlgorithm(DigestAlgorithms.XXHASH64);
+      IRootResource rootResource = new FileSystemResourceBuilder().wrapDirectory(rootDir);
+      File milestoneFile = rootResource.getMilestoneFile();
+      MilestoneUtil.storeMilestoneFile(info, milestoneFile, MilestoneFormat.BINARY);
+      
+      Assert.assertTrue(BinaryMilestoneCodec.isBinary(milestoneFile));
+      Assert.assertEquals(new Date(1500000000000L), BinaryMilestoneCodec.readCreationDate(milestoneFile));
+      
+      InfoResources loaded = MilestoneUtil.loadMilestone(rootResource);
+      Assert.assertEquals(DigestAlgorithms.XXHASH64, loaded.getAlgorithm());
+      Assert.assertEquals(new Date(1500000000000L), loaded.getMilestoneCreation());
+      // Loaded sorted by relative path.
+      Assert.assertEquals(
+          "testGenerate/md5_no2.txt\n"
+          + "testIteration/dir1/md5.txt\n"
+          + "testIteration/dir1/\u00eent\u00e2i.txt\n"
+          + "testIteration/dir2/md5.txt\n", 
+          relativePaths(loaded.getList()));
+      ResourceInfo loadedWithAttributes = loaded.getList().get(1);
+      Assert.assertEquals(withAttributes, loadedWithAttributes);
+      Assert.assertTrue(withAttributes.hasSameFileAttributes(loadedWithAttributes));
+      Assert.assertEquals(withAttributes.getFileKey(), loadedWithAttributes.getFileKey());
+      Assert.assertNull(loaded.getList().get(0).getSize());
+      
+      // Changes are detected against a binary milestone as well.
+      Files.write(new File(rootDir, "a.txt").toPath(), "a".getBytes(StandardCharsets.UTF_8));
+      ChangePackageGenerator packageBuilder = new ChangePackageGenerator(null);
+      packageBuilder.setMilestoneFormat(MilestoneFormat.BINARY);
+      packageBuilder.generateChangeMilestone(rootResource);
+      Assert.assertTrue(BinaryMilestoneCodec.isBinary(milestoneFile));
+      Assert.assertEquals(0, packageBuilder.collectModifiedResources(rootResource).size());
+    } finally {
+      FileUtils.deleteDirectory(rootDir);
+    }
+  }
+  
+  /**
+   * Saves an XML milestone through the streaming codec and loads it back.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testXmlMilestone() throws Exception {
+    File milestoneFile = File.createTempFile("xmlMilestone", ".xml");
+    try {
+      ResourceInfo entry = new ResourceInfo("754d9436d3a245ad9a340b8d9929fc46", "dir/a&b<c>.txt");
+      entry.setSize(5L);
+      entry.setLastModified(1500000000000L);
+      InfoResources info = new InfoResources(
+          Arrays.asList(new ResourceInfo("3c01bd69152843f5aada9595c6b75bf2", "map.ditamap"), entry), 
+          new Date(1500000000123L));
+      MilestoneUtil.storeMilestoneFile(info, milestoneFile);
+      
+      String content = TestUtil.readFile(milestoneFile).replaceAll("date=\".*\"", "date=\"\"");
+      Assert.assertEquals(
+          "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" + 
+          "<resources date=\"\">\n" + 
+          "    <info-resource>\n" + 
+          "        <md5>3c01bd69152843f5aada9595c6b75bf2</md5>\n" + 
+          "        <relativePath>map.ditamap</relativePath>\n" + 
+          "    </info-resource>\n" + 
+          "    <info-resource>\n" + 
+          "        <md5>754d9436d3a245ad9a340b8d9929fc46</md5>\n" + 
+          "        <relativePath>dir/a&amp;b&lt;c&gt;.txt</relativePath>\n" + 
+          "        <size>5</size>\n" + 
+          "        <lastModified>1500000000000</lastModified>\n" + 
+          "    </info-resource>\n" + 
+          "</resources>\n", content);
+      
+      Assert.assertEquals(new Date(1500000000123L), XmlMilestoneCodec.readCreationDate(milestoneFile));
+      
+      List<ResourceInfo> loaded = new ArrayList<>();
+      InfoResources header = XmlMilestoneCodec.read(milestoneFile, loaded::add);
+      Assert.assertNull(header.getAlgorithm());
+      Assert.assertTrue(entry.hasSameFileAttributes(loaded.get(1)));
+      Assert.assertEquals(TestUtil.dump(info.getList()), TestUtil.dump(loaded));
+    } finally {
+      milestoneFile.delete();
+    }
+  }
+  
+  /**
+   * The top location is recorded in the milestone, relative to the root map, and used to find 
+   * where to apply a package.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testTopLocation_Recorded() throws Exception {
+    File dir = Files.createTempDirectory("topLocation").toFile();
+    try {
+      new ArchiveBuilder(null).copyDirectory(TestUtil.getPath("issue-9-full"), dir, 0, true);
+      File rootMap = new File(dir, "root/THE_ROOT.ditamap");
+      URL rootMapUrl = rootMap.toURI().toURL();
+      // The milestone that came with the sample has no top location.
+      Assert.assertNull(PathUtil.getRecordedTopLocationURL(rootMapUrl));
+      
+      new ChangePackageGenerator(null).generateChangeMilestone(
+          new MapStructureResourceBuilder().wrap(new ReferencedResource(rootMapUrl, true), null));
+      
+      Assert.assertEquals("../", MilestoneUtil.loadMilestoneHeader(rootMapUrl).getTopLocation());
+      Assert.assertEquals(dir.toURI().toURL(), PathUtil.getRecordedTopLocationURL(rootMapUrl));
+      Assert.assertEquals(dir.getCanonicalFile(), PathUtil.findTopLocationFile(rootMapUrl));
+      
+      // Still valid after the project is moved.
+      File moved = new File(dir.getParentFile(), dir.getName() + "-moved");
+      Assert.assertTrue(dir.renameTo(moved));
+      dir = moved;
+      Assert.assertEquals(
+          moved.getCanonicalFile(), 
+          PathUtil.findTopLocationFile(new File(moved, "root/THE_ROOT.ditamap").toURI().toURL()));
+    } finally {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+  
+  /**
+   * @return The relative paths, one per line.
+   */
+  private static String relativePaths(List<ResourceInfo> entries) {
+    StringBuilder b = new StringBuilder();
+    for (ResourceInfo entry : entries) {
+      b.append(entry.getRelativePath()).append("\n");
+    }
+    return b.toString();
+  }
+  
+  /**
+   * Computes the digest of a string.
+   * 
+   * @param algorithm The algorithm name.
+   * @param content The content to digest.
+   * 
+   * @return The digest.
+   * 
+   * @throws Exception If it fails.
+   */
+  private static String digest(String algorithm, String content) throws Exception {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    Digester digester = DigestAlgorithms.get(algorithm).newDigester();
+    digester.update(bytes, 0, bytes.length);
+    return digester.digest();
+  }
 
   /**
    * Generates the milestone file on disk and asserts its contents.
@@ -53,4 +356,296 @@ public class GenerateMilestoneTest extends TranslationPackageTestBase{
 		
 		Assert.assertEquals(TestUtil.dump(expectedResult), TestUtil.dump(actualResult));
 	}
+
+  /**
+   * The parallel computation must produce the same ordered list as the sequential one.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testComputeResourceInfo_Parallel() throws Exception {
+    File rootDir = TestUtil.getPath("generateMilestone-Test");
+    assertEquals(
+        computeResourceInfo(new FileSystemResourceBuilder().wrapDirectory(rootDir), 1).toString(),
+        computeResourceInfo(new FileSystemResourceBuilder().wrapDirectory(rootDir), 4).toString());
+    
+    URL rootMap = new File(TestUtil.getPath("SAX-Test"), "it-book/taskbook.ditamap").toURI().toURL();
+    List<ResourceInfo> sequential = computeResourceInfo(
+        new MapStructureResourceBuilder().wrap(new ReferencedResource(rootMap, true), null), 1);
+    assertFalse(sequential.isEmpty());
+    assertEquals(
+        sequential.toString(),
+        computeResourceInfo(
+            new MapStructureResourceBuilder().wrap(new ReferencedResource(rootMap, true), null), 4).toString());
+  }
+
+  /**
+   * Parsing the documents of a map on several threads must give the same resources, with the same 
+   * relative paths and in the same order, as the sequential walk.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testMapTraversal_Concurrent() throws Exception {
+    List<File> maps = Arrays.asList(
+        new File(TestUtil.getPath("SAX-Test"), "it-book/taskbook.ditamap"),
+        new File(TestUtil.getPath("operation"), "v1/flowers.ditamap"),
+        new File(TestUtil.getPath("issue-9-full"), "root/THE_ROOT.ditamap"));
+    for (File map : maps) {
+      URL rootMap = map.toURI().toURL();
+      List<ResourceInfo> sequential = computeResourceInfo(
+          new MapStructureResourceBuilder().wrap(new ReferencedResource(rootMap, true), null), 1);
+      assertFalse(sequential.isEmpty());
+      
+      for (int i = 0; i < 5; i++) {
+        MapStructureResourceBuilder builder = new MapStructureResourceBuilder();
+        builder.setParallelism(4);
+        assertEquals(
+            map.getName(),
+            sequential.toString(),
+            computeResourceInfo(builder.wrap(new ReferencedResource(rootMap, true), null), 1).toString());
+      }
+      
+      // Stopped right away. The walk reads the documents that were not parsed ahead of it.
+      MapStructureResourceBuilder builder = new MapStructureResourceBuilder();
+      builder.setParallelism(4);
+      IRootResource rootResource = builder.wrap(new ReferencedResource(rootMap, true), null);
+      rootResource.close();
+      List<ResourceInfo> list = new ArrayList<ResourceInfo>();
+      new ChangePackageGenerator(null).computeResourceInfo(rootResource, list, new HashSet<URL>());
+      assertEquals(map.getName(), sequential.toString(), list.toString());
+    }
+  }
+
+  /**
+   * The documents found in the reference cache are not parsed again and the walk gives the same 
+   * resources as without a cache.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testMapTraversal_ReferenceCache() throws Exception {
+    File cacheDir = Files.createTempDirectory("references").toFile();
+    try {
+      File map = new File(TestUtil.getPath("SAX-Test"), "it-book/taskbook.ditamap");
+      URL rootMap = map.toURI().toURL();
+      List<ResourceInfo> expected = computeResourceInfo(
+          new MapStructureResourceBuilder().wrap(new ReferencedResource(rootMap, true), null), 1);
+      assertFalse(expected.isEmpty());
+      
+      for (int parallelism : new int[] {1, 4}) {
+        ReferenceCache cache = new ReferenceCache(cacheDir);
+        MapStructureResourceBuilder builder = new MapStructureResourceBuilder();
+        builder.setParallelism(parallelism);
+        builder.setReferenceCache(cache);
+        assertEquals(
+            expected.toString(), 
+            computeResourceInfo(builder.wrap(new ReferencedResource(rootMap, true), null), parallelism).toString());
+        if (parallelism == 1) {
+          // First run, the documents are parsed.
+          assertEquals(0, cache.getHits());
+          assertTrue(cache.getMisses() > 0);
+        } else {
+          assertTrue(cache.getHits() > 0);
+          assertEquals(0, cache.getMisses());
+        }
+      }
+    } finally {
+      FileUtils.deleteDirectory(cacheDir);
+    }
+  }
+
+  /**
+   * The references found by the scanner are not cached, so parsing with the same cache later gives 
+   * the references found by the parser.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testMapTraversal_ReferenceCacheAndScanning() throws Exception {
+    File cacheDir = Files.createTempDirectory("references").toFile();
+    try {
+      File map = new File(TestUtil.getPath("SAX-Test"), "it-book/taskbook.ditamap");
+      URL rootMap = map.toURI().toURL();
+      List<ResourceInfo> parsed = computeResourceInfo(
+          new MapStructureResourceBuilder().wrap(new ReferencedResource(rootMap, true), null), 1);
+      
+      ReferenceCache cache = new ReferenceCache(cacheDir);
+      MapStructureResourceBuilder scanning = new MapStructureResourceBuilder();
+      scanning.setReferenceCache(cache);
+      scanning.setReferenceScanning(true);
+      computeResourceInfo(scanning.wrap(new ReferencedResource(rootMap, true), null), 1);
+      int scanned = cache.getMisses();
+      
+      cache = new ReferenceCache(cacheDir);
+      MapStructureResourceBuilder parsing = new MapStructureResourceBuilder();
+      parsing.setReferenceCache(cache);
+      assertEquals(
+          parsed.toString(), 
+          computeResourceInfo(parsing.wrap(new ReferencedResource(rootMap, true), null), 1).toString());
+      // Only the documents the scanner gave up on were parsed and cached.
+      assertTrue(cache.getMisses() > 0);
+      assertEquals(scanned, cache.getHits() + cache.getMisses());
+    } finally {
+      FileUtils.deleteDirectory(cacheDir);
+    }
+  }
+
+  /**
+   * An entry of the reference cache is used only with the grammar it was detected with. The entries 
+   * not used for a while are pruned and the cache can be cleared.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testReferenceCache_GrammarAndPruning() throws Exception {
+    File cacheDir = Files.createTempDirectory("references").toFile();
+    try {
+      DigestAlgorithm algorithm = DigestAlgorithms.get(DigestAlgorithms.MD5);
+      String grammar = "-//OASIS//DTD DITA Topic//EN topic.dtd";
+      List<Map.Entry<String, Boolean>> references = Arrays.asList(
+          new AbstractMap.SimpleImmutableEntry<>("a.dita", true),
+          new AbstractMap.SimpleImmutableEntry<>("b.png", false));
+      
+      ReferenceCache cache = new ReferenceCache(cacheDir);
+      cache.put(algorithm, "0123456789abcdef", grammar, references);
+      assertEquals(references.toString(), String.valueOf(cache.get(algorithm, "0123456789abcdef", grammar)));
+      // Another grammar might default other attributes.
+      assertNull(cache.get(algorithm, "0123456789abcdef", "-//OASIS//DTD DITA Concept//EN concept.dtd"));
+      assertNull(cache.get(algorithm, "0123456789abcdef", ""));
+      
+      // Used recently, so it is kept.
+      assertEquals(0, cache.prune(TimeUnit.DAYS.toMillis(30)));
+      assertNotNull(cache.get(algorithm, "0123456789abcdef", grammar));
+      assertEquals(1, cache.prune(-1));
+      assertNull(cache.get(algorithm, "0123456789abcdef", grammar));
+      
+      cache.put(algorithm, "0123456789abcdef", grammar, references);
+      cache.clear();
+      assertFalse(cacheDir.exists());
+      assertNull(cache.get(algorithm, "0123456789abcdef", grammar));
+    } finally {
+      FileUtils.deleteDirectory(cacheDir);
+    }
+  }
+
+  /**
+   * Scanning the documents for references gives the same resources as parsing them.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testMapTraversal_ReferenceScanning() throws Exception {
+    List<File> maps = Arrays.asList(
+        new File(TestUtil.getPath("SAX-Test"), "it-book/taskbook.ditamap"),
+        new File(TestUtil.getPath("operation"), "v1/flowers.ditamap"),
+        new File(TestUtil.getPath("issue-9-full"), "root/THE_ROOT.ditamap"));
+    for (File map : maps) {
+      URL rootMap = map.toURI().toURL();
+      List<ResourceInfo> parsed = computeResourceInfo(
+          new MapStructureResourceBuilder().wrap(new ReferencedResource(rootMap, true), null), 1);
+      assertFalse(parsed.isEmpty());
+      
+      for (int parallelism : new int[] {1, 4}) {
+        MapStructureResourceBuilder builder = new MapStructureResourceBuilder();
+        builder.setParallelism(parallelism);
+        builder.setReferenceScanning(true);
+        assertEquals(
+            map.getName(),
+            parsed.toString(),
+            computeResourceInfo(builder.wrap(new ReferencedResource(rootMap, true), null), parallelism).toString());
+      }
+    }
+  }
+  
+  /**
+   * The scanner detects the same references as the parser and gives up on the ones it can't classify 
+   * without the DTD.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testReferenceScanner() throws Exception {
+    File topic = new File(TestUtil.getPath("issue-not-parse-image-sax"), "referredResource.xml");
+    try (FileInputStream in = new FileInputStream(topic)) {
+      // The image is detected by its name.
+      assertEquals("[Oxygen128.png=false, conref_res.xml=true, href_res.xml=true]", 
+          ReferenceScanner.scan(in, topic.toURI().toString()).toString());
+    }
+    
+    String doctype = "<!DOCTYPE topic PUBLIC \"-//OASIS//DTD DITA Topic//EN\" \"topic.dtd\">";
+    assertEquals("[a.dita=true, b.png=false, c.dita=true, d.png=false]", scan(doctype 
+        + "<topic><p>Text &nbsp;<xref href='a.dita#t/p'/></p>"
+        + "<fig><image href='b.png'/></fig>"
+        + "<ph conref='c.dita#t/ph'/>"
+        + "<ph class='- topic/image ' href='d.png'/>"
+        + "<xref href='http://www.oxygenxml.com' scope='external'/>"
+        + "<xref href='e.html' format='html'/></topic>"));
+    // Without a DTD nothing is defaulted.
+    assertEquals("[b.png=true, f.dita=true]", scan("<topic><image href='b.png'/><ph href='f.dita'/></topic>"));
+    
+    // An unknown element might get a class from the DTD.
+    assertNull(scan(doctype + "<topic><ph href='f.dita'/></topic>"));
+    assertEquals("[f.dita=true]", scan(doctype + "<topic><ph href='f.dita' format='dita'/></topic>"));
+    // The internal subset might declare attributes.
+    assertNull(scan("<!DOCTYPE topic [<!ATTLIST xref format CDATA 'html'>]><topic><xref href='a.dita'/></topic>"));
+  }
+  
+  /**
+   * Each thread gets its own parser, created once.
+   * 
+   * @throws Exception If it fails.
+   */
+  public void testPooledParserCreator() throws Exception {
+    PooledParserCreator parserCreator = new PooledParserCreator(new SAXParserCreator());
+    XMLReader parser = parserCreator.createXMLReader();
+    assertSame(parser, parserCreator.createXMLReader());
+    
+    XMLReader[] other = new XMLReader[1];
+    Thread thread = new Thread(() -> {
+      try {
+        other[0] = parserCreator.createXMLReader();
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    thread.start();
+    thread.join();
+    assertNotNull(other[0]);
+    assertFalse(parser == other[0]);
+    
+    // Released, the next parser is a new one.
+    parserCreator.release();
+    assertFalse(parser == parserCreator.createXMLReader());
+  }
+
+  /**
+   * Scans a document.
+   * 
+   * @param content The content of the document.
+   * 
+   * @return The references found, or <code>null</code> if the document must be parsed.
+   * 
+   * @throws Exception If it fails.
+   */
+  private static String scan(String content) throws Exception {
+    List<?> references = ReferenceScanner.scan(
+        new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), "file:/topic.dita");
+    return references != null ? references.toString() : null;
+  }
+
+  /**
+   * Computes the milestone information for the descendants of the given resource.
+   * 
+   * @param rootResource The root resource.
+   * @param parallelism How many threads compute the information.
+   * 
+   * @return The information, in the order in which it was collected.
+   * 
+   * @throws Exception If it fails.
+   */
+  private static List<ResourceInfo> computeResourceInfo(IRootResource rootResource, int parallelism) throws Exception {
+    ChangePackageGenerator packageBuilder = new ChangePackageGenerator(null);
+    packageBuilder.setParallelism(parallelism);
+    List<ResourceInfo> list = new ArrayList<ResourceInfo>();
+    try {
+      packageBuilder.computeResourceInfo(rootResource, list, new HashSet<URL>());
+    } finally {
+      rootResource.close();
+    }
+    return list;
+  }
 }
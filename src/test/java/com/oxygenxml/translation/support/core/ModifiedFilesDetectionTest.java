@@ -1,16 +1,20 @@
 package com.oxygenxml.translation.support.core;
 
 import com.oxygenxml.translation.exceptions.StoppedByUserException;
+import com.oxygenxml.translation.support.core.digest.DigestAlgorithms;
 import com.oxygenxml.translation.support.core.resource.FileSystemResourceBuilder;
 import com.oxygenxml.translation.support.core.resource.IRootResource;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import javax.xml.bind.JAXBException;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 
 /**
@@ -43,4 +47,79 @@ public class ModifiedFilesDetectionTest extends TranslationPackageTestBase {
         TestUtil.dump(actualResult));
 	}
 
+  /**
+   * When the file attributes are trusted, a file is read again only if its size or last modified time changed.
+   */
+  public void testModifiedfiles_TrustFileAttributes() throws Exception {
+    File rootDir = Files.createTempDirectory("trustAttributes").toFile();
+    try {
+      File stable = new File(rootDir, "stable.txt");
+      File changed = new File(rootDir, "changed.txt");
+      File touched = new File(rootDir, "touched.txt");
+      Files.write(stable.toPath(), "stable".getBytes(StandardCharsets.UTF_8));
+      Files.write(changed.toPath(), "first".getBytes(StandardCharsets.UTF_8));
+      Files.write(touched.toPath(), "abc".getBytes(StandardCharsets.UTF_8));
+      
+      IRootResource rootResource = new FileSystemResourceBuilder().wrapDirectory(rootDir);
+      ChangePackageGenerator packageBuilder = new ChangePackageGenerator(null);
+      packageBuilder.setTrustFileAttributes(true);
+      packageBuilder.generateChangeMilestone(rootResource);
+      
+      // The attributes are recorded in the milestone.
+      for (ResourceInfo resourceInfo : MilestoneUtil.loadMilestoneFile(rootResource)) {
+        Assert.assertNotNull(resourceInfo.getRelativePath(), resourceInfo.getSize());
+        Assert.assertNotNull(resourceInfo.getRelativePath(), resourceInfo.getLastModified());
+      }
+      
+      // A real change, with a different size.
+      Files.write(changed.toPath(), "second".getBytes(StandardCharsets.UTF_8));
+      changed.setLastModified(changed.lastModified() + 2000);
+      // Same size, same time stamp. Considered unchanged without reading it.
+      long touchedTime = touched.lastModified();
+      Files.write(touched.toPath(), "xyz".getBytes(StandardCharsets.UTF_8));
+      touched.setLastModified(touchedTime);
+      
+      List<ResourceInfo> actualResult = packageBuilder.collectModifiedResources(rootResource);
+      Assert.assertEquals(1, actualResult.size());
+      Assert.assertEquals("changed.txt", actualResult.get(0).getRelativePath());
+      
+      // Without trusting the attributes, the content is read and the change detected.
+      actualResult = new ChangePackageGenerator(null).collectModifiedResources(rootResource);
+      Assert.assertEquals(2, actualResult.size());
+    } finally {
+      FileUtils.deleteDirectory(rootDir);
+    }
+  }
+
+  /**
+   * The milestone records its digest algorithm and the changes are detected with the same algorithm, 
+   * no matter the one set on the generator.
+   */
+  public void testModifiedfiles_DigestAlgorithm() throws Exception {
+    File rootDir = Files.createTempDirectory("digestAlgorithm").toFile();
+    try {
+      File stable = new File(rootDir, "stable.txt");
+      File changed = new File(rootDir, "changed.txt");
+      Files.write(stable.toPath(), "stable".getBytes(StandardCharsets.UTF_8));
+      Files.write(changed.toPath(), "first".getBytes(StandardCharsets.UTF_8));
+      
+      IRootResource rootResource = new FileSystemResourceBuilder().wrapDirectory(rootDir);
+      ChangePackageGenerator packageBuilder = new ChangePackageGenerator(null);
+      packageBuilder.setDigestAlgorithm(DigestAlgorithms.get(DigestAlgorithms.XXHASH64));
+      packageBuilder.generateChangeMilestone(rootResource);
+      
+      Assert.assertEquals(DigestAlgorithms.XXHASH64, MilestoneUtil.loadMilestone(rootResource).getAlgorithm());
+      
+      Files.write(changed.toPath(), "second".getBytes(StandardCharsets.UTF_8));
+      
+      List<ResourceInfo> actualResult = new ChangePackageGenerator(null).collectModifiedResources(rootResource);
+      Assert.assertEquals(1, actualResult.size());
+      Assert.assertEquals("changed.txt", actualResult.get(0).getRelativePath());
+      // A 64 bits digest.
+      Assert.assertEquals(16, actualResult.get(0).getMd5().length());
+    } finally {
+      FileUtils.deleteDirectory(rootDir);
+    }
+  }
+
 }
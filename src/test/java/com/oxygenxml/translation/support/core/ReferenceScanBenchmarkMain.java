@@ -0,0 +1,155 @@
+package com.oxygenxml.translation.support.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.oxygenxml.translation.support.core.resource.ReferenceScanner;
+import com.oxygenxml.translation.support.core.resource.SaxContentHandler;
+import com.oxygenxml.translation.support.util.SAXParserCreator;
+
+/**
+ * Measures the detection of the references in a synthetic corpus of DITA topics:
+ *
+ * 1. parsed with SAX, through {@link SaxContentHandler}.
+ * 2. scanned with {@link ReferenceScanner}.
+ *
+ * The topics declare a DTD that is not loaded by either of them, so the parser time doesn't include
+ * the grammar. In Oxygen the DTD is loaded, which makes the parser slower still.
+ *
+ * Arguments: [number of topics] [paragraphs per topic]. Defaults to 2000 and 50.
+ */
+public class ReferenceScanBenchmarkMain {
+
+  /**
+   * How many times the corpus is read, after warming up.
+   */
+  private static final int RUNS = 5;
+
+  public static void main(String[] args) throws Exception {
+    int topics = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int paragraphs = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+    File corpus = Files.createTempDirectory("scanBenchmark").toFile();
+    try {
+      List<File> files = createCorpus(corpus, topics, paragraphs);
+
+      int scanned = 0;
+      for (File file : files) {
+        if (scan(file) != null) {
+          scanned++;
+        }
+      }
+      System.out.println("Topics: " + topics + ", scanned: " + scanned + ", left to the parser: " + (topics - scanned));
+
+      double parse = measure(files, false);
+      double scan = measure(files, true);
+      System.out.println(String.format("%12s %12s %12s", "parse (ms)", "scan (ms)", "speedup"));
+      System.out.println(String.format("%12.1f %12.1f %12.2f", parse, scan, parse / scan));
+    } finally {
+      FileUtils.deleteDirectory(corpus);
+    }
+  }
+
+  /**
+   * Measures the average time of detecting the references in the corpus.
+   *
+   * @param files The topics.
+   * @param scan <code>true</code> to scan the topics, <code>false</code> to parse them.
+   *
+   * @return The average time, in milliseconds.
+   */
+  private static double measure(List<File> files, boolean scan) throws Exception {
+    // Warm up.
+    readAll(files, scan);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < RUNS; i++) {
+      readAll(files, scan);
+    }
+    return (System.nanoTime() - start) / 1e6 / RUNS;
+  }
+
+  /**
+   * Detects the references in all the topics.
+   *
+   * @param files The topics.
+   * @param scan <code>true</code> to scan the topics, <code>false</code> to parse them.
+   *
+   * @return The number of references, so the work is not optimized away.
+   */
+  private static int readAll(List<File> files, boolean scan) throws Exception {
+    int references = 0;
+    for (File file : files) {
+      references += scan ? scan(file).size() : parse(file).size();
+    }
+    return references;
+  }
+
+  private static List<?> scan(File file) throws Exception {
+    try (InputStream in = new FileInputStream(file)) {
+      return ReferenceScanner.scan(in, file.toURI().toString());
+    }
+  }
+
+  private static List<?> parse(File file) throws Exception {
+    URL url = file.toURI().toURL();
+    XMLReader xmlReader = new SAXParserCreator().createXMLReader();
+    SaxContentHandler handler = new SaxContentHandler(url);
+    xmlReader.setContentHandler(handler);
+    xmlReader.parse(new InputSource(url.toExternalForm()));
+    return handler.getWrittenReferences();
+  }
+
+  /**
+   * Creates the topics. Each paragraph has some text and, in turns, a cross reference, an image or
+   * a content reference.
+   *
+   * @param dir Where to create the topics.
+   * @param topics The number of topics.
+   * @param paragraphs The number of paragraphs of each topic.
+   *
+   * @return The topics.
+   */
+  private static List<File> createCorpus(File dir, int topics, int paragraphs) throws Exception {
+    List<File> files = new ArrayList<>(topics);
+    for (int i = 0; i < topics; i++) {
+      StringBuilder content = new StringBuilder();
+      content.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+          .append("<!DOCTYPE topic PUBLIC \"-//OASIS//DTD DITA Topic//EN\" \"topic.dtd\">\n")
+          .append("<topic id=\"t").append(i).append("\"><title>Topic ").append(i).append("</title><body>\n");
+      for (int p = 0; p < paragraphs; p++) {
+        int target = (i + p + 1) % topics;
+        content.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor ")
+            .append("incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud ");
+        switch (p % 3) {
+          case 0:
+            content.append("<xref href=\"topic").append(target).append(".dita#t").append(target).append("\"/>");
+            break;
+          case 1:
+            content.append("<image href=\"images/image").append(p).append(".png\"/>");
+            break;
+          default:
+            content.append("<ph conref=\"topic").append(target).append(".dita#t").append(target).append("/ph\"/>");
+            break;
+        }
+        content.append(" exercitation ullamco laboris.</p>\n");
+      }
+      content.append("</body></topic>\n");
+
+      File file = new File(dir, "topic" + i + ".dita");
+      Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+      files.add(file);
+    }
+    return files;
+  }
+}
@@ -1,16 +1,45 @@
 package com.oxygenxml.translation.support.core;
 
+import com.oxygenxml.translation.exceptions.StoppedByUserException;
 import com.oxygenxml.translation.support.storage.ResourceInfo;
+import com.oxygenxml.translation.support.util.ArchiveBuilder;
 import com.oxygenxml.translation.support.util.PackageGeneratorUtil;
+import com.oxygenxml.translation.support.util.UnpackStatistics;
+import com.oxygenxml.translation.support.zip.PackageIndex;
+import com.oxygenxml.translation.support.zip.PackageManifest;
+import com.oxygenxml.translation.support.zip.VolumePacker;
+import com.oxygenxml.translation.support.zip.ZipArchiveReader;
+import com.oxygenxml.translation.support.zip.ZipArchiveWriter;
+import com.oxygenxml.translation.ui.ProgressChangeAdapter;
+import com.oxygenxml.translation.ui.ProgressChangeEvent;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 /**
  * Test the zipping functionality.
@@ -237,4 +266,875 @@ public class ZipTest extends TranslationPackageTestBase {
   }
 
   
+  /**
+   * <p><b>Description:</b> Packing a directory in parallel gives the same entries, in the same order
+   * and with the same content, as packing it on a single thread.</p>
+   *
+   * @throws Exception
+   */
+  public void testZipDirectory_Parallel() throws Exception {
+    File dir = Files.createTempDirectory("zipParallel").toFile();
+    File sequentialZip = new File(dir.getParentFile(), dir.getName() + "-1.zip");
+    File parallelZip = new File(dir.getParentFile(), dir.getName() + "-4.zip");
+    try {
+      Random random = new Random(1);
+      for (int i = 0; i < 20; i++) {
+        File file = new File(dir, "folder" + (i % 3) + "/topic" + i + ".dita");
+        file.getParentFile().mkdirs();
+        // Some entries are large enough to spill their compressed content on disk.
+        byte[] content = new byte[i % 5 == 0 ? 2 * 1024 * 1024 : 1000 + i];
+        random.nextBytes(content);
+        Files.write(file.toPath(), content);
+      }
+      
+      ArchiveBuilder sequential = new ArchiveBuilder();
+      sequential.zipDirectory(dir, sequentialZip);
+      
+      ArchiveBuilder parallel = new ArchiveBuilder();
+      parallel.setParallelism(4);
+      parallel.zipDirectory(dir, parallelZip);
+      
+      List<String> sequentialEntries = new ArrayList<String>();
+      List<String> parallelEntries = new ArrayList<String>();
+      try (ZipFile expected = new ZipFile(sequentialZip); ZipFile actual = new ZipFile(parallelZip)) {
+        for (ZipEntry entry : Collections.list(expected.entries())) {
+          sequentialEntries.add(entry.getName() + " " + entry.getSize() + " " + entry.getCrc());
+        }
+        for (ZipEntry entry : Collections.list(actual.entries())) {
+          parallelEntries.add(entry.getName() + " " + entry.getSize() + " " + entry.getCrc());
+          if (!entry.isDirectory()) {
+            try (InputStream in = actual.getInputStream(entry)) {
+              assertTrue(Arrays.equals(
+                  Files.readAllBytes(new File(dir, entry.getName()).toPath()), 
+                  IOUtils.toByteArray(in)));
+            }
+          }
+        }
+      }
+      
+      assertEquals(23, parallelEntries.size());
+      assertEquals(sequentialEntries, parallelEntries);
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      sequentialZip.delete();
+      parallelZip.delete();
+    }
+  }
+
+
+  /**
+   * <p><b>Description:</b> Unpacking an archive in parallel extracts the same files, reported in the 
+   * order of the archive, as unpacking it on a single thread. The extraction can be canceled.</p>
+   *
+   * @throws Exception
+   */
+  public void testUnzipDirectory_Parallel() throws Exception {
+    File dir = Files.createTempDirectory("unzipParallel").toFile();
+    File zip = new File(dir.getParentFile(), dir.getName() + ".zip");
+    File sequentialDir = new File(dir.getParentFile(), dir.getName() + "-1");
+    File parallelDir = new File(dir.getParentFile(), dir.getName() + "-4");
+    File canceledDir = new File(dir.getParentFile(), dir.getName() + "-canceled");
+    try {
+      Random random = new Random(1);
+      for (int i = 0; i < 200; i++) {
+        File file = new File(dir, "folder" + (i % 7) + "/sub" + (i % 3) + "/topic" + i + ".dita");
+        file.getParentFile().mkdirs();
+        byte[] content = new byte[100 + 37 * i];
+        random.nextBytes(content);
+        Files.write(file.toPath(), content);
+      }
+      new File(dir, "empty/folder").mkdirs();
+      new ArchiveBuilder().zipDirectory(dir, zip);
+      
+      List<String> archiveOrder = new ArrayList<String>();
+      try (ZipFile zipFile = new ZipFile(zip)) {
+        for (ZipEntry entry : Collections.list(zipFile.entries())) {
+          if (!entry.isDirectory()) {
+            archiveOrder.add(entry.getName());
+          }
+        }
+      }
+      
+      List<String> sequential = new ArchiveBuilder().unzipDirectory(zip, sequentialDir);
+      
+      AtomicInteger events = new AtomicInteger();
+      ArchiveBuilder parallelBuilder = new ArchiveBuilder();
+      parallelBuilder.setParallelism(4);
+      parallelBuilder.addProgressListener(new ProgressChangeAdapter() {
+        @Override
+        public void change(ProgressChangeEvent progress) {
+          events.incrementAndGet();
+        }
+      });
+      List<String> parallel = parallelBuilder.unzipDirectory(zip, parallelDir);
+      
+      assertEquals(archiveOrder, sequential);
+      assertEquals(archiveOrder, parallel);
+      assertEquals(200, events.get());
+      assertTrue(new File(parallelDir, "empty/folder").isDirectory());
+      for (String name : parallel) {
+        assertTrue(name, Arrays.equals(
+            Files.readAllBytes(new File(dir, name).toPath()),
+            Files.readAllBytes(new File(parallelDir, name).toPath())));
+      }
+      
+      ArchiveBuilder canceledBuilder = new ArchiveBuilder();
+      canceledBuilder.setParallelism(4);
+      AtomicInteger extracted = new AtomicInteger();
+      canceledBuilder.addProgressListener(new ProgressChangeAdapter() {
+        @Override
+        public void change(ProgressChangeEvent progress) {
+          extracted.incrementAndGet();
+        }
+        @Override
+        public boolean isCanceled() {
+          return extracted.get() >= 10;
+        }
+      });
+      try {
+        canceledBuilder.unzipDirectory(zip, canceledDir);
+        fail("The extraction should have been canceled");
+      } catch (StoppedByUserException e) {
+        // Expected.
+      }
+      assertTrue(extracted.get() < 200);
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      FileUtils.deleteDirectory(sequentialDir);
+      FileUtils.deleteDirectory(parallelDir);
+      FileUtils.deleteDirectory(canceledDir);
+      zip.delete();
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> When skipping the unchanged files, only the files whose content differs 
+   * from the local ones are written. The others keep their last modified time.</p>
+   *
+   * @throws Exception
+   */
+  public void testUnzipDirectory_SkipUnchanged() throws Exception {
+    File dir = Files.createTempDirectory("unzipSkip").toFile();
+    File zip = new File(dir.getParentFile(), dir.getName() + ".zip");
+    File localDir = new File(dir.getParentFile(), dir.getName() + "-local");
+    try {
+      for (int i = 0; i < 10; i++) {
+        File file = new File(dir, "topics/topic" + i + ".dita");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), ("<topic id='t" + i + "'/>").getBytes("UTF-8"));
+      }
+      new ArchiveBuilder().zipDirectory(dir, zip);
+      
+      // The local copy has 7 of the files unchanged, one with the same size but another content, 
+      // one with another size and one missing.
+      new ArchiveBuilder(null).copyDirectory(dir, localDir, 0, true);
+      Files.write(new File(localDir, "topics/topic7.dita").toPath(), "<topic id='x7'/>".getBytes("UTF-8"));
+      Files.write(new File(localDir, "topics/topic8.dita").toPath(), "<topic/>".getBytes("UTF-8"));
+      assertTrue(new File(localDir, "topics/topic9.dita").delete());
+      long oldTime = System.currentTimeMillis() - 3600 * 1000;
+      for (int i = 0; i < 9; i++) {
+        assertTrue(new File(localDir, "topics/topic" + i + ".dita").setLastModified(oldTime));
+      }
+      
+      ArchiveBuilder builder = new ArchiveBuilder();
+      builder.setParallelism(2);
+      builder.setSkipUnchanged(true);
+      List<String> unzipped = builder.unzipDirectory(zip, localDir);
+      
+      assertEquals(10, unzipped.size());
+      UnpackStatistics statistics = builder.getStatistics();
+      assertEquals(2, statistics.getWrittenFiles());
+      assertEquals(7, statistics.getSkippedFiles());
+      assertEquals(1, statistics.getNewFiles());
+      for (int i = 0; i < 10; i++) {
+        File file = new File(localDir, "topics/topic" + i + ".dita");
+        assertEquals("<topic id='t" + i + "'/>", new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+        assertEquals(file.getName(), i < 7, file.lastModified() / 1000 == oldTime / 1000);
+      }
+      
+      // Without skipping, everything is written.
+      builder.setSkipUnchanged(false);
+      builder.unzipDirectory(zip, localDir);
+      assertEquals(10, builder.getStatistics().getWrittenFiles());
+      assertEquals(0, builder.getStatistics().getSkippedFiles());
+      assertEquals(0, builder.getStatistics().getNewFiles());
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      FileUtils.deleteDirectory(localDir);
+      zip.delete();
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> A package split in volumes has every file in exactly one volume, 
+   * no volume exceeds the budget and applying all the volumes restores the directory.</p>
+   *
+   * @throws Exception
+   */
+  public void testZipDirectory_Volumes() throws Exception {
+    File dir = Files.createTempDirectory("zipVolumes").toFile();
+    File zip = new File(dir.getParentFile(), dir.getName() + ".zip");
+    File unzipDir = new File(dir.getParentFile(), dir.getName() + "-unzipped");
+    List<File> volumes = new ArrayList<File>();
+    try {
+      Random random = new Random(1);
+      for (int i = 0; i < 12; i++) {
+        File file = new File(dir, "folder" + (i % 3) + "/image" + i + ".png");
+        file.getParentFile().mkdirs();
+        byte[] content = new byte[(100 + 50 * i) * 1024];
+        random.nextBytes(content);
+        Files.write(file.toPath(), content);
+      }
+      new File(dir, "empty").mkdirs();
+      
+      long budget = 1024 * 1024;
+      ArchiveBuilder builder = new ArchiveBuilder();
+      builder.setParallelism(4);
+      builder.setMaxVolumeSize(budget);
+      volumes.addAll(builder.zipDirectory(dir, zip));
+      
+      assertTrue(volumes.size() > 1);
+      assertFalse(zip.exists());
+      assertEquals(volumes, VolumePacker.findVolumes(volumes.get(1)));
+      assertEquals(volumes, VolumePacker.findVolumes(zip));
+      
+      List<String> names = new ArrayList<String>();
+      for (File volume : volumes) {
+        assertTrue(volume.getName(), volume.length() <= budget);
+        try (ZipFile zipFile = new ZipFile(volume)) {
+          for (ZipEntry entry : Collections.list(zipFile.entries())) {
+            if (!entry.isDirectory()) {
+              names.add(entry.getName());
+            }
+          }
+        }
+      }
+      Collections.sort(names);
+      assertEquals(12, names.size());
+      assertEquals(12, new HashSet<String>(names).size());
+      
+      List<String> unzipped = builder.unzipDirectory(volumes, unzipDir);
+      Collections.sort(unzipped);
+      assertEquals(names, unzipped);
+      assertTrue(new File(unzipDir, "empty").isDirectory());
+      for (String name : names) {
+        assertTrue(name, Arrays.equals(
+            Files.readAllBytes(new File(dir, name).toPath()),
+            Files.readAllBytes(new File(unzipDir, name).toPath())));
+      }
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      FileUtils.deleteDirectory(unzipDir);
+      for (File volume : volumes) {
+        volume.delete();
+      }
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> The files with the same content are stored once in a de-duplicated package
+   * and their copies are restored when the package is applied.</p>
+   *
+   * @throws Exception
+   */
+  public void testChangedFilesPackage_Deduplicate() throws Exception {
+    File dir = Files.createTempDirectory("zipDedupe").toFile();
+    File zip = new File(dir.getParentFile(), dir.getName() + ".zip");
+    File unzipDir = new File(dir.getParentFile(), dir.getName() + "-unzipped");
+    try {
+      byte[] image = new byte[50 * 1024];
+      new Random(1).nextBytes(image);
+      List<File> files = Arrays.asList(
+          new File(dir, "en/image.png"),
+          new File(dir, "de/image.png"),
+          new File(dir, "fr/images/image copy.png"),
+          new File(dir, "en/topic.dita"));
+      for (File file : files) {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), file.getName().endsWith(".png") ? image : "<topic/>".getBytes("UTF-8"));
+      }
+      
+      List<URL> urls = new ArrayList<URL>();
+      List<String> digests = new ArrayList<String>();
+      for (File file : files) {
+        urls.add(file.toURI().toURL());
+        digests.add(MilestoneUtil.generateMD5(file));
+      }
+      
+      ChangePackageGenerator generator = new ChangePackageGenerator();
+      generator.setDeduplicate(true);
+      assertEquals(4, generator.generateChangedFilesPackage(zip, urls, digests, dir.toURI().toURL()));
+      
+      List<String> names = new ArrayList<String>();
+      try (ZipFile zipFile = new ZipFile(zip)) {
+        for (ZipEntry entry : Collections.list(zipFile.entries())) {
+          if (!entry.isDirectory()) {
+            names.add(entry.getName());
+          }
+        }
+      }
+      assertEquals("[en/image.png, en/topic.dita, META-INF/duplicates.properties, META-INF/manifest.properties]", names.toString());
+      
+      List<String> unzipped = new ArchiveBuilder().unzipDirectory(zip, unzipDir);
+      assertEquals("[en/image.png, en/topic.dita, de/image.png, fr/images/image copy.png]", unzipped.toString());
+      assertFalse(new File(unzipDir, "META-INF").exists());
+      for (File file : files) {
+        String name = dir.toURI().relativize(file.toURI()).getPath();
+        assertTrue(name, Arrays.equals(
+            Files.readAllBytes(file.toPath()),
+            Files.readAllBytes(new File(unzipDir, name).toPath())));
+      }
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      FileUtils.deleteDirectory(unzipDir);
+      zip.delete();
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> The files of a package are listed without extracting it. A file is extracted
+   * only when asked for and applying a selection extracts only the selected files, even when a selected 
+   * copy of a de-duplicated resource has its stored file not selected.</p>
+   *
+   * @throws Exception
+   */
+  public void testPackageIndex() throws Exception {
+    File dir = Files.createTempDirectory("zipIndex").toFile();
+    File zip = new File(dir.getParentFile(), dir.getName() + ".zip");
+    File tempDir = new File(dir.getParentFile(), dir.getName() + "-temp");
+    File unzipDir = new File(dir.getParentFile(), dir.getName() + "-unzipped");
+    try {
+      byte[] image = new byte[50 * 1024];
+      new Random(1).nextBytes(image);
+      List<File> files = Arrays.asList(
+          new File(dir, "en/image.png"),
+          new File(dir, "de/image.png"),
+          new File(dir, "en/topic.dita"));
+      List<URL> urls = new ArrayList<URL>();
+      List<String> digests = new ArrayList<String>();
+      for (File file : files) {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), file.getName().endsWith(".png") ? image : "<topic/>".getBytes("UTF-8"));
+        urls.add(file.toURI().toURL());
+        digests.add(MilestoneUtil.generateMD5(file));
+      }
+      ChangePackageGenerator generator = new ChangePackageGenerator();
+      generator.setDeduplicate(true);
+      generator.generateChangedFilesPackage(zip, urls, digests, dir.toURI().toURL());
+      
+      try (PackageIndex index = new PackageIndex(VolumePacker.findVolumes(zip))) {
+        // Listed in the order in which they are extracted.
+        assertEquals(new ArchiveBuilder().unzipDirectory(zip, unzipDir), index.getFilePaths());
+        FileUtils.deleteDirectory(unzipDir);
+        // The sizes and the CRC-32 are the same as the ones sent.
+        assertEquals("{de/image.png=UNCHANGED, en/image.png=UNCHANGED, en/topic.dita=UNCHANGED}", 
+            index.getEntryStatuses().toString());
+        
+        File extracted = index.extract("de/image.png", tempDir);
+        assertTrue(Arrays.equals(image, Files.readAllBytes(extracted.toPath())));
+        assertEquals("[de]", Arrays.asList(tempDir.list()).toString());
+        
+        try {
+          index.extract("de/missing.png", tempDir);
+          fail("The package has no such file.");
+        } catch (IOException e) {
+          // Expected.
+        }
+      }
+      
+      // Apply the copy without its stored file.
+      ArchiveBuilder builder = new ArchiveBuilder();
+      builder.setEntryFilter(new HashSet<>(Arrays.asList("de/image.png", "en/topic.dita"))::contains);
+      List<String> unzipped = builder.unzipDirectory(zip, unzipDir);
+      assertEquals("[en/topic.dita, de/image.png]", unzipped.toString());
+      assertFalse(new File(unzipDir, "en/image.png").exists());
+      assertTrue(Arrays.equals(image, Files.readAllBytes(new File(unzipDir, "de/image.png").toPath())));
+      assertEquals("{de/image.png=UNCHANGED, en/topic.dita=UNCHANGED}", builder.getEntryStatuses().toString());
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      FileUtils.deleteDirectory(tempDir);
+      FileUtils.deleteDirectory(unzipDir);
+      zip.delete();
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> A returned package that lists a copy outside of the destination folder
+   * is rejected and nothing is written outside of it.</p>
+   *
+   * @throws Exception
+   */
+  public void testUnzip_DuplicateOutsideDestination() throws Exception {
+    File dir = Files.createTempDirectory("zipEvil").toFile();
+    File zip = new File(dir, "package.zip");
+    File unzipDir = new File(dir, "unzipped");
+    File outside = new File(dir, "evil.txt");
+    try {
+      try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+        zos.putNextEntry(new ZipEntry("a.txt"));
+        zos.write("content".getBytes("UTF-8"));
+        zos.closeEntry();
+        zos.putNextEntry(new ZipEntry("META-INF/duplicates.properties"));
+        zos.write("../evil.txt=a.txt\n".getBytes("UTF-8"));
+        zos.closeEntry();
+      }
+      
+      try {
+        new ArchiveBuilder().unzipDirectory(zip, unzipDir);
+        fail("The copy is outside of the destination folder.");
+      } catch (IOException e) {
+        // Expected.
+      }
+      assertFalse(outside.exists());
+      
+      try (PackageIndex index = new PackageIndex(VolumePacker.findVolumes(zip))) {
+        try {
+          index.extract("../evil.txt", unzipDir);
+          fail("The copy is outside of the destination folder.");
+        } catch (IOException e) {
+          // Expected.
+        }
+      }
+      assertFalse(outside.exists());
+    } finally {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> When the stored file of a de-duplicated content can't be added to the package,
+   * its copies are not listed in the package either.</p>
+   *
+   * @throws Exception
+   */
+  public void testChangedFilesPackage_DeduplicateFailedEntry() throws Exception {
+    File dir = Files.createTempDirectory("zipDedupeFailed").toFile();
+    File zip = new File(dir.getParentFile(), dir.getName() + ".zip");
+    File unzipDir = new File(dir.getParentFile(), dir.getName() + "-unzipped");
+    try {
+      // The stored file is missing, so it fails when it is added. Its copy has the same (empty) content.
+      File stored = new File(dir, "en/empty.txt");
+      File copy = new File(dir, "de/empty.txt");
+      File topic = new File(dir, "en/topic.dita");
+      copy.getParentFile().mkdirs();
+      topic.getParentFile().mkdirs();
+      Files.write(copy.toPath(), new byte[0]);
+      Files.write(topic.toPath(), "<topic/>".getBytes("UTF-8"));
+      
+      ChangePackageGenerator generator = new ChangePackageGenerator();
+      generator.setDeduplicate(true);
+      generator.generateChangedFilesPackage(
+          zip, 
+          Arrays.asList(stored.toURI().toURL(), copy.toURI().toURL(), topic.toURI().toURL()), 
+          Arrays.asList(MilestoneUtil.generateMD5(copy), MilestoneUtil.generateMD5(copy), MilestoneUtil.generateMD5(topic)), 
+          dir.toURI().toURL());
+      assertEquals(2, generator.getFilesNotCopied().size());
+      
+      try (ZipFile zipFile = new ZipFile(zip)) {
+        assertNull(zipFile.getEntry("META-INF/duplicates.properties"));
+        try (InputStream in = zipFile.getInputStream(zipFile.getEntry(PackageManifest.ENTRY_NAME))) {
+          assertEquals("[en/topic.dita]", PackageManifest.read(in).getItems().keySet().toString());
+        }
+      }
+      
+      assertEquals("[en/topic.dita]", new ArchiveBuilder().unzipDirectory(zip, unzipDir).toString());
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      FileUtils.deleteDirectory(unzipDir);
+      zip.delete();
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> A copy whose stored entry is missing from the package is not extracted,
+   * and a local file with the path of the stored entry is not copied over it.</p>
+   *
+   * @throws Exception
+   */
+  public void testUnzip_DuplicateWithoutStoredEntry() throws Exception {
+    File dir = Files.createTempDirectory("zipMissingStored").toFile();
+    File zip = new File(dir, "package.zip");
+    File unzipDir = new File(dir, "unzipped");
+    try {
+      try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+        zos.putNextEntry(new ZipEntry("a.txt"));
+        zos.write("translated".getBytes("UTF-8"));
+        zos.closeEntry();
+        zos.putNextEntry(new ZipEntry("META-INF/duplicates.properties"));
+        zos.write("copy.txt=missing.txt\n".getBytes("UTF-8"));
+        zos.closeEntry();
+      }
+      // An old, untranslated file.
+      unzipDir.mkdirs();
+      Files.write(new File(unzipDir, "missing.txt").toPath(), "original".getBytes("UTF-8"));
+      
+      assertEquals("[a.txt]", new ArchiveBuilder().unzipDirectory(zip, unzipDir).toString());
+      assertFalse(new File(unzipDir, "copy.txt").exists());
+    } finally {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> Only the manifests written by the generator are package metadata. The other
+   * files of a META-INF folder are resources: they are listed and extracted.</p>
+   *
+   * @throws Exception
+   */
+  public void testUnzip_MetaInfResources() throws Exception {
+    File dir = Files.createTempDirectory("zipMetaInf").toFile();
+    File zip = new File(dir, "package.zip");
+    File unzipDir = new File(dir, "unzipped");
+    try {
+      try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+        zos.putNextEntry(new ZipEntry("a.txt"));
+        zos.write("content".getBytes("UTF-8"));
+        zos.closeEntry();
+        zos.putNextEntry(new ZipEntry("META-INF/resource.xml"));
+        zos.write("<resource/>".getBytes("UTF-8"));
+        zos.closeEntry();
+        zos.putNextEntry(new ZipEntry("META-INF/duplicates.properties"));
+        zos.write("b.txt=a.txt\n".getBytes("UTF-8"));
+        zos.closeEntry();
+      }
+      
+      try (PackageIndex index = new PackageIndex(VolumePacker.findVolumes(zip))) {
+        assertEquals("[a.txt, META-INF/resource.xml, b.txt]", index.getFilePaths().toString());
+      }
+      assertEquals("[a.txt, META-INF/resource.xml, b.txt]", 
+          new ArchiveBuilder().unzipDirectory(zip, unzipDir).toString());
+      assertEquals("<resource/>", 
+          new String(Files.readAllBytes(new File(unzipDir, "META-INF/resource.xml").toPath()), "UTF-8"));
+      assertFalse(new File(unzipDir, "META-INF/duplicates.properties").exists());
+    } finally {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> The changed files package records what was sent. When it comes back, 
+   * the returned files are classified against the manifest while they are extracted.</p>
+   *
+   * @throws Exception
+   */
+  public void testChangedFilesPackage_Manifest() throws Exception {
+    File dir = Files.createTempDirectory("zipManifest").toFile();
+    File zip = new File(dir.getParentFile(), dir.getName() + ".zip");
+    File returnedZip = new File(dir.getParentFile(), dir.getName() + "-returned.zip");
+    File unzipDir = new File(dir.getParentFile(), dir.getName() + "-unzipped");
+    try {
+      List<URL> urls = new ArrayList<URL>();
+      List<String> digests = new ArrayList<String>();
+      for (String name : Arrays.asList("unchanged.dita", "translated.dita", "lost.dita")) {
+        File file = new File(dir, "topics/" + name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), ("<topic id='" + name + "'/>").getBytes("UTF-8"));
+        urls.add(file.toURI().toURL());
+        digests.add(MilestoneUtil.generateMD5(file));
+      }
+      
+      ChangePackageGenerator generator = new ChangePackageGenerator();
+      generator.setMilestoneDate(new Date(1000));
+      generator.generateChangedFilesPackage(zip, urls, digests, dir.toURI().toURL());
+      
+      PackageManifest manifest;
+      try (ZipFile zipFile = new ZipFile(zip); 
+          InputStream in = zipFile.getInputStream(zipFile.getEntry(PackageManifest.ENTRY_NAME))) {
+        manifest = PackageManifest.read(in);
+      }
+      assertEquals(dir.toURI().toURL().toExternalForm(), manifest.getTopLocation());
+      assertEquals(new Date(1000), manifest.getMilestoneDate());
+      assertEquals("MD5", manifest.getDigestAlgorithm());
+      assertEquals("[topics/lost.dita, topics/translated.dita, topics/unchanged.dita]", manifest.getItems().keySet().toString());
+      assertEquals(digests.get(0), manifest.getItems().get("topics/unchanged.dita").getDigest());
+      assertEquals(new File(dir, "topics/unchanged.dita").length(), manifest.getItems().get("topics/unchanged.dita").getSize());
+      
+      assertTrue(manifest.getItems().get("topics/unchanged.dita").getCrc() != PackageManifest.UNKNOWN_CRC);
+      
+      // The package that comes back: a file translated, with the same size, one lost and one added.
+      try (ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(returnedZip))) {
+        writer.putEntry("topics/unchanged.dita", () -> new FileInputStream(new File(dir, "topics/unchanged.dita")));
+        writer.putEntry("topics/translated.dita", () -> new ByteArrayInputStream("<topic id='TRANSLATED.dita'/>".getBytes("UTF-8")));
+        writer.putEntry("topics/added.dita", () -> new ByteArrayInputStream("<topic/>".getBytes("UTF-8")));
+        byte[] manifestContent = manifest.write();
+        writer.putEntry(PackageManifest.ENTRY_NAME, () -> new ByteArrayInputStream(manifestContent));
+        writer.finish();
+      }
+      
+      ArchiveBuilder archiveBuilder = new ArchiveBuilder();
+      archiveBuilder.unzipDirectory(returnedZip, unzipDir);
+      assertEquals("{topics/added.dita=NEW, topics/lost.dita=MISSING, "
+          + "topics/translated.dita=MODIFIED, topics/unchanged.dita=UNCHANGED}", 
+          archiveBuilder.getEntryStatuses().toString());
+      
+      // The same, from the central directory only.
+      try (PackageIndex index = new PackageIndex(Arrays.asList(returnedZip))) {
+        assertEquals(archiveBuilder.getEntryStatuses(), index.getEntryStatuses());
+      }
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      FileUtils.deleteDirectory(unzipDir);
+      zip.delete();
+      returnedZip.delete();
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> In reproducible mode the same files give the same package, byte for byte,
+   * no matter the order in which they are given and the parallelism level.</p>
+   *
+   * @throws Exception
+   */
+  public void testReproducible() throws Exception {
+    File dir = Files.createTempDirectory("zipReproducible").toFile();
+    File zip1 = new File(dir.getParentFile(), dir.getName() + "-1.zip");
+    File zip2 = new File(dir.getParentFile(), dir.getName() + "-2.zip");
+    try {
+      byte[] image = new byte[50 * 1024];
+      new Random(1).nextBytes(image);
+      List<File> files = Arrays.asList(
+          new File(dir, "en/image.png"),
+          new File(dir, "de/image.png"),
+          new File(dir, "fr/images/image copy.png"),
+          new File(dir, "en/topic.dita"));
+      for (File file : files) {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), file.getName().endsWith(".png") ? image : "<topic/>".getBytes("UTF-8"));
+      }
+      
+      List<URL> urls = new ArrayList<URL>();
+      List<String> digests = new ArrayList<String>();
+      for (File file : files) {
+        urls.add(file.toURI().toURL());
+        digests.add(MilestoneUtil.generateMD5(file));
+      }
+      
+      ChangePackageGenerator generator = new ChangePackageGenerator();
+      generator.setReproducible(true);
+      generator.setDeduplicate(true);
+      generator.generateChangedFilesPackage(zip1, urls, digests, dir.toURI().toURL());
+      
+      Collections.reverse(urls);
+      Collections.reverse(digests);
+      generator = new ChangePackageGenerator();
+      generator.setReproducible(true);
+      generator.setDeduplicate(true);
+      generator.setParallelism(3);
+      generator.generateChangedFilesPackage(zip2, urls, digests, dir.toURI().toURL());
+      
+      assertTrue(Arrays.equals(Files.readAllBytes(zip1.toPath()), Files.readAllBytes(zip2.toPath())));
+      
+      List<String> names = new ArrayList<String>();
+      Calendar calendar = Calendar.getInstance();
+      try (ZipFile zipFile = new ZipFile(zip1)) {
+        for (ZipEntry entry : Collections.list(zipFile.entries())) {
+          names.add(entry.getName());
+          calendar.setTimeInMillis(entry.getTime());
+          assertEquals(1980, calendar.get(Calendar.YEAR));
+        }
+      }
+      // The first copy in the order of the paths is the one stored.
+      assertEquals("[de/, de/image.png, en/, en/topic.dita, META-INF/, META-INF/duplicates.properties, "
+          + "META-INF/manifest.properties]", names.toString());
+      
+      // The same for a directory.
+      ArchiveBuilder archiveBuilder = new ArchiveBuilder();
+      archiveBuilder.setReproducible(true);
+      archiveBuilder.zipDirectory(dir, zip1);
+      archiveBuilder.setParallelism(3);
+      archiveBuilder.zipDirectory(dir, zip2);
+      assertTrue(Arrays.equals(Files.readAllBytes(zip1.toPath()), Files.readAllBytes(zip2.toPath())));
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      zip1.delete();
+      zip2.delete();
+    }
+  }
+
+  /**
+   * <p><b>Description:</b> The already compressed files are stored, the others are deflated.</p>
+   *
+   * @throws Exception
+   */
+  public void testZipDirectory_CompressionPolicy() throws Exception {
+    File dir = Files.createTempDirectory("zipPolicy").toFile();
+    File zip = new File(dir.getParentFile(), dir.getName() + ".zip");
+    try {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 1000; i++) {
+        text.append("<p>Paragraph ").append(i).append("</p>\n");
+      }
+      byte[] random = new byte[100 * 1024];
+      new Random(1).nextBytes(random);
+      
+      // Known compressed format.
+      Files.write(new File(dir, "image.png").toPath(), text.toString().getBytes("UTF-8"));
+      // Detected from the content.
+      Files.write(new File(dir, "random.bin").toPath(), random);
+      Files.write(new File(dir, "topic.dita").toPath(), text.toString().getBytes("UTF-8"));
+      
+      ArchiveBuilder archiveBuilder = new ArchiveBuilder();
+      archiveBuilder.zipDirectory(dir, zip);
+      assertEquals(
+          "image.png STORED\n" + 
+          "random.bin STORED\n" + 
+          "topic.dita DEFLATED\n", 
+          getMethods(zip));
+      
+      archiveBuilder.setCompressionPolicy(null);
+      archiveBuilder.setCompressionLevel(9);
+      archiveBuilder.zipDirectory(dir, zip);
+      assertEquals(
+          "image.png DEFLATED\n" + 
+          "random.bin DEFLATED\n" + 
+          "topic.dita DEFLATED\n", 
+          getMethods(zip));
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      zip.delete();
+    }
+  }
+
+  /**
+   * @param zip An archive.
+   * 
+   * @return The entries of the archive, sorted, with their compression method. 
+   */
+  private static String getMethods(File zip) throws IOException {
+    List<String> methods = new ArrayList<String>();
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
+        try (InputStream in = zipFile.getInputStream(entry)) {
+          // Reading checks the CRC.
+          IOUtils.toByteArray(in);
+        }
+        methods.add(entry.getName() + (entry.getMethod() == ZipEntry.STORED ? " STORED" : " DEFLATED"));
+      }
+    }
+    Collections.sort(methods);
+    
+    StringBuilder b = new StringBuilder();
+    for (String method : methods) {
+      b.append(method).append("\n");
+    }
+    return b.toString();
+  }
+
+  /**
+   * <p><b>Description:</b> Archives with more than 65,535 entries use the ZIP64 end of central directory 
+   * and can be unpacked.</p>
+   *
+   * @throws Exception
+   */
+  public void testZip64_ManyEntries() throws Exception {
+    File dir = Files.createTempDirectory("zip64").toFile();
+    File zip = new File(dir, "many.zip");
+    File unzipDir = new File(dir, "unzipped");
+    try {
+      int count = 70000;
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try (ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(zip), executor, 8)) {
+        for (int i = 0; i < count; i++) {
+          byte[] content = ("Topic " + i).getBytes("UTF-8");
+          writer.putEntry("topics" + (i % 10) + "/topic" + i + ".dita", () -> new ByteArrayInputStream(content));
+        }
+        writer.finish();
+        assertEquals(count, writer.getEntryCount());
+      } finally {
+        executor.shutdown();
+      }
+      
+      try (ZipFile zipFile = new ZipFile(zip)) {
+        assertEquals(count, zipFile.size());
+      }
+      try (ZipArchiveReader reader = new ZipArchiveReader(zip)) {
+        assertEquals(count, reader.getEntries().size());
+        assertEquals(11, reader.getEntry("topics9/topic69999.dita").getSize());
+      }
+      
+      List<String> unzipped = new ArchiveBuilder().unzipDirectory(zip, unzipDir);
+      assertEquals(count, unzipped.size());
+      assertEquals("Topic 69999\n", TestUtil.readFile(new File(unzipDir, "topics9/topic69999.dita")));
+    } finally {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  
+  /**
+   * <p><b>Description:</b> The entries that didn't change since the previous package are copied from it
+   * without compressing them again, even when the new package is written over the previous one.</p>
+   *
+   * @throws Exception
+   */
+  public void testZipDirectory_PreviousPackage() throws Exception {
+    File dir = Files.createTempDirectory("zipPrevious").toFile();
+    File zip = new File(dir.getParentFile(), dir.getName() + ".zip");
+    File copy = new File(dir.getParentFile(), dir.getName() + "-copy.zip");
+    File unzipDir = new File(dir.getParentFile(), dir.getName() + "-unzipped");
+    try {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 1000; i++) {
+        text.append("<p>Paragraph ").append(i).append("</p>\n");
+      }
+      for (int i = 0; i < 10; i++) {
+        File file = new File(dir, "topics/topic" + i + ".dita");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), (i + text.toString()).getBytes("UTF-8"));
+      }
+      ArchiveBuilder builder = new ArchiveBuilder();
+      builder.zipDirectory(dir, zip);
+      
+      // One file changes, with the same size.
+      Files.write(new File(dir, "topics/topic3.dita").toPath(), ("X" + text.toString()).getBytes("UTF-8"));
+      
+      try (ZipArchiveReader previous = new ZipArchiveReader(zip);
+          ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(copy))) {
+        writer.setPreviousArchives(Arrays.asList(previous));
+        for (int i = 0; i < 10; i++) {
+          File file = new File(dir, "topics/topic" + i + ".dita");
+          writer.putEntry("topics/topic" + i + ".dita", () -> new FileInputStream(file));
+        }
+        writer.finish();
+        assertEquals(9, writer.getCopiedEntryCount());
+      }
+      
+      // The recorded digests decide, when they are known for both entries.
+      try (ZipArchiveReader previous = new ZipArchiveReader(zip);
+          ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(copy))) {
+        writer.setPreviousArchives(Arrays.asList(previous));
+        Map<String, String> previousDigests = new HashMap<>();
+        previousDigests.put("topics/topic0.dita", "old");
+        previousDigests.put("topics/topic1.dita", "same");
+        writer.setPreviousDigests(previousDigests);
+        for (int i = 0; i < 10; i++) {
+          File file = new File(dir, "topics/topic" + i + ".dita");
+          writer.putEntry("topics/topic" + i + ".dita", () -> new FileInputStream(file), i < 2 ? "same" : null);
+        }
+        writer.finish();
+        assertEquals(8, writer.getCopiedEntryCount());
+      }
+      
+      // Written over the previous package.
+      builder.setPreviousPackage(zip);
+      builder.zipDirectory(dir, zip);
+      assertFalse(new File(zip.getPath() + ".previous").exists());
+      
+      for (File archive : Arrays.asList(copy, zip)) {
+        FileUtils.deleteDirectory(unzipDir);
+        List<String> unzipped = new ArchiveBuilder().unzipDirectory(archive, unzipDir);
+        assertEquals(10, unzipped.size());
+        for (String name : unzipped) {
+          assertTrue(name, Arrays.equals(
+              Files.readAllBytes(new File(dir, name).toPath()),
+              Files.readAllBytes(new File(unzipDir, name).toPath())));
+        }
+      }
+    } finally {
+      FileUtils.deleteDirectory(dir);
+      FileUtils.deleteDirectory(unzipDir);
+      zip.delete();
+      copy.delete();
+    }
+  }
 }